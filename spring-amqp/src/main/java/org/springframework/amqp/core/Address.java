@@ -38,6 +38,12 @@ import org.springframework.util.StringUtils;
  */
 public class Address {
 
+	/**
+	 * The pseudo queue used by RabbitMQ (3.4 and above) for direct reply-to; replies are
+	 * delivered directly to a consumer of this queue on the channel that sent the request.
+	 */
+	public static final String AMQ_RABBITMQ_REPLY_TO = "amq.rabbitmq.reply-to";
+
 	private static final Pattern pattern = Pattern.compile("^([^:]+)://([^/]*)/?(.*)$");
 
 	private final String exchangeType;
@@ -13,6 +13,8 @@
 
 package org.springframework.amqp.core;
 
+import java.util.List;
+
 import org.springframework.amqp.AmqpException;
 import org.springframework.amqp.support.converter.MessageConverter;
 
@@ -138,6 +140,32 @@ public interface AmqpTemplate {
 	 */
 	Message receive(String queueName) throws AmqpException;
 
+	/**
+	 * Receive a message from a specific queue, waiting if necessary for one to arrive. Implementations should
+	 * consume from the queue rather than repeatedly polling it.
+	 *
+	 * @param queueName the name of the queue to receive from
+	 * @param timeoutMillis how long to wait for a message, in milliseconds; zero to return immediately, negative to
+	 * wait indefinitely
+	 * @return a message or null if none arrived within the timeout
+	 * @throws AmqpException if there is a problem
+	 * @since 1.4
+	 */
+	Message receive(String queueName, long timeoutMillis) throws AmqpException;
+
+	/**
+	 * Receive a batch of messages from a specific queue, waiting if necessary for the first one to arrive. The batch
+	 * contains the first message and any further messages delivered with it, up to {@code maxMessages}.
+	 *
+	 * @param queueName the name of the queue to receive from
+	 * @param maxMessages the maximum number of messages to receive
+	 * @param timeoutMillis how long to wait for the first message, in milliseconds; negative to wait indefinitely
+	 * @return the messages; empty if none arrived within the timeout
+	 * @throws AmqpException if there is a problem
+	 * @since 1.4
+	 */
+	List<Message> receiveBatch(String queueName, int maxMessages, long timeoutMillis) throws AmqpException;
+
 	// receive methods with conversion
 
 	/**
@@ -0,0 +1,36 @@
+/*
+ * Copyright 2014 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.amqp.core;
+
+import java.util.List;
+
+/**
+ * Listener interface to receive asynchronous delivery of Amqp Messages in batches;
+ * the messages in a batch are acknowledged (or rejected) together.
+ *
+ * @author Gary Russell
+ * @since 1.4
+ */
+public interface BatchMessageListener {
+
+	/**
+	 * Callback for processing a batch of received messages.
+	 * @param messages the messages, in delivery order (never empty).
+	 */
+	void onMessageBatch(List<Message> messages);
+
+}
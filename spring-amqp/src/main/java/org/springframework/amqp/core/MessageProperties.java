@@ -42,6 +42,18 @@ public class MessageProperties implements Serializable {
 
 	public static final String CONTENT_TYPE_XML = "application/xml";
 
+	/**
+	 * Header identifying the format of a message containing a batch of messages.
+	 * @since 1.4
+	 */
+	public static final String SPRING_BATCH_FORMAT = "springBatchFormat";
+
+	/**
+	 * Batch format: each message body is preceded by a 4 byte length.
+	 * @since 1.4
+	 */
+	public static final String BATCH_FORMAT_LENGTH_HEADER4 = "lengthHeader4";
+
 	static final String DEFAULT_CONTENT_TYPE = CONTENT_TYPE_BYTES;
 
 	static final MessageDeliveryMode DEFAULT_DELIVERY_MODE = MessageDeliveryMode.PERSISTENT;
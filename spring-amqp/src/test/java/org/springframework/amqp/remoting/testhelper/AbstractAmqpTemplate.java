@@ -13,6 +13,8 @@
 
 package org.springframework.amqp.remoting.testhelper;
 
+import java.util.List;
+
 import org.springframework.amqp.AmqpException;
 import org.springframework.amqp.core.AmqpTemplate;
 import org.springframework.amqp.core.Message;
@@ -83,6 +85,16 @@ public abstract class AbstractAmqpTemplate implements AmqpTemplate {
 		throw new UnsupportedOperationException();
 	}
 
+	@Override
+	public Message receive(String queueName, long timeoutMillis) throws AmqpException {
+		throw new UnsupportedOperationException();
+	}
+
+	@Override
+	public List<Message> receiveBatch(String queueName, int maxMessages, long timeoutMillis) throws AmqpException {
+		throw new UnsupportedOperationException();
+	}
+
 	@Override
 	public Object receiveAndConvert() throws AmqpException {
 		throw new UnsupportedOperationException();
@@ -54,6 +54,10 @@ class ConnectionFactoryParser extends AbstractSingleBeanDefinitionParser {
 
 	private static final String CONNECTION_CACHE_SIZE_ATTRIBUTE = "connection-cache-size";
 
+	private static final String CHANNEL_CHECKOUT_TIMEOUT_ATTRIBUTE = "channel-checkout-timeout";
+
+	private static final String SHARED_CONNECTION_COUNT_ATTRIBUTE = "shared-connection-count";
+
 	@Override
 	protected Class<?> getBeanClass(Element element) {
 		return CachingConnectionFactory.class;
@@ -91,6 +95,8 @@ class ConnectionFactoryParser extends AbstractSingleBeanDefinitionParser {
 		NamespaceUtils.setValueIfAttributeDefined(builder, element, REQUESTED_HEARTBEAT, "requestedHeartBeat");
 		NamespaceUtils.setValueIfAttributeDefined(builder, element, CACHE_MODE);
 		NamespaceUtils.setValueIfAttributeDefined(builder, element, CONNECTION_CACHE_SIZE_ATTRIBUTE);
+		NamespaceUtils.setValueIfAttributeDefined(builder, element, CHANNEL_CHECKOUT_TIMEOUT_ATTRIBUTE);
+		NamespaceUtils.setValueIfAttributeDefined(builder, element, SHARED_CONNECTION_COUNT_ATTRIBUTE);
 
 	}
 
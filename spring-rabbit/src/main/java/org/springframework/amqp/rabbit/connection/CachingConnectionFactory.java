@@ -14,27 +14,31 @@
 package org.springframework.amqp.rabbit.connection;
 
 import java.io.IOException;
-import java.lang.reflect.InvocationHandler;
-import java.lang.reflect.InvocationTargetException;
-import java.lang.reflect.Method;
-import java.lang.reflect.Proxy;
 import java.util.HashMap;
 import java.util.HashSet;
-import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.SortedMap;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 
 import org.springframework.amqp.AmqpException;
+import org.springframework.amqp.AmqpTimeoutException;
+import org.springframework.amqp.rabbit.support.PendingConfirm;
 import org.springframework.amqp.rabbit.support.PublisherCallbackChannel;
 import org.springframework.amqp.rabbit.support.PublisherCallbackChannelImpl;
 import org.springframework.beans.factory.InitializingBean;
 import org.springframework.util.Assert;
 import org.springframework.util.StringUtils;
 
+import com.rabbitmq.client.AMQP.Tx.SelectOk;
 import com.rabbitmq.client.Channel;
 import com.rabbitmq.client.ShutdownListener;
 import com.rabbitmq.client.ShutdownSignalException;
@@ -48,7 +52,10 @@ import com.rabbitmq.client.ShutdownSignalException;
  * <p>
  * By default, only one Channel will be cached, with further requested Channels being created and disposed on demand.
  * Consider raising the {@link #setChannelCacheSize(int) "channelCacheSize" value} in case of a high-concurrency
- * environment.
+ * environment. When a {@link #setChannelCheckoutTimeout(long) "channelCheckoutTimeout"} is set, the cache size is
+ * also a hard limit on the number of channels open on each connection; callers wait for a channel to be returned
+ * instead of creating more. To spread channels over several connections (and their I/O threads), set the
+ * {@link #setSharedConnectionCount(int) "sharedConnectionCount"}.
  *
  * <p>
  * When the cache mode is {@link CacheMode#CONNECTION}, a new (or cached) connection is used for each request. In this case,
@@ -72,7 +79,7 @@ public class CachingConnectionFactory extends AbstractConnectionFactory implemen
 
 	public enum CacheMode {
 		/**
-		 * Cache channels - single connection
+		 * Cache channels - single (shared) connection
 		 */
 		CHANNEL,
 		/**
@@ -85,11 +92,11 @@ public class CachingConnectionFactory extends AbstractConnectionFactory implemen
 
 	private final Set<ChannelCachingConnectionProxy> openConnections = new HashSet<ChannelCachingConnectionProxy>();
 
-	private final Map<ChannelCachingConnectionProxy, LinkedList<ChannelProxy>>
-			openConnectionNonTransactionalChannels = new HashMap<ChannelCachingConnectionProxy, LinkedList<ChannelProxy>>();
+	private final Map<ChannelCachingConnectionProxy, ChannelCache>
+			openConnectionNonTransactionalChannels = new HashMap<ChannelCachingConnectionProxy, ChannelCache>();
 
-	private final Map<ChannelCachingConnectionProxy, LinkedList<ChannelProxy>>
-			openConnectionTransactionalChannels = new HashMap<ChannelCachingConnectionProxy, LinkedList<ChannelProxy>>();
+	private final Map<ChannelCachingConnectionProxy, ChannelCache>
+			openConnectionTransactionalChannels = new HashMap<ChannelCachingConnectionProxy, ChannelCache>();
 
 	private final BlockingQueue<ChannelCachingConnectionProxy> idleConnections = new LinkedBlockingQueue<ChannelCachingConnectionProxy>();
 
@@ -97,9 +104,13 @@ public class CachingConnectionFactory extends AbstractConnectionFactory implemen
 
 	private volatile int connectionCacheSize = 1;
 
-	private final LinkedList<ChannelProxy> cachedChannelsNonTransactional = new LinkedList<ChannelProxy>();
+	private volatile long channelCheckoutTimeout;
 
-	private final LinkedList<ChannelProxy> cachedChannelsTransactional = new LinkedList<ChannelProxy>();
+	private volatile int sharedConnectionCount = 1;
+
+	private final ChannelCache cachedChannelsNonTransactional = new ChannelCache();
+
+	private final ChannelCache cachedChannelsTransactional = new ChannelCache();
 
 	private volatile boolean active = true;
 
@@ -168,13 +179,64 @@ public class CachingConnectionFactory extends AbstractConnectionFactory implemen
 
 	public void setChannelCacheSize(int sessionCacheSize) {
 		Assert.isTrue(sessionCacheSize >= 1, "Channel cache size must be 1 or higher");
+		int increase = sessionCacheSize - this.channelCacheSize;
 		this.channelCacheSize = sessionCacheSize;
+		if (increase > 0) {
+			synchronized (this.connectionMonitor) {
+				if (this.connection != null) {
+					this.connection.addCheckoutPermits(increase);
+				}
+				for (ChannelCachingConnectionProxy connection : this.openConnections) {
+					connection.addCheckoutPermits(increase);
+				}
+			}
+		}
 	}
 
 	public int getChannelCacheSize() {
 		return this.channelCacheSize;
 	}
 
+	/**
+	 * When greater than zero, the {@link #setChannelCacheSize(int) channel cache size} is
+	 * also the maximum number of channels that can be open on a connection at a time; a
+	 * caller requesting a channel when the limit is reached waits up to this timeout (in
+	 * milliseconds) for another channel to be closed, and an {@link AmqpTimeoutException}
+	 * is thrown if none is. This avoids opening (and then physically closing) channels in
+	 * excess of the cache size under bursts of load. Must be set before the first
+	 * connection is created; increasing the cache size increases the limit on existing
+	 * connections, reducing it does not. Default 0 (no limit).
+	 *
+	 * @param channelCheckoutTimeout the timeout in milliseconds.
+	 * @since 1.4
+	 */
+	public void setChannelCheckoutTimeout(long channelCheckoutTimeout) {
+		Assert.isTrue(channelCheckoutTimeout >= 0, "'channelCheckoutTimeout' cannot be negative");
+		this.channelCheckoutTimeout = channelCheckoutTimeout;
+	}
+
+	/**
+	 * The number of connections over which channels are spread when the cache mode is
+	 * {@link CacheMode#CHANNEL}. A single connection uses one socket, and one client I/O
+	 * thread, for all channels; with more than one, new channels are opened on each
+	 * connection in turn. The application still sees a single shared {@link Connection}
+	 * (and connection listeners are notified once); the additional connections are opened
+	 * when first needed and replaced if they are closed. Exclusive queues are owned by the
+	 * connection that declares them, so must not be used with more than one connection.
+	 * Must be set before the first connection is created. Default 1.
+	 *
+	 * @param sharedConnectionCount the number of connections.
+	 * @since 1.4
+	 */
+	public void setSharedConnectionCount(int sharedConnectionCount) {
+		Assert.isTrue(sharedConnectionCount >= 1, "Shared connection count must be 1 or higher");
+		this.sharedConnectionCount = sharedConnectionCount;
+	}
+
+	public int getSharedConnectionCount() {
+		return this.sharedConnectionCount;
+	}
+
 	public CacheMode getCacheMode() {
 		return cacheMode;
 	}
@@ -216,6 +278,9 @@ public class CachingConnectionFactory extends AbstractConnectionFactory implemen
 		if (this.cacheMode == CacheMode.CHANNEL) {
 			Assert.isTrue(this.connectionCacheSize == 1, "When the cache mode is 'CHANNEL', the connection cache size cannot be configured.");
 		}
+		else {
+			Assert.isTrue(this.sharedConnectionCount == 1, "When the cache mode is 'CONNECTION', the shared connection count cannot be configured.");
+		}
 	}
 
 	@Override
@@ -244,7 +309,47 @@ public class CachingConnectionFactory extends AbstractConnectionFactory implemen
 	}
 
 	private Channel getChannel(ChannelCachingConnectionProxy connection, boolean transactional) {
-		LinkedList<ChannelProxy> channelList;
+		Semaphore permits = obtainCheckoutPermit(connection);
+		try {
+			ChannelProxy channel = doGetChannel(connection, transactional);
+			checkedOut(channel, permits);
+			return channel;
+		}
+		catch (RuntimeException e) {
+			if (permits != null) {
+				permits.release();
+			}
+			throw e;
+		}
+	}
+
+	/**
+	 * Wait for a channel to become available if the number of channels is limited.
+	 * @param connection the connection.
+	 * @return the semaphore from which a permit was acquired, or null if there is no limit.
+	 */
+	private Semaphore obtainCheckoutPermit(ChannelCachingConnectionProxy connection) {
+		Semaphore permits = connection.checkoutPermits;
+		if (permits == null || this.channelCheckoutTimeout <= 0) {
+			return null;
+		}
+		try {
+			if (!permits.tryAcquire(this.channelCheckoutTimeout, TimeUnit.MILLISECONDS)) {
+				throw new AmqpTimeoutException("No available channels");
+			}
+		}
+		catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new AmqpTimeoutException("Interrupted while waiting for a channel");
+		}
+		if (logger.isTraceEnabled()) {
+			logger.trace("Acquired permit for " + connection + ", remaining: " + permits.availablePermits());
+		}
+		return permits;
+	}
+
+	private ChannelProxy doGetChannel(ChannelCachingConnectionProxy connection, boolean transactional) {
+		ChannelCache channelList;
 		if (this.cacheMode == CacheMode.CHANNEL) {
 			channelList = transactional ? this.cachedChannelsTransactional
 					: this.cachedChannelsNonTransactional;
@@ -254,7 +359,7 @@ public class CachingConnectionFactory extends AbstractConnectionFactory implemen
 					: this.openConnectionNonTransactionalChannels.get(connection);
 		}
 		if (channelList == null) {
-			channelList = new LinkedList<ChannelProxy>();
+			channelList = new ChannelCache();
 			if (transactional) {
 				this.openConnectionTransactionalChannels.put(connection, channelList);
 			}
@@ -262,17 +367,12 @@ public class CachingConnectionFactory extends AbstractConnectionFactory implemen
 				this.openConnectionNonTransactionalChannels.put(connection, channelList);
 			}
 		}
-		Channel channel = null;
+		ChannelProxy channel = null;
 		if (connection.isOpen()) {
-			synchronized (channelList) {
-				while (!channelList.isEmpty()) {
-					channel = channelList.removeFirst();
-					if (channel.isOpen()) {
-						break;
-					}
-					else {
-						channel = null;
-					}
+			while ((channel = channelList.poll()) != null) {
+				checkedOut(channel, null);
+				if (channel.isOpen()) {
+					break;
 				}
 			}
 			if (channel != null) {
@@ -287,23 +387,21 @@ public class CachingConnectionFactory extends AbstractConnectionFactory implemen
 		return channel;
 	}
 
+	private void checkedOut(ChannelProxy channel, Semaphore permits) {
+		((CachedChannel) channel).checkedOut(permits);
+	}
+
 	private ChannelProxy getCachedChannelProxy(ChannelCachingConnectionProxy connection,
-			LinkedList<ChannelProxy> channelList, boolean transactional) {
+			ChannelCache channelList, boolean transactional) {
 		Channel targetChannel = createBareChannel(connection, transactional);
 		if (logger.isDebugEnabled()) {
 			logger.debug("Creating cached Rabbit Channel from " + targetChannel);
 		}
 		getChannelListener().onCreate(targetChannel, transactional);
-		Class<?>[] interfaces;
 		if (this.publisherConfirms || this.publisherReturns) {
-			interfaces = new Class<?>[] { ChannelProxy.class, PublisherCallbackChannel.class };
+			return new CachedPublisherCallbackChannel(connection, targetChannel, channelList, transactional);
 		}
-		else {
-			interfaces = new Class<?>[] { ChannelProxy.class };
-		}
-		return (ChannelProxy) Proxy.newProxyInstance(ChannelProxy.class.getClassLoader(),
-				interfaces, new CachedChannelInvocationHandler(connection, targetChannel, channelList,
-						transactional));
+		return new CachedChannel(connection, targetChannel, channelList, transactional);
 	}
 
 	private Channel createBareChannel(ChannelCachingConnectionProxy connection, boolean transactional) {
@@ -312,6 +410,7 @@ public class CachingConnectionFactory extends AbstractConnectionFactory implemen
 				synchronized (this.connectionMonitor) {
 					if (this.connection != null && !this.connection.isOpen()) {
 						this.connection.notifyCloseIfNecessary();
+						this.connection.closeAdditionalTargets();
 					}
 					if (this.connection == null || !this.connection.isOpen()) {
 						this.connection = null;
@@ -398,8 +497,8 @@ public class CachingConnectionFactory extends AbstractConnectionFactory implemen
 						logger.debug("Adding new connection '" + connection + "'");
 					}
 					this.openConnections.add(connection);
-					this.openConnectionNonTransactionalChannels.put(connection, new LinkedList<ChannelProxy>());
-					this.openConnectionTransactionalChannels.put(connection, new LinkedList<ChannelProxy>());
+					this.openConnectionNonTransactionalChannels.put(connection, new ChannelCache());
+					this.openConnectionTransactionalChannels.put(connection, new ChannelCache());
 				}
 				else {
 					if (logger.isDebugEnabled()) {
@@ -442,53 +541,59 @@ public class CachingConnectionFactory extends AbstractConnectionFactory implemen
 	protected void reset() {
 		this.active = false;
 		if (this.cacheMode == CacheMode.CHANNEL) {
-			synchronized (this.cachedChannelsNonTransactional) {
-				for (ChannelProxy channel : cachedChannelsNonTransactional) {
-					try {
-						channel.getTargetChannel().close();
-					}
-					catch (Throwable ex) {
-						logger.trace("Could not close cached Rabbit Channel", ex);
-					}
-				}
-				this.cachedChannelsNonTransactional.clear();
-			}
-			synchronized (this.cachedChannelsTransactional) {
-				for (ChannelProxy channel : cachedChannelsTransactional) {
-					try {
-						channel.getTargetChannel().close();
-					} catch (Throwable ex) {
-						logger.trace("Could not close cached Rabbit Channel", ex);
-					}
-				}
-				this.cachedChannelsTransactional.clear();
-			}
+			closeCachedChannels(this.cachedChannelsNonTransactional);
+			closeCachedChannels(this.cachedChannelsTransactional);
 		}
 		this.active = true;
 		this.connection = null;
 	}
 
+	private void closeCachedChannels(ChannelCache channels) {
+		ChannelProxy channel;
+		while ((channel = channels.poll()) != null) {
+			checkedOut(channel, null);
+			try {
+				channel.getTargetChannel().close();
+			}
+			catch (Throwable ex) {
+				logger.trace("Could not close cached Rabbit Channel", ex);
+			}
+		}
+	}
+
 	@Override
 	public String toString() {
 		return "CachingConnectionFactory [channelCacheSize=" + channelCacheSize + ", host=" + this.getHost()
 				+ ", port=" + this.getPort() + ", active=" + active + "]";
 	}
 
-	private class CachedChannelInvocationHandler implements InvocationHandler {
+	private class CachedChannel extends DelegatingChannel implements ChannelProxy {
 
 		private final ChannelCachingConnectionProxy theConnection;
 
 		private volatile Channel target;
 
-		private final LinkedList<ChannelProxy> channelList;
+		private final ChannelCache channelList;
 
 		private final Object targetMonitor = new Object();
 
 		private final boolean transactional;
 
-		public CachedChannelInvocationHandler(ChannelCachingConnectionProxy connection,
+		/**
+		 * True while the channel is in the cache; guards against the same channel being
+		 * cached twice when it is closed more than once.
+		 */
+		private final AtomicBoolean cached = new AtomicBoolean();
+
+		/**
+		 * The checkout permits to release when the channel is closed, if the number of
+		 * channels is limited.
+		 */
+		private final AtomicReference<Semaphore> permits = new AtomicReference<Semaphore>();
+
+		public CachedChannel(ChannelCachingConnectionProxy connection,
 				Channel target,
-				LinkedList<ChannelProxy> channelList,
+				ChannelCache channelList,
 				boolean transactional) {
 			this.theConnection = connection;
 			this.target = target;
@@ -496,99 +601,117 @@ public class CachingConnectionFactory extends AbstractConnectionFactory implemen
 			this.transactional = transactional;
 		}
 
+		/**
+		 * Return the open target; only re-creating a closed (or physically closed) target
+		 * takes the lock, so long-running operations such as {@code waitForConfirms} do not
+		 * block other callers.
+		 */
 		@Override
-		public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
-			String methodName = method.getName();
-			if (methodName.equals("txSelect") && !this.transactional) {
-				throw new UnsupportedOperationException("Cannot start transaction on non-transactional channel");
+		protected Channel getDelegate() {
+			Channel target = this.target;
+			if (target != null && target.isOpen()) {
+				return target;
 			}
-			if (methodName.equals("equals")) {
-				// Only consider equal when proxies are identical.
-				return (proxy == args[0]);
-			}
-			else if (methodName.equals("hashCode")) {
-				// Use hashCode of Channel proxy.
-				return System.identityHashCode(proxy);
-			}
-			else if (methodName.equals("toString")) {
-				return "Cached Rabbit Channel: " + this.target;
-			}
-			else if (methodName.equals("close")) {
-				// Handle close method: don't pass the call on.
-				if (active) {
-					synchronized (this.channelList) {
-						if (!RabbitUtils.isPhysicalCloseRequired() && this.channelList.size() < getChannelCacheSize()) {
-							logicalClose((ChannelProxy) proxy);
-							// Remain open in the channel list.
-							return null;
-						}
+			synchronized (this.targetMonitor) {
+				if (this.target == null || !this.target.isOpen()) {
+					if (logger.isDebugEnabled() && this.target != null) {
+						logger.debug("Detected closed channel. Re-initializing: " + this.target);
 					}
+					this.target = createBareChannel(this.theConnection, this.transactional);
 				}
-
-				// If we get here, we're supposed to shut down.
-				physicalClose();
-				return null;
-			}
-			else if (methodName.equals("getTargetChannel")) {
-				// Handle getTargetChannel method: return underlying Channel.
 				return this.target;
 			}
-			else if (methodName.equals("isOpen")) {
-				// Handle isOpen method: we are closed if the target is closed
-				return this.target != null && this.target.isOpen();
+		}
+
+		@Override
+		public Channel getTargetChannel() {
+			return this.target;
+		}
+
+		@Override
+		public boolean isOpen() {
+			// we are closed if the target is closed
+			Channel target = this.target;
+			return target != null && target.isOpen();
+		}
+
+		@Override
+		public SelectOk txSelect() throws IOException {
+			if (!this.transactional) {
+				throw new UnsupportedOperationException("Cannot start transaction on non-transactional channel");
 			}
+			return super.txSelect();
+		}
+
+		@Override
+		public void close(int closeCode, String closeMessage) throws IOException {
+			close();
+		}
+
+		/**
+		 * Return the channel to the cache if possible; the target is not closed.
+		 */
+		@Override
+		public void close() throws IOException {
+			Semaphore permits = this.permits.getAndSet(null);
 			try {
-				if (this.target == null || !this.target.isOpen()) {
-					this.target = null;
-				}
-				synchronized (targetMonitor) {
-					if (this.target == null) {
-						this.target = createBareChannel(theConnection, transactional);
+				if (active && !RabbitUtils.isPhysicalCloseRequired()) {
+					if (logicalClose()) {
+						// Remain open in the channel list.
+						return;
 					}
-					return method.invoke(this.target, args);
 				}
+
+				// If we get here, we're supposed to shut down.
+				physicalClose();
 			}
-			catch (InvocationTargetException ex) {
-				if (this.target == null || !this.target.isOpen()) {
-					// Basic re-connection logic...
-					this.target = null;
-					if (logger.isDebugEnabled()) {
-						logger.debug("Detected closed channel on exception.  Re-initializing: " + target);
-					}
-					synchronized (targetMonitor) {
-						if (this.target == null) {
-							this.target = createBareChannel(theConnection, transactional);
-						}
-					}
+			finally {
+				// release after the channel is back in the cache so the next caller uses it
+				if (permits != null) {
+					permits.release();
 				}
-				throw ex.getTargetException();
 			}
 		}
 
 		/**
-		 * GUARDED by channelList
+		 * Return the channel to the cache, if there is room.
 		 *
-		 * @param proxy the channel to close
+		 * @return false if the cache is full and the channel must be physically closed.
 		 */
-		private void logicalClose(ChannelProxy proxy) throws Exception {
+		private boolean logicalClose() {
 			if (this.target != null && !this.target.isOpen()) {
-				synchronized (targetMonitor) {
+				synchronized (this.targetMonitor) {
 					if (this.target != null && !this.target.isOpen()) {
 						this.target = null;
-						return;
+						return true;
 					}
 				}
 			}
 			// Allow for multiple close calls...
-			if (!this.channelList.contains(proxy)) {
+			if (this.cached.compareAndSet(false, true)) {
+				if (!this.channelList.offer(this, getChannelCacheSize())) {
+					this.cached.set(false);
+					return false;
+				}
 				if (logger.isTraceEnabled()) {
 					logger.trace("Returning cached Channel: " + this.target);
 				}
-				this.channelList.addLast(proxy);
+			}
+			return true;
+		}
+
+		/**
+		 * The channel has been removed from the cache, or created.
+		 * @param permits the checkout permits to release on close, if any.
+		 */
+		private void checkedOut(Semaphore permits) {
+			this.cached.set(false);
+			if (permits != null) {
+				this.permits.set(permits);
 			}
 		}
 
-		private void physicalClose() throws Exception {
+		private void physicalClose() throws IOException {
 			if (logger.isDebugEnabled()) {
 				logger.debug("Closing cached Channel: " + this.target);
 			}
@@ -596,7 +719,7 @@ public class CachingConnectionFactory extends AbstractConnectionFactory implemen
 				return;
 			}
 			if (this.target.isOpen()) {
-				synchronized (targetMonitor) {
+				synchronized (this.targetMonitor) {
 					if (this.target.isOpen()) {
 						this.target.close();
 					}
@@ -605,6 +728,51 @@ public class CachingConnectionFactory extends AbstractConnectionFactory implemen
 			}
 		}
 
+		@Override
+		public String toString() {
+			return "Cached Rabbit Channel: " + this.target;
+		}
+
+	}
+
+	/**
+	 * A cached channel used when publisher confirms or returns are enabled; the target is a
+	 * {@link PublisherCallbackChannel}.
+	 */
+	private class CachedPublisherCallbackChannel extends CachedChannel implements PublisherCallbackChannel {
+
+		public CachedPublisherCallbackChannel(ChannelCachingConnectionProxy connection,
+				Channel target,
+				ChannelCache channelList,
+				boolean transactional) {
+			super(connection, target, channelList, transactional);
+		}
+
+		@Override
+		public SortedMap<Long, PendingConfirm> addListener(Listener listener) {
+			return ((PublisherCallbackChannel) getDelegate()).addListener(listener);
+		}
+
+		@Override
+		public boolean removeListener(Listener listener) {
+			return ((PublisherCallbackChannel) getDelegate()).removeListener(listener);
+		}
+
+		@Override
+		public void addPendingConfirm(Listener listener, long seq, PendingConfirm pendingConfirm) {
+			((PublisherCallbackChannel) getDelegate()).addPendingConfirm(listener, seq, pendingConfirm);
+		}
+
+		@Override
+		public void discardPendingConfirm(Listener listener, long seq) {
+			((PublisherCallbackChannel) getDelegate()).discardPendingConfirm(listener, seq);
+		}
+
+		@Override
+		public void setConfirmWindow(int maxInFlight, long timeout) {
+			((PublisherCallbackChannel) getDelegate()).setConfirmWindow(maxInFlight, timeout);
+		}
+
 	}
 
 	private class ChannelCachingConnectionProxy implements Connection, ConnectionProxy {
@@ -613,12 +781,66 @@ public class CachingConnectionFactory extends AbstractConnectionFactory implemen
 
 		private final AtomicBoolean closeNotified = new AtomicBoolean(false);
 
+		private final Semaphore checkoutPermits;
+
+		/**
+		 * The connections, other than the target, over which channels are spread; null
+		 * when there is only one.
+		 */
+		private final AtomicReferenceArray<Connection> additionalTargets;
+
+		private final AtomicInteger nextTarget = new AtomicInteger();
+
 		public ChannelCachingConnectionProxy(Connection target) {
 			this.target = target;
+			this.checkoutPermits = channelCheckoutTimeout > 0 ? new Semaphore(channelCacheSize) : null;
+			this.additionalTargets = cacheMode == CacheMode.CHANNEL && sharedConnectionCount > 1
+					? new AtomicReferenceArray<Connection>(sharedConnectionCount - 1) : null;
+		}
+
+		private void addCheckoutPermits(int permits) {
+			if (this.checkoutPermits != null) {
+				this.checkoutPermits.release(permits);
+			}
 		}
 
 		private Channel createBareChannel(boolean transactional) {
-			return target.createChannel(transactional);
+			if (this.additionalTargets == null) {
+				return target.createChannel(transactional);
+			}
+			int index = (this.nextTarget.getAndIncrement() & Integer.MAX_VALUE) % (this.additionalTargets.length() + 1);
+			if (index == 0) {
+				return this.target.createChannel(transactional);
+			}
+			return obtainAdditionalTarget(index - 1).createChannel(transactional);
+		}
+
+		private Connection obtainAdditionalTarget(int index) {
+			Connection connection = this.additionalTargets.get(index);
+			if (connection == null || !connection.isOpen()) {
+				synchronized (connectionMonitor) {
+					connection = this.additionalTargets.get(index);
+					if (connection == null || !connection.isOpen()) {
+						if (connection != null && logger.isDebugEnabled()) {
+							logger.debug("Replacing closed connection '" + connection + "'");
+						}
+						connection = createBareConnection();
+						this.additionalTargets.set(index, connection);
+					}
+				}
+			}
+			return connection;
+		}
+
+		private void closeAdditionalTargets() {
+			if (this.additionalTargets != null) {
+				for (int i = 0; i < this.additionalTargets.length(); i++) {
+					Connection connection = this.additionalTargets.getAndSet(i, null);
+					if (connection != null) {
+						RabbitUtils.closeConnection(connection);
+					}
+				}
+			}
 		}
 
 		@Override
@@ -659,6 +881,7 @@ public class CachingConnectionFactory extends AbstractConnectionFactory implemen
 			if (CachingConnectionFactory.this.cacheMode == CacheMode.CHANNEL) {
 				reset();
 			}
+			closeAdditionalTargets();
 			if (this.target != null) {
 				RabbitUtils.closeConnection(this.target);
 				this.notifyCloseIfNecessary();
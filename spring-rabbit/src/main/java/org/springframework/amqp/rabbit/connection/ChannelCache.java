@@ -0,0 +1,111 @@
+/*
+ * Copyright 2014 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+
+package org.springframework.amqp.rabbit.connection;
+
+import java.util.AbstractQueue;
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The idle channels of a {@link CachingConnectionFactory}; a lock-free FIFO queue so that
+ * threads checking channels out and returning them on logical close do not contend on a
+ * shared monitor.
+ * <p>
+ * The size is maintained separately from the (linked) queue so that it can be read in
+ * constant time, and so that {@link #offer(ChannelProxy, int)} can reserve a slot
+ * before adding a channel, keeping the cache within its limit without locking.
+ *
+ * @author Gary Russell
+ * @since 1.4
+ *
+ */
+class ChannelCache extends AbstractQueue<ChannelProxy> {
+
+	private final ConcurrentLinkedQueue<ChannelProxy> channels = new ConcurrentLinkedQueue<ChannelProxy>();
+
+	private final AtomicInteger size = new AtomicInteger();
+
+	/**
+	 * Add a channel if the cache holds fewer than {@code limit} channels.
+	 * @param channel the channel.
+	 * @param limit the maximum number of cached channels.
+	 * @return true if the channel was added.
+	 */
+	boolean offer(ChannelProxy channel, int limit) {
+		int current;
+		do {
+			current = this.size.get();
+			if (current >= limit) {
+				return false;
+			}
+		}
+		while (!this.size.compareAndSet(current, current + 1));
+		this.channels.offer(channel);
+		return true;
+	}
+
+	@Override
+	public boolean offer(ChannelProxy channel) {
+		this.size.incrementAndGet();
+		this.channels.offer(channel);
+		return true;
+	}
+
+	@Override
+	public ChannelProxy poll() {
+		ChannelProxy channel = this.channels.poll();
+		if (channel != null) {
+			this.size.decrementAndGet();
+		}
+		return channel;
+	}
+
+	@Override
+	public ChannelProxy peek() {
+		return this.channels.peek();
+	}
+
+	@Override
+	public int size() {
+		return this.size.get();
+	}
+
+	/**
+	 * A weakly consistent iterator over the cached channels; removal is not supported.
+	 */
+	@Override
+	public Iterator<ChannelProxy> iterator() {
+		final Iterator<ChannelProxy> iterator = this.channels.iterator();
+		return new Iterator<ChannelProxy>() {
+
+			@Override
+			public boolean hasNext() {
+				return iterator.hasNext();
+			}
+
+			@Override
+			public ChannelProxy next() {
+				return iterator.next();
+			}
+
+			@Override
+			public void remove() {
+				throw new UnsupportedOperationException("Channels can only be removed by polling");
+			}
+
+		};
+	}
+
+}
@@ -0,0 +1,444 @@
+/*
+ * Copyright 2014 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+
+package org.springframework.amqp.rabbit.connection;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.TimeoutException;
+
+import org.springframework.util.ReflectionUtils;
+
+import com.rabbitmq.client.AMQP.Basic.RecoverOk;
+import com.rabbitmq.client.AMQP.BasicProperties;
+import com.rabbitmq.client.AMQP.Channel.FlowOk;
+import com.rabbitmq.client.AMQP.Exchange.BindOk;
+import com.rabbitmq.client.AMQP.Exchange.DeclareOk;
+import com.rabbitmq.client.AMQP.Exchange.DeleteOk;
+import com.rabbitmq.client.AMQP.Exchange.UnbindOk;
+import com.rabbitmq.client.AMQP.Queue.PurgeOk;
+import com.rabbitmq.client.AMQP.Tx.CommitOk;
+import com.rabbitmq.client.AMQP.Tx.RollbackOk;
+import com.rabbitmq.client.AMQP.Tx.SelectOk;
+import com.rabbitmq.client.Channel;
+import com.rabbitmq.client.Command;
+import com.rabbitmq.client.ConfirmListener;
+import com.rabbitmq.client.Connection;
+import com.rabbitmq.client.Consumer;
+import com.rabbitmq.client.FlowListener;
+import com.rabbitmq.client.GetResponse;
+import com.rabbitmq.client.Method;
+import com.rabbitmq.client.ReturnListener;
+import com.rabbitmq.client.ShutdownListener;
+import com.rabbitmq.client.ShutdownSignalException;
+
+/**
+ * A {@link Channel} that passes every operation to the channel returned by
+ * {@link #getDelegate()}; subclasses override the operations they handle themselves
+ * (such as {@link #close()}). Calls are plain virtual calls rather than reflective
+ * invocations through a JDK dynamic proxy, so they can be inlined by the JIT. Operations
+ * are not serialized here; concurrent callers use the delegate as they would an uncached
+ * channel.
+ * <p>
+ * Methods that are not present in all supported client versions are invoked
+ * reflectively, as in {@link org.springframework.amqp.rabbit.support.PublisherCallbackChannelImpl}.
+ *
+ * @author Gary Russell
+ * @since 1.4
+ *
+ */
+abstract class DelegatingChannel implements Channel {
+
+	/**
+	 * Return the channel to which operations are passed, creating it if necessary.
+	 * @return the channel.
+	 */
+	protected abstract Channel getDelegate();
+
+	public void addShutdownListener(ShutdownListener listener) {
+		getDelegate().addShutdownListener(listener);
+	}
+
+	public void removeShutdownListener(ShutdownListener listener) {
+		getDelegate().removeShutdownListener(listener);
+	}
+
+	public ShutdownSignalException getCloseReason() {
+		return getDelegate().getCloseReason();
+	}
+
+	public void notifyListeners() {
+		getDelegate().notifyListeners();
+	}
+
+	public int getChannelNumber() {
+		return getDelegate().getChannelNumber();
+	}
+
+	public Connection getConnection() {
+		return getDelegate().getConnection();
+	}
+
+	/**
+	 * @deprecated - removed in the 3.3.x client
+	 * @param active active.
+	 * @return FlowOk.
+	 * @throws IOException IOException.
+	 */
+	@Deprecated
+	public FlowOk flow(boolean active) throws IOException {
+		Channel delegate = getDelegate();
+		java.lang.reflect.Method method = ReflectionUtils.findMethod(delegate.getClass(), "flow", boolean.class);
+		if (method != null) {
+			return (FlowOk) ReflectionUtils.invokeMethod(method, delegate, active);
+		}
+		throw new UnsupportedOperationException("'flow(boolean)' is not supported by the client library");
+	}
+
+	/**
+	 * @deprecated - removed in the 3.3.x client
+	 * @return FlowOk.
+	 */
+	@Deprecated
+	public FlowOk getFlow() {
+		Channel delegate = getDelegate();
+		java.lang.reflect.Method method = ReflectionUtils.findMethod(delegate.getClass(), "getFlow");
+		if (method != null) {
+			return (FlowOk) ReflectionUtils.invokeMethod(method, delegate);
+		}
+		throw new UnsupportedOperationException("'getFlow()' is not supported by the client library");
+	}
+
+	/**
+	 * Added to the 3.3.x client
+	 */
+	public boolean flowBlocked() {
+		Channel delegate = getDelegate();
+		java.lang.reflect.Method method = ReflectionUtils.findMethod(delegate.getClass(), "flowBlocked");
+		if (method != null) {
+			return (Boolean) ReflectionUtils.invokeMethod(method, delegate);
+		}
+		throw new UnsupportedOperationException("'flowBlocked()' is not supported by the client library");
+	}
+
+	public void abort() throws IOException {
+		getDelegate().abort();
+	}
+
+	public void abort(int closeCode, String closeMessage) throws IOException {
+		getDelegate().abort(closeCode, closeMessage);
+	}
+
+	public void addFlowListener(FlowListener listener) {
+		getDelegate().addFlowListener(listener);
+	}
+
+	public boolean removeFlowListener(FlowListener listener) {
+		return getDelegate().removeFlowListener(listener);
+	}
+
+	public void clearFlowListeners() {
+		getDelegate().clearFlowListeners();
+	}
+
+	public Consumer getDefaultConsumer() {
+		return getDelegate().getDefaultConsumer();
+	}
+
+	public void setDefaultConsumer(Consumer consumer) {
+		getDelegate().setDefaultConsumer(consumer);
+	}
+
+	public void basicQos(int prefetchSize, int prefetchCount, boolean global) throws IOException {
+		getDelegate().basicQos(prefetchSize, prefetchCount, global);
+	}
+
+	/**
+	 * Added to the 3.3.x client
+	 */
+	public void basicQos(int prefetchCount, boolean global) throws IOException {
+		Channel delegate = getDelegate();
+		java.lang.reflect.Method method = ReflectionUtils.findMethod(delegate.getClass(), "basicQos", int.class,
+				boolean.class);
+		if (method != null) {
+			ReflectionUtils.invokeMethod(method, delegate, prefetchCount, global);
+			return;
+		}
+		throw new UnsupportedOperationException("'basicQos(int, boolean)' is not supported by the client library");
+	}
+
+	public void basicQos(int prefetchCount) throws IOException {
+		getDelegate().basicQos(prefetchCount);
+	}
+
+	public void basicPublish(String exchange, String routingKey, BasicProperties props, byte[] body)
+			throws IOException {
+		getDelegate().basicPublish(exchange, routingKey, props, body);
+	}
+
+	public void basicPublish(String exchange, String routingKey, boolean mandatory, boolean immediate,
+			BasicProperties props, byte[] body) throws IOException {
+		getDelegate().basicPublish(exchange, routingKey, mandatory, immediate, props, body);
+	}
+
+	public void basicPublish(String exchange, String routingKey, boolean mandatory,
+			BasicProperties props, byte[] body) throws IOException {
+		getDelegate().basicPublish(exchange, routingKey, mandatory, props, body);
+	}
+
+	public DeclareOk exchangeDeclare(String exchange, String type) throws IOException {
+		return getDelegate().exchangeDeclare(exchange, type);
+	}
+
+	public DeclareOk exchangeDeclare(String exchange, String type, boolean durable)
+			throws IOException {
+		return getDelegate().exchangeDeclare(exchange, type, durable);
+	}
+
+	public DeclareOk exchangeDeclare(String exchange, String type, boolean durable,
+			boolean autoDelete, Map<String, Object> arguments) throws IOException {
+		return getDelegate().exchangeDeclare(exchange, type, durable, autoDelete, arguments);
+	}
+
+	public DeclareOk exchangeDeclare(String exchange, String type, boolean durable,
+			boolean autoDelete, boolean internal, Map<String, Object> arguments) throws IOException {
+		return getDelegate().exchangeDeclare(exchange, type, durable, autoDelete, internal, arguments);
+	}
+
+	public DeclareOk exchangeDeclarePassive(String name) throws IOException {
+		return getDelegate().exchangeDeclarePassive(name);
+	}
+
+	public DeleteOk exchangeDelete(String exchange, boolean ifUnused) throws IOException {
+		return getDelegate().exchangeDelete(exchange, ifUnused);
+	}
+
+	public DeleteOk exchangeDelete(String exchange) throws IOException {
+		return getDelegate().exchangeDelete(exchange);
+	}
+
+	public BindOk exchangeBind(String destination, String source, String routingKey)
+			throws IOException {
+		return getDelegate().exchangeBind(destination, source, routingKey);
+	}
+
+	public BindOk exchangeBind(String destination, String source, String routingKey,
+			Map<String, Object> arguments) throws IOException {
+		return getDelegate().exchangeBind(destination, source, routingKey, arguments);
+	}
+
+	public UnbindOk exchangeUnbind(String destination, String source, String routingKey)
+			throws IOException {
+		return getDelegate().exchangeUnbind(destination, source, routingKey);
+	}
+
+	public UnbindOk exchangeUnbind(String destination, String source, String routingKey,
+			Map<String, Object> arguments) throws IOException {
+		return getDelegate().exchangeUnbind(destination, source, routingKey, arguments);
+	}
+
+	public com.rabbitmq.client.AMQP.Queue.DeclareOk queueDeclare() throws IOException {
+		return getDelegate().queueDeclare();
+	}
+
+	public com.rabbitmq.client.AMQP.Queue.DeclareOk queueDeclare(String queue, boolean durable,
+			boolean exclusive, boolean autoDelete, Map<String, Object> arguments) throws IOException {
+		return getDelegate().queueDeclare(queue, durable, exclusive, autoDelete, arguments);
+	}
+
+	public com.rabbitmq.client.AMQP.Queue.DeclareOk queueDeclarePassive(String queue)
+			throws IOException {
+		return getDelegate().queueDeclarePassive(queue);
+	}
+
+	public com.rabbitmq.client.AMQP.Queue.DeleteOk queueDelete(String queue) throws IOException {
+		return getDelegate().queueDelete(queue);
+	}
+
+	public com.rabbitmq.client.AMQP.Queue.DeleteOk queueDelete(String queue, boolean ifUnused,
+			boolean ifEmpty) throws IOException {
+		return getDelegate().queueDelete(queue, ifUnused, ifEmpty);
+	}
+
+	public com.rabbitmq.client.AMQP.Queue.BindOk queueBind(String queue, String exchange,
+			String routingKey) throws IOException {
+		return getDelegate().queueBind(queue, exchange, routingKey);
+	}
+
+	public com.rabbitmq.client.AMQP.Queue.BindOk queueBind(String queue, String exchange,
+			String routingKey, Map<String, Object> arguments) throws IOException {
+		return getDelegate().queueBind(queue, exchange, routingKey, arguments);
+	}
+
+	public com.rabbitmq.client.AMQP.Queue.UnbindOk queueUnbind(String queue, String exchange,
+			String routingKey) throws IOException {
+		return getDelegate().queueUnbind(queue, exchange, routingKey);
+	}
+
+	public com.rabbitmq.client.AMQP.Queue.UnbindOk queueUnbind(String queue, String exchange,
+			String routingKey, Map<String, Object> arguments) throws IOException {
+		return getDelegate().queueUnbind(queue, exchange, routingKey, arguments);
+	}
+
+	public PurgeOk queuePurge(String queue) throws IOException {
+		return getDelegate().queuePurge(queue);
+	}
+
+	public GetResponse basicGet(String queue, boolean autoAck) throws IOException {
+		return getDelegate().basicGet(queue, autoAck);
+	}
+
+	public void basicAck(long deliveryTag, boolean multiple) throws IOException {
+		getDelegate().basicAck(deliveryTag, multiple);
+	}
+
+	public void basicNack(long deliveryTag, boolean multiple, boolean requeue) throws IOException {
+		getDelegate().basicNack(deliveryTag, multiple, requeue);
+	}
+
+	public void basicReject(long deliveryTag, boolean requeue) throws IOException {
+		getDelegate().basicReject(deliveryTag, requeue);
+	}
+
+	public String basicConsume(String queue, Consumer callback) throws IOException {
+		return getDelegate().basicConsume(queue, callback);
+	}
+
+	public String basicConsume(String queue, boolean autoAck, Consumer callback) throws IOException {
+		return getDelegate().basicConsume(queue, autoAck, callback);
+	}
+
+	public String basicConsume(String queue, boolean autoAck, String consumerTag, Consumer callback)
+			throws IOException {
+		return getDelegate().basicConsume(queue, autoAck, consumerTag, callback);
+	}
+
+	/**
+	 * Added to the 3.3.x client
+	 */
+	public String basicConsume(String queue, boolean autoAck, Map<String, Object> arguments,
+			Consumer callback) throws IOException {
+		Channel delegate = getDelegate();
+		java.lang.reflect.Method method = ReflectionUtils.findMethod(delegate.getClass(), "basicConsume",
+				String.class, boolean.class, Map.class, Consumer.class);
+		if (method != null) {
+			return (String) ReflectionUtils.invokeMethod(method, delegate, queue, autoAck, arguments, callback);
+		}
+		throw new UnsupportedOperationException(
+				"'basicConsume(String, boolean, Map, Consumer)' is not supported by the client library");
+	}
+
+	public String basicConsume(String queue, boolean autoAck, String consumerTag, boolean noLocal,
+			boolean exclusive, Map<String, Object> arguments, Consumer callback) throws IOException {
+		return getDelegate().basicConsume(queue, autoAck, consumerTag, noLocal, exclusive, arguments, callback);
+	}
+
+	public void basicCancel(String consumerTag) throws IOException {
+		getDelegate().basicCancel(consumerTag);
+	}
+
+	public RecoverOk basicRecover() throws IOException {
+		return getDelegate().basicRecover();
+	}
+
+	public RecoverOk basicRecover(boolean requeue) throws IOException {
+		return getDelegate().basicRecover(requeue);
+	}
+
+	/**
+	 * @deprecated - removed in later clients
+	 * @param requeue requeue.
+	 * @throws IOException IOException.
+	 */
+	@Deprecated
+	public void basicRecoverAsync(boolean requeue) throws IOException {
+		Channel delegate = getDelegate();
+		java.lang.reflect.Method method = ReflectionUtils.findMethod(delegate.getClass(), "basicRecoverAsync",
+				boolean.class);
+		if (method != null) {
+			ReflectionUtils.invokeMethod(method, delegate, requeue);
+			return;
+		}
+		throw new UnsupportedOperationException("'basicRecoverAsync(boolean)' is not supported by the client library");
+	}
+
+	public SelectOk txSelect() throws IOException {
+		return getDelegate().txSelect();
+	}
+
+	public CommitOk txCommit() throws IOException {
+		return getDelegate().txCommit();
+	}
+
+	public RollbackOk txRollback() throws IOException {
+		return getDelegate().txRollback();
+	}
+
+	public com.rabbitmq.client.AMQP.Confirm.SelectOk confirmSelect() throws IOException {
+		return getDelegate().confirmSelect();
+	}
+
+	public long getNextPublishSeqNo() {
+		return getDelegate().getNextPublishSeqNo();
+	}
+
+	public boolean waitForConfirms() throws InterruptedException {
+		return getDelegate().waitForConfirms();
+	}
+
+	public boolean waitForConfirms(long timeout) throws InterruptedException, TimeoutException {
+		return getDelegate().waitForConfirms(timeout);
+	}
+
+	public void waitForConfirmsOrDie() throws IOException, InterruptedException {
+		getDelegate().waitForConfirmsOrDie();
+	}
+
+	public void waitForConfirmsOrDie(long timeout) throws IOException, InterruptedException,
+			TimeoutException {
+		getDelegate().waitForConfirmsOrDie(timeout);
+	}
+
+	public void asyncRpc(Method method) throws IOException {
+		getDelegate().asyncRpc(method);
+	}
+
+	public Command rpc(Method method) throws IOException {
+		return getDelegate().rpc(method);
+	}
+
+	public void addConfirmListener(ConfirmListener listener) {
+		getDelegate().addConfirmListener(listener);
+	}
+
+	public boolean removeConfirmListener(ConfirmListener listener) {
+		return getDelegate().removeConfirmListener(listener);
+	}
+
+	public void clearConfirmListeners() {
+		getDelegate().clearConfirmListeners();
+	}
+
+	public void addReturnListener(ReturnListener listener) {
+		getDelegate().addReturnListener(listener);
+	}
+
+	public boolean removeReturnListener(ReturnListener listener) {
+		return getDelegate().removeReturnListener(listener);
+	}
+
+	public void clearReturnListeners() {
+		getDelegate().clearReturnListeners();
+	}
+
+}
@@ -0,0 +1,525 @@
+/*
+ * Copyright 2014 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+
+package org.springframework.amqp.rabbit.core;
+
+import java.nio.charset.Charset;
+import java.util.Date;
+import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import org.springframework.amqp.AmqpReplyTimeoutException;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.core.MessageListener;
+import org.springframework.amqp.core.MessagePostProcessor;
+import org.springframework.amqp.core.MessageProperties;
+import org.springframework.amqp.rabbit.connection.ConnectionFactory;
+import org.springframework.amqp.rabbit.listener.SimpleMessageListenerContainer;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.scheduling.TaskScheduler;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
+import org.springframework.util.Assert;
+import org.springframework.util.concurrent.ListenableFutureTask;
+
+/**
+ * Provides asynchronous send and receive operations returning a
+ * {@link org.springframework.util.concurrent.ListenableFuture} for the reply; no thread
+ * is blocked while a reply is awaited.
+ * <p>
+ * Requests are sent with the {@link RabbitTemplate}; all replies are received by a single
+ * {@link SimpleMessageListenerContainer} listening on the reply queue and are correlated
+ * in-process, using the {@code correlationId} property. A reply that is not received
+ * within the {@link #setReceiveTimeout(long) receiveTimeout} completes the future with an
+ * {@link AmqpReplyTimeoutException}; timeouts are scheduled with a {@link TaskScheduler}.
+ * <p>
+ * The container is started and stopped with this template; pending futures are
+ * cancelled when it is stopped.
+ *
+ * @author Gary Russell
+ * @since 1.4
+ *
+ */
+public class AsyncRabbitTemplate implements SmartLifecycle, MessageListener {
+
+	public static final long DEFAULT_RECEIVE_TIMEOUT = 30000;
+
+	private static final Charset CHARSET = Charset.forName("UTF-8");
+
+	private final Log logger = LogFactory.getLog(this.getClass());
+
+	private final RabbitTemplate template;
+
+	private final SimpleMessageListenerContainer container;
+
+	private final String replyAddress;
+
+	private final ConcurrentMap<String, RabbitFuture<?>> pending = new ConcurrentHashMap<String, RabbitFuture<?>>();
+
+	private final String correlationPrefix = UUID.randomUUID().toString() + "-";
+
+	private final AtomicLong correlationCounter = new AtomicLong();
+
+	private final Object lifecycleMonitor = new Object();
+
+	private volatile TaskScheduler taskScheduler;
+
+	private volatile boolean internalTaskScheduler = true;
+
+	private volatile long receiveTimeout = DEFAULT_RECEIVE_TIMEOUT;
+
+	private volatile boolean autoStartup = true;
+
+	private volatile int phase;
+
+	private volatile boolean running;
+
+	/**
+	 * Construct an instance using the connection factory for both the template and the
+	 * reply listener container.
+	 * @param connectionFactory the connection factory.
+	 * @param exchange the default exchange to which requests are sent.
+	 * @param routingKey the default routing key.
+	 * @param replyQueue the queue from which replies are received.
+	 */
+	public AsyncRabbitTemplate(ConnectionFactory connectionFactory, String exchange, String routingKey,
+			String replyQueue) {
+		Assert.notNull(connectionFactory, "'connectionFactory' cannot be null");
+		Assert.notNull(replyQueue, "'replyQueue' cannot be null");
+		this.template = new RabbitTemplate(connectionFactory);
+		this.template.setExchange(exchange);
+		if (routingKey != null) {
+			this.template.setRoutingKey(routingKey);
+		}
+		this.container = new SimpleMessageListenerContainer(connectionFactory);
+		this.container.setQueueNames(replyQueue);
+		this.container.setMessageListener(this);
+		this.container.afterPropertiesSet();
+		this.replyAddress = replyQueue;
+	}
+
+	/**
+	 * Construct an instance using the template to send requests and the container to
+	 * receive replies; the container must listen to exactly one queue, which is used as
+	 * the {@code replyTo} address. The container's message listener is set to this
+	 * template.
+	 * @param template the template.
+	 * @param container the container.
+	 */
+	public AsyncRabbitTemplate(RabbitTemplate template, SimpleMessageListenerContainer container) {
+		this(template, container, null);
+	}
+
+	/**
+	 * Construct an instance using the template to send requests and the container to
+	 * receive replies. The container's message listener is set to this template.
+	 * @param template the template.
+	 * @param container the container.
+	 * @param replyAddress the {@code replyTo} address for requests; if null, the
+	 * container must listen to exactly one queue, which is used.
+	 */
+	public AsyncRabbitTemplate(RabbitTemplate template, SimpleMessageListenerContainer container,
+			String replyAddress) {
+		Assert.notNull(template, "'template' cannot be null");
+		Assert.notNull(container, "'container' cannot be null");
+		this.template = template;
+		this.container = container;
+		if (replyAddress == null) {
+			String[] queueNames = container.getQueueNames();
+			Assert.isTrue(queueNames.length == 1, "The container must listen to exactly one queue");
+			this.replyAddress = queueNames[0];
+		}
+		else {
+			this.replyAddress = replyAddress;
+		}
+		this.container.setMessageListener(this);
+	}
+
+	/**
+	 * Set the task scheduler used to time out requests; by default, an internal
+	 * {@link ThreadPoolTaskScheduler} is created when the template is started.
+	 * @param taskScheduler the task scheduler.
+	 */
+	public void setTaskScheduler(TaskScheduler taskScheduler) {
+		Assert.notNull(taskScheduler, "'taskScheduler' cannot be null");
+		this.internalTaskScheduler = false;
+		this.taskScheduler = taskScheduler;
+	}
+
+	/**
+	 * Set the time (ms) to wait for a reply before the future is completed with an
+	 * {@link AmqpReplyTimeoutException}; a negative value means the request never times
+	 * out. Default {@link #DEFAULT_RECEIVE_TIMEOUT}.
+	 * @param receiveTimeout the timeout.
+	 */
+	public void setReceiveTimeout(long receiveTimeout) {
+		this.receiveTimeout = receiveTimeout;
+	}
+
+	public void setAutoStartup(boolean autoStartup) {
+		this.autoStartup = autoStartup;
+	}
+
+	public void setPhase(int phase) {
+		this.phase = phase;
+	}
+
+	/**
+	 * @return the template used to send requests; it can be used to configure the
+	 * message converter and other properties.
+	 */
+	public RabbitTemplate getRabbitTemplate() {
+		return this.template;
+	}
+
+	/**
+	 * @return the container used to receive replies.
+	 */
+	public SimpleMessageListenerContainer getMessageListenerContainer() {
+		return this.container;
+	}
+
+	/**
+	 * Send a message to the default exchange with the default routing key.
+	 * @param message the message.
+	 * @return the future for the reply.
+	 */
+	public RabbitMessageFuture sendAndReceive(Message message) {
+		return sendAndReceive(this.template.getExchange(), this.template.getRoutingKey(), message);
+	}
+
+	/**
+	 * Send a message to the default exchange with the supplied routing key.
+	 * @param routingKey the routing key.
+	 * @param message the message.
+	 * @return the future for the reply.
+	 */
+	public RabbitMessageFuture sendAndReceive(String routingKey, Message message) {
+		return sendAndReceive(this.template.getExchange(), routingKey, message);
+	}
+
+	/**
+	 * Send a message to the supplied exchange with the supplied routing key.
+	 * @param exchange the exchange.
+	 * @param routingKey the routing key.
+	 * @param message the message.
+	 * @return the future for the reply.
+	 */
+	public RabbitMessageFuture sendAndReceive(String exchange, String routingKey, Message message) {
+		RabbitMessageFuture future = new RabbitMessageFuture(nextCorrelationId(), message);
+		sendRequest(exchange, routingKey, message, future);
+		return future;
+	}
+
+	/**
+	 * Convert the object to a message and send it to the default exchange with the
+	 * default routing key.
+	 * @param object the object to convert.
+	 * @param <C> the expected result type.
+	 * @return the future for the converted reply.
+	 */
+	public <C> RabbitConverterFuture<C> convertSendAndReceive(Object object) {
+		return convertSendAndReceive(this.template.getExchange(), this.template.getRoutingKey(), object, null);
+	}
+
+	/**
+	 * Convert the object to a message and send it to the default exchange with the
+	 * supplied routing key.
+	 * @param routingKey the routing key.
+	 * @param object the object to convert.
+	 * @param <C> the expected result type.
+	 * @return the future for the converted reply.
+	 */
+	public <C> RabbitConverterFuture<C> convertSendAndReceive(String routingKey, Object object) {
+		return convertSendAndReceive(this.template.getExchange(), routingKey, object, null);
+	}
+
+	/**
+	 * Convert the object to a message and send it to the supplied exchange with the
+	 * supplied routing key.
+	 * @param exchange the exchange.
+	 * @param routingKey the routing key.
+	 * @param object the object to convert.
+	 * @param <C> the expected result type.
+	 * @return the future for the converted reply.
+	 */
+	public <C> RabbitConverterFuture<C> convertSendAndReceive(String exchange, String routingKey, Object object) {
+		return convertSendAndReceive(exchange, routingKey, object, null);
+	}
+
+	/**
+	 * Convert the object to a message, post process it and send it to the supplied
+	 * exchange with the supplied routing key.
+	 * @param exchange the exchange.
+	 * @param routingKey the routing key.
+	 * @param object the object to convert.
+	 * @param messagePostProcessor the post processor (may be null).
+	 * @param <C> the expected result type.
+	 * @return the future for the converted reply.
+	 */
+	public <C> RabbitConverterFuture<C> convertSendAndReceive(String exchange, String routingKey, Object object,
+			MessagePostProcessor messagePostProcessor) {
+		Message message = this.template.getMessageConverter().toMessage(object, new MessageProperties());
+		if (messagePostProcessor != null) {
+			message = messagePostProcessor.postProcessMessage(message);
+		}
+		RabbitConverterFuture<C> future = new RabbitConverterFuture<C>(nextCorrelationId(), message);
+		sendRequest(exchange, routingKey, message, future);
+		return future;
+	}
+
+	private String nextCorrelationId() {
+		return this.correlationPrefix + this.correlationCounter.incrementAndGet();
+	}
+
+	private void sendRequest(String exchange, String routingKey, Message message, RabbitFuture<?> future) {
+		Assert.state(this.running, "AsyncRabbitTemplate is not running");
+		MessageProperties messageProperties = message.getMessageProperties();
+		Assert.isNull(messageProperties.getReplyTo(),
+				"Send-and-receive methods can only be used if the Message does not already have a replyTo property.");
+		messageProperties.setReplyTo(this.replyAddress);
+		messageProperties.setCorrelationId(future.getCorrelationId().getBytes(CHARSET));
+		this.pending.put(future.getCorrelationId(), future);
+		if (this.receiveTimeout >= 0) {
+			future.setTimeoutTask(this.taskScheduler.schedule(new TimeoutTask(future),
+					new Date(System.currentTimeMillis() + this.receiveTimeout)));
+		}
+		try {
+			this.template.send(exchange, routingKey, message);
+		}
+		catch (RuntimeException e) {
+			this.pending.remove(future.getCorrelationId());
+			future.cancelTimeoutTask();
+			throw e;
+		}
+		if (logger.isDebugEnabled()) {
+			logger.debug("Sent request with correlation " + future.getCorrelationId());
+		}
+	}
+
+	@Override
+	public void onMessage(Message message) {
+		byte[] correlationId = message.getMessageProperties().getCorrelationId();
+		if (correlationId == null) {
+			logger.error("No correlation id in reply " + message);
+			return;
+		}
+		String correlation = new String(correlationId, CHARSET);
+		RabbitFuture<?> future = this.pending.remove(correlation);
+		if (future == null) {
+			if (logger.isWarnEnabled()) {
+				logger.warn("Reply received after timeout or cancellation for " + correlation);
+			}
+		}
+		else {
+			future.cancelTimeoutTask();
+			future.complete(message);
+		}
+	}
+
+	@Override
+	public void start() {
+		synchronized (this.lifecycleMonitor) {
+			if (!this.running) {
+				if (this.internalTaskScheduler) {
+					ThreadPoolTaskScheduler scheduler = new ThreadPoolTaskScheduler();
+					scheduler.setThreadNamePrefix(this.getClass().getSimpleName() + "-");
+					scheduler.afterPropertiesSet();
+					this.taskScheduler = scheduler;
+				}
+				this.container.start();
+				this.running = true;
+			}
+		}
+	}
+
+	@Override
+	public void stop() {
+		synchronized (this.lifecycleMonitor) {
+			if (this.running) {
+				this.running = false;
+				this.container.stop();
+				for (RabbitFuture<?> future : this.pending.values()) {
+					future.cancel(false);
+				}
+				this.pending.clear();
+				if (this.internalTaskScheduler) {
+					((ThreadPoolTaskScheduler) this.taskScheduler).destroy();
+					this.taskScheduler = null;
+				}
+			}
+		}
+	}
+
+	@Override
+	public void stop(Runnable callback) {
+		stop();
+		callback.run();
+	}
+
+	@Override
+	public boolean isRunning() {
+		return this.running;
+	}
+
+	@Override
+	public boolean isAutoStartup() {
+		return this.autoStartup;
+	}
+
+	@Override
+	public int getPhase() {
+		return this.phase;
+	}
+
+	@Override
+	public String toString() {
+		return "AsyncRabbitTemplate [replyAddress=" + this.replyAddress + ", pending=" + this.pending.size() + "]";
+	}
+
+	private static final Callable<Object> NOT_RUNNABLE = new Callable<Object>() {
+
+		@Override
+		public Object call() throws Exception {
+			throw new IllegalStateException("A RabbitFuture is completed by the AsyncRabbitTemplate");
+		}
+
+	};
+
+	/**
+	 * Base class for the futures returned by this template; cancelling a future removes
+	 * the pending request, so a subsequent reply is discarded.
+	 * @param <T> the result type.
+	 */
+	public abstract class RabbitFuture<T> extends ListenableFutureTask<T> {
+
+		private final String correlationId;
+
+		private final Message requestMessage;
+
+		private volatile ScheduledFuture<?> timeoutTask;
+
+		@SuppressWarnings("unchecked")
+		RabbitFuture(String correlationId, Message requestMessage) {
+			super((Callable<T>) NOT_RUNNABLE);
+			this.correlationId = correlationId;
+			this.requestMessage = requestMessage;
+		}
+
+		String getCorrelationId() {
+			return this.correlationId;
+		}
+
+		/**
+		 * @return the request message.
+		 */
+		public Message getRequestMessage() {
+			return this.requestMessage;
+		}
+
+		void setTimeoutTask(ScheduledFuture<?> timeoutTask) {
+			this.timeoutTask = timeoutTask;
+		}
+
+		void cancelTimeoutTask() {
+			ScheduledFuture<?> timeoutTask = this.timeoutTask;
+			if (timeoutTask != null) {
+				timeoutTask.cancel(false);
+			}
+		}
+
+		void timeout() {
+			setException(new AmqpReplyTimeoutException("Reply timed out", this.requestMessage));
+		}
+
+		abstract void complete(Message reply);
+
+		@Override
+		public boolean cancel(boolean mayInterruptIfRunning) {
+			AsyncRabbitTemplate.this.pending.remove(this.correlationId);
+			cancelTimeoutTask();
+			return super.cancel(mayInterruptIfRunning);
+		}
+
+		/**
+		 * Does nothing; the future is completed when the reply is received.
+		 */
+		@Override
+		public void run() {
+		}
+
+	}
+
+	/**
+	 * A future for the reply {@link Message}.
+	 */
+	public class RabbitMessageFuture extends RabbitFuture<Message> {
+
+		RabbitMessageFuture(String correlationId, Message requestMessage) {
+			super(correlationId, requestMessage);
+		}
+
+		@Override
+		void complete(Message reply) {
+			set(reply);
+		}
+
+	}
+
+	/**
+	 * A future for the reply, converted by the template's message converter.
+	 * @param <C> the result type.
+	 */
+	public class RabbitConverterFuture<C> extends RabbitFuture<C> {
+
+		RabbitConverterFuture(String correlationId, Message requestMessage) {
+			super(correlationId, requestMessage);
+		}
+
+		@SuppressWarnings("unchecked")
+		@Override
+		void complete(Message reply) {
+			try {
+				set((C) AsyncRabbitTemplate.this.template.getMessageConverter().fromMessage(reply));
+			}
+			catch (RuntimeException e) {
+				setException(e);
+			}
+		}
+
+	}
+
+	private class TimeoutTask implements Runnable {
+
+		private final RabbitFuture<?> future;
+
+		private TimeoutTask(RabbitFuture<?> future) {
+			this.future = future;
+		}
+
+		@Override
+		public void run() {
+			if (AsyncRabbitTemplate.this.pending.remove(this.future.getCorrelationId()) != null) {
+				this.future.timeout();
+			}
+		}
+
+	}
+
+}
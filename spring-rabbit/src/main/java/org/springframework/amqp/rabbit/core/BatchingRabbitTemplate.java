@@ -0,0 +1,155 @@
+/*
+ * Copyright 2014 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+
+package org.springframework.amqp.rabbit.core;
+
+import java.util.Collection;
+import java.util.Date;
+import java.util.concurrent.ScheduledFuture;
+
+import org.springframework.amqp.AmqpException;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.rabbit.connection.ConnectionFactory;
+import org.springframework.amqp.rabbit.core.support.BatchingStrategy;
+import org.springframework.amqp.rabbit.core.support.MessageBatch;
+import org.springframework.amqp.rabbit.support.CorrelationData;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.scheduling.TaskScheduler;
+import org.springframework.util.Assert;
+
+/**
+ * A {@link RabbitTemplate} that coalesces messages sent to the same exchange and routing
+ * key into a single message, according to a {@link BatchingStrategy}; a partial batch
+ * is sent when the strategy's timeout expires, using the {@link TaskScheduler}, or when
+ * {@link #flush()} is called.
+ * <p>
+ * The listener container de-batches messages created by the
+ * {@link org.springframework.amqp.rabbit.core.support.SimpleBatchingStrategy} so each
+ * message is delivered to the listener separately.
+ * <p>
+ * Sends with {@link CorrelationData} (and the {@code sendWithConfirm} methods) are not
+ * batched, nor are collections of messages sent with the {@code send(Collection)} and
+ * {@code convertAndSendAll} methods.
+ * <p>
+ * <b>Experimental - APIs may change.</b>
+ *
+ * @author Gary Russell
+ * @since 1.4
+ *
+ */
+public class BatchingRabbitTemplate extends RabbitTemplate implements DisposableBean {
+
+	private final BatchingStrategy batchingStrategy;
+
+	private final TaskScheduler scheduler;
+
+	private volatile ScheduledFuture<?> scheduledTask;
+
+	/**
+	 * @param batchingStrategy the batching strategy.
+	 * @param scheduler the scheduler.
+	 */
+	public BatchingRabbitTemplate(BatchingStrategy batchingStrategy, TaskScheduler scheduler) {
+		Assert.notNull(batchingStrategy, "'batchingStrategy' cannot be null");
+		Assert.notNull(scheduler, "'scheduler' cannot be null");
+		this.batchingStrategy = batchingStrategy;
+		this.scheduler = scheduler;
+	}
+
+	/**
+	 * @param connectionFactory the connection factory.
+	 * @param batchingStrategy the batching strategy.
+	 * @param scheduler the scheduler.
+	 */
+	public BatchingRabbitTemplate(ConnectionFactory connectionFactory, BatchingStrategy batchingStrategy,
+			TaskScheduler scheduler) {
+		this(batchingStrategy, scheduler);
+		setConnectionFactory(connectionFactory);
+		afterPropertiesSet();
+	}
+
+	@Override
+	public synchronized void send(String exchange, String routingKey, Message message,
+			CorrelationData correlationData) throws AmqpException {
+		if (correlationData != null) {
+			if (logger.isDebugEnabled()) {
+				logger.debug("Cannot use batching with correlation data");
+			}
+			super.send(exchange, routingKey, message, correlationData);
+		}
+		else {
+			MessageBatch batch = this.batchingStrategy.addToBatch(exchange, routingKey, message);
+			if (batch != null) {
+				super.send(batch.getExchange(), batch.getRoutingKey(), batch.getMessage(), null);
+			}
+			scheduleReleaseIfNecessary();
+		}
+	}
+
+	/**
+	 * Send any partial batches immediately.
+	 */
+	public synchronized void flush() {
+		cancelScheduledRelease();
+		sendBatches(this.batchingStrategy.releaseBatches());
+	}
+
+	@Override
+	public void destroy() {
+		flush();
+		super.destroy();
+	}
+
+	private void scheduleReleaseIfNecessary() {
+		if (this.scheduledTask == null) {
+			Date next = this.batchingStrategy.nextRelease();
+			if (next != null) {
+				this.scheduledTask = this.scheduler.schedule(new Runnable() {
+
+					@Override
+					public void run() {
+						releaseExpiredBatches();
+					}
+
+				}, next);
+			}
+		}
+	}
+
+	private synchronized void releaseExpiredBatches() {
+		this.scheduledTask = null;
+		sendBatches(this.batchingStrategy.releaseExpiredBatches());
+		scheduleReleaseIfNecessary();
+	}
+
+	private void cancelScheduledRelease() {
+		ScheduledFuture<?> scheduledTask = this.scheduledTask;
+		if (scheduledTask != null) {
+			scheduledTask.cancel(false);
+			this.scheduledTask = null;
+		}
+	}
+
+	private void sendBatches(Collection<MessageBatch> batches) {
+		for (MessageBatch batch : batches) {
+			try {
+				super.send(batch.getExchange(), batch.getRoutingKey(), batch.getMessage(), null);
+			}
+			catch (AmqpException e) {
+				logger.error("Failed to send batch to exchange [" + batch.getExchange() + "], routingKey = ["
+						+ batch.getRoutingKey() + "]", e);
+			}
+		}
+	}
+
+}
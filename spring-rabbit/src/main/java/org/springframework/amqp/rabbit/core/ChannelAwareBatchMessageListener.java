@@ -0,0 +1,44 @@
+/*
+ * Copyright 2014 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.amqp.rabbit.core;
+
+import java.util.List;
+
+import org.springframework.amqp.core.Message;
+
+import com.rabbitmq.client.Channel;
+
+/**
+ * A batch message listener that is aware of the Channel on which the messages were received.
+ *
+ * @author Gary Russell
+ * @since 1.4
+ */
+public interface ChannelAwareBatchMessageListener {
+
+	/**
+	 * Callback for processing a batch of received Rabbit messages.
+	 * <p>Implementors are supposed to process all the given messages; they
+	 * are acknowledged (or rejected) together when this method returns
+	 * (or throws an exception).
+	 * @param messages the received AMQP messages, in delivery order (never empty)
+	 * @param channel the underlying Rabbit Channel (never <code>null</code>)
+	 * @throws Exception Any.
+	 */
+	void onMessageBatch(List<Message> messages, Channel channel) throws Exception;
+
+}
@@ -0,0 +1,244 @@
+/*
+ * Copyright 2014 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+
+package org.springframework.amqp.rabbit.core;
+
+import java.io.IOException;
+import java.util.Collection;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import org.springframework.amqp.rabbit.connection.ChannelProxy;
+import org.springframework.amqp.rabbit.connection.RabbitUtils;
+
+import com.rabbitmq.client.AMQP.BasicProperties;
+import com.rabbitmq.client.Channel;
+import com.rabbitmq.client.DefaultConsumer;
+import com.rabbitmq.client.Envelope;
+import com.rabbitmq.client.GetResponse;
+import com.rabbitmq.client.ShutdownSignalException;
+
+/**
+ * A consumer used by the {@link RabbitTemplate} receive operations; the broker pushes
+ * up to {@code prefetch} unacknowledged messages which are buffered until they are
+ * received. Deliveries are held as {@link GetResponse}s so they can be converted in the
+ * same way as the result of a {@code basicGet}.
+ * <p>
+ * The consumer is either long-lived (on its own channel, stopped by
+ * {@link #stop()}) or used for a single receive operation on the template's channel, in
+ * which case it is {@link #cancel(long) cancelled} when the operation completes.
+ * <p>
+ * When the channel is closed, or the consumer cancelled by the broker, the buffered
+ * deliveries are discarded (the broker requeues them) and the consumer becomes inactive.
+ *
+ * @author Gary Russell
+ * @since 1.4
+ *
+ */
+class PollingConsumer extends DefaultConsumer {
+
+	private static final Log logger = LogFactory.getLog(PollingConsumer.class);
+
+	private final String queue;
+
+	private final BlockingQueue<GetResponse> deliveries = new LinkedBlockingQueue<GetResponse>();
+
+	private volatile boolean active = true;
+
+	private final CountDownLatch cancelled = new CountDownLatch(1);
+
+	private volatile String consumerTag;
+
+	PollingConsumer(Channel channel, String queue) {
+		super(channel);
+		this.queue = queue;
+	}
+
+	String getQueue() {
+		return this.queue;
+	}
+
+	/**
+	 * Start consuming.
+	 * @param prefetch the prefetch count.
+	 * @throws IOException if an I/O problem is encountered.
+	 */
+	void start(int prefetch) throws IOException {
+		Channel channel = getChannel();
+		channel.basicQos(prefetch);
+		this.consumerTag = channel.basicConsume(this.queue, false, this);
+		if (logger.isDebugEnabled()) {
+			logger.debug("Started polling consumer " + this);
+		}
+	}
+
+	/**
+	 * @return true if the consumer is active and its channel is open.
+	 */
+	boolean isActive() {
+		return this.active && getChannel().isOpen();
+	}
+
+	/**
+	 * Take the next delivery.
+	 * @param timeout the time (ms) to wait for a delivery; zero to return immediately;
+	 * negative to wait until a delivery arrives or the consumer becomes inactive.
+	 * @return the delivery, or null if none is available.
+	 * @throws InterruptedException if interrupted while waiting.
+	 */
+	GetResponse poll(long timeout) throws InterruptedException {
+		if (timeout == 0) {
+			return this.deliveries.poll();
+		}
+		if (timeout > 0) {
+			return this.deliveries.poll(timeout, TimeUnit.MILLISECONDS);
+		}
+		GetResponse response = null;
+		while (response == null && isActive()) {
+			response = this.deliveries.poll(1, TimeUnit.SECONDS);
+		}
+		return response;
+	}
+
+	/**
+	 * Take the deliveries that are immediately available.
+	 * @param target the collection to which the deliveries are added.
+	 * @param max the maximum number of deliveries.
+	 * @return the number of deliveries added.
+	 */
+	int drainTo(Collection<GetResponse> target, int max) {
+		return this.deliveries.drainTo(target, max);
+	}
+
+	/**
+	 * Acknowledge deliveries.
+	 * @param deliveryTags the delivery tags.
+	 * @param commit true to commit the channel's transaction after the acks.
+	 * @throws IOException if an I/O problem is encountered.
+	 */
+	synchronized void ack(long[] deliveryTags, boolean commit) throws IOException {
+		Channel channel = getChannel();
+		for (long deliveryTag : deliveryTags) {
+			channel.basicAck(deliveryTag, false);
+		}
+		if (commit) {
+			channel.txCommit();
+		}
+	}
+
+	/**
+	 * Reject deliveries, requeuing them.
+	 * @param deliveryTags the delivery tags.
+	 * @param commit true to commit the channel's transaction after the rejects.
+	 * @throws IOException if an I/O problem is encountered.
+	 */
+	synchronized void reject(long[] deliveryTags, boolean commit) throws IOException {
+		Channel channel = getChannel();
+		for (long deliveryTag : deliveryTags) {
+			channel.basicReject(deliveryTag, true);
+		}
+		if (commit) {
+			channel.txCommit();
+		}
+	}
+
+	/**
+	 * Cancel the consumer and wait for the broker to confirm the cancellation; once
+	 * confirmed, every message delivered to the consumer has been buffered.
+	 * @param timeout the time (ms) to wait for the confirmation.
+	 * @return true if the cancellation was confirmed.
+	 */
+	boolean cancel(long timeout) {
+		try {
+			getChannel().basicCancel(this.consumerTag);
+			return this.cancelled.await(timeout, TimeUnit.MILLISECONDS);
+		}
+		catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			return false;
+		}
+		catch (Exception e) {
+			if (logger.isDebugEnabled()) {
+				logger.debug("Failed to cancel " + this, e);
+			}
+			return false;
+		}
+	}
+
+	/**
+	 * Stop the consumer and physically close its channel so that any unacknowledged
+	 * deliveries are requeued.
+	 */
+	void stop() {
+		this.active = false;
+		this.deliveries.clear();
+		Channel channel = getChannel();
+		if (channel instanceof ChannelProxy) {
+			RabbitUtils.closeChannel(((ChannelProxy) channel).getTargetChannel());
+			try {
+				// return the proxy to the connection factory, which discards it since its target is closed
+				channel.close();
+			}
+			catch (Exception e) {
+				if (logger.isDebugEnabled()) {
+					logger.debug("Failed to close " + this, e);
+				}
+			}
+		}
+		else {
+			RabbitUtils.closeChannel(channel);
+		}
+	}
+
+	@Override
+	public void handleDelivery(String consumerTag, Envelope envelope, BasicProperties properties, byte[] body)
+			throws IOException {
+		this.deliveries.add(new GetResponse(envelope, properties, body, 0));
+	}
+
+	@Override
+	public void handleCancelOk(String consumerTag) {
+		this.active = false;
+		this.cancelled.countDown();
+	}
+
+	@Override
+	public void handleCancel(String consumerTag) throws IOException {
+		if (logger.isWarnEnabled()) {
+			logger.warn("Polling consumer cancelled by the broker " + this);
+		}
+		this.active = false;
+		this.deliveries.clear();
+	}
+
+	@Override
+	public void handleShutdownSignal(String consumerTag, ShutdownSignalException sig) {
+		if (logger.isDebugEnabled()) {
+			logger.debug("Polling consumer shut down " + this + ": " + sig.getMessage());
+		}
+		this.active = false;
+		this.deliveries.clear();
+	}
+
+	@Override
+	public String toString() {
+		return "PollingConsumer [queue=" + this.queue + ", consumerTag=" + this.consumerTag + ", channel="
+				+ getChannel() + "]";
+	}
+
+}
@@ -55,11 +55,11 @@ public class RabbitAdmin implements AmqpAdmin, ApplicationContextAware, Initiali
 
 	protected static final String DEFAULT_EXCHANGE_NAME = "";
 
-	protected static final Object QUEUE_NAME = "QUEUE_NAME";
+	public static final Object QUEUE_NAME = "QUEUE_NAME";
 
-	protected static final Object QUEUE_MESSAGE_COUNT = "QUEUE_MESSAGE_COUNT";
+	public static final Object QUEUE_MESSAGE_COUNT = "QUEUE_MESSAGE_COUNT";
 
-	protected static final Object QUEUE_CONSUMER_COUNT = "QUEUE_CONSUMER_COUNT";
+	public static final Object QUEUE_CONSUMER_COUNT = "QUEUE_CONSUMER_COUNT";
 
 	/** Logger available to subclasses */
 	protected final Log logger = LogFactory.getLog(getClass());
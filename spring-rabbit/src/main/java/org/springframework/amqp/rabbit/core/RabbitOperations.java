@@ -16,16 +16,98 @@
 
 package org.springframework.amqp.rabbit.core;
 
+import java.util.Collection;
+
 import org.springframework.amqp.AmqpException;
 import org.springframework.amqp.core.AmqpTemplate;
+import org.springframework.amqp.core.Message;
 
 /**
  * Rabbit specific methods for Amqp functionality.
  * @author Mark Pollack
  * @author Mark Fisher
+ * @author Gary Russell
  */
 public interface RabbitOperations extends AmqpTemplate {
 
 	<T> T execute(ChannelCallback<T> action) throws AmqpException;
 
+	/**
+	 * Send the messages to the default exchange with the default routing key, using a
+	 * single channel; a locally transacted channel is committed once, after all the
+	 * messages have been published.
+	 * @param messages the messages.
+	 * @throws AmqpException if there is a problem.
+	 * @since 1.4
+	 */
+	void send(Collection<Message> messages) throws AmqpException;
+
+	/**
+	 * Send the messages to the default exchange with the supplied routing key, using a
+	 * single channel; a locally transacted channel is committed once, after all the
+	 * messages have been published.
+	 * @param routingKey the routing key.
+	 * @param messages the messages.
+	 * @throws AmqpException if there is a problem.
+	 * @since 1.4
+	 */
+	void send(String routingKey, Collection<Message> messages) throws AmqpException;
+
+	/**
+	 * Send the messages to the supplied exchange with the supplied routing key, using a
+	 * single channel; a locally transacted channel is committed once, after all the
+	 * messages have been published.
+	 * @param exchange the exchange.
+	 * @param routingKey the routing key.
+	 * @param messages the messages.
+	 * @throws AmqpException if there is a problem.
+	 * @since 1.4
+	 */
+	void send(String exchange, String routingKey, Collection<Message> messages) throws AmqpException;
+
+	/**
+	 * Send the messages to the supplied exchange with the supplied routing key, using a
+	 * single channel, then wait for the publisher confirms for all of them. Requires a
+	 * connection factory with publisher confirms enabled.
+	 * @param exchange the exchange.
+	 * @param routingKey the routing key.
+	 * @param messages the messages.
+	 * @param timeout the time (ms) to wait for the confirms.
+	 * @return true if all the messages were acked, false if any were nacked.
+	 * @throws AmqpException if there is a problem, including the timeout elapsing.
+	 * @since 1.4
+	 */
+	boolean sendAndWaitForConfirms(String exchange, String routingKey, Collection<Message> messages, long timeout)
+			throws AmqpException;
+
+	/**
+	 * Convert each object to a message and send the messages to the default exchange
+	 * with the default routing key, using a single channel.
+	 * @param objects the objects.
+	 * @throws AmqpException if there is a problem.
+	 * @since 1.4
+	 */
+	void convertAndSendAll(Collection<?> objects) throws AmqpException;
+
+	/**
+	 * Convert each object to a message and send the messages to the default exchange
+	 * with the supplied routing key, using a single channel.
+	 * @param routingKey the routing key.
+	 * @param objects the objects.
+	 * @throws AmqpException if there is a problem.
+	 * @since 1.4
+	 */
+	void convertAndSendAll(String routingKey, Collection<?> objects) throws AmqpException;
+
+	/**
+	 * Convert each object to a message and send the messages to the supplied exchange
+	 * with the supplied routing key, using a single channel.
+	 * @param exchange the exchange.
+	 * @param routingKey the routing key.
+	 * @param objects the objects.
+	 * @throws AmqpException if there is a problem.
+	 * @since 1.4
+	 */
+	void convertAndSendAll(String exchange, String routingKey, Collection<?> objects) throws AmqpException;
+
 }
@@ -15,18 +15,25 @@ package org.springframework.amqp.rabbit.core;
 
 import java.io.IOException;
 import java.io.UnsupportedEncodingException;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
 import java.util.SortedMap;
 import java.util.UUID;
 import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.springframework.amqp.AmqpException;
 import org.springframework.amqp.AmqpIllegalStateException;
@@ -39,24 +46,35 @@ import org.springframework.amqp.core.Queue;
 import org.springframework.amqp.core.ReceiveAndReplyCallback;
 import org.springframework.amqp.core.ReceiveAndReplyMessageCallback;
 import org.springframework.amqp.core.ReplyToAddressCallback;
+import org.springframework.amqp.rabbit.connection.Connection;
+import org.springframework.amqp.rabbit.connection.ChannelProxy;
 import org.springframework.amqp.rabbit.connection.ConnectionFactory;
 import org.springframework.amqp.rabbit.connection.ConnectionFactoryUtils;
 import org.springframework.amqp.rabbit.connection.RabbitAccessor;
 import org.springframework.amqp.rabbit.connection.RabbitResourceHolder;
 import org.springframework.amqp.rabbit.connection.RabbitUtils;
+import org.springframework.amqp.rabbit.support.Confirm;
+import org.springframework.amqp.rabbit.support.ConfirmFuture;
 import org.springframework.amqp.rabbit.support.CorrelationData;
+import org.springframework.amqp.rabbit.support.CorrelationIdGenerator;
 import org.springframework.amqp.rabbit.support.DefaultMessagePropertiesConverter;
 import org.springframework.amqp.rabbit.support.MessagePropertiesConverter;
 import org.springframework.amqp.rabbit.support.PendingConfirm;
 import org.springframework.amqp.rabbit.support.PublisherCallbackChannel;
 import org.springframework.amqp.rabbit.support.RabbitExceptionTranslator;
+import org.springframework.amqp.rabbit.support.SequentialCorrelationIdGenerator;
 import org.springframework.amqp.support.converter.MessageConverter;
 import org.springframework.amqp.support.converter.SimpleMessageConverter;
+import org.springframework.beans.factory.DisposableBean;
 import org.springframework.retry.RetryCallback;
 import org.springframework.retry.RetryContext;
 import org.springframework.retry.support.RetryTemplate;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 import org.springframework.util.Assert;
 import org.springframework.util.StringUtils;
+import org.springframework.util.concurrent.ListenableFuture;
+import org.springframework.util.concurrent.ListenableFutureCallback;
 
 import com.rabbitmq.client.AMQP;
 import com.rabbitmq.client.AMQP.BasicProperties;
@@ -103,7 +121,7 @@ import com.rabbitmq.client.GetResponse;
  * @since 1.0
  */
 public class RabbitTemplate extends RabbitAccessor implements RabbitOperations, MessageListener,
-	PublisherCallbackChannel.Listener {
+	PublisherCallbackChannel.Listener, DisposableBean {
 
 	/** Alias for amq.direct default exchange */
 	private static final String DEFAULT_EXCHANGE = "";
@@ -114,6 +132,10 @@ public class RabbitTemplate extends RabbitAccessor implements RabbitOperations,
 
 	private static final String DEFAULT_ENCODING = "UTF-8";
 
+	private static final long DEFAULT_CONFIRM_WINDOW_TIMEOUT = 30000;
+
+	private static final long CONSUMER_CANCEL_TIMEOUT = 5000;
+
 	private volatile String exchange = DEFAULT_EXCHANGE;
 
 	private volatile String routingKey = DEFAULT_ROUTING_KEY;
@@ -131,7 +153,20 @@ public class RabbitTemplate extends RabbitAccessor implements RabbitOperations,
 
 	private volatile Queue replyQueue;
 
-	private final Map<String, PendingReply> replyHolder = new ConcurrentHashMap<String, PendingReply>();
+	// keyed by a CorrelationKey for the correlationId property, or the String header value
+	private final Map<Object, PendingReply> replyHolder = new ConcurrentHashMap<Object, PendingReply>();
+
+	private volatile boolean useTemporaryReplyQueues;
+
+	private volatile Boolean usingDirectReplyTo;
+
+	// idle channels owned by this template, each with a long-lived direct reply-to consumer
+	private final BlockingQueue<Channel> directReplyToChannels = new LinkedBlockingQueue<Channel>();
+
+	private volatile int receivePrefetch;
+
+	private final ConcurrentMap<String, PollingConsumer> pollingConsumers =
+			new ConcurrentHashMap<String, PollingConsumer>();
 
 	private volatile ConfirmCallback confirmCallback;
 
@@ -139,14 +174,28 @@ public class RabbitTemplate extends RabbitAccessor implements RabbitOperations,
 
 	private final Map<Object, SortedMap<Long, PendingConfirm>> pendingConfirms = new ConcurrentHashMap<Object, SortedMap<Long, PendingConfirm>>();
 
+	private final Map<String, ConfirmFuture> returnableConfirms = new ConcurrentHashMap<String, ConfirmFuture>();
+
+	private final AtomicLong returnCorrelation = new AtomicLong();
+
 	private volatile boolean mandatory;
 
 	private final String uuid = UUID.randomUUID().toString();
 
+	private volatile CorrelationIdGenerator correlationIdGenerator = new SequentialCorrelationIdGenerator(this.uuid);
+
 	private volatile String correlationKey = null;
 
 	private volatile RetryTemplate retryTemplate;
 
+	private volatile boolean channelPinning;
+
+	private volatile int maxInFlightConfirms;
+
+	private volatile long confirmWindowTimeout = DEFAULT_CONFIRM_WINDOW_TIMEOUT;
+
+	private final ThreadLocal<Channel> pinnedChannel = new ThreadLocal<Channel>();
+
 
 	private final ReplyToAddressCallback<?> defaultReplyToAddressCallback = new ReplyToAddressCallback<Object>() {
 
@@ -193,6 +242,14 @@ public class RabbitTemplate extends RabbitAccessor implements RabbitOperations,
 		this.exchange = (exchange != null) ? exchange : DEFAULT_EXCHANGE;
 	}
 
+	/**
+	 * @return the default exchange.
+	 * @since 1.4
+	 */
+	public String getExchange() {
+		return this.exchange;
+	}
+
 	/**
 	 * The value of a default routing key to use for send operations when none is specified. Default is empty which is
 	 * not helpful when using the default (or any direct) exchange, but fine if the exchange is a headers exchange for
@@ -204,6 +261,14 @@ public class RabbitTemplate extends RabbitAccessor implements RabbitOperations,
 		this.routingKey = routingKey;
 	}
 
+	/**
+	 * @return the default routing key.
+	 * @since 1.4
+	 */
+	public String getRoutingKey() {
+		return this.routingKey;
+	}
+
 	/**
 	 * The name of the default queue to receive messages from when none is specified explicitly.
 	 *
@@ -224,15 +289,56 @@ public class RabbitTemplate extends RabbitAccessor implements RabbitOperations,
 
 
 	/**
-	 * A queue for replies; if not provided, a temporary exclusive, auto-delete queue will
+	 * A queue for replies; if not provided, direct reply-to is used if the broker
+	 * supports it, otherwise a temporary exclusive, auto-delete queue will
 	 * be used for each reply.
 	 *
 	 * @param replyQueue the replyQueue to set
+	 * @see #setUseTemporaryReplyQueues(boolean)
 	 */
 	public void setReplyQueue(Queue replyQueue) {
 		this.replyQueue = replyQueue;
 	}
 
+	/**
+	 * When no {@link #setReplyQueue(Queue) replyQueue} is provided, replies are received
+	 * using the broker's direct reply-to feature (RabbitMQ 3.4 and above), if available;
+	 * requests are sent on channels owned by the template (not returned to the connection
+	 * factory's cache until {@link #destroy()}), each with a consumer of the
+	 * {@code amq.rabbitmq.reply-to} pseudo queue that is started once and reused;
+	 * replies are correlated in-process. Set this to true to
+	 * always use a temporary queue for each reply instead. Default false.
+	 *
+	 * @param useTemporaryReplyQueues true to use temporary reply queues.
+	 * @since 1.4
+	 */
+	public void setUseTemporaryReplyQueues(boolean useTemporaryReplyQueues) {
+		this.useTemporaryReplyQueues = useTemporaryReplyQueues;
+	}
+
+	/**
+	 * When greater than zero, the {@code receive} methods take messages from a
+	 * long-lived consumer on the queue, which is started on first use with this
+	 * prefetch count, instead of performing a {@code basicGet} round trip for each
+	 * message. Messages already pushed to the consumer are returned immediately; if none
+	 * are buffered, a {@code basicGet} is used so that a message is still returned if
+	 * one is available; messages are therefore not necessarily received in queue order.
+	 * Messages buffered but not yet received remain unacknowledged
+	 * (and unavailable to other consumers) until they are received or the consumer is
+	 * stopped by {@link #destroy()}. Default 0 (always use {@code basicGet}).
+	 * <p>
+	 * Since other threads may hold earlier deliveries from the shared consumer,
+	 * {@link #receiveBatch(String, int, long)} acknowledges each message individually
+	 * when this is set.
+	 *
+	 * @param receivePrefetch the prefetch count.
+	 * @since 1.4
+	 */
+	public void setReceivePrefetch(int receivePrefetch) {
+		Assert.isTrue(receivePrefetch >= 0, "'receivePrefetch' cannot be negative");
+		this.receivePrefetch = receivePrefetch;
+	}
+
 	/**
 	 * Specify the timeout in milliseconds to be used when waiting for a reply Message when using one of the
 	 * sendAndReceive methods. The default value is defined as {@link #DEFAULT_REPLY_TIMEOUT}. A negative value
@@ -316,6 +422,19 @@ public class RabbitTemplate extends RabbitAccessor implements RabbitOperations,
 		}
 	}
 
+	/**
+	 * Set the strategy used to generate the correlation ids for the send and receive
+	 * methods when a {@link #setReplyQueue(Queue) replyQueue} or direct reply-to is used.
+	 * Default {@link SequentialCorrelationIdGenerator} using a UUID unique to this template
+	 * as the prefix.
+	 * @param correlationIdGenerator the generator.
+	 * @since 1.4
+	 */
+	public void setCorrelationIdGenerator(CorrelationIdGenerator correlationIdGenerator) {
+		Assert.notNull(correlationIdGenerator, "'correlationIdGenerator' cannot be null");
+		this.correlationIdGenerator = correlationIdGenerator;
+	}
+
 	/**
 	 * Add a {@link RetryTemplate} which will be used for all rabbit operations.
 	 *
@@ -326,13 +445,80 @@ public class RabbitTemplate extends RabbitAccessor implements RabbitOperations,
 	}
 
 	/**
-	 * Gets unconfirmed correlatiom data older than age and removes them.
+	 * When true, each thread that uses this template to send messages (outside of a transaction)
+	 * keeps using the same channel, instead of obtaining a channel from the connection factory
+	 * for each operation, until {@link #releasePinnedChannel()} is called on that thread. With
+	 * publisher confirms, this avoids contention for the cached channels and allows the number
+	 * of outstanding confirms to be limited with {@link #setMaxInFlightConfirms(int)}.
+	 * <p>
+	 * Each thread holds a channel until it is released, so the connection factory's channel
+	 * cache should be sized accordingly; threads must call {@link #releasePinnedChannel()}
+	 * before they terminate. Not supported with a transactional channel.
+	 * Default false.
+	 *
+	 * @param channelPinning true to pin channels to threads.
+	 * @since 1.4
+	 */
+	public void setChannelPinning(boolean channelPinning) {
+		this.channelPinning = channelPinning;
+	}
+
+	/**
+	 * With {@link #setChannelPinning(boolean) channelPinning} and publisher confirms, the maximum
+	 * number of sends on each pinned channel that may be awaiting confirmation; when the limit
+	 * is reached, a send blocks until a confirm is received (or the
+	 * {@link #setConfirmWindowTimeout(long) confirmWindowTimeout} expires), so publishers slow
+	 * down when the broker does. Applied when a channel is pinned. Default 0 (no limit).
+	 *
+	 * @param maxInFlightConfirms the maximum number of outstanding confirms per channel.
+	 * @since 1.4
+	 */
+	public void setMaxInFlightConfirms(int maxInFlightConfirms) {
+		Assert.isTrue(maxInFlightConfirms >= 0, "'maxInFlightConfirms' must be >= 0");
+		this.maxInFlightConfirms = maxInFlightConfirms;
+	}
+
+	/**
+	 * The maximum time (ms) a send waits for a confirm when {@link #setMaxInFlightConfirms(int)
+	 * maxInFlightConfirms} sends are outstanding; an {@link AmqpException} is thrown when it
+	 * expires. Default 30000.
+	 *
+	 * @param confirmWindowTimeout the timeout.
+	 * @since 1.4
+	 */
+	public void setConfirmWindowTimeout(long confirmWindowTimeout) {
+		this.confirmWindowTimeout = confirmWindowTimeout;
+	}
+
+	/**
+	 * Release the channel pinned to the calling thread, if any, returning it to the connection
+	 * factory. Confirms for outstanding sends are still delivered.
+	 *
+	 * @since 1.4
+	 * @see #setChannelPinning(boolean)
+	 */
+	public void releasePinnedChannel() {
+		Channel channel = this.pinnedChannel.get();
+		if (channel != null) {
+			this.pinnedChannel.remove();
+			if (channel instanceof PublisherCallbackChannel && channel.isOpen()) {
+				((PublisherCallbackChannel) channel).setConfirmWindow(0, 0);
+			}
+			RabbitUtils.closeChannel(channel);
+		}
+	}
+
+	/**
+	 * Gets unconfirmed correlatiom data older than age and removes them. The futures
+	 * returned by {@link #sendWithConfirm(String, String, Message, CorrelationData)} for
+	 * the expired confirms are completed with a nack.
 	 * @param age in millseconds
 	 * @return the collection of correlation data for which confirms have
 	 * not been received.
 	 */
 	public Collection<CorrelationData> getUnconfirmed(long age) {
 		Set<CorrelationData> unconfirmed = new HashSet<CorrelationData>();
+		List<ConfirmFuture> expiredFutures = new ArrayList<ConfirmFuture>();
 		synchronized (this.pendingConfirms) {
 			long threshold = System.currentTimeMillis() - age;
 			for (Entry<Object, SortedMap<Long, PendingConfirm>> channelPendingConfirmEntry : this.pendingConfirms.entrySet()) {
@@ -344,6 +530,9 @@ public class RabbitTemplate extends RabbitAccessor implements RabbitOperations,
 					if (pendingConfirm.getTimestamp() < threshold) {
 						unconfirmed.add(pendingConfirm.getCorrelationData());
 						iterator.remove();
+						if (pendingConfirm.getFuture() != null) {
+							expiredFutures.add(pendingConfirm.getFuture());
+						}
 					}
 					else {
 						break;
@@ -351,6 +540,9 @@ public class RabbitTemplate extends RabbitAccessor implements RabbitOperations,
 				}
 			}
 		}
+		for (ConfirmFuture future : expiredFutures) {
+			future.complete(false, "Publisher confirm expired");
+		}
 		return unconfirmed.size() > 0 ? unconfirmed : null;
 	}
 
@@ -382,6 +574,212 @@ public class RabbitTemplate extends RabbitAccessor implements RabbitOperations,
 		});
 	}
 
+	@Override
+	public void send(Collection<Message> messages) throws AmqpException {
+		send(this.exchange, this.routingKey, messages);
+	}
+
+	@Override
+	public void send(String routingKey, Collection<Message> messages) throws AmqpException {
+		send(this.exchange, routingKey, messages);
+	}
+
+	@Override
+	public void send(final String exchange, final String routingKey, final Collection<Message> messages)
+			throws AmqpException {
+		Assert.notNull(messages, "'messages' cannot be null");
+		execute(new ChannelCallback<Object>() {
+
+			@Override
+			public Object doInRabbit(Channel channel) throws Exception {
+				doSendAll(channel, exchange, routingKey, messages);
+				return null;
+			}
+		});
+	}
+
+	@Override
+	public boolean sendAndWaitForConfirms(final String exchange, final String routingKey,
+			final Collection<Message> messages, final long timeout) throws AmqpException {
+		Assert.notNull(messages, "'messages' cannot be null");
+		return execute(new ChannelCallback<Boolean>() {
+
+			@Override
+			public Boolean doInRabbit(Channel channel) throws Exception {
+				doSendAll(channel, exchange, routingKey, messages);
+				return channel.waitForConfirms(timeout);
+			}
+		});
+	}
+
+	@Override
+	public void convertAndSendAll(Collection<?> objects) throws AmqpException {
+		convertAndSendAll(this.exchange, this.routingKey, objects);
+	}
+
+	@Override
+	public void convertAndSendAll(String routingKey, Collection<?> objects) throws AmqpException {
+		convertAndSendAll(this.exchange, routingKey, objects);
+	}
+
+	@Override
+	public void convertAndSendAll(String exchange, String routingKey, Collection<?> objects) throws AmqpException {
+		Assert.notNull(objects, "'objects' cannot be null");
+		List<Message> messages = new ArrayList<Message>(objects.size());
+		for (Object object : objects) {
+			messages.add(convertMessageIfNecessary(object));
+		}
+		send(exchange, routingKey, messages);
+	}
+
+	/**
+	 * Send a message to the default exchange with the default routing key, returning a future
+	 * that is completed when the publisher confirm is received. The connection factory must
+	 * be configured for publisher confirms.
+	 * @param message the message.
+	 * @return the future.
+	 * @throws AmqpException if the message could not be sent.
+	 * @since 1.4
+	 * @see #sendWithConfirm(String, String, Message, CorrelationData)
+	 */
+	public ListenableFuture<Confirm> sendWithConfirm(Message message) throws AmqpException {
+		return sendWithConfirm(this.exchange, this.routingKey, message, null);
+	}
+
+	/**
+	 * Send a message to the default exchange with the supplied routing key, returning a future
+	 * that is completed when the publisher confirm is received. The connection factory must
+	 * be configured for publisher confirms.
+	 * @param routingKey the routing key.
+	 * @param message the message.
+	 * @return the future.
+	 * @throws AmqpException if the message could not be sent.
+	 * @since 1.4
+	 * @see #sendWithConfirm(String, String, Message, CorrelationData)
+	 */
+	public ListenableFuture<Confirm> sendWithConfirm(String routingKey, Message message) throws AmqpException {
+		return sendWithConfirm(this.exchange, routingKey, message, null);
+	}
+
+	/**
+	 * Send a message to the supplied exchange with the supplied routing key, returning a future
+	 * that is completed when the publisher confirm is received. The connection factory must
+	 * be configured for publisher confirms.
+	 * @param exchange the exchange.
+	 * @param routingKey the routing key.
+	 * @param message the message.
+	 * @return the future.
+	 * @throws AmqpException if the message could not be sent.
+	 * @since 1.4
+	 * @see #sendWithConfirm(String, String, Message, CorrelationData)
+	 */
+	public ListenableFuture<Confirm> sendWithConfirm(String exchange, String routingKey, Message message)
+			throws AmqpException {
+		return sendWithConfirm(exchange, routingKey, message, null);
+	}
+
+	/**
+	 * Send a message, returning a future that is completed with the {@link Confirm} when the
+	 * publisher confirm is received (or with a nack if the channel is closed first). The
+	 * connection factory must be configured for publisher confirms; a
+	 * {@link #setConfirmCallback(ConfirmCallback) ConfirmCallback} is not required, but is
+	 * also invoked if present.
+	 * <p>
+	 * When {@link #setMandatory(boolean) mandatory} is true, the message is published with
+	 * the mandatory flag (the connection factory must also be configured for publisher
+	 * returns) and, if it cannot be routed, the returned message is included in the
+	 * {@link Confirm}.
+	 * <p>
+	 * The future is completed on the connection's thread; callbacks must not block.
+	 * @param exchange the exchange.
+	 * @param routingKey the routing key.
+	 * @param message the message.
+	 * @param correlationData the correlation data, included in the {@link Confirm}; may be null.
+	 * @return the future.
+	 * @throws AmqpException if the message could not be sent.
+	 * @since 1.4
+	 */
+	public ListenableFuture<Confirm> sendWithConfirm(final String exchange, final String routingKey,
+			final Message message, final CorrelationData correlationData) throws AmqpException {
+		Assert.state(!isChannelTransacted(), "Publisher confirms cannot be used with a transacted channel");
+		final ConfirmFuture future = new ConfirmFuture(correlationData);
+		execute(new ChannelCallback<Object>() {
+
+			@Override
+			public Object doInRabbit(Channel channel) throws Exception {
+				addListener(channel);
+				doSend(channel, exchange, routingKey, message, correlationData, future);
+				return null;
+			}
+		});
+		return future;
+	}
+
+	/**
+	 * Convert an object to a message and send it to the default exchange with the default
+	 * routing key, returning a future that is completed when the publisher confirm is received.
+	 * @param object the object to convert.
+	 * @return the future.
+	 * @throws AmqpException if the message could not be sent.
+	 * @since 1.4
+	 * @see #sendWithConfirm(String, String, Message, CorrelationData)
+	 */
+	public ListenableFuture<Confirm> convertAndSendWithConfirm(Object object) throws AmqpException {
+		return convertAndSendWithConfirm(this.exchange, this.routingKey, object, null);
+	}
+
+	/**
+	 * Convert an object to a message and send it to the default exchange with the supplied
+	 * routing key, returning a future that is completed when the publisher confirm is received.
+	 * @param routingKey the routing key.
+	 * @param object the object to convert.
+	 * @return the future.
+	 * @throws AmqpException if the message could not be sent.
+	 * @since 1.4
+	 * @see #sendWithConfirm(String, String, Message, CorrelationData)
+	 */
+	public ListenableFuture<Confirm> convertAndSendWithConfirm(String routingKey, Object object)
+			throws AmqpException {
+		return convertAndSendWithConfirm(this.exchange, routingKey, object, null);
+	}
+
+	/**
+	 * Convert an object to a message and send it, returning a future that is completed when
+	 * the publisher confirm is received.
+	 * @param exchange the exchange.
+	 * @param routingKey the routing key.
+	 * @param object the object to convert.
+	 * @param correlationData the correlation data, included in the {@link Confirm}; may be null.
+	 * @return the future.
+	 * @throws AmqpException if the message could not be sent.
+	 * @since 1.4
+	 * @see #sendWithConfirm(String, String, Message, CorrelationData)
+	 */
+	public ListenableFuture<Confirm> convertAndSendWithConfirm(String exchange, String routingKey, Object object,
+			CorrelationData correlationData) throws AmqpException {
+		return sendWithConfirm(exchange, routingKey, convertMessageIfNecessary(object), correlationData);
+	}
+
+	/**
+	 * Convert an object to a message, post process it and send it, returning a future that
+	 * is completed when the publisher confirm is received.
+	 * @param exchange the exchange.
+	 * @param routingKey the routing key.
+	 * @param object the object to convert.
+	 * @param messagePostProcessor the post processor.
+	 * @param correlationData the correlation data, included in the {@link Confirm}; may be null.
+	 * @return the future.
+	 * @throws AmqpException if the message could not be sent.
+	 * @since 1.4
+	 * @see #sendWithConfirm(String, String, Message, CorrelationData)
+	 */
+	public ListenableFuture<Confirm> convertAndSendWithConfirm(String exchange, String routingKey, Object object,
+			MessagePostProcessor messagePostProcessor, CorrelationData correlationData) throws AmqpException {
+		Message messageToSend = convertMessageIfNecessary(object);
+		messageToSend = messagePostProcessor.postProcessMessage(messageToSend);
+		return sendWithConfirm(exchange, routingKey, messageToSend, correlationData);
+	}
+
 	@Override
 	public void convertAndSend(Object object) throws AmqpException {
 		convertAndSend(this.exchange, this.routingKey, object, (CorrelationData) null);
@@ -453,6 +851,12 @@ public class RabbitTemplate extends RabbitAccessor implements RabbitOperations,
 
 	@Override
 	public Message receive(final String queueName) {
+		if (this.receivePrefetch > 0) {
+			Message message = receiveFromPollingConsumer(queueName, 0);
+			if (message != null) {
+				return message;
+			}
+		}
 		return execute(new ChannelCallback<Message>() {
 
 			@Override
@@ -478,6 +882,227 @@ public class RabbitTemplate extends RabbitAccessor implements RabbitOperations,
 		});
 	}
 
+	@Override
+	public Message receive(String queueName, long timeoutMillis) throws AmqpException {
+		if (timeoutMillis == 0) {
+			return receive(queueName);
+		}
+		if (this.receivePrefetch > 0) {
+			return receiveFromPollingConsumer(queueName, timeoutMillis);
+		}
+		List<Message> messages = consumeBatch(queueName, 1, timeoutMillis);
+		return messages.isEmpty() ? null : messages.get(0);
+	}
+
+	@Override
+	public List<Message> receiveBatch(String queueName, int maxMessages, long timeoutMillis)
+			throws AmqpException {
+		Assert.isTrue(maxMessages > 0, "'maxMessages' must be greater than zero");
+		if (this.receivePrefetch > 0) {
+			return receiveBatchFromPollingConsumer(queueName, maxMessages, timeoutMillis);
+		}
+		return consumeBatch(queueName, maxMessages, timeoutMillis);
+	}
+
+	/**
+	 * Probe the queue with a single {@code basicGet}; if a message is waiting, the rest of
+	 * the batch (sized from the reported message count) is taken in one prefetch window
+	 * by a consumer that is cancelled straight away. If the queue is empty, consume from it
+	 * with a prefetch of {@code maxMessages} until the first message arrives (or the
+	 * timeout expires), then cancel the consumer. When the broker confirms the
+	 * cancellation, every message it delivered has been buffered, so the batch is complete
+	 * and is acknowledged with a single multiple ack.
+	 */
+	private List<Message> consumeBatch(final String queueName, final int maxMessages, final long timeoutMillis) {
+		return execute(new ChannelCallback<List<Message>>() {
+
+			@Override
+			public List<Message> doInRabbit(Channel channel) throws Exception {
+				List<GetResponse> responses = new ArrayList<GetResponse>(maxMessages);
+				GetResponse first = channel.basicGet(queueName, false);
+				if (first == null) {
+					consumeInto(channel, queueName, maxMessages, timeoutMillis, responses);
+				}
+				else {
+					responses.add(first);
+					int more = Math.min(maxMessages - 1, first.getMessageCount());
+					if (more > 0) {
+						consumeInto(channel, queueName, more, 0, responses);
+					}
+				}
+				if (responses.isEmpty()) {
+					return Collections.emptyList();
+				}
+				long lastTag = responses.get(responses.size() - 1).getEnvelope().getDeliveryTag();
+				if (isChannelLocallyTransacted(channel)) {
+					channel.basicAck(lastTag, true);
+					channel.txCommit();
+				}
+				else if (isChannelTransacted()) {
+					// Not locally transacted but it is transacted so it
+					// could be synchronized with an external transaction
+					for (GetResponse response : responses) {
+						ConnectionFactoryUtils.registerDeliveryTag(getConnectionFactory(), channel,
+								response.getEnvelope().getDeliveryTag());
+					}
+				}
+				else {
+					channel.basicAck(lastTag, true);
+				}
+				return buildMessagesFromResponses(responses);
+			}
+
+		});
+	}
+
+	private void consumeInto(Channel channel, String queueName, int maxMessages, long timeoutMillis,
+			List<GetResponse> responses) throws IOException {
+		PollingConsumer consumer = new PollingConsumer(channel, queueName);
+		consumer.start(maxMessages);
+		try {
+			consumer.poll(timeoutMillis);
+		}
+		catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		if (!consumer.cancel(CONSUMER_CANCEL_TIMEOUT)) {
+			// deliveries may still arrive; closing the channel requeues them all
+			consumer.stop();
+			throw new AmqpIllegalStateException("Failed to cancel " + consumer);
+		}
+		// the channel is returned to the cache; don't leave the prefetch limit on it
+		channel.basicQos(0);
+		consumer.drainTo(responses, Integer.MAX_VALUE);
+	}
+
+	private List<Message> receiveBatchFromPollingConsumer(String queueName, int maxMessages, long timeoutMillis) {
+		PollingConsumer consumer = obtainPollingConsumer(queueName);
+		List<GetResponse> responses = new ArrayList<GetResponse>(maxMessages);
+		try {
+			GetResponse first = consumer.poll(timeoutMillis);
+			if (first != null) {
+				responses.add(first);
+			}
+		}
+		catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		if (responses.isEmpty()) {
+			return Collections.emptyList();
+		}
+		consumer.drainTo(responses, maxMessages - 1);
+		long[] deliveryTags = new long[responses.size()];
+		for (int i = 0; i < deliveryTags.length; i++) {
+			deliveryTags[i] = responses.get(i).getEnvelope().getDeliveryTag();
+		}
+		acknowledge(consumer, deliveryTags);
+		return buildMessagesFromResponses(responses);
+	}
+
+	private List<Message> buildMessagesFromResponses(List<GetResponse> responses) {
+		List<Message> messages = new ArrayList<Message>(responses.size());
+		for (GetResponse response : responses) {
+			messages.add(buildMessageFromResponse(response));
+		}
+		return messages;
+	}
+
+	/**
+	 * Take a message from the polling consumer for the queue, starting the consumer if
+	 * necessary, and acknowledge it.
+	 * @param queueName the queue.
+	 * @param timeout the time to wait for a message (ms); zero to return immediately;
+	 * negative to wait indefinitely.
+	 * @return the message, or null if none arrived.
+	 */
+	private Message receiveFromPollingConsumer(String queueName, long timeout) {
+		PollingConsumer consumer = obtainPollingConsumer(queueName);
+		GetResponse response;
+		try {
+			response = consumer.poll(timeout);
+		}
+		catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			return null;
+		}
+		if (response == null) {
+			return null;
+		}
+		acknowledge(consumer, response.getEnvelope().getDeliveryTag());
+		return buildMessageFromResponse(response);
+	}
+
+	private PollingConsumer obtainPollingConsumer(String queueName) {
+		PollingConsumer consumer = this.pollingConsumers.get(queueName);
+		if (consumer == null || !consumer.isActive()) {
+			synchronized (this.pollingConsumers) {
+				consumer = this.pollingConsumers.get(queueName);
+				if (consumer == null || !consumer.isActive()) {
+					if (consumer != null) {
+						consumer.stop();
+					}
+					consumer = createPollingConsumer(queueName);
+					this.pollingConsumers.put(queueName, consumer);
+				}
+			}
+		}
+		return consumer;
+	}
+
+	private PollingConsumer createPollingConsumer(String queueName) {
+		Connection connection = getConnectionFactory().createConnection();
+		Channel channel = connection.createChannel(isChannelTransacted());
+		PollingConsumer consumer = new PollingConsumer(channel, queueName);
+		try {
+			consumer.start(this.receivePrefetch);
+		}
+		catch (IOException e) {
+			consumer.stop();
+			throw RabbitExceptionTranslator.convertRabbitAccessException(e);
+		}
+		return consumer;
+	}
+
+	/**
+	 * Acknowledge deliveries taken from a polling consumer. With a transactional channel,
+	 * the ack is committed immediately unless a Spring transaction is active, in which case
+	 * the deliveries are acknowledged (or requeued on rollback) when it completes.
+	 */
+	private void acknowledge(final PollingConsumer consumer, final long... deliveryTags) {
+		try {
+			if (!isChannelTransacted()) {
+				consumer.ack(deliveryTags, false);
+			}
+			else if (TransactionSynchronizationManager.isSynchronizationActive()
+					&& TransactionSynchronizationManager.isActualTransactionActive()) {
+				TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+
+					@Override
+					public void afterCompletion(int status) {
+						try {
+							if (status == STATUS_COMMITTED) {
+								consumer.ack(deliveryTags, true);
+							}
+							else {
+								consumer.reject(deliveryTags, true);
+							}
+						}
+						catch (IOException e) {
+							logger.error("Failed to complete receive for " + consumer, e);
+						}
+					}
+
+				});
+			}
+			else {
+				consumer.ack(deliveryTags, true);
+			}
+		}
+		catch (IOException e) {
+			throw RabbitExceptionTranslator.convertRabbitAccessException(e);
+		}
+	}
+
 	@Override
 	public Object receiveAndConvert() throws AmqpException {
 		return receiveAndConvert(this.getRequiredQueue());
@@ -694,6 +1319,9 @@ public class RabbitTemplate extends RabbitAccessor implements RabbitOperations,
 	 */
 	protected Message doSendAndReceive(final String exchange, final String routingKey, final Message message) {
 		if (this.replyQueue == null) {
+			if (isUsingDirectReplyTo()) {
+				return doSendAndReceiveWithDirect(exchange, routingKey, message);
+			}
 			return doSendAndReceiveWithTemporary(exchange, routingKey, message);
 		}
 		else {
@@ -749,62 +1377,178 @@ public class RabbitTemplate extends RabbitAccessor implements RabbitOperations,
 
 			@Override
 			public Message doInRabbit(Channel channel) throws Exception {
-				final PendingReply pendingReply = new PendingReply();
-				String messageTag = UUID.randomUUID().toString();
-				RabbitTemplate.this.replyHolder.put(messageTag, pendingReply);
-				// Save any existing replyTo and correlation data
-				String savedReplyTo = message.getMessageProperties().getReplyTo();
-				pendingReply.setSavedReplyTo(savedReplyTo);
-				if (StringUtils.hasLength(savedReplyTo) && logger.isDebugEnabled()) {
-					logger.debug("Replacing replyTo header:" + savedReplyTo
-							+ " in favor of template's configured reply-queue:"
-							+ RabbitTemplate.this.replyQueue.getName());
-				}
-				message.getMessageProperties().setReplyTo(RabbitTemplate.this.replyQueue.getName());
-				String savedCorrelation = null;
-				if (RabbitTemplate.this.correlationKey == null) { // using standard correlationId property
-					byte[] correlationId = message.getMessageProperties().getCorrelationId();
-					if (correlationId != null) {
-						savedCorrelation = new String(correlationId,
-								RabbitTemplate.this.encoding);
-					}
-				}
-				else {
-					savedCorrelation = (String) message.getMessageProperties()
-							.getHeaders().get(RabbitTemplate.this.correlationKey);
-				}
-				pendingReply.setSavedCorrelation(savedCorrelation);
-				if (RabbitTemplate.this.correlationKey == null) { // using standard correlationId property
-					message.getMessageProperties().setCorrelationId(messageTag
-							.getBytes(RabbitTemplate.this.encoding));
-				}
-				else {
-					message.getMessageProperties().setHeader(
-							RabbitTemplate.this.correlationKey, messageTag);
-				}
+				return doSendAndReceiveWithCorrelation(channel, exchange, routingKey, message,
+						RabbitTemplate.this.replyQueue.getName());
+			}
+		});
+	}
 
+	/**
+	 * Send a request and receive the reply using the broker's direct reply-to feature. The
+	 * request is sent on an idle channel owned by this template, which has a long-lived
+	 * consumer of the {@code amq.rabbitmq.reply-to} pseudo queue; a new channel is
+	 * created (and its consumer started) only when all are in use. These channels are never
+	 * returned to the connection factory's cache, so no other user inherits the consumer.
+	 *
+	 * @param exchange the exchange name
+	 * @param routingKey the routing key
+	 * @param message the message to send
+	 * @return the message that is received in reply
+	 * @since 1.4
+	 */
+	protected Message doSendAndReceiveWithDirect(final String exchange, final String routingKey, final Message message) {
+		return this.execute(new ChannelCallback<Message>() {
+
+			@Override
+			public Message doInRabbit(Channel channel) throws Exception {
+				return doSendAndReceiveWithCorrelation(channel, exchange, routingKey, message,
+						Address.AMQ_RABBITMQ_REPLY_TO);
+			}
+		}, true);
+	}
+
+	private Message doSendAndReceiveWithCorrelation(Channel channel, String exchange, String routingKey,
+			Message message, String replyTo) throws Exception {
+		PendingReply pendingReply = new PendingReply();
+		String messageTag = this.correlationIdGenerator.generateCorrelationId();
+		Object replyKey;
+		// Save any existing replyTo and correlation data
+		String savedReplyTo = message.getMessageProperties().getReplyTo();
+		pendingReply.setSavedReplyTo(savedReplyTo);
+		if (StringUtils.hasLength(savedReplyTo) && logger.isDebugEnabled()) {
+			logger.debug("Replacing replyTo header:" + savedReplyTo
+					+ " in favor of template's reply-to:" + replyTo);
+		}
+		message.getMessageProperties().setReplyTo(replyTo);
+		String savedCorrelation = null;
+		if (this.correlationKey == null) { // using standard correlationId property
+			byte[] correlationId = message.getMessageProperties().getCorrelationId();
+			if (correlationId != null) {
+				savedCorrelation = new String(correlationId, this.encoding);
+			}
+		}
+		else {
+			savedCorrelation = (String) message.getMessageProperties()
+					.getHeaders().get(this.correlationKey);
+		}
+		pendingReply.setSavedCorrelation(savedCorrelation);
+		if (this.correlationKey == null) { // using standard correlationId property
+			byte[] correlationId = messageTag.getBytes(this.encoding);
+			message.getMessageProperties().setCorrelationId(correlationId);
+			replyKey = new CorrelationKey(correlationId);
+		}
+		else {
+			message.getMessageProperties().setHeader(
+					this.correlationKey, messageTag);
+			replyKey = messageTag;
+		}
+		this.replyHolder.put(replyKey, pendingReply);
+
+		if (logger.isDebugEnabled()) {
+			logger.debug("Sending message with tag " + messageTag);
+		}
+		doSend(channel, exchange, routingKey, message, null);
+		LinkedBlockingQueue<Message> replyHandoff = pendingReply.getQueue();
+		Message reply = (this.replyTimeout < 0) ? replyHandoff.take() : replyHandoff.poll(this.replyTimeout,
+				TimeUnit.MILLISECONDS);
+		this.replyHolder.remove(replyKey);
+		return reply;
+	}
+
+	private boolean isUsingDirectReplyTo() {
+		if (this.useTemporaryReplyQueues) {
+			return false;
+		}
+		Boolean usingDirectReplyTo = this.usingDirectReplyTo;
+		if (usingDirectReplyTo == null) {
+			usingDirectReplyTo = evaluateDirectReplyTo();
+			this.usingDirectReplyTo = usingDirectReplyTo;
+		}
+		return usingDirectReplyTo;
+	}
+
+	private boolean evaluateDirectReplyTo() {
+		Connection connection = getConnectionFactory().createConnection();
+		Channel channel = null;
+		try {
+			channel = connection.createChannel(false);
+			channel.queueDeclarePassive(Address.AMQ_RABBITMQ_REPLY_TO);
+			if (logger.isDebugEnabled()) {
+				logger.debug("Using direct reply-to for replies");
+			}
+			return true;
+		}
+		catch (Exception e) {
+			if (logger.isDebugEnabled()) {
+				logger.debug("Broker does not support direct reply-to, using temporary reply queues: "
+						+ e.getMessage());
+			}
+			return false;
+		}
+		finally {
+			RabbitUtils.closeChannel(channel);
+			RabbitUtils.closeConnection(connection);
+		}
+	}
+
+	private Channel obtainDirectReplyToChannel() {
+		Channel channel = this.directReplyToChannels.poll();
+		while (channel != null && !channel.isOpen()) {
+			closeDirectReplyToChannel(channel);
+			channel = this.directReplyToChannels.poll();
+		}
+		if (channel == null) {
+			channel = getConnectionFactory().createConnection().createChannel(isChannelTransacted());
+			try {
+				channel.basicConsume(Address.AMQ_RABBITMQ_REPLY_TO, true, new DirectReplyToConsumer(channel));
+			}
+			catch (IOException e) {
+				closeDirectReplyToChannel(channel);
+				throw RabbitExceptionTranslator.convertRabbitAccessException(e);
+			}
+			if (logger.isDebugEnabled()) {
+				logger.debug("Started direct reply-to consumer on " + channel);
+			}
+		}
+		return channel;
+	}
+
+	/**
+	 * Physically close a channel owned by this template; a cached channel's target is
+	 * closed first so that the connection factory discards it instead of caching it with
+	 * the reply consumer.
+	 */
+	private void closeDirectReplyToChannel(Channel channel) {
+		if (channel instanceof ChannelProxy) {
+			RabbitUtils.closeChannel(((ChannelProxy) channel).getTargetChannel());
+			try {
+				channel.close();
+			}
+			catch (Exception e) {
 				if (logger.isDebugEnabled()) {
-					logger.debug("Sending message with tag " + messageTag);
+					logger.debug("Failed to close " + channel, e);
 				}
-				doSend(channel, exchange, routingKey, message, null);
-				LinkedBlockingQueue<Message> replyHandoff = pendingReply.getQueue();
-				Message reply = (replyTimeout < 0) ? replyHandoff.take() : replyHandoff.poll(replyTimeout,
-						TimeUnit.MILLISECONDS);
-				RabbitTemplate.this.replyHolder.remove(messageTag);
-				return reply;
 			}
-		});
+		}
+		else {
+			RabbitUtils.closeChannel(channel);
+		}
 	}
 
 	@Override
 	public <T> T execute(final ChannelCallback<T> action) {
+		return execute(action, false);
+	}
+
+	private <T> T execute(final ChannelCallback<T> action, final boolean directReplyTo) {
 		if (this.retryTemplate != null) {
 			try {
 				return this.retryTemplate.execute(new RetryCallback<T, Exception>() {
 
 					@Override
 					public T doWithRetry(RetryContext context) throws Exception {
-						return RabbitTemplate.this.doExecute(action);
+						return directReplyTo ? RabbitTemplate.this.doExecuteOnDirectReplyToChannel(action)
+								: RabbitTemplate.this.doExecute(action);
 					}
 
 				});
@@ -817,12 +1561,15 @@ public class RabbitTemplate extends RabbitAccessor implements RabbitOperations,
 			}
 		}
 		else {
-			return this.doExecute(action);
+			return directReplyTo ? this.doExecuteOnDirectReplyToChannel(action) : this.doExecute(action);
 		}
 	}
 
 	private <T> T doExecute(ChannelCallback<T> action) {
 		Assert.notNull(action, "Callback object must not be null");
+		if (this.channelPinning && !isChannelTransacted()) {
+			return doExecuteOnPinnedChannel(action);
+		}
 		RabbitResourceHolder resourceHolder = getTransactionalResourceHolder();
 		Channel channel = resourceHolder.getChannel();
 		if (this.confirmCallback != null || this.returnCallback != null) {
@@ -845,6 +1592,61 @@ public class RabbitTemplate extends RabbitAccessor implements RabbitOperations,
 		}
 	}
 
+	private <T> T doExecuteOnDirectReplyToChannel(ChannelCallback<T> action) {
+		Channel channel = obtainDirectReplyToChannel();
+		if (this.confirmCallback != null || this.returnCallback != null) {
+			addListener(channel);
+		}
+		boolean reusable = false;
+		try {
+			T result = action.doInRabbit(channel);
+			reusable = true;
+			return result;
+		}
+		catch (Exception ex) {
+			throw convertRabbitAccessException(ex);
+		}
+		finally {
+			if (reusable && channel.isOpen()) {
+				this.directReplyToChannels.offer(channel);
+			}
+			else {
+				closeDirectReplyToChannel(channel);
+			}
+		}
+	}
+
+	private <T> T doExecuteOnPinnedChannel(ChannelCallback<T> action) {
+		Channel channel = this.pinnedChannel.get();
+		if (channel == null || !channel.isOpen()) {
+			if (channel != null) {
+				RabbitUtils.closeChannel(channel);
+			}
+			channel = getConnectionFactory().createConnection().createChannel(false);
+			if (this.maxInFlightConfirms > 0 && channel instanceof PublisherCallbackChannel) {
+				((PublisherCallbackChannel) channel).setConfirmWindow(this.maxInFlightConfirms,
+						this.confirmWindowTimeout);
+			}
+			this.pinnedChannel.set(channel);
+			if (logger.isDebugEnabled()) {
+				logger.debug("Pinned " + channel + " to " + Thread.currentThread().getName());
+			}
+		}
+		if (this.confirmCallback != null || this.returnCallback != null) {
+			addListener(channel);
+		}
+		try {
+			return action.doInRabbit(channel);
+		}
+		catch (Exception ex) {
+			if (!channel.isOpen()) {
+				this.pinnedChannel.remove();
+				RabbitUtils.closeChannel(channel);
+			}
+			throw convertRabbitAccessException(ex);
+		}
+	}
+
 	/**
 	 * Send the given message to the specified exchange.
 	 *
@@ -857,6 +1659,42 @@ public class RabbitTemplate extends RabbitAccessor implements RabbitOperations,
 	 */
 	protected void doSend(Channel channel, String exchange, String routingKey, Message message,
 			CorrelationData correlationData) throws Exception {
+		doSend(channel, exchange, routingKey, message, correlationData, null);
+	}
+
+	private void doSend(Channel channel, String exchange, String routingKey, Message message,
+			CorrelationData correlationData, ConfirmFuture future) throws Exception {
+		publish(channel, exchange, routingKey, message, correlationData, future);
+		// Check if commit needed
+		if (isChannelLocallyTransacted(channel)) {
+			// Transacted channel created by this template -> commit.
+			RabbitUtils.commitIfNecessary(channel);
+		}
+	}
+
+	/**
+	 * Send the messages on the channel; a locally transacted channel is committed
+	 * once, after all the messages have been published.
+	 *
+	 * @param channel The RabbitMQ Channel to operate within.
+	 * @param exchange The name of the RabbitMQ exchange to send to.
+	 * @param routingKey The routing key.
+	 * @param messages The Messages to send.
+	 * @throws Exception If thrown by RabbitMQ API methods
+	 * @since 1.4
+	 */
+	protected void doSendAll(Channel channel, String exchange, String routingKey, Collection<Message> messages)
+			throws Exception {
+		for (Message message : messages) {
+			publish(channel, exchange, routingKey, message, null, null);
+		}
+		if (isChannelLocallyTransacted(channel)) {
+			RabbitUtils.commitIfNecessary(channel);
+		}
+	}
+
+	private void publish(Channel channel, String exchange, String routingKey, Message message,
+			CorrelationData correlationData, final ConfirmFuture future) throws Exception {
 		if (logger.isDebugEnabled()) {
 			logger.debug("Publishing message on exchange [" + exchange + "], routingKey = [" + routingKey + "]");
 		}
@@ -870,26 +1708,65 @@ public class RabbitTemplate extends RabbitAccessor implements RabbitOperations,
 			// try to send to configured routing key
 			routingKey = this.routingKey;
 		}
-		if (this.confirmCallback != null && channel instanceof PublisherCallbackChannel) {
-			PublisherCallbackChannel publisherCallbackChannel = (PublisherCallbackChannel) channel;
-			publisherCallbackChannel.addPendingConfirm(this, channel.getNextPublishSeqNo(),
-					new PendingConfirm(correlationData, System.currentTimeMillis()));
-		}
-		boolean mandatory = this.returnCallback != null && this.mandatory;
+		boolean mandatory = (this.returnCallback != null || future != null) && this.mandatory;
 		MessageProperties messageProperties = message.getMessageProperties();
+		String returnCorrelation = null;
 		if (mandatory) {
 			messageProperties.getHeaders().put(PublisherCallbackChannel.RETURN_CORRELATION, this.uuid);
+			if (future != null) {
+				returnCorrelation = Long.toString(this.returnCorrelation.incrementAndGet());
+				messageProperties.getHeaders().put(PublisherCallbackChannel.RETURNED_CONFIRM_CORRELATION,
+						returnCorrelation);
+			}
 		}
 		BasicProperties convertedMessageProperties = this.messagePropertiesConverter
 				.fromMessageProperties(messageProperties, encoding);
-		channel.basicPublish(exchange, routingKey, mandatory, convertedMessageProperties, message.getBody());
-		// Check if commit needed
-		if (isChannelLocallyTransacted(channel)) {
-			// Transacted channel created by this template -> commit.
-			RabbitUtils.commitIfNecessary(channel);
+		PublisherCallbackChannel publisherCallbackChannel = null;
+		long seq = 0;
+		if ((future != null || this.confirmCallback != null) && channel instanceof PublisherCallbackChannel) {
+			publisherCallbackChannel = (PublisherCallbackChannel) channel;
+			seq = channel.getNextPublishSeqNo();
+			publisherCallbackChannel.addPendingConfirm(this, seq,
+					new PendingConfirm(correlationData, System.currentTimeMillis(), future));
+		}
+		if (returnCorrelation != null) {
+			addReturnableConfirm(returnCorrelation, future);
+		}
+		try {
+			channel.basicPublish(exchange, routingKey, mandatory, convertedMessageProperties, message.getBody());
+		}
+		catch (Exception e) {
+			// the confirm will never arrive; free the sequence number for the next publish
+			if (publisherCallbackChannel != null) {
+				publisherCallbackChannel.discardPendingConfirm(this, seq);
+			}
+			if (returnCorrelation != null) {
+				this.returnableConfirms.remove(returnCorrelation);
+			}
+			if (future != null) {
+				future.fail(e);
+			}
+			throw e;
 		}
 	}
 
+	private void addReturnableConfirm(final String returnCorrelation, ConfirmFuture future) {
+		this.returnableConfirms.put(returnCorrelation, future);
+		future.addCallback(new ListenableFutureCallback<Confirm>() {
+
+			@Override
+			public void onSuccess(Confirm result) {
+				RabbitTemplate.this.returnableConfirms.remove(returnCorrelation);
+			}
+
+			@Override
+			public void onFailure(Throwable t) {
+				RabbitTemplate.this.returnableConfirms.remove(returnCorrelation);
+			}
+
+		});
+	}
+
 	/**
 	 * Check whether the given Channel is locally transacted, that is, whether its transaction is managed by this
 	 * template's Channel handling and not by an external transaction coordinator.
@@ -971,6 +1848,26 @@ public class RabbitTemplate extends RabbitAccessor implements RabbitOperations,
 		}
 	}
 
+	/**
+	 * Stop any consumers started for {@link #setReceivePrefetch(int) prefetching}
+	 * receives; unreceived messages are requeued. Close the channels used for direct
+	 * reply-to.
+	 */
+	@Override
+	public void destroy() {
+		synchronized (this.pollingConsumers) {
+			for (PollingConsumer consumer : this.pollingConsumers.values()) {
+				consumer.stop();
+			}
+			this.pollingConsumers.clear();
+		}
+		Channel channel = this.directReplyToChannels.poll();
+		while (channel != null) {
+			closeDirectReplyToChannel(channel);
+			channel = this.directReplyToChannels.poll();
+		}
+	}
+
 	@Override
 	public void handleConfirm(PendingConfirm pendingConfirm, boolean ack) {
 		if (this.confirmCallback != null) {
@@ -992,7 +1889,10 @@ public class RabbitTemplate extends RabbitAccessor implements RabbitOperations,
             byte[] body)
         throws IOException
  {
-		if (this.returnCallback == null) {
+		Object returnCorrelation = properties.getHeaders().remove(PublisherCallbackChannel.RETURNED_CONFIRM_CORRELATION);
+		ConfirmFuture future = returnCorrelation == null ? null
+				: this.returnableConfirms.remove(returnCorrelation.toString());
+		if (this.returnCallback == null && future == null) {
 			if (logger.isWarnEnabled()) {
 				logger.warn("Returned message but no callback available");
 			}
@@ -1002,8 +1902,13 @@ public class RabbitTemplate extends RabbitAccessor implements RabbitOperations,
 			MessageProperties messageProperties = messagePropertiesConverter.toMessageProperties(
 					properties, null, this.encoding);
 			Message returnedMessage = new Message(body, messageProperties);
-			this.returnCallback.returnedMessage(returnedMessage,
-					replyCode, replyText, exchange, routingKey);
+			if (future != null) {
+				future.setReturnedMessage(returnedMessage);
+			}
+			if (this.returnCallback != null) {
+				this.returnCallback.returnedMessage(returnedMessage,
+						replyCode, replyText, exchange, routingKey);
+			}
 		}
 	}
 
@@ -1014,7 +1919,7 @@ public class RabbitTemplate extends RabbitAccessor implements RabbitOperations,
 
 	@Override
 	public boolean isReturnListener() {
-		return this.returnCallback != null;
+		return this.returnCallback != null || this.mandatory;
 	}
 
 	@Override
@@ -1034,12 +1939,13 @@ public class RabbitTemplate extends RabbitAccessor implements RabbitOperations,
 	@Override
 	public void onMessage(Message message) {
 		try {
-			String messageTag;
+			Object messageTag;
 			if (this.correlationKey == null) { // using standard correlationId property
-				messageTag = new String(message.getMessageProperties().getCorrelationId(), this.encoding);
+				byte[] correlationId = message.getMessageProperties().getCorrelationId();
+				messageTag = correlationId == null ? null : new CorrelationKey(correlationId);
 			}
 			else {
-				messageTag = (String) message.getMessageProperties()
+				messageTag = message.getMessageProperties()
 						.getHeaders().get(this.correlationKey);
 			}
 			if (messageTag == null) {
@@ -1092,6 +1998,69 @@ public class RabbitTemplate extends RabbitAccessor implements RabbitOperations,
 		}
 	}
 
+	/**
+	 * Long-lived consumer of the direct reply-to pseudo queue on a channel owned by the
+	 * template; replies are handed to
+	 * {@link RabbitTemplate#onMessage(Message)} for correlation.
+	 */
+	private class DirectReplyToConsumer extends DefaultConsumer {
+
+		private DirectReplyToConsumer(Channel channel) {
+			super(channel);
+		}
+
+		@Override
+		public void handleDelivery(String consumerTag, Envelope envelope, AMQP.BasicProperties properties,
+				byte[] body) throws IOException {
+			MessageProperties messageProperties = messagePropertiesConverter.toMessageProperties(
+					properties, envelope, encoding);
+			Message reply = new Message(body, messageProperties);
+			if (logger.isTraceEnabled()) {
+				logger.trace("Message received " + reply);
+			}
+			try {
+				onMessage(reply);
+			}
+			catch (RuntimeException e) {
+				logger.error("Failed to deliver reply " + reply, e);
+			}
+		}
+
+	}
+
+	/**
+	 * A reply holder key for a correlationId property, so replies can be correlated
+	 * without decoding the id.
+	 */
+	private static final class CorrelationKey {
+
+		private final byte[] correlationId;
+
+		private final int hashCode;
+
+		private CorrelationKey(byte[] correlationId) {
+			this.correlationId = correlationId;
+			this.hashCode = Arrays.hashCode(correlationId);
+		}
+
+		@Override
+		public int hashCode() {
+			return this.hashCode;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			return obj == this || (obj instanceof CorrelationKey
+					&& Arrays.equals(this.correlationId, ((CorrelationKey) obj).correlationId));
+		}
+
+		@Override
+		public String toString() {
+			return new String(this.correlationId);
+		}
+
+	}
+
 	private static class PendingReply {
 
 		private volatile String savedReplyTo;
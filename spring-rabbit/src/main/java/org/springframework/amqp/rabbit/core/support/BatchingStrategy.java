@@ -0,0 +1,77 @@
+/*
+ * Copyright 2014 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+
+package org.springframework.amqp.rabbit.core.support;
+
+import java.util.Collection;
+import java.util.Date;
+import java.util.List;
+
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.core.MessageProperties;
+
+/**
+ * Strategy for batching messages. The batching methods are never called concurrently; the
+ * de-batching methods are called by listener container threads and must be thread-safe.
+ * <p>
+ * <b>Experimental - APIs may change.</b>
+ *
+ * @author Gary Russell
+ * @since 1.4
+ * @see org.springframework.amqp.rabbit.core.BatchingRabbitTemplate
+ *
+ */
+public interface BatchingStrategy {
+
+	/**
+	 * Add a message to the batch and optionally release the batch.
+	 * @param exchange The exchange.
+	 * @param routingKey The routing key.
+	 * @param message The message.
+	 * @return The batch if ready to be released, or null.
+	 */
+	MessageBatch addToBatch(String exchange, String routingKey, Message message);
+
+	/**
+	 * @return the date the next scheduled release should run, or null if no data to
+	 * release.
+	 */
+	Date nextRelease();
+
+	/**
+	 * Release batches whose release time (see {@link #nextRelease()}) has passed.
+	 * @return The batches, if any.
+	 */
+	Collection<MessageBatch> releaseExpiredBatches();
+
+	/**
+	 * Release all batches.
+	 * @return The batches, if any.
+	 */
+	Collection<MessageBatch> releaseBatches();
+
+	/**
+	 * Return true if this strategy can decode a batch of messages from a message body.
+	 * @param properties the message properties.
+	 * @return true if we can decode the message.
+	 */
+	boolean canDebatch(MessageProperties properties);
+
+	/**
+	 * Decode a message into fragments.
+	 * @param message the message.
+	 * @return the fragments.
+	 */
+	List<Message> deBatch(Message message);
+
+}
@@ -0,0 +1,198 @@
+/*
+ * Copyright 2014 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+
+package org.springframework.amqp.rabbit.core.support;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.springframework.amqp.AmqpRejectAndDontRequeueException;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.core.MessageProperties;
+import org.springframework.util.Assert;
+
+/**
+ * A simple batching strategy with a batch size, a size limit and a timeout. Uses a
+ * 4 byte length header before each message body.
+ * <p>
+ * A separate batch is accumulated for each exchange/routing key pair. A batch is
+ * released when it contains {@code batchSize} messages, when adding a message would
+ * make its body exceed {@code bufferLimit} bytes, or {@code timeout} ms after its first
+ * message was added. A batch containing a single message is released unchanged.
+ * <p>
+ * The properties of the first message in a batch are used for the batch; when the batch
+ * is decoded, each fragment shares the properties of the batch message.
+ *
+ * @author Gary Russell
+ * @since 1.4
+ *
+ */
+public class SimpleBatchingStrategy implements BatchingStrategy {
+
+	private static final int LENGTH_HEADER = 4;
+
+	private final int batchSize;
+
+	private final int bufferLimit;
+
+	private final long timeout;
+
+	private final Map<List<String>, Batch> batches = new LinkedHashMap<List<String>, Batch>();
+
+	/**
+	 * @param batchSize the batch size.
+	 * @param bufferLimit the max buffer size; could trigger a short batch.
+	 * @param timeout the batch timeout (ms).
+	 */
+	public SimpleBatchingStrategy(int batchSize, int bufferLimit, long timeout) {
+		Assert.isTrue(batchSize > 0, "'batchSize' must be > 0");
+		Assert.isTrue(bufferLimit > 0, "'bufferLimit' must be > 0");
+		Assert.isTrue(timeout > 0, "'timeout' must be > 0");
+		this.batchSize = batchSize;
+		this.bufferLimit = bufferLimit;
+		this.timeout = timeout;
+	}
+
+	@Override
+	public MessageBatch addToBatch(String exchange, String routingKey, Message message) {
+		List<String> key = Arrays.asList(exchange, routingKey);
+		Batch batch = this.batches.get(key);
+		MessageBatch released = null;
+		int size = message.getBody().length + LENGTH_HEADER;
+		if (batch != null && batch.size + size > this.bufferLimit) {
+			this.batches.remove(key);
+			released = batch.release();
+			batch = null;
+		}
+		if (batch == null) {
+			batch = new Batch(exchange, routingKey, System.currentTimeMillis() + this.timeout);
+			this.batches.put(key, batch);
+		}
+		batch.messages.add(message);
+		batch.size += size;
+		if (released == null && batch.messages.size() >= this.batchSize) {
+			this.batches.remove(key);
+			released = batch.release();
+		}
+		return released;
+	}
+
+	@Override
+	public Date nextRelease() {
+		long next = Long.MAX_VALUE;
+		for (Batch batch : this.batches.values()) {
+			next = Math.min(next, batch.releaseTime);
+		}
+		return next == Long.MAX_VALUE ? null : new Date(next);
+	}
+
+	@Override
+	public Collection<MessageBatch> releaseExpiredBatches() {
+		return release(System.currentTimeMillis());
+	}
+
+	@Override
+	public Collection<MessageBatch> releaseBatches() {
+		return release(Long.MAX_VALUE);
+	}
+
+	private Collection<MessageBatch> release(long now) {
+		if (this.batches.isEmpty()) {
+			return Collections.emptyList();
+		}
+		List<MessageBatch> released = new ArrayList<MessageBatch>();
+		Iterator<Batch> iterator = this.batches.values().iterator();
+		while (iterator.hasNext()) {
+			Batch batch = iterator.next();
+			if (batch.releaseTime <= now) {
+				iterator.remove();
+				released.add(batch.release());
+			}
+		}
+		return released;
+	}
+
+	@Override
+	public boolean canDebatch(MessageProperties properties) {
+		return MessageProperties.BATCH_FORMAT_LENGTH_HEADER4.equals(
+				properties.getHeaders().get(MessageProperties.SPRING_BATCH_FORMAT));
+	}
+
+	/**
+	 * Decode a batch created by this strategy; a malformed batch is rejected (and not
+	 * requeued).
+	 * @param message the message.
+	 * @return the fragments.
+	 */
+	@Override
+	public List<Message> deBatch(Message message) {
+		ByteBuffer byteBuffer = ByteBuffer.wrap(message.getBody());
+		MessageProperties messageProperties = message.getMessageProperties();
+		messageProperties.getHeaders().remove(MessageProperties.SPRING_BATCH_FORMAT);
+		List<Message> fragments = new ArrayList<Message>();
+		while (byteBuffer.hasRemaining()) {
+			int length = byteBuffer.remaining() < LENGTH_HEADER ? -1 : byteBuffer.getInt();
+			if (length < 0 || length > byteBuffer.remaining()) {
+				throw new AmqpRejectAndDontRequeueException("Bad batched message received");
+			}
+			byte[] body = new byte[length];
+			byteBuffer.get(body);
+			fragments.add(new Message(body, messageProperties));
+		}
+		return fragments;
+	}
+
+	private static final class Batch {
+
+		private final String exchange;
+
+		private final String routingKey;
+
+		private final long releaseTime;
+
+		private final List<Message> messages = new ArrayList<Message>();
+
+		private int size;
+
+		private Batch(String exchange, String routingKey, long releaseTime) {
+			this.exchange = exchange;
+			this.routingKey = routingKey;
+			this.releaseTime = releaseTime;
+		}
+
+		private MessageBatch release() {
+			if (this.messages.size() == 1) {
+				return new MessageBatch(this.exchange, this.routingKey, this.messages.get(0));
+			}
+			ByteBuffer byteBuffer = ByteBuffer.allocate(this.size);
+			for (Message message : this.messages) {
+				byteBuffer.putInt(message.getBody().length).put(message.getBody());
+			}
+			MessageProperties messageProperties = this.messages.get(0).getMessageProperties();
+			messageProperties.getHeaders().put(MessageProperties.SPRING_BATCH_FORMAT,
+					MessageProperties.BATCH_FORMAT_LENGTH_HEADER4);
+			return new MessageBatch(this.exchange, this.routingKey,
+					new Message(byteBuffer.array(), messageProperties));
+		}
+
+	}
+
+}
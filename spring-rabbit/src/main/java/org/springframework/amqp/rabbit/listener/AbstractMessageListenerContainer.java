@@ -21,6 +21,7 @@ import java.util.Set;
 import java.util.concurrent.CopyOnWriteArrayList;
 
 import org.springframework.amqp.core.AcknowledgeMode;
+import org.springframework.amqp.core.BatchMessageListener;
 import org.springframework.amqp.core.Message;
 import org.springframework.amqp.core.MessageListener;
 import org.springframework.amqp.core.Queue;
@@ -29,7 +30,10 @@ import org.springframework.amqp.rabbit.connection.ConnectionFactoryUtils;
 import org.springframework.amqp.rabbit.connection.RabbitAccessor;
 import org.springframework.amqp.rabbit.connection.RabbitResourceHolder;
 import org.springframework.amqp.rabbit.connection.RabbitUtils;
+import org.springframework.amqp.rabbit.core.ChannelAwareBatchMessageListener;
 import org.springframework.amqp.rabbit.core.ChannelAwareMessageListener;
+import org.springframework.amqp.rabbit.core.support.BatchingStrategy;
+import org.springframework.amqp.rabbit.core.support.SimpleBatchingStrategy;
 import org.springframework.beans.factory.BeanNameAware;
 import org.springframework.beans.factory.DisposableBean;
 import org.springframework.context.ApplicationContext;
@@ -71,6 +75,10 @@ public abstract class AbstractMessageListenerContainer extends RabbitAccessor
 
 	private volatile Object messageListener;
 
+	private volatile boolean deBatchingEnabled = true;
+
+	private volatile BatchingStrategy batchingStrategy = new SimpleBatchingStrategy(1, Integer.MAX_VALUE, Long.MAX_VALUE);
+
 	private volatile AcknowledgeMode acknowledgeMode = AcknowledgeMode.AUTO;
 
 	private boolean initialized;
@@ -226,6 +234,30 @@ public abstract class AbstractMessageListenerContainer extends RabbitAccessor
 		this.exposeListenerChannel = exposeListenerChannel;
 	}
 
+	/**
+	 * Determine whether or not the container should de-batch batched messages (true) or
+	 * call the listener with the batch (false). Default: true.
+	 *
+	 * @param deBatchingEnabled whether or not to disable de-batching of messages.
+	 * @since 1.4
+	 * @see org.springframework.amqp.rabbit.core.BatchingRabbitTemplate
+	 */
+	public void setDeBatchingEnabled(boolean deBatchingEnabled) {
+		this.deBatchingEnabled = deBatchingEnabled;
+	}
+
+	/**
+	 * Set the {@link BatchingStrategy} used to de-batch messages; it must be able to decode
+	 * the batches created by the sending template. Default {@link SimpleBatchingStrategy}.
+	 *
+	 * @param batchingStrategy the strategy.
+	 * @since 1.4
+	 */
+	public void setBatchingStrategy(BatchingStrategy batchingStrategy) {
+		Assert.notNull(batchingStrategy, "'batchingStrategy' cannot be null");
+		this.batchingStrategy = batchingStrategy;
+	}
+
 	/**
 	 * Set the message listener implementation to register. This can be either a Spring {@link MessageListener} object
 	 * or a Spring {@link ChannelAwareMessageListener} object.
@@ -556,7 +588,14 @@ public abstract class AbstractMessageListenerContainer extends RabbitAccessor
 			throw new MessageRejectedWhileStoppingException();
 		}
 		try {
-			invokeListener(channel, message);
+			if (this.deBatchingEnabled && this.batchingStrategy.canDebatch(message.getMessageProperties())) {
+				for (Message fragment : this.batchingStrategy.deBatch(message)) {
+					invokeListener(channel, fragment);
+				}
+			}
+			else {
+				invokeListener(channel, message);
+			}
 		} catch (Throwable ex) {
 			handleListenerException(ex);
 			throw ex;
@@ -599,6 +638,88 @@ public abstract class AbstractMessageListenerContainer extends RabbitAccessor
 		}
 	}
 
+	/**
+	 * Execute the specified batch listener, committing or rolling back the transaction afterwards (if necessary).
+	 *
+	 * @param channel the Rabbit Channel to operate on
+	 * @param messages the received Rabbit Messages
+	 * @throws Throwable Any Throwable.
+	 * @since 1.4
+	 *
+	 * @see #invokeListener(Channel, List)
+	 * @see #handleListenerException
+	 */
+	protected void executeListener(Channel channel, List<Message> messages) throws Throwable {
+		if (!isRunning()) {
+			if (logger.isWarnEnabled()) {
+				logger.warn("Rejecting received messages because the listener container has been stopped: "
+						+ messages.size() + " messages");
+			}
+			throw new MessageRejectedWhileStoppingException();
+		}
+		try {
+			invokeListener(channel, this.deBatchingEnabled ? deBatch(messages) : messages);
+		} catch (Throwable ex) {
+			handleListenerException(ex);
+			throw ex;
+		}
+	}
+
+	private List<Message> deBatch(List<Message> messages) {
+		List<Message> deBatched = messages;
+		for (int i = 0; i < messages.size(); i++) {
+			Message message = messages.get(i);
+			if (this.batchingStrategy.canDebatch(message.getMessageProperties())) {
+				if (deBatched == messages) {
+					deBatched = new ArrayList<Message>(messages.subList(0, i));
+				}
+				deBatched.addAll(this.batchingStrategy.deBatch(message));
+			}
+			else if (deBatched != messages) {
+				deBatched.add(message);
+			}
+		}
+		return deBatched;
+	}
+
+	/**
+	 * Invoke the specified batch listener: either as standard {@link BatchMessageListener} or (preferably) as
+	 * {@link ChannelAwareBatchMessageListener}.
+	 * @param channel the Rabbit Channel to operate on
+	 * @param messages the received Rabbit Messages
+	 * @throws Exception if thrown by Rabbit API methods
+	 * @since 1.4
+	 * @see #setMessageListener
+	 */
+	protected void invokeListener(Channel channel, List<Message> messages) throws Exception {
+		Object listener = getMessageListener();
+		if (listener instanceof ChannelAwareBatchMessageListener) {
+			doInvokeListener((ChannelAwareBatchMessageListener) listener, channel, messages);
+		} else if (listener instanceof BatchMessageListener) {
+			boolean bindChannel = isExposeListenerChannel() && isChannelLocallyTransacted(channel);
+			if (bindChannel) {
+				RabbitResourceHolder resourceHolder = new RabbitResourceHolder(channel, false);
+				resourceHolder.setSynchronizedWithTransaction(true);
+				TransactionSynchronizationManager.bindResource(this.getConnectionFactory(),
+						resourceHolder);
+			}
+			try {
+				doInvokeListener((BatchMessageListener) listener, messages);
+			}
+			finally {
+				if (bindChannel) {
+					// unbind if we bound
+					TransactionSynchronizationManager.unbindResource(this.getConnectionFactory());
+				}
+			}
+		} else if (listener != null) {
+			throw new IllegalArgumentException("Only BatchMessageListener and ChannelAwareBatchMessageListener "
+					+ "supported for batches: " + listener);
+		} else {
+			throw new IllegalStateException("No message listener specified - see property 'messageListener'");
+		}
+	}
+
 	/**
 	 * Invoke the specified listener as Spring ChannelAwareMessageListener, exposing a new Rabbit Session (potentially
 	 * with its own transaction) to the listener if demanded.
@@ -611,7 +732,45 @@ public abstract class AbstractMessageListenerContainer extends RabbitAccessor
 	 * @see ChannelAwareMessageListener
 	 * @see #setExposeListenerChannel(boolean)
 	 */
-	protected void doInvokeListener(ChannelAwareMessageListener listener, Channel channel, Message message)
+	protected void doInvokeListener(final ChannelAwareMessageListener listener, Channel channel,
+			final Message message) throws Exception {
+
+		doInvokeWithExposedChannel(new ChannelAwareInvocation() {
+
+			@Override
+			public void invoke(Channel channelToUse) throws Exception {
+				listener.onMessage(message, channelToUse);
+			}
+
+		}, channel, message);
+	}
+
+	/**
+	 * Invoke the specified batch listener as a {@link ChannelAwareBatchMessageListener}, exposing
+	 * the channel in the same way as {@link #doInvokeListener(ChannelAwareMessageListener, Channel, Message)}.
+	 * @param listener the listener to invoke
+	 * @param channel the Rabbit Channel to operate on
+	 * @param messages the received Rabbit Messages
+	 * @throws Exception if thrown by Rabbit API methods or listener itself.
+	 * <p>
+	 * Exception thrown from listener will be wrapped to {@link ListenerExecutionFailedException};
+	 * the last message of the batch is reported as the failed message.
+	 * @since 1.4
+	 */
+	protected void doInvokeListener(final ChannelAwareBatchMessageListener listener, Channel channel,
+			final List<Message> messages) throws Exception {
+
+		doInvokeWithExposedChannel(new ChannelAwareInvocation() {
+
+			@Override
+			public void invoke(Channel channelToUse) throws Exception {
+				listener.onMessageBatch(messages, channelToUse);
+			}
+
+		}, channel, lastMessage(messages));
+	}
+
+	private void doInvokeWithExposedChannel(ChannelAwareInvocation invocation, Channel channel, Message message)
 			throws Exception {
 
 		RabbitResourceHolder resourceHolder = null;
@@ -647,7 +806,7 @@ public abstract class AbstractMessageListenerContainer extends RabbitAccessor
 			}
 			// Actually invoke the message listener...
 			try {
-				listener.onMessage(message, channelToUse);
+				invocation.invoke(channelToUse);
 			}
 			catch (Exception e) {
 				throw wrapToListenerExecutionFailedExceptionIfNeeded(e, message);
@@ -697,6 +856,26 @@ public abstract class AbstractMessageListenerContainer extends RabbitAccessor
 		}
 	}
 
+	/**
+	 * Invoke the specified listener as a {@link BatchMessageListener}.
+	 * <p>
+	 * Exception thrown from listener will be wrapped to {@link ListenerExecutionFailedException};
+	 * the last message of the batch is reported as the failed message.
+	 *
+	 * @param listener the listener to invoke
+	 * @param messages the received Rabbit Messages
+	 * @throws Exception Any Exception.
+	 * @since 1.4
+	 */
+	protected void doInvokeListener(BatchMessageListener listener, List<Message> messages) throws Exception {
+		try {
+			listener.onMessageBatch(messages);
+		}
+		catch (Exception e) {
+			throw wrapToListenerExecutionFailedExceptionIfNeeded(e, lastMessage(messages));
+		}
+	}
+
 	/**
 	 * Check whether the given Channel is locally transacted, that is, whether its transaction is managed by this
 	 * listener container's Channel handling and not by an external transaction coordinator.
@@ -759,4 +938,18 @@ public abstract class AbstractMessageListenerContainer extends RabbitAccessor
 		}
 		return e;
 	}
+
+	private static Message lastMessage(List<Message> messages) {
+		return messages.isEmpty() ? null : messages.get(messages.size() - 1);
+	}
+
+	/**
+	 * Callback used to share the channel exposure logic between single message and batch listeners.
+	 */
+	private interface ChannelAwareInvocation {
+
+		void invoke(Channel channel) throws Exception;
+
+	}
+
 }
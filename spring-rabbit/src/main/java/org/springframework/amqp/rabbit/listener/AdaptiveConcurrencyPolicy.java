@@ -0,0 +1,178 @@
+/*
+ * Copyright 2014 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+
+package org.springframework.amqp.rabbit.listener;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.springframework.util.Assert;
+
+/**
+ * A {@link ConcurrencyPolicy} that sizes the container in proportion to the backlog.
+ * <p>
+ * The average processing time per message (the time spent in the listener, not waiting
+ * for messages) is tracked (as an exponentially weighted moving average over the active
+ * cycles of all consumers); the backlog is estimated
+ * from the occupancy of the consumers' hand off queues plus, if enabled, the message
+ * count of the queues on the broker (sampled at most once per
+ * {@link #setBrokerSampleInterval(long) brokerSampleInterval}). The number of consumers
+ * needed to process the backlog within the {@link #setTargetDrainTime(long) targetDrainTime}
+ * is then started in one step, rather than one at a time.
+ * <p>
+ * A consumer that receives no messages within the container's {@code receiveTimeout}
+ * is stopped, at most one consumer per {@link #setScaleDownInterval(long) scaleDownInterval}.
+ *
+ * @author Gary Russell
+ * @since 1.4
+ *
+ */
+public class AdaptiveConcurrencyPolicy implements ConcurrencyPolicy {
+
+	public static final long DEFAULT_TARGET_DRAIN_TIME = 1000;
+
+	public static final long DEFAULT_BROKER_SAMPLE_INTERVAL = 5000;
+
+	public static final long DEFAULT_SCALE_UP_INTERVAL = 1000;
+
+	public static final long DEFAULT_SCALE_DOWN_INTERVAL = 10000;
+
+	private static final int AVERAGE_SHIFT = 3; // weight of new samples is 1/8
+
+	private volatile long targetDrainTimeNanos = TimeUnit.MILLISECONDS.toNanos(DEFAULT_TARGET_DRAIN_TIME);
+
+	private volatile long brokerSampleInterval = DEFAULT_BROKER_SAMPLE_INTERVAL;
+
+	private volatile long scaleUpInterval = DEFAULT_SCALE_UP_INTERVAL;
+
+	private volatile long scaleDownInterval = DEFAULT_SCALE_DOWN_INTERVAL;
+
+	// updated by all consumers without locking; an occasional lost sample is harmless
+	private volatile long averageNanosPerMessage;
+
+	private volatile int brokerMessageCount = -1;
+
+	private final AtomicLong lastBrokerSample = new AtomicLong();
+
+	private final AtomicLong lastScaleUp = new AtomicLong();
+
+	private final AtomicLong lastScaleDown = new AtomicLong();
+
+	/**
+	 * Set the time (ms) within which the current backlog should be processed; more
+	 * consumers are started if the observed processing time indicates that the current
+	 * consumers would take longer. Default 1000.
+	 * @param targetDrainTime the target drain time.
+	 */
+	public void setTargetDrainTime(long targetDrainTime) {
+		Assert.isTrue(targetDrainTime > 0, "'targetDrainTime' must be > 0");
+		this.targetDrainTimeNanos = TimeUnit.MILLISECONDS.toNanos(targetDrainTime);
+	}
+
+	/**
+	 * Set the minimum interval (ms) between fetching the queue depth(s) from the broker;
+	 * set to zero to only use the occupancy of the consumers' hand off queues. Default 5000.
+	 * @param brokerSampleInterval the interval.
+	 */
+	public void setBrokerSampleInterval(long brokerSampleInterval) {
+		Assert.isTrue(brokerSampleInterval >= 0, "'brokerSampleInterval' must be >= 0");
+		this.brokerSampleInterval = brokerSampleInterval;
+	}
+
+	/**
+	 * Set the minimum interval (ms) between decisions to start consumers. Default 1000.
+	 * @param scaleUpInterval the interval.
+	 */
+	public void setScaleUpInterval(long scaleUpInterval) {
+		Assert.isTrue(scaleUpInterval >= 0, "'scaleUpInterval' must be >= 0");
+		this.scaleUpInterval = scaleUpInterval;
+	}
+
+	/**
+	 * Set the minimum interval (ms) between stopping idle consumers. Default 10000.
+	 * @param scaleDownInterval the interval.
+	 */
+	public void setScaleDownInterval(long scaleDownInterval) {
+		Assert.isTrue(scaleDownInterval >= 0, "'scaleDownInterval' must be >= 0");
+		this.scaleDownInterval = scaleDownInterval;
+	}
+
+	/**
+	 * @return the current average processing time per message in nanoseconds; zero
+	 * until a message has been processed.
+	 */
+	public long getAverageNanosPerMessage() {
+		return this.averageNanosPerMessage;
+	}
+
+	@Override
+	public int evaluate(ConsumerStatistics statistics) {
+		int messageCount = statistics.getMessageCount();
+		int consumers = statistics.getConsumerCount();
+		long now = System.currentTimeMillis();
+		if (messageCount == 0) {
+			// no backlog for this consumer; any broker sample is out of date
+			this.brokerMessageCount = 0;
+			if (consumers > statistics.getMinConsumers() && claim(this.lastScaleDown, now, this.scaleDownInterval)) {
+				return -1;
+			}
+			return 0;
+		}
+		// only the listener time; the cycle time includes waiting for messages at low traffic
+		long average = updateAverage(statistics.getListenerTimeNanos() / messageCount);
+		if (consumers >= statistics.getMaxConsumers()) {
+			return 0;
+		}
+		long backlog = (long) statistics.getHandoffQueueSize() * consumers;
+		if (this.brokerSampleInterval > 0 && claim(this.lastBrokerSample, now, this.brokerSampleInterval)) {
+			this.brokerMessageCount = statistics.getBrokerMessageCount();
+		}
+		int brokerCount = this.brokerMessageCount;
+		if (brokerCount > 0) {
+			backlog += brokerCount;
+		}
+		long required = requiredConsumers(backlog, average);
+		if (required > consumers && claim(this.lastScaleUp, now, this.scaleUpInterval)) {
+			return (int) Math.min(required, statistics.getMaxConsumers()) - consumers;
+		}
+		return 0;
+	}
+
+	private long updateAverage(long sample) {
+		long average = this.averageNanosPerMessage;
+		average = average == 0 ? sample : average + ((sample - average) >> AVERAGE_SHIFT);
+		this.averageNanosPerMessage = average;
+		return average;
+	}
+
+	/**
+	 * Calculate the number of consumers needed to process the backlog within the target
+	 * drain time.
+	 * @param backlog the estimated backlog.
+	 * @param averageNanosPerMessage the average processing time per message.
+	 * @return the number of consumers.
+	 */
+	protected long requiredConsumers(long backlog, long averageNanosPerMessage) {
+		if (backlog <= 0 || averageNanosPerMessage <= 0) {
+			return 0;
+		}
+		double work = (double) backlog * averageNanosPerMessage;
+		return (long) Math.ceil(work / this.targetDrainTimeNanos);
+	}
+
+	private boolean claim(AtomicLong last, long now, long interval) {
+		long previous = last.get();
+		return now - previous >= interval && last.compareAndSet(previous, now);
+	}
+
+}
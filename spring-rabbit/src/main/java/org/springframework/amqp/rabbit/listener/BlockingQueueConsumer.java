@@ -21,7 +21,6 @@ import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
-import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -30,6 +29,7 @@ import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
@@ -44,8 +44,10 @@ import org.springframework.amqp.rabbit.connection.ConnectionFactory;
 import org.springframework.amqp.rabbit.connection.ConnectionFactoryUtils;
 import org.springframework.amqp.rabbit.connection.RabbitResourceHolder;
 import org.springframework.amqp.rabbit.connection.RabbitUtils;
+import org.springframework.amqp.rabbit.listener.metrics.ListenerMetricsRecorder;
 import org.springframework.amqp.rabbit.support.MessagePropertiesConverter;
 import org.springframework.amqp.rabbit.support.RabbitExceptionTranslator;
+import org.springframework.util.Assert;
 
 import com.rabbitmq.client.AMQP;
 import com.rabbitmq.client.AMQP.BasicProperties;
@@ -69,14 +71,14 @@ public class BlockingQueueConsumer {
 
 	private static Log logger = LogFactory.getLog(BlockingQueueConsumer.class);
 
-	private final BlockingQueue<Delivery> queue;
+	private BlockingQueue<Delivery> queue;
 
 	// When this is non-null the connection has been closed (should never happen in normal operation).
 	private volatile ShutdownSignalException shutdown;
 
 	private final String[] queues;
 
-	private final int prefetchCount;
+	private volatile int prefetchCount;
 
 	private final boolean transactional;
 
@@ -104,10 +106,14 @@ public class BlockingQueueConsumer {
 
 	private final boolean exclusive;
 
-	private final Set<Long> deliveryTags = new LinkedHashSet<Long>();
+	private final DeliveryTagTracker deliveryTags;
 
 	private final boolean defaultRequeuRejected;
 
+	private volatile Boolean batchRequeueRejected;
+
+	private volatile boolean nackMultiple;
+
 	private final CountDownLatch suspendClientThread = new CountDownLatch(1);
 
 	private final Collection<String> consumerTags = Collections.synchronizedSet(new HashSet<String>());
@@ -118,6 +124,18 @@ public class BlockingQueueConsumer {
 
 	private long lastRetryDeclaration;
 
+	private long receivedCount;
+
+	private long listenerTimeNanos;
+
+	private HandoffQueueFactory handoffQueueFactory;
+
+	private PrefetchTuner prefetchTuner;
+
+	private ListenerMetricsRecorder metricsRecorder;
+
+	private final AtomicReference<Runnable> resumeTask = new AtomicReference<Runnable>();
+
 	/**
 	 * Create a consumer. The consumer must not attempt to use
 	 * the connection factory or communicate with the broker
@@ -215,6 +233,7 @@ public class BlockingQueueConsumer {
 		this.exclusive = exclusive;
 		this.queues = queues;
 		this.queue = new LinkedBlockingQueue<Delivery>(prefetchCount);
+		this.deliveryTags = new DeliveryTagTracker(prefetchCount);
 	}
 
 	public Channel getChannel() {
@@ -225,6 +244,38 @@ public class BlockingQueueConsumer {
 		return consumer.getConsumerTag();
 	}
 
+	/**
+	 * @return the number of messages returned by {@link #nextMessage()}; only
+	 * meaningful on the thread that receives the messages.
+	 */
+	long getReceivedCount() {
+		return this.receivedCount;
+	}
+
+	/**
+	 * @return the total time (ns) the listener has spent processing messages from this
+	 * consumer, excluding the time spent waiting for them; only meaningful on the thread
+	 * that receives the messages.
+	 */
+	long getListenerTimeNanos() {
+		return this.listenerTimeNanos;
+	}
+
+	void addListenerTime(long nanos) {
+		this.listenerTimeNanos += nanos;
+	}
+
+	/**
+	 * @return the number of deliveries waiting to be received.
+	 */
+	int getQueuedCount() {
+		return this.queue.size();
+	}
+
+	int getPrefetchCount() {
+		return this.prefetchCount;
+	}
+
 	/**
 	 * Stop receiving new messages; drain the queue of any prefetched messages.
 	 * @param shutdownTimeout how long (ms) to suspend the client thread.
@@ -235,6 +286,126 @@ public class BlockingQueueConsumer {
 		if (logger.isDebugEnabled()) {
 			logger.debug("Quiescing consumer: " + this);
 		}
+		resume();
+	}
+
+	/**
+	 * If there are no deliveries waiting, and the consumer has not been cancelled or shut down,
+	 * register a task to be run when that changes, so that the caller can release its thread
+	 * instead of blocking in {@link #nextMessage(long)}. The task is run (once) on the thread
+	 * that delivers the next message, or that cancels or shuts down this consumer.
+	 * @param resumeTask the task; it should hand off the processing to another thread.
+	 * @return true if the task was registered, false if there is work to do now.
+	 * @since 1.4
+	 */
+	boolean suspendIfIdle(Runnable resumeTask) {
+		// missing queues are retried when polling, so don't suspend
+		if (!isIdle() || !this.missingQueues.isEmpty()) {
+			return false;
+		}
+		this.resumeTask.set(resumeTask);
+		// re-check in case a delivery (or cancel) arrived before the task was visible
+		if (!isIdle() && this.resumeTask.compareAndSet(resumeTask, null)) {
+			return false;
+		}
+		return true;
+	}
+
+	private boolean isIdle() {
+		return this.queue.isEmpty() && this.shutdown == null && !this.cancelled.get() && !this.cancelReceived.get();
+	}
+
+	private void resume() {
+		if (this.resumeTask.get() != null) {
+			Runnable task = this.resumeTask.getAndSet(null);
+			if (task != null) {
+				try {
+					task.run();
+				}
+				catch (RuntimeException e) {
+					logger.error("Failed to resume " + this + "; will retry on the next delivery", e);
+					// re-register so the next delivery, cancel or shutdown retries the resume
+					this.resumeTask.compareAndSet(null, task);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Set the factory used to create the queue that hands off deliveries to the
+	 * container thread; must be called before {@link #start()}. By default, a
+	 * {@link LinkedBlockingQueue} is used.
+	 * @param handoffQueueFactory the factory.
+	 * @since 1.4
+	 */
+	public void setHandoffQueueFactory(HandoffQueueFactory handoffQueueFactory) {
+		Assert.notNull(handoffQueueFactory, "'handoffQueueFactory' cannot be null");
+		Assert.state(this.consumer == null, "The handoff queue cannot be changed once the consumer is started");
+		this.handoffQueueFactory = handoffQueueFactory;
+		createHandoffQueue();
+	}
+
+	/**
+	 * Enable automatic tuning of the prefetch count, between the prefetch count supplied to the
+	 * constructor and {@code maxPrefetchCount}, based on the measured listener service time and
+	 * the round trip time of {@code basicQos}; must be called before {@link #start()}.
+	 * <p>
+	 * The hand off queue is created with a capacity of {@code maxPrefetchCount} so that it never
+	 * needs to be replaced while the client thread may be blocked inserting into it; the broker
+	 * limits the number of deliveries in the queue to the current prefetch count. The prefetch
+	 * count is applied to the channel (the {@code global} flag), because changing a per-consumer
+	 * limit has no effect on existing consumers; this requires RabbitMQ 3.3 or later.
+	 * @param maxPrefetchCount the maximum prefetch count.
+	 * @param txSize the number of messages received before each ack.
+	 * @param tuneInterval the interval (ms) between adjustments.
+	 * @since 1.4
+	 */
+	public void setPrefetchAutoTune(int maxPrefetchCount, int txSize, long tuneInterval) {
+		Assert.state(this.consumer == null, "Prefetch tuning cannot be enabled once the consumer is started");
+		this.prefetchTuner = new PrefetchTuner(this.prefetchCount, maxPrefetchCount, txSize, tuneInterval);
+		createHandoffQueue();
+	}
+
+	/**
+	 * Set a recorder for the hand off wait time, ack latency, redeliveries and rejections;
+	 * must be called before {@link #start()}.
+	 * @param metricsRecorder the recorder.
+	 * @since 1.4
+	 */
+	public void setMetricsRecorder(ListenerMetricsRecorder metricsRecorder) {
+		Assert.state(this.consumer == null, "The metrics recorder cannot be changed once the consumer is started");
+		this.metricsRecorder = metricsRecorder;
+	}
+
+	private void createHandoffQueue() {
+		int capacity = this.prefetchTuner == null ? this.prefetchCount : this.prefetchTuner.getMaxPrefetch();
+		if (this.handoffQueueFactory == null) {
+			this.queue = new LinkedBlockingQueue<Delivery>(capacity);
+		}
+		else {
+			this.queue = this.handoffQueueFactory.createQueue(capacity);
+		}
+	}
+
+	/**
+	 * Set whether messages other than the one that failed in a batch (txSize &gt; 1) are
+	 * requeued when the listener throws an exception. When not set, they are treated the
+	 * same as the failed message.
+	 * @param batchRequeueRejected true to requeue the rest of the batch.
+	 * @since 1.4
+	 */
+	public void setBatchRequeueRejected(boolean batchRequeueRejected) {
+		this.batchRequeueRejected = batchRequeueRejected;
+	}
+
+	/**
+	 * Set to true to reject messages using {@code basicNack(multiple=true)} instead of a
+	 * {@code basicReject} for each message.
+	 * @param nackMultiple true to use basicNack.
+	 * @since 1.4
+	 */
+	public void setNackMultiple(boolean nackMultiple) {
+		this.nackMultiple = nackMultiple;
 	}
 
 	/**
@@ -270,6 +441,16 @@ public class BlockingQueueConsumer {
 			logger.debug("Received message: " + message);
 		}
 		deliveryTags.add(messageProperties.getDeliveryTag());
+		this.receivedCount++;
+		if (this.prefetchTuner != null) {
+			this.prefetchTuner.received(System.nanoTime());
+		}
+		if (this.metricsRecorder != null) {
+			this.metricsRecorder.recordHandoffWait(System.nanoTime() - delivery.getArrived());
+			if (envelope.isRedeliver()) {
+				this.metricsRecorder.recordRedelivery();
+			}
+		}
 		return message;
 	}
 
@@ -281,6 +462,9 @@ public class BlockingQueueConsumer {
 	 */
 	public Message nextMessage() throws InterruptedException, ShutdownSignalException {
 		logger.trace("Retrieving delivery for " + this);
+		if (this.prefetchTuner != null) {
+			this.prefetchTuner.receiving(System.nanoTime());
+		}
 		return handle(queue.take());
 	}
 
@@ -299,6 +483,9 @@ public class BlockingQueueConsumer {
 		if (this.missingQueues.size() > 0) {
 			checkMissingQueues();
 		}
+		if (this.prefetchTuner != null) {
+			this.prefetchTuner.receiving(System.nanoTime());
+		}
 		Message message = handle(queue.poll(timeout, TimeUnit.MILLISECONDS));
 		if (message == null && cancelReceived.get()) {
 			throw new ConsumerCancelledException();
@@ -415,7 +602,14 @@ public class BlockingQueueConsumer {
 			// Set basicQos before calling basicConsume (otherwise if we are not acking the broker
 			// will send blocks of 100 messages)
 			try {
-				channel.basicQos(prefetchCount);
+				if (this.prefetchTuner != null) {
+					long start = System.nanoTime();
+					channel.basicQos(prefetchCount, true);
+					this.prefetchTuner.roundTrip(System.nanoTime() - start);
+				}
+				else {
+					channel.basicQos(prefetchCount);
+				}
 			}
 			catch (IOException e) {
 				this.activeObjectCounter.release(this);
@@ -519,6 +713,7 @@ public class BlockingQueueConsumer {
 			// The delivery tags will be invalid if the channel shuts down
 			deliveryTags.clear();
 			activeObjectCounter.release(BlockingQueueConsumer.this);
+			resume();
 		}
 
 		@Override
@@ -530,6 +725,7 @@ public class BlockingQueueConsumer {
 				BlockingQueueConsumer.this.consumerTags.remove(consumerTag);
 			}
 			BlockingQueueConsumer.this.cancelReceived.set(true);
+			resume();
 		}
 
 		@Override
@@ -569,11 +765,16 @@ public class BlockingQueueConsumer {
 				logger.debug("Storing delivery for " + BlockingQueueConsumer.this);
 			}
 			try {
-				queue.put(new Delivery(envelope, properties, body));
+				Delivery delivery = new Delivery(envelope, properties, body);
+				if (BlockingQueueConsumer.this.metricsRecorder != null) {
+					delivery.setArrived(System.nanoTime());
+				}
+				queue.put(delivery);
 			}
 			catch (InterruptedException e) {
 				Thread.currentThread().interrupt();
 			}
+			resume();
 		}
 
 	}
@@ -587,6 +788,8 @@ public class BlockingQueueConsumer {
 		private final AMQP.BasicProperties properties;
 		private final byte[] body;
 
+		private long arrived;
+
 		public Delivery(Envelope envelope, AMQP.BasicProperties properties, byte[] body) {
 			this.envelope = envelope;
 			this.properties = properties;
@@ -604,6 +807,14 @@ public class BlockingQueueConsumer {
 		public byte[] getBody() {
 			return body;
 		}
+
+		public long getArrived() {
+			return arrived;
+		}
+
+		public void setArrived(long arrived) {
+			this.arrived = arrived;
+		}
 	}
 
 	@SuppressWarnings("serial")
@@ -651,10 +862,10 @@ public class BlockingQueueConsumer {
 				}
 				RabbitUtils.rollbackIfNecessary(channel);
 			}
-			if (ackRequired) {
+			if (ackRequired && !deliveryTags.isEmpty()) {
 				// We should always requeue if the container was stopping
-				boolean shouldRequeue = this.defaultRequeuRejected ||
-						ex instanceof MessageRejectedWhileStoppingException;
+				boolean stopping = ex instanceof MessageRejectedWhileStoppingException;
+				boolean shouldRequeue = this.defaultRequeuRejected || stopping;
 				Throwable t = ex;
 				while (shouldRequeue && t != null) {
 					if (t instanceof AmqpRejectAndDontRequeueException) {
@@ -662,12 +873,36 @@ public class BlockingQueueConsumer {
 					}
 					t = t.getCause();
 				}
+				boolean requeueBatch = this.batchRequeueRejected == null ? shouldRequeue
+						: this.batchRequeueRejected || stopping;
+				long failedTag = failedDeliveryTag(ex);
+				if (this.metricsRecorder != null) {
+					this.metricsRecorder.recordRejected(deliveryTags.size());
+				}
 				if (logger.isDebugEnabled()) {
-					logger.debug("Rejecting messages (requeue=" + shouldRequeue + ")");
+					logger.debug("Rejecting messages (requeue=" + shouldRequeue + ", failed tag=" + failedTag
+							+ ", requeue others=" + requeueBatch + ")");
 				}
-				for (Long deliveryTag : deliveryTags) {
-					// With newer RabbitMQ brokers could use basicNack here...
-					channel.basicReject(deliveryTag, shouldRequeue);
+				if (this.nackMultiple) {
+					if (shouldRequeue != requeueBatch) {
+						// reject the failed message first so the multiple nack below doesn't include it
+						channel.basicReject(failedTag, shouldRequeue);
+						deliveryTags.remove(failedTag);
+					}
+					if (!deliveryTags.isEmpty()) {
+						/*
+						 * Tags below the lowest tracked tag, and gaps between tracked tags, are
+						 * already acked or rejected, so one frame covers all outstanding tags.
+						 */
+						channel.basicNack(deliveryTags.getHighest(), true, requeueBatch);
+					}
+				}
+				else {
+					long deliveryTag = deliveryTags.next(0);
+					while (deliveryTag >= 0) {
+						channel.basicReject(deliveryTag, deliveryTag == failedTag ? shouldRequeue : requeueBatch);
+						deliveryTag = deliveryTags.next(deliveryTag);
+					}
 				}
 				if (transactional) {
 					// Need to commit the reject (=nack)
@@ -682,6 +917,27 @@ public class BlockingQueueConsumer {
 		}
 	}
 
+	/**
+	 * Determine the delivery tag of the message that caused the failure; this is the failed message in
+	 * a {@link ListenerExecutionFailedException} if it is outstanding, otherwise the most recent delivery.
+	 */
+	private long failedDeliveryTag(Throwable ex) {
+		Throwable t = ex;
+		while (t != null) {
+			if (t instanceof ListenerExecutionFailedException) {
+				Message failedMessage = ((ListenerExecutionFailedException) t).getFailedMessage();
+				if (failedMessage != null && failedMessage.getMessageProperties() != null) {
+					long deliveryTag = failedMessage.getMessageProperties().getDeliveryTag();
+					if (deliveryTags.contains(deliveryTag)) {
+						return deliveryTag;
+					}
+				}
+			}
+			t = t.getCause();
+		}
+		return deliveryTags.getHighest();
+	}
+
 	/**
 	 * Perform a commit or message acknowledgement, as appropriate.
 	 * @param locallyTransacted Whether the channel is locally transacted.
@@ -694,6 +950,9 @@ public class BlockingQueueConsumer {
 			return false;
 		}
 
+		long start = this.metricsRecorder == null ? 0 : System.nanoTime();
+		int count = this.metricsRecorder == null ? 0 : deliveryTags.size();
+
 		try {
 
 			boolean ackRequired = !acknowledgeMode.isAutoAck() && !acknowledgeMode.isManual();
@@ -704,13 +963,14 @@ public class BlockingQueueConsumer {
 
 					// Not locally transacted but it is transacted so it
 					// could be synchronized with an external transaction
-					for (Long deliveryTag : deliveryTags) {
+					long deliveryTag = deliveryTags.next(0);
+					while (deliveryTag >= 0) {
 						ConnectionFactoryUtils.registerDeliveryTag(connectionFactory, channel, deliveryTag);
+						deliveryTag = deliveryTags.next(deliveryTag);
 					}
 
 				} else {
-					long deliveryTag = new ArrayList<Long>(deliveryTags).get(deliveryTags.size() - 1);
-					channel.basicAck(deliveryTag, true);
+					channel.basicAck(deliveryTags.getHighest(), true);
 				}
 			}
 
@@ -723,8 +983,41 @@ public class BlockingQueueConsumer {
 			deliveryTags.clear();
 		}
 
+		if (this.metricsRecorder != null) {
+			this.metricsRecorder.recordAck(System.nanoTime() - start, count);
+		}
+
+		if (this.prefetchTuner != null && !acknowledgeMode.isAutoAck()) {
+			tunePrefetchIfNecessary();
+		}
+
 		return true;
 
 	}
 
+	/**
+	 * Re-apply the prefetch count calculated by the {@link PrefetchTuner}; the basicQos
+	 * round trip is also used to measure the network latency.
+	 */
+	private void tunePrefetchIfNecessary() {
+		long now = System.nanoTime();
+		if (this.prefetchTuner.isDue(now)) {
+			int prefetch = this.prefetchTuner.calculatePrefetch(this.prefetchCount);
+			try {
+				this.channel.basicQos(prefetch, true);
+				this.prefetchTuner.roundTrip(System.nanoTime() - now);
+				if (prefetch != this.prefetchCount) {
+					if (logger.isDebugEnabled()) {
+						logger.debug("Prefetch count changed from " + this.prefetchCount + " to " + prefetch
+								+ " " + this.prefetchTuner + " for " + this);
+					}
+					this.prefetchCount = prefetch;
+				}
+			}
+			catch (IOException e) {
+				logger.warn("Failed to change the prefetch count for " + this, e);
+			}
+		}
+	}
+
 }
@@ -0,0 +1,99 @@
+/*
+ * Copyright 2014 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+
+package org.springframework.amqp.rabbit.listener;
+
+/**
+ * Strategy for scaling the number of consumers in a {@link SimpleMessageListenerContainer}
+ * between {@code concurrentConsumers} and {@code maxConcurrentConsumers}.
+ * <p>
+ * The policy is evaluated by each consumer thread after each receive cycle (a cycle
+ * receives up to {@code txSize} messages); implementations must therefore be thread-safe
+ * and cheap to evaluate.
+ *
+ * @author Gary Russell
+ * @since 1.4
+ * @see AdaptiveConcurrencyPolicy
+ *
+ */
+public interface ConcurrencyPolicy {
+
+	/**
+	 * Evaluate the policy after a receive cycle.
+	 * @param statistics the statistics for the cycle and the container.
+	 * @return a positive number of consumers to start, a negative number to stop the
+	 * consumer that completed the cycle, or zero to leave the concurrency unchanged. The
+	 * container never exceeds its maximum, nor drops below its minimum number of consumers.
+	 */
+	int evaluate(ConsumerStatistics statistics);
+
+	/**
+	 * Statistics made available to the policy by a consumer thread; an instance is only
+	 * valid for the duration of the {@link ConcurrencyPolicy#evaluate(ConsumerStatistics)} call.
+	 */
+	interface ConsumerStatistics {
+
+		/**
+		 * @return the number of messages received in the cycle; zero if the receive timed out.
+		 */
+		int getMessageCount();
+
+		/**
+		 * @return the elapsed time of the cycle (receiving and processing) in nanoseconds;
+		 * this includes the time spent waiting for messages to arrive.
+		 */
+		long getCycleTimeNanos();
+
+		/**
+		 * @return the time spent invoking the listener in the cycle, in nanoseconds;
+		 * unlike {@link #getCycleTimeNanos()}, this excludes the time spent waiting for
+		 * messages.
+		 */
+		long getListenerTimeNanos();
+
+		/**
+		 * @return the number of deliveries waiting in this consumer's hand off queue.
+		 */
+		int getHandoffQueueSize();
+
+		/**
+		 * @return this consumer's prefetch count (the capacity of the hand off queue).
+		 */
+		int getPrefetchCount();
+
+		/**
+		 * @return the current number of consumers.
+		 */
+		int getConsumerCount();
+
+		/**
+		 * @return the minimum number of consumers ({@code concurrentConsumers}).
+		 */
+		int getMinConsumers();
+
+		/**
+		 * @return the maximum number of consumers ({@code maxConcurrentConsumers}).
+		 */
+		int getMaxConsumers();
+
+		/**
+		 * Obtain the total number of messages ready in the container's queues, using a
+		 * passive declaration of each queue; this requires a round trip to the broker for
+		 * each queue so should be called sparingly.
+		 * @return the message count, or -1 if it could not be determined.
+		 */
+		int getBrokerMessageCount();
+
+	}
+
+}
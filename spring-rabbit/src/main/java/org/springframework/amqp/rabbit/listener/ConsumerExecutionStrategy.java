@@ -0,0 +1,43 @@
+/*
+ * Copyright 2014 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+
+package org.springframework.amqp.rabbit.listener;
+
+import java.util.concurrent.Executor;
+
+/**
+ * Determines how the consumers of a {@link SimpleMessageListenerContainer} are run.
+ *
+ * @author Gary Russell
+ * @since 1.4
+ * @see ThreadPerConsumerExecutionStrategy
+ * @see SharedPoolExecutionStrategy
+ *
+ */
+public interface ConsumerExecutionStrategy {
+
+	/**
+	 * @return the executor used to run the consumers.
+	 */
+	Executor getExecutor();
+
+	/**
+	 * When true, a consumer releases its thread when it has no deliveries waiting, instead
+	 * of blocking for the {@code receiveTimeout}; it is resubmitted to the {@link #getExecutor()
+	 * executor} when the next message is delivered (or the consumer is cancelled). This allows
+	 * a bounded pool of threads to serve more consumers than it has threads.
+	 * @return true to release the thread when idle.
+	 */
+	boolean isThreadReleasedWhenIdle();
+
+}
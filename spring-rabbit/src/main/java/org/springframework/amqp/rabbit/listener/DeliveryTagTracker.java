@@ -0,0 +1,278 @@
+/*
+ * Copyright 2014 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+
+package org.springframework.amqp.rabbit.listener;
+
+import java.util.Arrays;
+
+import org.springframework.util.Assert;
+
+/**
+ * Tracks the outstanding (unacknowledged) delivery tags on a channel without boxing.
+ * <p>
+ * Delivery tags on a channel are assigned in increasing order, so the outstanding
+ * tags are kept as a window between the lowest and highest outstanding tag, with a
+ * circular bitmap recording the gaps left by out-of-order (manual) acknowledgements.
+ * The bitmap grows if the window exceeds its capacity, which is normally sized to
+ * the prefetch count.
+ * <p>
+ * Not thread-safe; intended to be used by the thread that consumes the deliveries.
+ *
+ * @author Gary Russell
+ * @since 1.4
+ *
+ */
+class DeliveryTagTracker {
+
+	private static final int ADDRESS_BITS_PER_WORD = 6;
+
+	private static final int BITS_PER_WORD = 1 << ADDRESS_BITS_PER_WORD;
+
+	private long[] words;
+
+	private long mask;
+
+	private long lowest;
+
+	private long highest;
+
+	private int count;
+
+	/**
+	 * Create a tracker with a default initial capacity.
+	 */
+	DeliveryTagTracker() {
+		this(BITS_PER_WORD);
+	}
+
+	/**
+	 * Create a tracker able to hold a window of at least the supplied number of tags
+	 * before it needs to grow.
+	 * @param initialCapacity the initial capacity.
+	 */
+	DeliveryTagTracker(int initialCapacity) {
+		Assert.isTrue(initialCapacity > 0, "'initialCapacity' must be > 0");
+		int wordCount = 1;
+		while (wordCount * BITS_PER_WORD < initialCapacity) {
+			wordCount <<= 1;
+		}
+		allocate(wordCount);
+	}
+
+	private void allocate(int wordCount) {
+		this.words = new long[wordCount];
+		this.mask = (long) wordCount * BITS_PER_WORD - 1;
+	}
+
+	/**
+	 * Record a new outstanding delivery tag; tags must be added in increasing order.
+	 * @param deliveryTag the tag.
+	 */
+	void add(long deliveryTag) {
+		if (this.count == 0) {
+			this.lowest = deliveryTag;
+		}
+		else {
+			Assert.isTrue(deliveryTag > this.highest, "Delivery tags must be added in increasing order; "
+					+ deliveryTag + " is not greater than " + this.highest);
+			if (deliveryTag - this.lowest > this.mask) {
+				grow(deliveryTag - this.lowest + 1);
+			}
+		}
+		set(deliveryTag);
+		this.highest = deliveryTag;
+		this.count++;
+	}
+
+	/**
+	 * @param deliveryTag the tag.
+	 * @return true if the tag is outstanding.
+	 */
+	boolean contains(long deliveryTag) {
+		return this.count > 0 && deliveryTag >= this.lowest && deliveryTag <= this.highest && get(deliveryTag);
+	}
+
+	/**
+	 * Remove a single outstanding tag, as the result of an individual ack or nack.
+	 * @param deliveryTag the tag.
+	 * @return true if the tag was outstanding.
+	 */
+	boolean remove(long deliveryTag) {
+		if (!contains(deliveryTag)) {
+			return false;
+		}
+		clear(deliveryTag);
+		if (--this.count == 0) {
+			return true;
+		}
+		if (deliveryTag == this.lowest) {
+			this.lowest = next(deliveryTag);
+		}
+		else if (deliveryTag == this.highest) {
+			long tag = deliveryTag - 1;
+			while (!get(tag)) {
+				tag--;
+			}
+			this.highest = tag;
+		}
+		return true;
+	}
+
+	/**
+	 * Remove all outstanding tags up to and including the supplied tag, as the
+	 * result of an ack or nack with {@code multiple=true}.
+	 * @param deliveryTag the tag.
+	 * @return the number of tags removed.
+	 */
+	int removeUpTo(long deliveryTag) {
+		if (this.count == 0 || deliveryTag < this.lowest) {
+			return 0;
+		}
+		if (deliveryTag >= this.highest) {
+			int removed = this.count;
+			clear();
+			return removed;
+		}
+		int removed = 0;
+		long tag = this.lowest;
+		while (tag <= deliveryTag) {
+			if (get(tag)) {
+				clear(tag);
+				removed++;
+			}
+			tag++;
+		}
+		this.count -= removed;
+		this.lowest = next(deliveryTag);
+		return removed;
+	}
+
+	/**
+	 * Return the lowest outstanding tag greater than the supplied tag; allows iteration over the
+	 * outstanding tags without allocation, starting with {@code next(0)}.
+	 * @param deliveryTag the tag.
+	 * @return the next outstanding tag, or -1 if there is none.
+	 */
+	long next(long deliveryTag) {
+		if (this.count == 0 || deliveryTag >= this.highest) {
+			return -1;
+		}
+		long tag = Math.max(deliveryTag + 1, this.lowest);
+		while (!get(tag)) {
+			tag++;
+		}
+		return tag;
+	}
+
+	/**
+	 * @return the lowest outstanding tag; only valid if not {@link #isEmpty() empty}.
+	 */
+	long getLowest() {
+		return this.lowest;
+	}
+
+	/**
+	 * @return the highest outstanding tag; only valid if not {@link #isEmpty() empty}.
+	 */
+	long getHighest() {
+		return this.highest;
+	}
+
+	/**
+	 * @return true if the outstanding tags form a contiguous range with no gaps.
+	 */
+	boolean isContiguous() {
+		return this.count == 0 || this.highest - this.lowest + 1 == this.count;
+	}
+
+	int size() {
+		return this.count;
+	}
+
+	boolean isEmpty() {
+		return this.count == 0;
+	}
+
+	/**
+	 * Remove all outstanding tags.
+	 */
+	void clear() {
+		if (this.count > 0) {
+			if (this.highest - this.lowest >= this.words.length * (long) (BITS_PER_WORD / 2)) {
+				Arrays.fill(this.words, 0L);
+			}
+			else {
+				int from = wordIndex(this.lowest);
+				int to = wordIndex(this.highest);
+				while (true) {
+					this.words[from] = 0L;
+					if (from == to) {
+						break;
+					}
+					from = (from + 1) & (this.words.length - 1);
+				}
+			}
+			this.count = 0;
+		}
+	}
+
+	private void grow(long required) {
+		int wordCount = this.words.length;
+		while ((long) wordCount * BITS_PER_WORD < required) {
+			wordCount <<= 1;
+		}
+		long[] oldWords = this.words;
+		long oldMask = this.mask;
+		allocate(wordCount);
+		for (long tag = this.lowest; tag <= this.highest; tag++) {
+			int bit = (int) (tag & oldMask);
+			if ((oldWords[bit >>> ADDRESS_BITS_PER_WORD] & (1L << bit)) != 0) {
+				set(tag);
+			}
+		}
+	}
+
+	private int wordIndex(long deliveryTag) {
+		return (int) ((deliveryTag & this.mask) >>> ADDRESS_BITS_PER_WORD);
+	}
+
+	private boolean get(long deliveryTag) {
+		return (this.words[wordIndex(deliveryTag)] & (1L << deliveryTag)) != 0;
+	}
+
+	private void set(long deliveryTag) {
+		this.words[wordIndex(deliveryTag)] |= 1L << deliveryTag;
+	}
+
+	private void clear(long deliveryTag) {
+		this.words[wordIndex(deliveryTag)] &= ~(1L << deliveryTag);
+	}
+
+	@Override
+	public String toString() {
+		if (this.count == 0) {
+			return "[]";
+		}
+		StringBuilder builder = new StringBuilder("[");
+		long tag = this.lowest;
+		while (tag >= 0) {
+			builder.append(tag);
+			tag = next(tag);
+			if (tag >= 0) {
+				builder.append(", ");
+			}
+		}
+		return builder.append("]").toString();
+	}
+
+}
@@ -0,0 +1,855 @@
+/*
+ * Copyright 2014 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+
+package org.springframework.amqp.rabbit.listener;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.aopalliance.aop.Advice;
+
+import org.springframework.amqp.AmqpRejectAndDontRequeueException;
+import org.springframework.amqp.ImmediateAcknowledgeAmqpException;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.core.MessageProperties;
+import org.springframework.amqp.core.Queue;
+import org.springframework.amqp.rabbit.connection.Connection;
+import org.springframework.amqp.rabbit.connection.ConnectionFactory;
+import org.springframework.amqp.rabbit.connection.RabbitUtils;
+import org.springframework.amqp.rabbit.listener.SimpleMessageListenerContainer.ContainerDelegate;
+import org.springframework.amqp.rabbit.support.DefaultMessagePropertiesConverter;
+import org.springframework.amqp.rabbit.support.MessagePropertiesConverter;
+import org.springframework.aop.Pointcut;
+import org.springframework.aop.framework.ProxyFactory;
+import org.springframework.aop.support.DefaultPointcutAdvisor;
+import org.springframework.jmx.export.annotation.ManagedMetric;
+import org.springframework.jmx.support.MetricType;
+import org.springframework.scheduling.TaskScheduler;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
+import org.springframework.util.Assert;
+
+import com.rabbitmq.client.AMQP.BasicProperties;
+import com.rabbitmq.client.Channel;
+import com.rabbitmq.client.DefaultConsumer;
+import com.rabbitmq.client.Envelope;
+import com.rabbitmq.client.ShutdownSignalException;
+
+/**
+ * A listener container that invokes the listener directly on the RabbitMQ client's consumer
+ * dispatch thread, instead of handing each delivery off to a dedicated container thread.
+ * <p>
+ * Each queue gets {@link #setConsumersPerQueue(int) consumersPerQueue} consumers, each on its
+ * own channel. Since there is no container thread per consumer, many consumers are
+ * multiplexed over the (small) thread pool used by the connection to dispatch deliveries;
+ * that pool can be configured with
+ * {@link org.springframework.amqp.rabbit.connection.AbstractConnectionFactory#setExecutor(java.util.concurrent.Executor)}.
+ * <p>
+ * Acks are sent every {@link #setTxSize(int) txSize} messages; a partial batch is acked
+ * by a monitor task when the consumer has been idle for {@link #setAckTimeout(long) ackTimeout}.
+ * The same monitor restarts consumers whose channel was closed or cancelled by the broker.
+ * Queues can be added and removed at runtime without affecting consumers on other queues.
+ * <p>
+ * External transaction managers are not supported by this container; use the
+ * {@link SimpleMessageListenerContainer} in that case.
+ *
+ * @author Gary Russell
+ * @since 1.4
+ */
+public class DirectMessageListenerContainer extends AbstractMessageListenerContainer {
+
+	public static final int DEFAULT_PREFETCH_COUNT = 1;
+
+	public static final long DEFAULT_SHUTDOWN_TIMEOUT = 5000;
+
+	public static final long DEFAULT_ACK_TIMEOUT = 1000;
+
+	public static final long DEFAULT_MONITOR_INTERVAL = 1000;
+
+	/**
+	 * The default recovery interval: 5000 ms = 5 seconds.
+	 */
+	public static final long DEFAULT_RECOVERY_INTERVAL = 5000;
+
+	private final Object consumersMonitor = new Object();
+
+	// Consumers for each queue; guarded by consumersMonitor
+	private final Map<String, List<SimpleConsumer>> consumersByQueue = new HashMap<String, List<SimpleConsumer>>();
+
+	// Queues for which a consumer needs to be (re)started by the monitor; guarded by consumersMonitor
+	private final List<String> consumersToRestart = new LinkedList<String>();
+
+	private final ActiveObjectCounter<SimpleConsumer> cancellationLock = new ActiveObjectCounter<SimpleConsumer>();
+
+	private volatile int consumersPerQueue = 1;
+
+	private volatile int prefetchCount = DEFAULT_PREFETCH_COUNT;
+
+	private volatile int txSize = 1;
+
+	private volatile long ackTimeout = DEFAULT_ACK_TIMEOUT;
+
+	private volatile long monitorInterval = DEFAULT_MONITOR_INTERVAL;
+
+	private volatile long recoveryInterval = DEFAULT_RECOVERY_INTERVAL;
+
+	private volatile long shutdownTimeout = DEFAULT_SHUTDOWN_TIMEOUT;
+
+	private volatile boolean exclusive;
+
+	private volatile boolean defaultRequeueRejected = true;
+
+	private final Map<String, Object> consumerArgs = new HashMap<String, Object>();
+
+	private volatile MessagePropertiesConverter messagePropertiesConverter = new DefaultMessagePropertiesConverter();
+
+	private volatile TaskScheduler taskScheduler;
+
+	private volatile boolean taskSchedulerSet;
+
+	private volatile ScheduledFuture<?> monitorTask;
+
+	private volatile long lastRestartAttempt;
+
+	private volatile Advice[] adviceChain = new Advice[0];
+
+	private final ContainerDelegate delegate = new ContainerDelegate() {
+
+		@Override
+		public void invokeListener(Channel channel, Message message) throws Exception {
+			DirectMessageListenerContainer.super.invokeListener(channel, message);
+		}
+
+	};
+
+	private ContainerDelegate proxy = delegate;
+
+	/**
+	 * Default constructor for convenient dependency injection via setters.
+	 */
+	public DirectMessageListenerContainer() {
+	}
+
+	/**
+	 * Create a listener container from the connection factory (mandatory).
+	 *
+	 * @param connectionFactory the {@link ConnectionFactory}
+	 */
+	public DirectMessageListenerContainer(ConnectionFactory connectionFactory) {
+		this.setConnectionFactory(connectionFactory);
+	}
+
+	/**
+	 * Each queue runs in its own consumer; set this property to create multiple
+	 * consumers for each queue. If the container is already running, the number
+	 * of consumers per queue will be adjusted up or down as necessary.
+	 * Default 1.
+	 *
+	 * @param consumersPerQueue the consumers per queue.
+	 */
+	public void setConsumersPerQueue(int consumersPerQueue) {
+		Assert.isTrue(consumersPerQueue > 0, "'consumersPerQueue' must be > 0");
+		Assert.isTrue(!this.exclusive || consumersPerQueue == 1,
+				"When the consumer is exclusive, the consumers per queue must be 1");
+		this.consumersPerQueue = consumersPerQueue;
+		if (isRunning()) {
+			adjustConsumers();
+		}
+	}
+
+	/**
+	 * Set to true for an exclusive consumer - if true, the consumers per queue must be 1.
+	 * @param exclusive true for an exclusive consumer.
+	 */
+	public void setExclusive(boolean exclusive) {
+		Assert.isTrue(!exclusive || this.consumersPerQueue == 1,
+				"When the consumer is exclusive, the consumers per queue must be 1");
+		this.exclusive = exclusive;
+	}
+
+	/**
+	 * Tells the broker how many messages to send to each consumer in a single request. It should be greater than or
+	 * equal to {@link #setTxSize(int) the transaction size}.
+	 *
+	 * @param prefetchCount the prefetch count
+	 */
+	public void setPrefetchCount(int prefetchCount) {
+		this.prefetchCount = prefetchCount;
+	}
+
+	/**
+	 * Tells the container how many messages to process in a single transaction (if the channel is transactional). For
+	 * best results it should be less than or equal to {@link #setPrefetchCount(int) the prefetch count}. Also affects
+	 * how often acks are sent when using {@link org.springframework.amqp.core.AcknowledgeMode#AUTO} - one ack per
+	 * txSize. Default is 1.
+	 *
+	 * @param txSize the transaction size
+	 */
+	public void setTxSize(int txSize) {
+		Assert.isTrue(txSize > 0, "'txSize' must be > 0");
+		this.txSize = txSize;
+	}
+
+	/**
+	 * When {@link #setTxSize(int) txSize} is greater than one, the time (in milliseconds) a consumer
+	 * must be idle before a partial batch is acknowledged (or committed). Default 1000 (1 second).
+	 *
+	 * @param ackTimeout the ack timeout.
+	 */
+	public void setAckTimeout(long ackTimeout) {
+		Assert.isTrue(ackTimeout > 0, "'ackTimeout' must be > 0");
+		this.ackTimeout = ackTimeout;
+	}
+
+	/**
+	 * The interval (in milliseconds) between runs of the monitor task that acknowledges idle partial
+	 * batches and restarts failed consumers. Default 1000 (1 second).
+	 *
+	 * @param monitorInterval the monitor interval.
+	 */
+	public void setMonitorInterval(long monitorInterval) {
+		Assert.isTrue(monitorInterval > 0, "'monitorInterval' must be > 0");
+		this.monitorInterval = monitorInterval;
+	}
+
+	/**
+	 * Specify the interval between recovery attempts, in <b>milliseconds</b>. The default is 5000 ms, that is, 5
+	 * seconds.
+	 *
+	 * @param recoveryInterval The recovery interval.
+	 */
+	public void setRecoveryInterval(long recoveryInterval) {
+		this.recoveryInterval = recoveryInterval;
+	}
+
+	/**
+	 * The time to wait for consumers in milliseconds after the container is stopped, and before their channels
+	 * are forced closed. Defaults to 5 seconds.
+	 *
+	 * @param shutdownTimeout the shutdown timeout to set
+	 */
+	public void setShutdownTimeout(long shutdownTimeout) {
+		this.shutdownTimeout = shutdownTimeout;
+	}
+
+	/**
+	 * Determines the default behavior when a message is rejected, for example because the listener
+	 * threw an exception. When true, messages will be requeued, when false, they will not. The default
+	 * can be overridden by the listener throwing an {@link AmqpRejectAndDontRequeueException}.
+	 * Default true.
+	 *
+	 * @param defaultRequeueRejected true to reject by default.
+	 */
+	public void setDefaultRequeueRejected(boolean defaultRequeueRejected) {
+		this.defaultRequeueRejected = defaultRequeueRejected;
+	}
+
+	public void setConsumerArguments(Map<String, Object> args) {
+		synchronized (this.consumersMonitor) {
+			this.consumerArgs.clear();
+			this.consumerArgs.putAll(args);
+		}
+	}
+
+	/**
+	 * Set the {@link MessagePropertiesConverter} for this listener container.
+	 *
+	 * @param messagePropertiesConverter The properties converter.
+	 */
+	public void setMessagePropertiesConverter(MessagePropertiesConverter messagePropertiesConverter) {
+		Assert.notNull(messagePropertiesConverter, "messagePropertiesConverter must not be null");
+		this.messagePropertiesConverter = messagePropertiesConverter;
+	}
+
+	/**
+	 * Set the task scheduler used to run the monitor task. If not supplied, a single-threaded
+	 * scheduler is created (and destroyed) by the container.
+	 *
+	 * @param taskScheduler the scheduler.
+	 */
+	public void setTaskScheduler(TaskScheduler taskScheduler) {
+		Assert.notNull(taskScheduler, "'taskScheduler' cannot be null");
+		this.taskScheduler = taskScheduler;
+		this.taskSchedulerSet = true;
+	}
+
+	/**
+	 * Public setter for the {@link Advice} to apply to listener executions.
+	 *
+	 * @param adviceChain the advice chain to set
+	 */
+	public void setAdviceChain(Advice[] adviceChain) {
+		this.adviceChain = adviceChain;
+	}
+
+	@Override
+	public void setQueueNames(String... queueName) {
+		super.setQueueNames(queueName);
+		this.queuesChanged();
+	}
+
+	@Override
+	public void setQueues(Queue... queues) {
+		super.setQueues(queues);
+		this.queuesChanged();
+	}
+
+	/**
+	 * Add queue(s) to this container's list of queues. If the container is running, consumers
+	 * are started for the new queue(s); consumers on existing queues are not affected.
+	 * @param queueName The queue to add.
+	 */
+	@Override
+	public void addQueueNames(String... queueName) {
+		super.addQueueNames(queueName);
+		this.queuesChanged();
+	}
+
+	/**
+	 * Remove queue(s) from this container's list of queues. If the container is running, the
+	 * consumers on the removed queue(s) are cancelled; consumers on other queues are not affected.
+	 * @param queueName The queue to remove.
+	 */
+	@Override
+	public boolean removeQueueNames(String... queueName) {
+		if (super.removeQueueNames(queueName)) {
+			this.queuesChanged();
+			return true;
+		}
+		else {
+			return false;
+		}
+	}
+
+	@ManagedMetric(metricType = MetricType.GAUGE)
+	public int getActiveConsumerCount() {
+		return this.cancellationLock.getCount();
+	}
+
+	@Override
+	protected void doInitialize() throws Exception {
+		initializeProxy();
+	}
+
+	@Override
+	protected void doStart() throws Exception {
+		super.doStart();
+		synchronized (this.consumersMonitor) {
+			if (this.monitorTask != null) {
+				if (logger.isInfoEnabled()) {
+					logger.info("Consumers are already running");
+				}
+				return;
+			}
+			if (this.taskScheduler == null) {
+				ThreadPoolTaskScheduler threadPoolTaskScheduler = new ThreadPoolTaskScheduler();
+				String beanName = getBeanName();
+				threadPoolTaskScheduler.setThreadNamePrefix(
+						(beanName == null ? "DirectMessageListenerContainer" : beanName) + "-monitor-");
+				threadPoolTaskScheduler.afterPropertiesSet();
+				this.taskScheduler = threadPoolTaskScheduler;
+			}
+			this.cancellationLock.reset();
+			this.consumersToRestart.clear();
+			adjustConsumers();
+			this.monitorTask = this.taskScheduler.scheduleAtFixedRate(new Runnable() {
+
+				@Override
+				public void run() {
+					monitor();
+				}
+
+			}, this.monitorInterval);
+		}
+	}
+
+	@Override
+	protected void doStop() {
+		shutdown();
+		super.doStop();
+	}
+
+	@Override
+	protected void doShutdown() {
+		List<SimpleConsumer> consumersToCancel = new ArrayList<SimpleConsumer>();
+		synchronized (this.consumersMonitor) {
+			if (this.monitorTask != null) {
+				this.monitorTask.cancel(true);
+				this.monitorTask = null;
+			}
+			for (List<SimpleConsumer> consumers : this.consumersByQueue.values()) {
+				consumersToCancel.addAll(consumers);
+			}
+			this.consumersByQueue.clear();
+			this.consumersToRestart.clear();
+		}
+		for (SimpleConsumer consumer : consumersToCancel) {
+			consumer.cancel();
+		}
+		try {
+			logger.info("Waiting for consumers to finish.");
+			boolean finished = this.cancellationLock.await(this.shutdownTimeout, TimeUnit.MILLISECONDS);
+			if (finished) {
+				logger.info("Successfully waited for consumers to finish.");
+			}
+			else {
+				logger.info("Consumers not finished.  Forcing channels to close.");
+			}
+		}
+		catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			logger.warn("Interrupted waiting for consumers.  Continuing with shutdown.");
+		}
+		for (SimpleConsumer consumer : consumersToCancel) {
+			consumer.close();
+		}
+		if (!this.taskSchedulerSet && this.taskScheduler instanceof ThreadPoolTaskScheduler) {
+			((ThreadPoolTaskScheduler) this.taskScheduler).destroy();
+			this.taskScheduler = null;
+		}
+	}
+
+	@Override
+	protected void invokeListener(Channel channel, Message message) throws Exception {
+		this.proxy.invokeListener(channel, message);
+	}
+
+	private void initializeProxy() {
+		if (this.adviceChain.length == 0) {
+			return;
+		}
+		ProxyFactory factory = new ProxyFactory();
+		for (Advice advice : this.adviceChain) {
+			factory.addAdvisor(new DefaultPointcutAdvisor(Pointcut.TRUE, advice));
+		}
+		factory.setProxyTargetClass(false);
+		factory.addInterface(ContainerDelegate.class);
+		factory.setTarget(this.delegate);
+		this.proxy = (ContainerDelegate) factory.getProxy();
+	}
+
+	private void queuesChanged() {
+		if (isRunning()) {
+			adjustConsumers();
+		}
+	}
+
+	/**
+	 * Start or cancel consumers so that each configured queue has {@link #consumersPerQueue}
+	 * consumers and removed queues have none.
+	 */
+	private void adjustConsumers() {
+		synchronized (this.consumersMonitor) {
+			Set<String> queueNames = getQueueNamesAsSet();
+			Iterator<Map.Entry<String, List<SimpleConsumer>>> iterator = this.consumersByQueue.entrySet().iterator();
+			while (iterator.hasNext()) {
+				Map.Entry<String, List<SimpleConsumer>> entry = iterator.next();
+				if (!queueNames.contains(entry.getKey())) {
+					for (SimpleConsumer consumer : entry.getValue()) {
+						if (logger.isDebugEnabled()) {
+							logger.debug("Queue removed; cancelling consumer: " + consumer);
+						}
+						consumer.cancel();
+					}
+					iterator.remove();
+				}
+			}
+			Iterator<String> restarts = this.consumersToRestart.iterator();
+			while (restarts.hasNext()) {
+				if (!queueNames.contains(restarts.next())) {
+					restarts.remove();
+				}
+			}
+			for (String queue : queueNames) {
+				List<SimpleConsumer> consumers = this.consumersByQueue.get(queue);
+				int current = (consumers == null ? 0 : consumers.size()) + countRestarts(queue);
+				for (int i = current; i < this.consumersPerQueue; i++) {
+					doConsumeFromQueue(queue);
+				}
+				while (consumers != null && consumers.size() > this.consumersPerQueue) {
+					SimpleConsumer consumer = consumers.remove(consumers.size() - 1);
+					if (logger.isDebugEnabled()) {
+						logger.debug("Consumers per queue reduced; cancelling consumer: " + consumer);
+					}
+					consumer.cancel();
+				}
+			}
+		}
+	}
+
+	private int countRestarts(String queue) {
+		int count = 0;
+		for (String restart : this.consumersToRestart) {
+			if (restart.equals(queue)) {
+				count++;
+			}
+		}
+		return count;
+	}
+
+	/**
+	 * Create a channel and start a consumer on the queue; if that fails, the monitor
+	 * will try again after the {@link #setRecoveryInterval(long) recoveryInterval}.
+	 * GUARDED by consumersMonitor.
+	 * @param queue the queue.
+	 */
+	private void doConsumeFromQueue(String queue) {
+		Channel channel = null;
+		try {
+			Connection connection = getConnectionFactory().createConnection();
+			channel = connection.createChannel(isChannelTransacted());
+			channel.queueDeclarePassive(queue);
+			if (!getAcknowledgeMode().isAutoAck()) {
+				// There's no point prefetching less than the tx size, otherwise the consumer will stall because the
+				// broker didn't get an ack for delivered messages
+				channel.basicQos(this.prefetchCount > this.txSize ? this.prefetchCount : this.txSize);
+			}
+			SimpleConsumer consumer = new SimpleConsumer(channel, queue);
+			this.cancellationLock.add(consumer);
+			channel.basicConsume(queue, getAcknowledgeMode().isAutoAck(), "", false, this.exclusive,
+					this.consumerArgs, consumer);
+			List<SimpleConsumer> consumers = this.consumersByQueue.get(queue);
+			if (consumers == null) {
+				consumers = new ArrayList<SimpleConsumer>();
+				this.consumersByQueue.put(queue, consumers);
+			}
+			consumers.add(consumer);
+			if (logger.isDebugEnabled()) {
+				logger.debug("Started consumer " + consumer);
+			}
+		}
+		catch (Exception e) {
+			if (logger.isWarnEnabled()) {
+				logger.warn("Failed to start consumer on queue '" + queue + "'; will retry in "
+						+ this.recoveryInterval + " ms: " + e);
+			}
+			if (channel != null) {
+				RabbitUtils.setPhysicalCloseRequired(true);
+				RabbitUtils.closeChannel(channel);
+			}
+			this.consumersToRestart.add(queue);
+			this.lastRestartAttempt = System.currentTimeMillis();
+		}
+	}
+
+	/**
+	 * Invoked periodically on the task scheduler to ack idle partial batches and restart
+	 * consumers that have failed.
+	 */
+	private void monitor() {
+		long now = System.currentTimeMillis();
+		List<SimpleConsumer> consumers = new ArrayList<SimpleConsumer>();
+		synchronized (this.consumersMonitor) {
+			for (List<SimpleConsumer> queueConsumers : this.consumersByQueue.values()) {
+				consumers.addAll(queueConsumers);
+			}
+		}
+		for (SimpleConsumer consumer : consumers) {
+			consumer.ackIfIdle(now);
+		}
+		synchronized (this.consumersMonitor) {
+			if (!isRunning() || this.consumersToRestart.isEmpty()
+					|| now - this.lastRestartAttempt < this.recoveryInterval) {
+				return;
+			}
+			List<String> queues = new ArrayList<String>(this.consumersToRestart);
+			this.consumersToRestart.clear();
+			this.lastRestartAttempt = now;
+			for (String queue : queues) {
+				if (logger.isInfoEnabled()) {
+					logger.info("Restarting consumer on queue '" + queue + "'");
+				}
+				doConsumeFromQueue(queue);
+			}
+		}
+	}
+
+	/**
+	 * Remove a consumer whose channel has gone away (and which was not cancelled by the
+	 * container) and schedule a replacement.
+	 * @param consumer the consumer.
+	 */
+	private void consumerFailed(SimpleConsumer consumer) {
+		synchronized (this.consumersMonitor) {
+			List<SimpleConsumer> consumers = this.consumersByQueue.get(consumer.queue);
+			if (consumers != null && consumers.remove(consumer)) {
+				if (consumers.isEmpty()) {
+					this.consumersByQueue.remove(consumer.queue);
+				}
+				if (isRunning()) {
+					this.consumersToRestart.add(consumer.queue);
+				}
+			}
+		}
+	}
+
+	private boolean shouldRequeue(Throwable ex) {
+		// We should always requeue if the container was stopping
+		boolean shouldRequeue = this.defaultRequeueRejected || ex instanceof MessageRejectedWhileStoppingException;
+		Throwable t = ex;
+		while (shouldRequeue && t != null) {
+			if (t instanceof AmqpRejectAndDontRequeueException) {
+				shouldRequeue = false;
+			}
+			t = t.getCause();
+		}
+		return shouldRequeue;
+	}
+
+	private final class SimpleConsumer extends DefaultConsumer {
+
+		private final String queue;
+
+		private final boolean ackRequired;
+
+		private final boolean transactional;
+
+		private final ReentrantLock lock = new ReentrantLock();
+
+		// guarded by lock
+		private int pendingAcks;
+
+		// guarded by lock
+		private long lastDeliveryTag;
+
+		private volatile long lastDelivery = System.currentTimeMillis();
+
+		private volatile boolean cancelled;
+
+		public SimpleConsumer(Channel channel, String queue) {
+			super(channel);
+			this.queue = queue;
+			this.ackRequired = !getAcknowledgeMode().isAutoAck() && !getAcknowledgeMode().isManual();
+			this.transactional = isChannelLocallyTransacted(channel);
+		}
+
+		@Override
+		public void handleDelivery(String consumerTag, Envelope envelope, BasicProperties properties, byte[] body)
+				throws IOException {
+			MessageProperties messageProperties = messagePropertiesConverter.toMessageProperties(properties,
+					envelope, "UTF-8");
+			messageProperties.setMessageCount(0);
+			Message message = new Message(body, messageProperties);
+			if (logger.isDebugEnabled()) {
+				logger.debug(this + " received " + message);
+			}
+			long deliveryTag = envelope.getDeliveryTag();
+			this.lock.lock();
+			try {
+				this.lastDelivery = System.currentTimeMillis();
+				try {
+					executeListener(getChannel(), message);
+					handleAck(deliveryTag, false);
+				}
+				catch (ImmediateAcknowledgeAmqpException e) {
+					if (logger.isDebugEnabled()) {
+						logger.debug("User requested ack for failed delivery: " + deliveryTag);
+					}
+					handleAck(deliveryTag, true);
+				}
+				catch (Throwable e) {
+					rollback(deliveryTag, e);
+				}
+			}
+			finally {
+				this.lock.unlock();
+			}
+		}
+
+		/**
+		 * GUARDED by lock
+		 */
+		private void handleAck(long deliveryTag, boolean force) throws IOException {
+			if (getAcknowledgeMode().isAutoAck()) {
+				return;
+			}
+			this.pendingAcks++;
+			this.lastDeliveryTag = deliveryTag;
+			if (force || this.pendingAcks >= txSize) {
+				sendAck();
+			}
+		}
+
+		/**
+		 * GUARDED by lock
+		 */
+		private void sendAck() throws IOException {
+			if (this.pendingAcks == 0) {
+				return;
+			}
+			if (this.ackRequired) {
+				getChannel().basicAck(this.lastDeliveryTag, true);
+			}
+			if (this.transactional) {
+				// For manual acks we still need to commit
+				RabbitUtils.commitIfNecessary(getChannel());
+			}
+			this.pendingAcks = 0;
+		}
+
+		/**
+		 * GUARDED by lock
+		 */
+		private void rollback(long deliveryTag, Throwable ex) {
+			try {
+				if (this.transactional) {
+					if (logger.isDebugEnabled()) {
+						logger.debug("Initiating transaction rollback on application exception: " + ex);
+					}
+					RabbitUtils.rollbackIfNecessary(getChannel());
+				}
+				if (this.ackRequired) {
+					boolean shouldRequeue = shouldRequeue(ex);
+					if (logger.isDebugEnabled()) {
+						logger.debug("Rejecting messages (requeue=" + shouldRequeue + ")");
+					}
+					getChannel().basicNack(deliveryTag, true, shouldRequeue);
+					if (this.transactional) {
+						// Need to commit the reject (=nack)
+						RabbitUtils.commitIfNecessary(getChannel());
+					}
+				}
+			}
+			catch (Exception e) {
+				logger.error("Application exception overridden by rollback exception", ex);
+				logger.error("Failed to reject messages", e);
+			}
+			finally {
+				this.pendingAcks = 0;
+			}
+		}
+
+		/**
+		 * Ack (or commit) a partial batch if there have been no deliveries for
+		 * {@link DirectMessageListenerContainer#setAckTimeout(long) ackTimeout}; skipped
+		 * if the consumer is currently busy in the listener.
+		 * @param now the current time.
+		 */
+		private void ackIfIdle(long now) {
+			if (now - this.lastDelivery < ackTimeout || !this.lock.tryLock()) {
+				return;
+			}
+			try {
+				if (getChannel().isOpen()) {
+					sendAck();
+				}
+			}
+			catch (Exception e) {
+				logger.error("Failed to acknowledge messages for " + this, e);
+			}
+			finally {
+				this.lock.unlock();
+			}
+		}
+
+		/**
+		 * Cancel the consumer; any in-flight messages will be processed (or rejected) and the
+		 * channel will be closed when the broker confirms the cancellation.
+		 */
+		private void cancel() {
+			this.cancelled = true;
+			String consumerTag = getConsumerTag();
+			try {
+				if (consumerTag != null && getChannel().isOpen()) {
+					getChannel().basicCancel(consumerTag);
+				}
+				else {
+					close();
+				}
+			}
+			catch (Exception e) {
+				if (logger.isDebugEnabled()) {
+					logger.debug("Error cancelling consumer " + this, e);
+				}
+				close();
+			}
+		}
+
+		private void close() {
+			this.lock.lock();
+			try {
+				if (getChannel().isOpen()) {
+					sendAck();
+				}
+			}
+			catch (Exception e) {
+				if (logger.isDebugEnabled()) {
+					logger.debug("Failed to acknowledge messages on close for " + this, e);
+				}
+			}
+			finally {
+				this.lock.unlock();
+			}
+			RabbitUtils.setPhysicalCloseRequired(true);
+			RabbitUtils.closeChannel(getChannel());
+			cancellationLock.release(this);
+		}
+
+		@Override
+		public void handleCancelOk(String consumerTag) {
+			if (logger.isDebugEnabled()) {
+				logger.debug("Received cancellation notice for " + this);
+			}
+			close();
+		}
+
+		@Override
+		public void handleCancel(String consumerTag) throws IOException {
+			if (logger.isWarnEnabled()) {
+				logger.warn("Cancel received for " + this);
+			}
+			close();
+			consumerFailed(this);
+		}
+
+		@Override
+		public void handleShutdownSignal(String consumerTag, ShutdownSignalException sig) {
+			if (logger.isDebugEnabled()) {
+				if (RabbitUtils.isNormalShutdown(sig)) {
+					logger.debug("Received shutdown signal for " + this + ": " + sig.getMessage());
+				}
+				else {
+					logger.debug("Received shutdown signal for " + this, sig);
+				}
+			}
+			// The delivery tags will be invalid if the channel shuts down
+			this.lock.lock();
+			try {
+				this.pendingAcks = 0;
+			}
+			finally {
+				this.lock.unlock();
+			}
+			cancellationLock.release(this);
+			if (!this.cancelled) {
+				consumerFailed(this);
+			}
+		}
+
+		@Override
+		public String toString() {
+			return "SimpleConsumer [queue=" + this.queue + ", consumerTag=" + getConsumerTag() + ", channel="
+					+ getChannel() + "]";
+		}
+
+	}
+
+}
@@ -0,0 +1,41 @@
+/*
+ * Copyright 2014 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+
+package org.springframework.amqp.rabbit.listener;
+
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * Strategy for creating the queue used by a {@link BlockingQueueConsumer} to hand off
+ * deliveries from the RabbitMQ client thread to the listener container thread.
+ * <p>
+ * Exactly one thread (at a time) inserts into the queue (using {@code put}) and one
+ * thread removes from it (using {@code poll} with a timeout, or {@code take}); the
+ * queue must be bounded by the supplied capacity.
+ *
+ * @author Gary Russell
+ * @since 1.4
+ * @see SpscHandoffQueueFactory
+ *
+ */
+public interface HandoffQueueFactory {
+
+	/**
+	 * Create a queue.
+	 * @param capacity the capacity (the consumer's prefetch count).
+	 * @param <T> the element type.
+	 * @return the queue.
+	 */
+	<T> BlockingQueue<T> createQueue(int capacity);
+
+}
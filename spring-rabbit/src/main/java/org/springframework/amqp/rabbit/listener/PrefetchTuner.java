@@ -0,0 +1,146 @@
+/*
+ * Copyright 2014 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+
+package org.springframework.amqp.rabbit.listener;
+
+import java.util.concurrent.TimeUnit;
+
+import org.springframework.util.Assert;
+
+/**
+ * Calculates the prefetch count for a {@link BlockingQueueConsumer} from the measured
+ * listener service time and the network round trip time.
+ * <p>
+ * To keep the consumer busy, enough messages must be in flight to cover the time it
+ * takes for an ack to reach the broker and for the next message to arrive - that is,
+ * the round trip time divided by the service time per message - in addition to the
+ * messages received before each ack ({@code txSize}). The result is doubled to absorb
+ * jitter and clamped between the minimum and maximum prefetch counts.
+ * <p>
+ * Not thread-safe; used by the thread that receives the messages.
+ *
+ * @author Gary Russell
+ * @since 1.4
+ *
+ */
+class PrefetchTuner {
+
+	private static final int HEADROOM = 2;
+
+	private static final int AVERAGE_SHIFT = 2; // weight of new samples is 1/4
+
+	private final int minPrefetch;
+
+	private final int maxPrefetch;
+
+	private final int txSize;
+
+	private final long intervalNanos;
+
+	private long lastReceived;
+
+	private long serviceNanos;
+
+	private int serviceCount;
+
+	private long averageServiceNanos;
+
+	private long averageRoundTripNanos;
+
+	private long lastTune;
+
+	PrefetchTuner(int minPrefetch, int maxPrefetch, int txSize, long interval) {
+		Assert.isTrue(minPrefetch > 0, "'minPrefetch' must be > 0");
+		Assert.isTrue(maxPrefetch >= minPrefetch, "'maxPrefetch' must be >= 'minPrefetch'");
+		Assert.isTrue(txSize > 0, "'txSize' must be > 0");
+		Assert.isTrue(interval > 0, "'interval' must be > 0");
+		this.minPrefetch = minPrefetch;
+		this.maxPrefetch = maxPrefetch;
+		this.txSize = txSize;
+		this.intervalNanos = TimeUnit.MILLISECONDS.toNanos(interval);
+		this.lastTune = System.nanoTime();
+	}
+
+	int getMaxPrefetch() {
+		return this.maxPrefetch;
+	}
+
+	/**
+	 * Called when the consumer asks for the next message; the time since the
+	 * previous message was received is the time the listener took to process it.
+	 * @param now the current {@link System#nanoTime()}.
+	 */
+	void receiving(long now) {
+		if (this.lastReceived != 0) {
+			this.serviceNanos += now - this.lastReceived;
+			this.serviceCount++;
+			this.lastReceived = 0;
+		}
+	}
+
+	/**
+	 * Called when a message has been handed to the consumer.
+	 * @param now the current {@link System#nanoTime()}.
+	 */
+	void received(long now) {
+		this.lastReceived = now;
+	}
+
+	/**
+	 * Record the time taken by a synchronous round trip to the broker.
+	 * @param nanos the round trip time.
+	 */
+	void roundTrip(long nanos) {
+		long average = this.averageRoundTripNanos;
+		this.averageRoundTripNanos = average == 0 ? nanos : average + ((nanos - average) >> AVERAGE_SHIFT);
+	}
+
+	/**
+	 * @param now the current {@link System#nanoTime()}.
+	 * @return true if the tuning interval has elapsed.
+	 */
+	boolean isDue(long now) {
+		return now - this.lastTune >= this.intervalNanos;
+	}
+
+	/**
+	 * Calculate the prefetch count from the samples taken since the previous call.
+	 * @param current the current prefetch count.
+	 * @return the new prefetch count; the current count if there are no samples.
+	 */
+	int calculatePrefetch(int current) {
+		this.lastTune = System.nanoTime();
+		if (this.serviceCount > 0) {
+			long sample = this.serviceNanos / this.serviceCount;
+			long average = this.averageServiceNanos;
+			this.averageServiceNanos = average == 0 ? sample : average + ((sample - average) >> AVERAGE_SHIFT);
+			this.serviceNanos = 0;
+			this.serviceCount = 0;
+		}
+		long service = this.averageServiceNanos;
+		if (service == 0 || this.averageRoundTripNanos == 0) {
+			return current;
+		}
+		long cover = (HEADROOM * this.averageRoundTripNanos + service - 1) / service;
+		long prefetch = this.txSize + cover;
+		return (int) Math.max(this.minPrefetch, Math.min(prefetch, this.maxPrefetch));
+	}
+
+	@Override
+	public String toString() {
+		return "PrefetchTuner [minPrefetch=" + this.minPrefetch + ", maxPrefetch=" + this.maxPrefetch
+				+ ", averageServiceNanos=" + this.averageServiceNanos
+				+ ", averageRoundTripNanos=" + this.averageRoundTripNanos + "]";
+	}
+
+}
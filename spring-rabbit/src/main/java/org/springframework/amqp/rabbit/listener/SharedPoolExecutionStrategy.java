@@ -0,0 +1,61 @@
+/*
+ * Copyright 2014 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+
+package org.springframework.amqp.rabbit.listener;
+
+import java.util.concurrent.Executor;
+
+import org.springframework.util.Assert;
+
+/**
+ * A {@link ConsumerExecutionStrategy} for running many, mostly idle, consumers on a
+ * bounded pool of threads (which may be shared by several containers). A consumer only
+ * occupies a thread while it has deliveries to process; when idle, it releases the thread
+ * and is resubmitted to the pool when the next message arrives.
+ * <p>
+ * The pool is managed by the caller; it should queue tasks rather than reject them when
+ * all its threads are busy, for example a {@code ThreadPoolTaskExecutor} with a fixed
+ * pool size and an unbounded queue. If the pool rejects a consumer that is being resumed,
+ * the consumer runs on a dedicated thread until it is next idle.
+ * <p>
+ * Because idle consumers do not wait for the {@code receiveTimeout}, they are not stopped
+ * by the idle detection of a container with {@code maxConcurrentConsumers}.
+ *
+ * @author Gary Russell
+ * @since 1.4
+ *
+ */
+public class SharedPoolExecutionStrategy implements ConsumerExecutionStrategy {
+
+	private final Executor executor;
+
+	/**
+	 * Create an instance using the supplied pool.
+	 * @param executor the pool.
+	 */
+	public SharedPoolExecutionStrategy(Executor executor) {
+		Assert.notNull(executor, "'executor' cannot be null");
+		this.executor = executor;
+	}
+
+	@Override
+	public Executor getExecutor() {
+		return this.executor;
+	}
+
+	@Override
+	public boolean isThreadReleasedWhenIdle() {
+		return true;
+	}
+
+}
@@ -14,15 +14,18 @@
 package org.springframework.amqp.rabbit.listener;
 
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Properties;
 import java.util.Set;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
 
@@ -35,6 +38,7 @@ import org.springframework.amqp.AmqpIllegalStateException;
 import org.springframework.amqp.AmqpRejectAndDontRequeueException;
 import org.springframework.amqp.ImmediateAcknowledgeAmqpException;
 import org.springframework.amqp.core.AcknowledgeMode;
+import org.springframework.amqp.core.BatchMessageListener;
 import org.springframework.amqp.core.Message;
 import org.springframework.amqp.core.Queue;
 import org.springframework.amqp.rabbit.connection.CachingConnectionFactory;
@@ -44,7 +48,9 @@ import org.springframework.amqp.rabbit.connection.ConnectionFactoryUtils;
 import org.springframework.amqp.rabbit.connection.ConsumerChannelRegistry;
 import org.springframework.amqp.rabbit.connection.RabbitResourceHolder;
 import org.springframework.amqp.rabbit.connection.RabbitUtils;
+import org.springframework.amqp.rabbit.core.ChannelAwareBatchMessageListener;
 import org.springframework.amqp.rabbit.core.RabbitAdmin;
+import org.springframework.amqp.rabbit.listener.metrics.ListenerMetricsRecorder;
 import org.springframework.amqp.rabbit.support.DefaultMessagePropertiesConverter;
 import org.springframework.amqp.rabbit.support.MessagePropertiesConverter;
 import org.springframework.aop.Pointcut;
@@ -89,6 +95,10 @@ public class SimpleMessageListenerContainer extends AbstractMessageListenerConta
 
 	public static final int DEFAULT_PREFETCH_COUNT = 1;
 
+	public static final int DEFAULT_MAX_PREFETCH_COUNT = 250;
+
+	public static final long DEFAULT_PREFETCH_TUNE_INTERVAL = 5000;
+
 	public static final long DEFAULT_SHUTDOWN_TIMEOUT = 5000;
 
 	/**
@@ -98,6 +108,12 @@ public class SimpleMessageListenerContainer extends AbstractMessageListenerConta
 
 	private volatile int prefetchCount = DEFAULT_PREFETCH_COUNT;
 
+	private volatile boolean prefetchAutoTune;
+
+	private volatile int maxPrefetchCount = DEFAULT_MAX_PREFETCH_COUNT;
+
+	private volatile long prefetchTuneInterval = DEFAULT_PREFETCH_TUNE_INTERVAL;
+
 	private volatile long startConsumerMinInterval = DEFAULT_START_CONSUMER_MIN_INTERVAL;
 
 	private volatile long stopConsumerMinInterval = DEFAULT_STOP_CONSUMER_MIN_INTERVAL;
@@ -106,10 +122,18 @@ public class SimpleMessageListenerContainer extends AbstractMessageListenerConta
 
 	private volatile int consecutiveIdleTrigger = DEFAULT_CONSECUTIVE_IDLE_TRIGGER;
 
+	private volatile ConcurrencyPolicy concurrencyPolicy;
+
 	private volatile int txSize = 1;
 
 	private volatile Executor taskExecutor = new SimpleAsyncTaskExecutor();
 
+	private volatile boolean releaseThreadWhenIdle;
+
+	private final Executor resumeFallbackExecutor = new SimpleAsyncTaskExecutor();
+
+	private volatile ListenerMetricsRecorder metricsRecorder;
+
 	private volatile int concurrentConsumers = 1;
 
 	private volatile Integer maxConcurrentConsumers;
@@ -143,6 +167,12 @@ public class SimpleMessageListenerContainer extends AbstractMessageListenerConta
 
 	private volatile boolean defaultRequeueRejected = true;
 
+	private volatile Boolean batchRequeueRejected;
+
+	private volatile boolean nackMultiple;
+
+	private volatile HandoffQueueFactory handoffQueueFactory;
+
 	private final Map<String, Object> consumerArgs = new HashMap<String, Object>();
 
 	private volatile RabbitAdmin rabbitAdmin;
@@ -189,6 +219,10 @@ public class SimpleMessageListenerContainer extends AbstractMessageListenerConta
 	 * separate advice is created for the transaction and applied first in the chain. In that case the advice chain
 	 * provided here should not contain a transaction interceptor (otherwise two transactions would be be applied).
 	 * </p>
+	 * <p>
+	 * The advice chain is not applied to a {@link BatchMessageListener} or {@link ChannelAwareBatchMessageListener};
+	 * retry interceptors operate on individual messages.
+	 * </p>
 	 *
 	 * @param adviceChain the advice chain to set
 	 */
@@ -357,6 +391,21 @@ public class SimpleMessageListenerContainer extends AbstractMessageListenerConta
 		this.consecutiveIdleTrigger = consecutiveIdleTrigger;
 	}
 
+	/**
+	 * If {@link #maxConcurrentConsumers} is greater then {@link #concurrentConsumers}, set a
+	 * {@link ConcurrencyPolicy} to decide when consumers are started and stopped, instead of the
+	 * {@link #setConsecutiveActiveTrigger(int) consecutiveActiveTrigger},
+	 * {@link #setConsecutiveIdleTrigger(int) consecutiveIdleTrigger} and the minimum start/stop
+	 * intervals, which are then ignored.
+	 *
+	 * @param concurrencyPolicy the policy.
+	 * @since 1.4
+	 * @see AdaptiveConcurrencyPolicy
+	 */
+	public void setConcurrencyPolicy(ConcurrencyPolicy concurrencyPolicy) {
+		this.concurrencyPolicy = concurrencyPolicy;
+	}
+
 	/**
 	 * The time (in milliseconds) that a consumer should wait for data. Default
 	 * 1000 (1 second).
@@ -384,6 +433,24 @@ public class SimpleMessageListenerContainer extends AbstractMessageListenerConta
 	public void setTaskExecutor(Executor taskExecutor) {
 		Assert.notNull(taskExecutor, "taskExecutor must not be null");
 		this.taskExecutor = taskExecutor;
+		this.releaseThreadWhenIdle = false;
+	}
+
+	/**
+	 * Set the {@link ConsumerExecutionStrategy} determining how consumers are run; replaces
+	 * any {@link #setTaskExecutor(Executor) taskExecutor}. By default, each consumer runs on
+	 * its own thread from a {@link SimpleAsyncTaskExecutor}.
+	 *
+	 * @param consumerExecutionStrategy the strategy.
+	 * @since 1.4
+	 * @see ThreadPerConsumerExecutionStrategy
+	 * @see SharedPoolExecutionStrategy
+	 */
+	public void setConsumerExecutionStrategy(ConsumerExecutionStrategy consumerExecutionStrategy) {
+		Assert.notNull(consumerExecutionStrategy, "consumerExecutionStrategy must not be null");
+		Assert.notNull(consumerExecutionStrategy.getExecutor(), "The strategy's executor must not be null");
+		this.taskExecutor = consumerExecutionStrategy.getExecutor();
+		this.releaseThreadWhenIdle = consumerExecutionStrategy.isThreadReleasedWhenIdle();
 	}
 
 	/**
@@ -396,10 +463,66 @@ public class SimpleMessageListenerContainer extends AbstractMessageListenerConta
 		this.prefetchCount = prefetchCount;
 	}
 
+	/**
+	 * When true, each consumer periodically adjusts its prefetch count, starting at the
+	 * {@link #setPrefetchCount(int) prefetchCount} and up to the {@link #setMaxPrefetchCount(int)
+	 * maxPrefetchCount}, so that enough messages are in flight to cover the network round trip
+	 * given the measured listener service time, without buffering more than needed.
+	 * The adjusted prefetch is a channel-wide limit, which requires RabbitMQ 3.3 or later.
+	 * Default false.
+	 *
+	 * @param prefetchAutoTune true to enable prefetch tuning.
+	 * @since 1.4
+	 */
+	public void setPrefetchAutoTune(boolean prefetchAutoTune) {
+		this.prefetchAutoTune = prefetchAutoTune;
+	}
+
+	/**
+	 * The maximum prefetch count when {@link #setPrefetchAutoTune(boolean) prefetchAutoTune}
+	 * is true; also the capacity of each consumer's hand off queue. Default 250.
+	 *
+	 * @param maxPrefetchCount the maximum prefetch count.
+	 * @since 1.4
+	 */
+	public void setMaxPrefetchCount(int maxPrefetchCount) {
+		Assert.isTrue(maxPrefetchCount > 0, "'maxPrefetchCount' must be > 0");
+		this.maxPrefetchCount = maxPrefetchCount;
+	}
+
+	/**
+	 * The interval (ms) between prefetch adjustments when {@link #setPrefetchAutoTune(boolean)
+	 * prefetchAutoTune} is true. Default 5000.
+	 *
+	 * @param prefetchTuneInterval the interval.
+	 * @since 1.4
+	 */
+	public void setPrefetchTuneInterval(long prefetchTuneInterval) {
+		Assert.isTrue(prefetchTuneInterval > 0, "'prefetchTuneInterval' must be > 0");
+		this.prefetchTuneInterval = prefetchTuneInterval;
+	}
+
+	/**
+	 * Set a {@link ListenerMetricsRecorder} to record the hand off queue wait time, listener
+	 * execution time, ack latency, batch size, redeliveries and consumer restarts. Applies to
+	 * consumers started after it is set.
+	 *
+	 * @param metricsRecorder the recorder.
+	 * @since 1.4
+	 * @see org.springframework.amqp.rabbit.listener.metrics.HistogramMetricsRecorder
+	 */
+	public void setMetricsRecorder(ListenerMetricsRecorder metricsRecorder) {
+		this.metricsRecorder = metricsRecorder;
+	}
+
 	/**
 	 * Tells the container how many messages to process in a single transaction (if the channel is transactional). For
 	 * best results it should be less than or equal to {@link #setPrefetchCount(int) the prefetch count}. Also affects
 	 * how often acks are sent when using {@link AcknowledgeMode#AUTO} - one ack per txSize. Default is 1.
+	 * <p>
+	 * When the listener is a {@link BatchMessageListener} or {@link ChannelAwareBatchMessageListener}, this is also
+	 * the maximum number of messages delivered to it in a single call; a smaller batch is delivered if no further
+	 * message arrives within the {@link #setReceiveTimeout(long) receiveTimeout}.
 	 *
 	 * @param txSize the transaction size
 	 */
@@ -443,6 +566,47 @@ public class SimpleMessageListenerContainer extends AbstractMessageListenerConta
 		this.defaultRequeueRejected = defaultRequeueRejected;
 	}
 
+	/**
+	 * When {@link #setTxSize(int) txSize} is greater than one and the listener fails, determines whether
+	 * the other messages received in the same batch (those that were processed before the failure) are
+	 * requeued. The message that failed is governed by {@link #setDefaultRequeueRejected(boolean)
+	 * defaultRequeueRejected} and {@link AmqpRejectAndDontRequeueException}. By default, the other messages
+	 * are treated the same as the failed message. Messages are always requeued if the container is stopping.
+	 *
+	 * @param batchRequeueRejected true to requeue the other messages in the batch.
+	 * @since 1.4
+	 */
+	public void setBatchRequeueRejected(boolean batchRequeueRejected) {
+		this.batchRequeueRejected = batchRequeueRejected;
+	}
+
+	/**
+	 * When true, reject messages after a listener failure using {@code basicNack} with
+	 * {@code multiple=true}, so that a batch is rejected with one frame (two if the failed message
+	 * and the rest of the batch have different requeue settings) instead of one {@code basicReject}
+	 * per message. Requires a broker that supports the {@code basic.nack} extension. Default false.
+	 *
+	 * @param nackMultiple true to use basicNack with multiple=true.
+	 * @since 1.4
+	 * @see #setBatchRequeueRejected(boolean)
+	 */
+	public void setNackMultiple(boolean nackMultiple) {
+		this.nackMultiple = nackMultiple;
+	}
+
+	/**
+	 * Set the factory for the queue each consumer uses to hand off deliveries from the RabbitMQ client
+	 * thread to the container thread. By default, a {@link java.util.concurrent.LinkedBlockingQueue}
+	 * is used. A {@link SpscHandoffQueueFactory} avoids the locks and per-delivery node allocation.
+	 * Takes effect when consumers are next (re)started.
+	 *
+	 * @param handoffQueueFactory the factory.
+	 * @since 1.4
+	 */
+	public void setHandoffQueueFactory(HandoffQueueFactory handoffQueueFactory) {
+		this.handoffQueueFactory = handoffQueueFactory;
+	}
+
 	public void setConsumerArguments(Map<String, Object> args) {
 		synchronized(consumersMonitor) {
 			this.consumerArgs.clear();
@@ -815,6 +979,61 @@ public class SimpleMessageListenerContainer extends AbstractMessageListenerConta
 		}
 	}
 
+	private void applyConcurrencyPolicy(int delta, BlockingQueueConsumer consumer) {
+		synchronized (this.consumersMonitor) {
+			if (this.consumers != null && this.maxConcurrentConsumers != null) {
+				if (delta > 0) {
+					int toStart = Math.min(delta, this.maxConcurrentConsumers - this.consumers.size());
+					if (toStart > 0) {
+						if (logger.isDebugEnabled()) {
+							logger.debug("Concurrency policy starting " + toStart + " consumer(s)");
+						}
+						this.addAndStartConsumers(toStart);
+						this.lastConsumerStarted = System.currentTimeMillis();
+					}
+				}
+				else if (delta < 0 && this.consumers.size() > this.concurrentConsumers) {
+					this.consumers.put(consumer, false);
+					if (logger.isDebugEnabled()) {
+						logger.debug("Concurrency policy stopping consumer: " + consumer);
+					}
+					this.lastConsumerStopped = System.currentTimeMillis();
+				}
+			}
+		}
+	}
+
+	/**
+	 * Sum the message counts of the queues from passive declarations.
+	 * @return the count, or -1 if it could not be determined.
+	 */
+	private int getBrokerMessageCount() {
+		RabbitAdmin admin = this.rabbitAdmin;
+		if (admin == null) {
+			return -1;
+		}
+		int count = 0;
+		try {
+			for (String queueName : getRequiredQueueNames()) {
+				Properties queueProperties = admin.getQueueProperties(queueName);
+				if (queueProperties == null) {
+					return -1;
+				}
+				Object messageCount = queueProperties.get(RabbitAdmin.QUEUE_MESSAGE_COUNT);
+				if (messageCount instanceof Integer) {
+					count += (Integer) messageCount;
+				}
+			}
+		}
+		catch (AmqpException e) {
+			if (logger.isDebugEnabled()) {
+				logger.debug("Failed to determine the queue depth", e);
+			}
+			return -1;
+		}
+		return count;
+	}
+
 	private void queuesChanged() {
 		synchronized (consumersMonitor) {
 			if (this.consumers != null) {
@@ -848,6 +1067,20 @@ public class SimpleMessageListenerContainer extends AbstractMessageListenerConta
 		consumer = new BlockingQueueConsumer(getConnectionFactory(), this.messagePropertiesConverter, cancellationLock,
 				getAcknowledgeMode(), isChannelTransacted(), actualPrefetchCount, this.defaultRequeueRejected,
 				this.consumerArgs, this.exclusive, queues);
+		consumer.setNackMultiple(this.nackMultiple);
+		if (this.handoffQueueFactory != null) {
+			consumer.setHandoffQueueFactory(this.handoffQueueFactory);
+		}
+		if (this.prefetchAutoTune && !getAcknowledgeMode().isAutoAck()) {
+			consumer.setPrefetchAutoTune(Math.max(this.maxPrefetchCount, actualPrefetchCount), this.txSize,
+					this.prefetchTuneInterval);
+		}
+		if (this.batchRequeueRejected != null) {
+			consumer.setBatchRequeueRejected(this.batchRequeueRejected);
+		}
+		if (this.metricsRecorder != null) {
+			consumer.setMetricsRecorder(this.metricsRecorder);
+		}
 		return consumer;
 	}
 
@@ -864,6 +1097,9 @@ public class SimpleMessageListenerContainer extends AbstractMessageListenerConta
 					this.consumers.remove(consumer);
 					consumer = createBlockingQueueConsumer();
 					this.consumers.put(consumer, true);
+					if (this.metricsRecorder != null) {
+						this.metricsRecorder.consumerRestarted();
+					}
 				}
 				catch (RuntimeException e) {
 					logger.warn("Consumer failed irretrievably on restart. " + e.getClass() + ": " + e.getMessage());
@@ -939,6 +1175,13 @@ public class SimpleMessageListenerContainer extends AbstractMessageListenerConta
 
 		Channel channel = consumer.getChannel();
 
+		boolean batchListener = isBatchListener();
+		List<Message> messages = null;
+		ListenerMetricsRecorder metricsRecorder = this.metricsRecorder;
+		// the concurrency policy uses the listener time, which excludes the receive wait
+		boolean timeListener = metricsRecorder != null || this.concurrencyPolicy != null;
+		int received = 0;
+
 		for (int i = 0; i < txSize; i++) {
 
 			logger.trace("Waiting for message from consumer.");
@@ -946,6 +1189,15 @@ public class SimpleMessageListenerContainer extends AbstractMessageListenerConta
 			if (message == null) {
 				break;
 			}
+			received++;
+			if (batchListener) {
+				if (messages == null) {
+					messages = new ArrayList<Message>(txSize);
+				}
+				messages.add(message);
+				continue;
+			}
+			long start = timeListener ? System.nanoTime() : 0;
 			try {
 				executeListener(channel, message);
 			} catch (ImmediateAcknowledgeAmqpException e) {
@@ -953,10 +1205,44 @@ public class SimpleMessageListenerContainer extends AbstractMessageListenerConta
 			} catch (Throwable ex) {
 				consumer.rollbackOnExceptionIfNecessary(ex);
 				throw ex;
+			} finally {
+				if (timeListener) {
+					long elapsed = System.nanoTime() - start;
+					consumer.addListenerTime(elapsed);
+					if (metricsRecorder != null) {
+						metricsRecorder.recordListenerExecution(elapsed, 1);
+					}
+				}
 			}
 
 		}
 
+		if (metricsRecorder != null && received > 0) {
+			metricsRecorder.recordBatchSize(received);
+		}
+
+		if (messages != null) {
+			long start = timeListener ? System.nanoTime() : 0;
+			try {
+				executeListener(channel, messages);
+			} catch (ImmediateAcknowledgeAmqpException e) {
+				if (logger.isDebugEnabled()) {
+					logger.debug("User requested ack for failed batch of " + messages.size() + " messages");
+				}
+			} catch (Throwable ex) {
+				consumer.rollbackOnExceptionIfNecessary(ex);
+				throw ex;
+			} finally {
+				if (timeListener) {
+					long elapsed = System.nanoTime() - start;
+					consumer.addListenerTime(elapsed);
+					if (metricsRecorder != null) {
+						metricsRecorder.recordListenerExecution(elapsed, messages.size());
+					}
+				}
+			}
+		}
+
 		return consumer.commitIfNecessary(isChannelLocallyTransacted(channel));
 
 	}
@@ -973,9 +1259,35 @@ public class SimpleMessageListenerContainer extends AbstractMessageListenerConta
 
 		private volatile FatalListenerStartupException startupException;
 
+		private final CycleStatistics statistics;
+
+		private final Runnable resumeTask = new Runnable() {
+
+			@Override
+			public void run() {
+				try {
+					SimpleMessageListenerContainer.this.taskExecutor.execute(AsyncMessageProcessingConsumer.this);
+				}
+				catch (RejectedExecutionException e) {
+					/*
+					 * Nothing else would resubmit the consumer; run it on its own thread until it is
+					 * idle again, when it releases the thread and goes back to the pool.
+					 */
+					logger.warn("Task executor rejected " + AsyncMessageProcessingConsumer.this.consumer
+							+ "; resuming it on a dedicated thread", e);
+					SimpleMessageListenerContainer.this.resumeFallbackExecutor
+							.execute(AsyncMessageProcessingConsumer.this);
+				}
+			}
+
+		};
+
+		private volatile boolean started;
+
 		public AsyncMessageProcessingConsumer(BlockingQueueConsumer consumer) {
 			this.consumer = consumer;
 			this.start = new CountDownLatch(1);
+			this.statistics = new CycleStatistics(consumer);
 		}
 
 		/**
@@ -998,35 +1310,41 @@ public class SimpleMessageListenerContainer extends AbstractMessageListenerConta
 
 			boolean aborted = false;
 
+			boolean suspended = false;
+
 			int consecutiveIdles = 0;
 
 			int consecutiveMessages = 0;
 
 			try {
 
-				try {
-					SimpleMessageListenerContainer.this.redeclareElementsIfNecessary();
-					this.consumer.start();
-					this.start.countDown();
-				}
-				catch (QueuesNotAvailableException e) {
-					if (SimpleMessageListenerContainer.this.missingQueuesFatal) {
-						throw e;
+				// when resumed after releasing the thread while idle, the consumer is already started
+				if (!this.started) {
+					try {
+						SimpleMessageListenerContainer.this.redeclareElementsIfNecessary();
+						this.consumer.start();
+						this.started = true;
+						this.start.countDown();
+					}
+					catch (QueuesNotAvailableException e) {
+						if (SimpleMessageListenerContainer.this.missingQueuesFatal) {
+							throw e;
+						}
+						else {
+							this.start.countDown();
+							handleStartupFailure(e);
+							throw e;
+						}
 					}
-					else {
+					catch (FatalListenerStartupException ex) {
+						throw ex;
+					}
+					catch (Throwable t) {
 						this.start.countDown();
-						handleStartupFailure(e);
-						throw e;
+						handleStartupFailure(t);
+						throw t;
 					}
 				}
-				catch (FatalListenerStartupException ex) {
-					throw ex;
-				}
-				catch (Throwable t) {
-					this.start.countDown();
-					handleStartupFailure(t);
-					throw t;
-				}
 
 				if (SimpleMessageListenerContainer.this.transactionManager != null) {
 					/*
@@ -1040,10 +1358,29 @@ public class SimpleMessageListenerContainer extends AbstractMessageListenerConta
 				// transactional
 				boolean continuable = false;
 				while (isActive(this.consumer) || continuable) {
+					if (!continuable && SimpleMessageListenerContainer.this.releaseThreadWhenIdle
+							&& this.consumer.suspendIfIdle(this.resumeTask)) {
+						// another thread may now resume this consumer; don't touch it after this point
+						suspended = true;
+						break;
+					}
 					try {
+						ConcurrencyPolicy concurrencyPolicy = SimpleMessageListenerContainer.this.concurrencyPolicy;
+						boolean evaluatePolicy = concurrencyPolicy != null
+								&& SimpleMessageListenerContainer.this.maxConcurrentConsumers != null;
+						if (evaluatePolicy) {
+							this.statistics.startCycle();
+						}
 						// Will come back false when the queue is drained
 						continuable = receiveAndExecute(this.consumer) && !isChannelTransacted();
-						if (SimpleMessageListenerContainer.this.maxConcurrentConsumers != null) {
+						if (evaluatePolicy) {
+							this.statistics.endCycle();
+							int delta = concurrencyPolicy.evaluate(this.statistics);
+							if (delta != 0) {
+								applyConcurrencyPolicy(delta, this.consumer);
+							}
+						}
+						else if (SimpleMessageListenerContainer.this.maxConcurrentConsumers != null) {
 							if (continuable) {
 								consecutiveIdles = 0;
 								if (consecutiveMessages++ > SimpleMessageListenerContainer.this.consecutiveActiveTrigger) {
@@ -1129,6 +1466,10 @@ public class SimpleMessageListenerContainer extends AbstractMessageListenerConta
 				}
 			}
 
+			if (suspended) {
+				return;
+			}
+
 			// In all cases count down to allow container to progress beyond startup
 			start.countDown();
 
@@ -1172,11 +1513,113 @@ public class SimpleMessageListenerContainer extends AbstractMessageListenerConta
 
 	}
 
+	/**
+	 * The {@link ConcurrencyPolicy.ConsumerStatistics} for a consumer; reused for each cycle.
+	 */
+	private final class CycleStatistics implements ConcurrencyPolicy.ConsumerStatistics {
+
+		private final BlockingQueueConsumer consumer;
+
+		private long cycleStart;
+
+		private long receivedAtStart;
+
+		private long listenerTimeAtStart;
+
+		private int messageCount;
+
+		private long cycleTimeNanos;
+
+		private long listenerTimeNanos;
+
+		private CycleStatistics(BlockingQueueConsumer consumer) {
+			this.consumer = consumer;
+		}
+
+		private void startCycle() {
+			this.receivedAtStart = this.consumer.getReceivedCount();
+			this.listenerTimeAtStart = this.consumer.getListenerTimeNanos();
+			this.cycleStart = System.nanoTime();
+		}
+
+		private void endCycle() {
+			this.cycleTimeNanos = System.nanoTime() - this.cycleStart;
+			this.messageCount = (int) (this.consumer.getReceivedCount() - this.receivedAtStart);
+			this.listenerTimeNanos = this.consumer.getListenerTimeNanos() - this.listenerTimeAtStart;
+		}
+
+		@Override
+		public int getMessageCount() {
+			return this.messageCount;
+		}
+
+		@Override
+		public long getCycleTimeNanos() {
+			return this.cycleTimeNanos;
+		}
+
+		@Override
+		public long getListenerTimeNanos() {
+			return this.listenerTimeNanos;
+		}
+
+		@Override
+		public int getHandoffQueueSize() {
+			return this.consumer.getQueuedCount();
+		}
+
+		@Override
+		public int getPrefetchCount() {
+			return this.consumer.getPrefetchCount();
+		}
+
+		@Override
+		public int getConsumerCount() {
+			synchronized (consumersMonitor) {
+				return consumers == null ? 0 : consumers.size();
+			}
+		}
+
+		@Override
+		public int getMinConsumers() {
+			return concurrentConsumers;
+		}
+
+		@Override
+		public int getMaxConsumers() {
+			Integer max = maxConcurrentConsumers;
+			return max == null ? concurrentConsumers : max;
+		}
+
+		@Override
+		public int getBrokerMessageCount() {
+			return SimpleMessageListenerContainer.this.getBrokerMessageCount();
+		}
+
+	}
+
 	@Override
 	protected void invokeListener(Channel channel, Message message) throws Exception {
 		proxy.invokeListener(channel, message);
 	}
 
+	/**
+	 * Also accept a {@link BatchMessageListener} or {@link ChannelAwareBatchMessageListener}.
+	 * @param messageListener the message listener object to check
+	 */
+	@Override
+	protected void checkMessageListener(Object messageListener) {
+		if (!(messageListener instanceof BatchMessageListener
+				|| messageListener instanceof ChannelAwareBatchMessageListener)) {
+			super.checkMessageListener(messageListener);
+		}
+	}
+
+	private boolean isBatchListener() {
+		Object listener = getMessageListener();
+		return listener instanceof BatchMessageListener || listener instanceof ChannelAwareBatchMessageListener;
+	}
+
 	/**
 	 * Wait for a period determined by the {@link #setRecoveryInterval(long) recoveryInterval} to give the container a
 	 * chance to recover from consumer startup failure, e.g. if the broker is down.
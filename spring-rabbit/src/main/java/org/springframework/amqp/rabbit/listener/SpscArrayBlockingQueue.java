@@ -0,0 +1,348 @@
+/*
+ * Copyright 2014 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+
+package org.springframework.amqp.rabbit.listener;
+
+import java.util.AbstractQueue;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.LockSupport;
+
+import org.springframework.util.Assert;
+
+/**
+ * A bounded, array-backed, lock-free {@link BlockingQueue} for exactly one producer and one
+ * consumer; no nodes are allocated for the elements and no locks are taken.
+ * <p>
+ * At most one thread may insert at a time and at most one thread may remove at a time (a
+ * different thread may take over a role, as long as there is a happens-before relationship
+ * between them - for example the RabbitMQ client dispatches deliveries for a channel serially,
+ * possibly on different threads).
+ * <p>
+ * When a blocking operation has to wait, the {@link WaitStrategy} determines how: {@code SPIN}
+ * and {@code YIELD} give the lowest latency at the cost of a busy CPU while waiting; {@code PARK}
+ * parks the waiting thread until it is signalled by the other side.
+ * <p>
+ * The {@link #iterator()} (and hence bulk operations such as {@code contains}) is not supported.
+ *
+ * @param <E> the element type.
+ *
+ * @author Gary Russell
+ * @since 1.4
+ *
+ */
+public class SpscArrayBlockingQueue<E> extends AbstractQueue<E> implements BlockingQueue<E> {
+
+	/**
+	 * How a thread waits for the queue to become non-empty (or non-full).
+	 */
+	public enum WaitStrategy {
+
+		/**
+		 * Busy spin; only suitable when the producer and consumer threads have dedicated cores.
+		 */
+		SPIN,
+
+		/**
+		 * Yield the processor between checks.
+		 */
+		YIELD,
+
+		/**
+		 * Park the thread until signalled by the other side (or the timeout expires).
+		 */
+		PARK
+
+	}
+
+	private final AtomicReferenceArray<E> buffer;
+
+	private final int mask;
+
+	private final int capacity;
+
+	private final WaitStrategy waitStrategy;
+
+	private final boolean signal;
+
+	private final AtomicLong head = new AtomicLong();
+
+	private final AtomicLong tail = new AtomicLong();
+
+	private long headCache; // producer's view of head
+
+	private long tailCache; // consumer's view of tail
+
+	private volatile Thread waitingConsumer;
+
+	private volatile Thread waitingProducer;
+
+	/**
+	 * Construct an instance with the provided capacity, parking when waiting.
+	 * @param capacity the capacity.
+	 */
+	public SpscArrayBlockingQueue(int capacity) {
+		this(capacity, WaitStrategy.PARK);
+	}
+
+	/**
+	 * Construct an instance with the provided capacity and wait strategy.
+	 * @param capacity the capacity.
+	 * @param waitStrategy the wait strategy.
+	 */
+	public SpscArrayBlockingQueue(int capacity, WaitStrategy waitStrategy) {
+		Assert.isTrue(capacity > 0, "'capacity' must be > 0");
+		Assert.isTrue(capacity <= 1 << 30, "'capacity' must be <= 2^30");
+		Assert.notNull(waitStrategy, "'waitStrategy' cannot be null");
+		int size = 1;
+		while (size < capacity) {
+			size <<= 1;
+		}
+		this.buffer = new AtomicReferenceArray<E>(size);
+		this.mask = size - 1;
+		this.capacity = capacity;
+		this.waitStrategy = waitStrategy;
+		this.signal = waitStrategy == WaitStrategy.PARK;
+	}
+
+	public WaitStrategy getWaitStrategy() {
+		return this.waitStrategy;
+	}
+
+	@Override
+	public boolean offer(E e) {
+		Assert.notNull(e, "Null elements are not supported");
+		long currentTail = this.tail.get();
+		if (currentTail - this.headCache >= this.capacity) {
+			this.headCache = this.head.get();
+			if (currentTail - this.headCache >= this.capacity) {
+				return false;
+			}
+		}
+		this.buffer.lazySet((int) currentTail & this.mask, e);
+		if (this.signal) {
+			// full fence, so we either see the waiting consumer, or it sees the new tail
+			this.tail.set(currentTail + 1);
+			Thread consumer = this.waitingConsumer;
+			if (consumer != null) {
+				LockSupport.unpark(consumer);
+			}
+		}
+		else {
+			this.tail.lazySet(currentTail + 1);
+		}
+		return true;
+	}
+
+	@Override
+	public E poll() {
+		long currentHead = this.head.get();
+		if (currentHead >= this.tailCache) {
+			this.tailCache = this.tail.get();
+			if (currentHead >= this.tailCache) {
+				return null;
+			}
+		}
+		int index = (int) currentHead & this.mask;
+		E e = this.buffer.get(index);
+		this.buffer.lazySet(index, null);
+		if (this.signal) {
+			this.head.set(currentHead + 1);
+			Thread producer = this.waitingProducer;
+			if (producer != null) {
+				LockSupport.unpark(producer);
+			}
+		}
+		else {
+			this.head.lazySet(currentHead + 1);
+		}
+		return e;
+	}
+
+	@Override
+	public E peek() {
+		long currentHead = this.head.get();
+		if (currentHead >= this.tail.get()) {
+			return null;
+		}
+		return this.buffer.get((int) currentHead & this.mask);
+	}
+
+	@Override
+	public void put(E e) throws InterruptedException {
+		while (!offer(e)) {
+			awaitNotFull(0L, false);
+		}
+	}
+
+	@Override
+	public boolean offer(E e, long timeout, TimeUnit unit) throws InterruptedException {
+		if (offer(e)) {
+			return true;
+		}
+		long deadline = System.nanoTime() + unit.toNanos(timeout);
+		while (true) {
+			long remaining = deadline - System.nanoTime();
+			if (remaining <= 0) {
+				return false;
+			}
+			awaitNotFull(remaining, true);
+			if (offer(e)) {
+				return true;
+			}
+		}
+	}
+
+	@Override
+	public E take() throws InterruptedException {
+		E e = poll();
+		while (e == null) {
+			awaitNotEmpty(0L, false);
+			e = poll();
+		}
+		return e;
+	}
+
+	@Override
+	public E poll(long timeout, TimeUnit unit) throws InterruptedException {
+		E e = poll();
+		if (e != null) {
+			return e;
+		}
+		long deadline = System.nanoTime() + unit.toNanos(timeout);
+		while (true) {
+			long remaining = deadline - System.nanoTime();
+			if (remaining <= 0) {
+				return null;
+			}
+			awaitNotEmpty(remaining, true);
+			e = poll();
+			if (e != null) {
+				return e;
+			}
+		}
+	}
+
+	private void awaitNotEmpty(long nanos, boolean timed) throws InterruptedException {
+		if (this.signal) {
+			this.waitingConsumer = Thread.currentThread();
+			try {
+				if (this.head.get() >= this.tail.get()) {
+					park(nanos, timed);
+				}
+			}
+			finally {
+				this.waitingConsumer = null;
+			}
+		}
+		else {
+			idle();
+		}
+		checkInterrupt();
+	}
+
+	private void awaitNotFull(long nanos, boolean timed) throws InterruptedException {
+		if (this.signal) {
+			this.waitingProducer = Thread.currentThread();
+			try {
+				if (this.tail.get() - this.head.get() >= this.capacity) {
+					park(nanos, timed);
+				}
+			}
+			finally {
+				this.waitingProducer = null;
+			}
+		}
+		else {
+			idle();
+		}
+		checkInterrupt();
+	}
+
+	private void park(long nanos, boolean timed) {
+		if (timed) {
+			LockSupport.parkNanos(this, nanos);
+		}
+		else {
+			LockSupport.park(this);
+		}
+	}
+
+	private void idle() {
+		if (this.waitStrategy == WaitStrategy.YIELD) {
+			Thread.yield();
+		}
+	}
+
+	private void checkInterrupt() throws InterruptedException {
+		if (Thread.interrupted()) {
+			throw new InterruptedException();
+		}
+	}
+
+	@Override
+	public int size() {
+		// read head first so a concurrent removal can't make the size negative
+		long currentHead = this.head.get();
+		long size = this.tail.get() - currentHead;
+		return (int) Math.max(0, Math.min(size, this.capacity));
+	}
+
+	@Override
+	public boolean isEmpty() {
+		return this.head.get() >= this.tail.get();
+	}
+
+	@Override
+	public int remainingCapacity() {
+		return this.capacity - size();
+	}
+
+	@Override
+	public int drainTo(Collection<? super E> c) {
+		return drainTo(c, Integer.MAX_VALUE);
+	}
+
+	@Override
+	public int drainTo(Collection<? super E> c, int maxElements) {
+		Assert.notNull(c, "Collection cannot be null");
+		Assert.isTrue(c != this, "Cannot drain to self");
+		int n = 0;
+		E e;
+		while (n < maxElements && (e = poll()) != null) {
+			c.add(e);
+			n++;
+		}
+		return n;
+	}
+
+	/**
+	 * Not supported.
+	 * @throws UnsupportedOperationException always.
+	 */
+	@Override
+	public Iterator<E> iterator() {
+		throw new UnsupportedOperationException("iterator() is not supported by " + getClass().getSimpleName());
+	}
+
+	@Override
+	public String toString() {
+		return getClass().getSimpleName() + " [capacity=" + this.capacity + ", size=" + size()
+				+ ", waitStrategy=" + this.waitStrategy + "]";
+	}
+
+}
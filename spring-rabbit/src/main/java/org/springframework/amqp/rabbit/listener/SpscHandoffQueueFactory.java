@@ -0,0 +1,55 @@
+/*
+ * Copyright 2014 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+
+package org.springframework.amqp.rabbit.listener;
+
+import java.util.concurrent.BlockingQueue;
+
+import org.springframework.amqp.rabbit.listener.SpscArrayBlockingQueue.WaitStrategy;
+import org.springframework.util.Assert;
+
+/**
+ * A {@link HandoffQueueFactory} that creates {@link SpscArrayBlockingQueue}s.
+ *
+ * @author Gary Russell
+ * @since 1.4
+ *
+ */
+public class SpscHandoffQueueFactory implements HandoffQueueFactory {
+
+	private final WaitStrategy waitStrategy;
+
+	/**
+	 * Create a factory for queues that park when waiting.
+	 */
+	public SpscHandoffQueueFactory() {
+		this(WaitStrategy.PARK);
+	}
+
+	/**
+	 * Create a factory for queues with the provided wait strategy; note that with
+	 * {@link WaitStrategy#SPIN} or {@link WaitStrategy#YIELD} an idle container thread
+	 * keeps a CPU busy for the container's {@code receiveTimeout}.
+	 * @param waitStrategy the wait strategy.
+	 */
+	public SpscHandoffQueueFactory(WaitStrategy waitStrategy) {
+		Assert.notNull(waitStrategy, "'waitStrategy' cannot be null");
+		this.waitStrategy = waitStrategy;
+	}
+
+	@Override
+	public <T> BlockingQueue<T> createQueue(int capacity) {
+		return new SpscArrayBlockingQueue<T>(capacity, this.waitStrategy);
+	}
+
+}
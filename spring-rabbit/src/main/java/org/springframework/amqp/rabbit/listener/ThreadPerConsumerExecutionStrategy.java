@@ -0,0 +1,74 @@
+/*
+ * Copyright 2014 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+
+package org.springframework.amqp.rabbit.listener;
+
+import java.util.concurrent.Executor;
+
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
+import org.springframework.util.Assert;
+
+/**
+ * A {@link ConsumerExecutionStrategy} where each consumer occupies a thread for its
+ * lifetime, blocking while it waits for deliveries; the executor must therefore be able
+ * to provide at least {@code maxConcurrentConsumers} threads. This is the default
+ * strategy, using a {@link SimpleAsyncTaskExecutor}.
+ * <p>
+ * {@link #virtualThreads()} runs each consumer on a lightweight (virtual) thread when the
+ * runtime supports them, so a blocked consumer does not tie up a platform thread.
+ *
+ * @author Gary Russell
+ * @since 1.4
+ *
+ */
+public class ThreadPerConsumerExecutionStrategy implements ConsumerExecutionStrategy {
+
+	private final Executor executor;
+
+	/**
+	 * Create an instance that runs each consumer on a new platform thread.
+	 */
+	public ThreadPerConsumerExecutionStrategy() {
+		this(new SimpleAsyncTaskExecutor());
+	}
+
+	/**
+	 * Create an instance that runs each consumer using the supplied executor.
+	 * @param executor the executor.
+	 */
+	public ThreadPerConsumerExecutionStrategy(Executor executor) {
+		Assert.notNull(executor, "'executor' cannot be null");
+		this.executor = executor;
+	}
+
+	/**
+	 * Create an instance that runs each consumer on a virtual thread, if supported by
+	 * the runtime, otherwise on a new platform thread.
+	 * @return the strategy.
+	 * @see VirtualThreadTaskExecutor
+	 */
+	public static ThreadPerConsumerExecutionStrategy virtualThreads() {
+		return new ThreadPerConsumerExecutionStrategy(new VirtualThreadTaskExecutor());
+	}
+
+	@Override
+	public Executor getExecutor() {
+		return this.executor;
+	}
+
+	@Override
+	public boolean isThreadReleasedWhenIdle() {
+		return false;
+	}
+
+}
@@ -0,0 +1,116 @@
+/*
+ * Copyright 2014 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+
+package org.springframework.amqp.rabbit.listener;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ThreadFactory;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.util.Assert;
+
+/**
+ * A {@link TaskExecutor} that runs each task on a new virtual thread, when the runtime
+ * supports them (Java 21 and later); the virtual thread factory is obtained reflectively,
+ * so this class can be used on earlier runtimes, where it falls back to a new platform
+ * thread for each task.
+ *
+ * @author Gary Russell
+ * @since 1.4
+ *
+ */
+public class VirtualThreadTaskExecutor implements TaskExecutor {
+
+	private static final Log logger = LogFactory.getLog(VirtualThreadTaskExecutor.class);
+
+	public static final String DEFAULT_THREAD_NAME_PREFIX = "rabbit-consumer-";
+
+	private final ThreadFactory threadFactory;
+
+	private final boolean virtual;
+
+	/**
+	 * Create an instance with the default thread name prefix.
+	 */
+	public VirtualThreadTaskExecutor() {
+		this(DEFAULT_THREAD_NAME_PREFIX);
+	}
+
+	/**
+	 * Create an instance with the supplied thread name prefix.
+	 * @param threadNamePrefix the prefix.
+	 */
+	public VirtualThreadTaskExecutor(String threadNamePrefix) {
+		Assert.notNull(threadNamePrefix, "'threadNamePrefix' cannot be null");
+		ThreadFactory virtualThreadFactory = createVirtualThreadFactory(threadNamePrefix);
+		if (virtualThreadFactory != null) {
+			this.threadFactory = virtualThreadFactory;
+			this.virtual = true;
+		}
+		else {
+			if (logger.isInfoEnabled()) {
+				logger.info("Virtual threads are not supported by this runtime; using platform threads");
+			}
+			this.threadFactory = new CustomizableThreadFactory(threadNamePrefix);
+			this.virtual = false;
+		}
+	}
+
+	/**
+	 * @return true if the runtime supports virtual threads.
+	 */
+	public static boolean isVirtualThreadSupported() {
+		return createVirtualThreadFactory("") != null;
+	}
+
+	/**
+	 * @return true if tasks are run on virtual threads.
+	 */
+	public boolean isVirtual() {
+		return this.virtual;
+	}
+
+	@Override
+	public void execute(Runnable task) {
+		Thread thread = this.threadFactory.newThread(task);
+		Assert.state(thread != null, "Failed to create a thread");
+		thread.start();
+	}
+
+	/*
+	 * Equivalent to Thread.ofVirtual().name(prefix, 0).factory().
+	 */
+	private static ThreadFactory createVirtualThreadFactory(String threadNamePrefix) {
+		try {
+			Method ofVirtual = Thread.class.getMethod("ofVirtual");
+			Object builder = ofVirtual.invoke(null);
+			Class<?> builderClass = Class.forName("java.lang.Thread$Builder");
+			builder = builderClass.getMethod("name", String.class, long.class).invoke(builder, threadNamePrefix, 0L);
+			return (ThreadFactory) builderClass.getMethod("factory").invoke(builder);
+		}
+		catch (NoSuchMethodException e) {
+			return null;
+		}
+		catch (Exception e) {
+			if (logger.isDebugEnabled()) {
+				logger.debug("Failed to create a virtual thread factory", e);
+			}
+			return null;
+		}
+	}
+
+}
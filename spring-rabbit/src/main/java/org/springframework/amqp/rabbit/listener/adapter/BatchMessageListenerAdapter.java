@@ -0,0 +1,159 @@
+/*
+ * Copyright 2014 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+
+package org.springframework.amqp.rabbit.listener.adapter;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.springframework.amqp.AmqpIllegalStateException;
+import org.springframework.amqp.core.BatchMessageListener;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.rabbit.core.ChannelAwareBatchMessageListener;
+import org.springframework.amqp.support.converter.MessageConverter;
+import org.springframework.util.Assert;
+
+import com.rabbitmq.client.Channel;
+
+/**
+ * A {@link MessageListenerAdapter} that also supports batch delivery; when used with a
+ * listener container that supports batches, the converted payloads of all the messages in
+ * a batch are passed to the listener method as a single {@link List} argument.
+ *
+ * <pre class="code">
+ * public interface BulkInsertDelegate {
+ * 	void handleMessage(List&lt;String&gt; payloads);
+ * }
+ * </pre>
+ *
+ * If the delegate is itself a {@link BatchMessageListener} or {@link ChannelAwareBatchMessageListener},
+ * the adapter acts as a pass-through.
+ * <p>
+ * Results returned by the listener method are not sent as replies when invoked with a batch,
+ * because there is no single request to reply to.
+ *
+ * @author Gary Russell
+ * @since 1.4
+ *
+ */
+public class BatchMessageListenerAdapter extends MessageListenerAdapter
+		implements BatchMessageListener, ChannelAwareBatchMessageListener {
+
+	/**
+	 * Create a new {@link BatchMessageListenerAdapter} with default settings.
+	 */
+	public BatchMessageListenerAdapter() {
+		super();
+	}
+
+	/**
+	 * Create a new {@link BatchMessageListenerAdapter} for the given delegate.
+	 * @param delegate the delegate object
+	 */
+	public BatchMessageListenerAdapter(Object delegate) {
+		super(delegate);
+	}
+
+	/**
+	 * Create a new {@link BatchMessageListenerAdapter} for the given delegate.
+	 * @param delegate the delegate object
+	 * @param messageConverter the message converter to use
+	 */
+	public BatchMessageListenerAdapter(Object delegate, MessageConverter messageConverter) {
+		super(delegate, messageConverter);
+	}
+
+	/**
+	 * Create a new {@link BatchMessageListenerAdapter} for the given delegate while also
+	 * declaring its POJO method.
+	 * @param delegate the delegate object
+	 * @param defaultListenerMethod name of the POJO method to call upon message receipt
+	 */
+	public BatchMessageListenerAdapter(Object delegate, String defaultListenerMethod) {
+		super(delegate, defaultListenerMethod);
+	}
+
+	/**
+	 * Rabbit {@link BatchMessageListener} entry point.
+	 * <p>
+	 * In case of an exception, the {@link #handleListenerException(Throwable)} method will be invoked.
+	 * @param messages the incoming Rabbit messages
+	 * @see #onMessageBatch(List, Channel)
+	 */
+	@Override
+	public void onMessageBatch(List<Message> messages) {
+		try {
+			onMessageBatch(messages, null);
+		} catch (Throwable ex) {
+			handleListenerException(ex);
+		}
+	}
+
+	/**
+	 * Spring {@link ChannelAwareBatchMessageListener} entry point.
+	 * <p>
+	 * Delegates the messages to the target listener method, with each message converted
+	 * using {@link #extractMessage(Message)} and the results passed in as a single {@link List}.
+	 * @param messages the incoming Rabbit messages
+	 * @param channel the Rabbit channel to operate on
+	 * @throws Exception if thrown by Rabbit API methods
+	 */
+	@Override
+	public void onMessageBatch(List<Message> messages, Channel channel) throws Exception {
+		Assert.notEmpty(messages, "'messages' must not be empty");
+		// Check whether the delegate is a BatchMessageListener impl itself.
+		// In that case, the adapter will simply act as a pass-through.
+		Object delegate = getDelegate();
+		if (delegate != this) {
+			if (delegate instanceof ChannelAwareBatchMessageListener) {
+				if (channel != null) {
+					((ChannelAwareBatchMessageListener) delegate).onMessageBatch(messages, channel);
+					return;
+				} else if (!(delegate instanceof BatchMessageListener)) {
+					throw new AmqpIllegalStateException("BatchMessageListenerAdapter cannot handle a "
+							+ "ChannelAwareBatchMessageListener delegate if it hasn't been invoked with a Channel itself");
+				}
+			}
+			if (delegate instanceof BatchMessageListener) {
+				((BatchMessageListener) delegate).onMessageBatch(messages);
+				return;
+			}
+		}
+
+		// Regular case: find a handler method reflectively.
+		List<Object> convertedMessages = new ArrayList<Object>(messages.size());
+		for (Message message : messages) {
+			convertedMessages.add(extractMessage(message));
+		}
+		Message lastMessage = messages.get(messages.size() - 1);
+		String methodName = getListenerMethodName(lastMessage, convertedMessages);
+		if (methodName == null) {
+			throw new AmqpIllegalStateException("No default listener method specified: "
+					+ "Either specify a non-null value for the 'defaultListenerMethod' property or "
+					+ "override the 'getListenerMethodName' method.");
+		}
+
+		// Invoke the handler method with appropriate arguments.
+		Object[] listenerArguments = buildListenerArguments(convertedMessages);
+		Object result = invokeListenerMethod(methodName, listenerArguments, lastMessage);
+		if (result != null) {
+			if (logger.isWarnEnabled()) {
+				logger.warn("Listener method returned result [" + result
+						+ "]: not generating response message for it because it was invoked with a batch");
+			}
+		} else {
+			logger.trace("No result object given - no result to handle");
+		}
+	}
+
+}
@@ -0,0 +1,162 @@
+/*
+ * Copyright 2014 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+
+package org.springframework.amqp.rabbit.listener.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import org.springframework.util.Assert;
+
+/**
+ * A lock-free histogram of non-negative {@code long} values, in the style of HdrHistogram:
+ * values are counted in buckets whose width grows with the magnitude of the value
+ * (32 linear sub-buckets per power of two), so any value is recorded with a relative
+ * error of at most about 3%, using a fixed amount of memory.
+ * <p>
+ * Recording is wait-free apart from the maximum, which is updated with a compare-and-set
+ * loop; readings taken while values are being recorded are approximate.
+ *
+ * @author Gary Russell
+ * @since 1.4
+ *
+ */
+public class AtomicHistogram {
+
+	private static final int SUB_BUCKET_BITS = 5;
+
+	private static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+
+	private static final int SUB_BUCKET_MASK = SUB_BUCKET_COUNT - 1;
+
+	private static final int BUCKET_COUNT = (63 - SUB_BUCKET_BITS + 1) * SUB_BUCKET_COUNT;
+
+	private final AtomicLongArray counts = new AtomicLongArray(BUCKET_COUNT);
+
+	private final AtomicLong count = new AtomicLong();
+
+	private final AtomicLong sum = new AtomicLong();
+
+	private final AtomicLong max = new AtomicLong();
+
+	/**
+	 * Record a value; negative values are recorded as zero.
+	 * @param value the value.
+	 */
+	public void record(long value) {
+		if (value < 0) {
+			value = 0;
+		}
+		this.counts.incrementAndGet(indexOf(value));
+		this.count.incrementAndGet();
+		this.sum.addAndGet(value);
+		long currentMax = this.max.get();
+		while (value > currentMax && !this.max.compareAndSet(currentMax, value)) {
+			currentMax = this.max.get();
+		}
+	}
+
+	/**
+	 * @return the number of values recorded.
+	 */
+	public long getCount() {
+		return this.count.get();
+	}
+
+	/**
+	 * @return the mean of the values recorded, or 0 if there are none.
+	 */
+	public double getMean() {
+		long count = this.count.get();
+		return count == 0 ? 0 : (double) this.sum.get() / count;
+	}
+
+	/**
+	 * @return the largest value recorded.
+	 */
+	public long getMax() {
+		return this.max.get();
+	}
+
+	/**
+	 * Return the value at the supplied percentile; the result is the highest value that is
+	 * equivalent (within the precision of the histogram) to the actual value, but no higher
+	 * than the maximum.
+	 * @param percentile the percentile (0-100).
+	 * @return the value, or 0 if there are no values.
+	 */
+	public long getValueAtPercentile(double percentile) {
+		Assert.isTrue(percentile >= 0 && percentile <= 100, "'percentile' must be between 0 and 100");
+		long total = 0;
+		for (int i = 0; i < BUCKET_COUNT; i++) {
+			total += this.counts.get(i);
+		}
+		if (total == 0) {
+			return 0;
+		}
+		long target = Math.max(1, (long) Math.ceil(percentile / 100 * total));
+		long seen = 0;
+		for (int i = 0; i < BUCKET_COUNT; i++) {
+			seen += this.counts.get(i);
+			if (seen >= target) {
+				return Math.min(highestEquivalentValue(i), getMax());
+			}
+		}
+		return getMax();
+	}
+
+	/**
+	 * Clear the histogram; values recorded concurrently may or may not be retained.
+	 */
+	public void reset() {
+		for (int i = 0; i < BUCKET_COUNT; i++) {
+			this.counts.set(i, 0);
+		}
+		this.count.set(0);
+		this.sum.set(0);
+		this.max.set(0);
+	}
+
+	static int indexOf(long value) {
+		if (value < SUB_BUCKET_COUNT) {
+			return (int) value;
+		}
+		int exponent = 63 - Long.numberOfLeadingZeros(value);
+		int shift = exponent - SUB_BUCKET_BITS;
+		int subBucket = (int) (value >>> shift) & SUB_BUCKET_MASK;
+		return ((shift + 1) << SUB_BUCKET_BITS) + subBucket;
+	}
+
+	static long lowestEquivalentValue(int index) {
+		int bucket = index >>> SUB_BUCKET_BITS;
+		int subBucket = index & SUB_BUCKET_MASK;
+		if (bucket == 0) {
+			return subBucket;
+		}
+		return (long) (SUB_BUCKET_COUNT + subBucket) << (bucket - 1);
+	}
+
+	static long highestEquivalentValue(int index) {
+		int bucket = index >>> SUB_BUCKET_BITS;
+		if (bucket <= 1) {
+			return lowestEquivalentValue(index);
+		}
+		return lowestEquivalentValue(index) + (1L << (bucket - 1)) - 1;
+	}
+
+	@Override
+	public String toString() {
+		return "AtomicHistogram [count=" + getCount() + ", mean=" + getMean() + ", max=" + getMax() + "]";
+	}
+
+}
@@ -0,0 +1,211 @@
+/*
+ * Copyright 2014 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+
+package org.springframework.amqp.rabbit.listener.metrics;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.springframework.jmx.export.annotation.ManagedAttribute;
+import org.springframework.jmx.export.annotation.ManagedMetric;
+import org.springframework.jmx.export.annotation.ManagedOperation;
+import org.springframework.jmx.export.annotation.ManagedResource;
+import org.springframework.jmx.support.MetricType;
+
+/**
+ * The default {@link ListenerMetricsRecorder}; times are recorded in lock-free
+ * {@link AtomicHistogram}s and counts in atomic counters.
+ * <p>
+ * The recorder is annotated for JMX export; declare it as a bean and use an
+ * {@code <context:mbean-export/>} (or an {@code AnnotationMBeanExporter}) to expose the
+ * statistics, which are reported in microseconds.
+ *
+ * @author Gary Russell
+ * @since 1.4
+ *
+ */
+@ManagedResource(description = "Listener container metrics")
+public class HistogramMetricsRecorder implements ListenerMetricsRecorder {
+
+	private final AtomicHistogram handoffWait = new AtomicHistogram();
+
+	private final AtomicHistogram listenerExecution = new AtomicHistogram();
+
+	private final AtomicHistogram ack = new AtomicHistogram();
+
+	private final AtomicHistogram batchSize = new AtomicHistogram();
+
+	private final AtomicLong messageCount = new AtomicLong();
+
+	private final AtomicLong redeliveries = new AtomicLong();
+
+	private final AtomicLong rejected = new AtomicLong();
+
+	private final AtomicLong consumerRestarts = new AtomicLong();
+
+	@Override
+	public void recordHandoffWait(long nanos) {
+		this.handoffWait.record(nanos);
+	}
+
+	@Override
+	public void recordListenerExecution(long nanos, int messageCount) {
+		this.listenerExecution.record(nanos);
+		this.messageCount.addAndGet(messageCount);
+	}
+
+	@Override
+	public void recordAck(long nanos, int messageCount) {
+		this.ack.record(nanos);
+	}
+
+	@Override
+	public void recordBatchSize(int batchSize) {
+		this.batchSize.record(batchSize);
+	}
+
+	@Override
+	public void recordRedelivery() {
+		this.redeliveries.incrementAndGet();
+	}
+
+	@Override
+	public void recordRejected(int messageCount) {
+		this.rejected.addAndGet(messageCount);
+	}
+
+	@Override
+	public void consumerRestarted() {
+		this.consumerRestarts.incrementAndGet();
+	}
+
+	public AtomicHistogram getHandoffWaitHistogram() {
+		return this.handoffWait;
+	}
+
+	public AtomicHistogram getListenerExecutionHistogram() {
+		return this.listenerExecution;
+	}
+
+	public AtomicHistogram getAckHistogram() {
+		return this.ack;
+	}
+
+	public AtomicHistogram getBatchSizeHistogram() {
+		return this.batchSize;
+	}
+
+	@ManagedMetric(metricType = MetricType.COUNTER, description = "Messages passed to the listener")
+	public long getMessageCount() {
+		return this.messageCount.get();
+	}
+
+	@ManagedMetric(metricType = MetricType.COUNTER, description = "Redelivered messages received")
+	public long getRedeliveryCount() {
+		return this.redeliveries.get();
+	}
+
+	@ManagedMetric(metricType = MetricType.COUNTER, description = "Messages rejected after a listener failure")
+	public long getRejectedCount() {
+		return this.rejected.get();
+	}
+
+	@ManagedMetric(metricType = MetricType.COUNTER, description = "Consumer restarts")
+	public long getConsumerRestartCount() {
+		return this.consumerRestarts.get();
+	}
+
+	@ManagedMetric(metricType = MetricType.GAUGE, unit = "us", description = "Mean hand off queue wait")
+	public double getHandoffWaitMean() {
+		return micros(this.handoffWait.getMean());
+	}
+
+	@ManagedMetric(metricType = MetricType.GAUGE, unit = "us", description = "99th percentile hand off queue wait")
+	public long getHandoffWait99() {
+		return micros(this.handoffWait.getValueAtPercentile(99));
+	}
+
+	@ManagedMetric(metricType = MetricType.GAUGE, unit = "us", description = "Maximum hand off queue wait")
+	public long getHandoffWaitMax() {
+		return micros(this.handoffWait.getMax());
+	}
+
+	@ManagedMetric(metricType = MetricType.GAUGE, unit = "us", description = "Mean listener execution time")
+	public double getListenerExecutionMean() {
+		return micros(this.listenerExecution.getMean());
+	}
+
+	@ManagedMetric(metricType = MetricType.GAUGE, unit = "us",
+			description = "99th percentile listener execution time")
+	public long getListenerExecution99() {
+		return micros(this.listenerExecution.getValueAtPercentile(99));
+	}
+
+	@ManagedMetric(metricType = MetricType.GAUGE, unit = "us", description = "Maximum listener execution time")
+	public long getListenerExecutionMax() {
+		return micros(this.listenerExecution.getMax());
+	}
+
+	@ManagedMetric(metricType = MetricType.GAUGE, unit = "us", description = "Mean ack latency")
+	public double getAckMean() {
+		return micros(this.ack.getMean());
+	}
+
+	@ManagedMetric(metricType = MetricType.GAUGE, unit = "us", description = "99th percentile ack latency")
+	public long getAck99() {
+		return micros(this.ack.getValueAtPercentile(99));
+	}
+
+	@ManagedMetric(metricType = MetricType.GAUGE, unit = "us", description = "Maximum ack latency")
+	public long getAckMax() {
+		return micros(this.ack.getMax());
+	}
+
+	@ManagedMetric(metricType = MetricType.GAUGE, description = "Mean messages received per cycle")
+	public double getBatchSizeMean() {
+		return this.batchSize.getMean();
+	}
+
+	@ManagedAttribute(description = "Maximum messages received per cycle")
+	public long getBatchSizeMax() {
+		return this.batchSize.getMax();
+	}
+
+	@ManagedOperation(description = "Clear all the statistics")
+	public void reset() {
+		this.handoffWait.reset();
+		this.listenerExecution.reset();
+		this.ack.reset();
+		this.batchSize.reset();
+		this.messageCount.set(0);
+		this.redeliveries.set(0);
+		this.rejected.set(0);
+		this.consumerRestarts.set(0);
+	}
+
+	private static double micros(double nanos) {
+		return nanos / 1000;
+	}
+
+	private static long micros(long nanos) {
+		return TimeUnit.NANOSECONDS.toMicros(nanos);
+	}
+
+	@Override
+	public String toString() {
+		return "HistogramMetricsRecorder [messageCount=" + getMessageCount()
+				+ ", listenerExecution=" + this.listenerExecution + ", handoffWait=" + this.handoffWait
+				+ ", ack=" + this.ack + "]";
+	}
+
+}
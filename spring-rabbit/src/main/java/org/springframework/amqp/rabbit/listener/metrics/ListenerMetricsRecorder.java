@@ -0,0 +1,76 @@
+/*
+ * Copyright 2014 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+
+package org.springframework.amqp.rabbit.listener.metrics;
+
+/**
+ * Strategy for recording metrics from the hot path of a
+ * {@link org.springframework.amqp.rabbit.listener.SimpleMessageListenerContainer}.
+ * <p>
+ * Methods are invoked on the consumer threads (and, for {@link #consumerRestarted()},
+ * the thread restarting a consumer) for every message or receive cycle, so
+ * implementations must be thread-safe, must not block and should not allocate.
+ *
+ * @author Gary Russell
+ * @since 1.4
+ * @see HistogramMetricsRecorder
+ *
+ */
+public interface ListenerMetricsRecorder {
+
+	/**
+	 * Record the time a delivery waited in a consumer's hand off queue, from its arrival
+	 * from the broker until it was received by the container thread.
+	 * @param nanos the wait time in nanoseconds.
+	 */
+	void recordHandoffWait(long nanos);
+
+	/**
+	 * Record the execution of the listener.
+	 * @param nanos the execution time in nanoseconds.
+	 * @param messageCount the number of messages passed to the listener (more than one
+	 * for a batch listener).
+	 */
+	void recordListenerExecution(long nanos, int messageCount);
+
+	/**
+	 * Record the time taken to acknowledge (and commit, when transactional) the messages
+	 * received in a cycle.
+	 * @param nanos the time in nanoseconds.
+	 * @param messageCount the number of messages acknowledged.
+	 */
+	void recordAck(long nanos, int messageCount);
+
+	/**
+	 * Record the number of messages received in a cycle (at most {@code txSize}).
+	 * @param batchSize the number of messages.
+	 */
+	void recordBatchSize(int batchSize);
+
+	/**
+	 * Record the receipt of a message that the broker flagged as redelivered.
+	 */
+	void recordRedelivery();
+
+	/**
+	 * Record messages rejected (or rolled back) after a listener failure.
+	 * @param messageCount the number of messages.
+	 */
+	void recordRejected(int messageCount);
+
+	/**
+	 * Record the restart of a consumer after a failure.
+	 */
+	void consumerRestarted();
+
+}
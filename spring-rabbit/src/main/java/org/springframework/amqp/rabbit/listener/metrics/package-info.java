@@ -0,0 +1,4 @@
+/**
+ * Provides classes for recording listener container metrics.
+ */
+package org.springframework.amqp.rabbit.listener.metrics;
@@ -0,0 +1,81 @@
+/*
+ * Copyright 2014 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+
+package org.springframework.amqp.rabbit.support;
+
+import org.springframework.amqp.core.Message;
+
+/**
+ * The outcome of a publish with publisher confirms, as delivered to the future returned by
+ * the {@code sendWithConfirm} methods of the
+ * {@link org.springframework.amqp.rabbit.core.RabbitTemplate}.
+ *
+ * @author Gary Russell
+ * @since 1.4
+ *
+ */
+public class Confirm {
+
+	private final boolean ack;
+
+	private final String cause;
+
+	private final CorrelationData correlationData;
+
+	private final Message returnedMessage;
+
+	public Confirm(boolean ack, String cause, CorrelationData correlationData, Message returnedMessage) {
+		this.ack = ack;
+		this.cause = cause;
+		this.correlationData = correlationData;
+		this.returnedMessage = returnedMessage;
+	}
+
+	/**
+	 * @return true for an ack, false for a nack.
+	 */
+	public boolean isAck() {
+		return this.ack;
+	}
+
+	/**
+	 * @return the cause of a nack, when available, otherwise null.
+	 */
+	public String getCause() {
+		return this.cause;
+	}
+
+	/**
+	 * @return the correlation data supplied with the send, or null.
+	 */
+	public CorrelationData getCorrelationData() {
+		return this.correlationData;
+	}
+
+	/**
+	 * A message sent with the {@code mandatory} flag that could not be routed is returned
+	 * by the broker before it is acked.
+	 * @return the returned message, or null if the message was not returned.
+	 */
+	public Message getReturnedMessage() {
+		return this.returnedMessage;
+	}
+
+	@Override
+	public String toString() {
+		return "Confirm [ack=" + this.ack + (this.cause == null ? "" : ", cause=" + this.cause)
+				+ (this.correlationData == null ? "" : ", correlationData=" + this.correlationData)
+				+ (this.returnedMessage == null ? "" : ", returnedMessage=" + this.returnedMessage) + "]";
+	}
+
+}
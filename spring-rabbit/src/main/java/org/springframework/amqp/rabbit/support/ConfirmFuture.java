@@ -0,0 +1,90 @@
+/*
+ * Copyright 2014 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+
+package org.springframework.amqp.rabbit.support;
+
+import java.util.concurrent.Callable;
+
+import org.springframework.amqp.core.Message;
+import org.springframework.util.concurrent.ListenableFutureTask;
+
+/**
+ * A {@link org.springframework.util.concurrent.ListenableFuture} for a {@link Confirm},
+ * completed by the {@link PublisherCallbackChannel} when the publisher confirm (or a nack
+ * because the channel was closed) is received. Callbacks are invoked on the connection's
+ * thread, so must not perform blocking operations on the same channel.
+ * <p>
+ * The future is completed by the channel; it cannot be {@link #run()}.
+ *
+ * @author Gary Russell
+ * @since 1.4
+ *
+ */
+public class ConfirmFuture extends ListenableFutureTask<Confirm> {
+
+	private static final Callable<Confirm> NOT_RUNNABLE = new Callable<Confirm>() {
+
+		@Override
+		public Confirm call() throws Exception {
+			throw new IllegalStateException("A ConfirmFuture is completed by the channel");
+		}
+
+	};
+
+	private final CorrelationData correlationData;
+
+	private volatile Message returnedMessage;
+
+	public ConfirmFuture(CorrelationData correlationData) {
+		super(NOT_RUNNABLE);
+		this.correlationData = correlationData;
+	}
+
+	public CorrelationData getCorrelationData() {
+		return this.correlationData;
+	}
+
+	/**
+	 * Set the message returned by the broker; returns are received before the confirm.
+	 * @param returnedMessage the returned message.
+	 */
+	public void setReturnedMessage(Message returnedMessage) {
+		this.returnedMessage = returnedMessage;
+	}
+
+	/**
+	 * Complete the future.
+	 * @param ack true for an ack, false for a nack.
+	 * @param cause the cause of a nack, if available.
+	 */
+	public void complete(boolean ack, String cause) {
+		set(new Confirm(ack, cause, this.correlationData, this.returnedMessage));
+	}
+
+	/**
+	 * Fail the future; used when the message could not be published, so no confirm will
+	 * be received.
+	 * @param cause the cause.
+	 */
+	public void fail(Throwable cause) {
+		setException(cause);
+	}
+
+	/**
+	 * Does nothing; the future is completed by {@link #complete(boolean, String)}.
+	 */
+	@Override
+	public void run() {
+	}
+
+}
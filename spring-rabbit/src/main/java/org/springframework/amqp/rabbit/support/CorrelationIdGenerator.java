@@ -0,0 +1,34 @@
+/*
+ * Copyright 2014 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+
+package org.springframework.amqp.rabbit.support;
+
+/**
+ * Strategy for generating the correlation ids used by the
+ * {@link org.springframework.amqp.rabbit.core.RabbitTemplate} to correlate replies with
+ * requests. Implementations must be thread-safe and must not return the same id twice
+ * while a request with that id may be awaiting a reply.
+ *
+ * @author Gary Russell
+ * @since 1.4
+ * @see SequentialCorrelationIdGenerator
+ *
+ */
+public interface CorrelationIdGenerator {
+
+	/**
+	 * @return the next correlation id.
+	 */
+	String generateCorrelationId();
+
+}
@@ -1,5 +1,5 @@
 /*
- * Copyright 2002-2013 the original author or authors.
+ * Copyright 2002-2014 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
  * the License. You may obtain a copy of the License at
@@ -145,8 +145,11 @@ public class DefaultMessagePropertiesConverter implements MessagePropertiesConve
 	/**
 	 * Converts a LongString value to either a String or DataInputStream based on a length-driven threshold. If the
 	 * length is 1024 bytes or less, a String will be returned, otherwise a DataInputStream is returned.
+	 * @param longString the long string.
+	 * @param charset the charset.
+	 * @return the converted value.
 	 */
-	private Object convertLongString(LongString longString, String charset) {
+	protected Object convertLongString(LongString longString, String charset) {
 		try {
 			if (longString.length() <= 1024) {
 				return new String(longString.getBytes(), charset);
@@ -0,0 +1,436 @@
+/*
+ * Copyright 2014 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+
+package org.springframework.amqp.rabbit.support;
+
+import java.io.UnsupportedEncodingException;
+import java.util.Date;
+import java.util.Map;
+
+import org.springframework.amqp.AmqpUnsupportedEncodingException;
+import org.springframework.amqp.core.Address;
+import org.springframework.amqp.core.MessageDeliveryMode;
+import org.springframework.amqp.core.MessageProperties;
+import org.springframework.util.CollectionUtils;
+
+import com.rabbitmq.client.AMQP.BasicProperties;
+import com.rabbitmq.client.Envelope;
+import com.rabbitmq.client.LongString;
+
+/**
+ * {@link MessageProperties} backed by the raw {@link BasicProperties} and {@link Envelope}
+ * of a delivery; simple properties are read through to the source, while the headers and
+ * the correlation id are only converted when they are first accessed.
+ * <p>
+ * Once any of the source-backed properties is modified, all the properties are copied
+ * from the source and the instance behaves like a regular {@link MessageProperties}.
+ * When serialized, a regular {@link MessageProperties} is written.
+ *
+ * @author Gary Russell
+ * @since 1.4
+ * @see LazyMessagePropertiesConverter
+ */
+public class LazyMessageProperties extends MessageProperties {
+
+	private static final long serialVersionUID = -2513474011069524658L;
+
+	private final transient BasicProperties source;
+
+	private final transient Envelope envelope;
+
+	private final String charset;
+
+	private final transient DefaultMessagePropertiesConverter converter;
+
+	private volatile boolean materialized;
+
+	private volatile boolean headersMaterialized;
+
+	private volatile boolean correlationIdMaterialized;
+
+	LazyMessageProperties(BasicProperties source, Envelope envelope, String charset,
+			DefaultMessagePropertiesConverter converter) {
+		this.source = source;
+		this.envelope = envelope;
+		this.charset = charset;
+		this.converter = converter;
+		if (envelope != null) {
+			super.setDeliveryTag(envelope.getDeliveryTag());
+		}
+	}
+
+	@Override
+	public void setHeader(String key, Object value) {
+		materializeHeaders();
+		super.setHeader(key, value);
+	}
+
+	@Override
+	public Map<String, Object> getHeaders() {
+		materializeHeaders();
+		return super.getHeaders();
+	}
+
+	@Override
+	public void setTimestamp(Date timestamp) {
+		materialize();
+		super.setTimestamp(timestamp);
+	}
+
+	@Override
+	public Date getTimestamp() {
+		return this.materialized ? super.getTimestamp() : this.source.getTimestamp();
+	}
+
+	@Override
+	public void setMessageId(String messageId) {
+		materialize();
+		super.setMessageId(messageId);
+	}
+
+	@Override
+	public String getMessageId() {
+		return this.materialized ? super.getMessageId() : this.source.getMessageId();
+	}
+
+	@Override
+	public void setUserId(String userId) {
+		materialize();
+		super.setUserId(userId);
+	}
+
+	@Override
+	public String getUserId() {
+		return this.materialized ? super.getUserId() : this.source.getUserId();
+	}
+
+	@Override
+	public void setAppId(String appId) {
+		materialize();
+		super.setAppId(appId);
+	}
+
+	@Override
+	public String getAppId() {
+		return this.materialized ? super.getAppId() : this.source.getAppId();
+	}
+
+	@Override
+	public void setClusterId(String clusterId) {
+		materialize();
+		super.setClusterId(clusterId);
+	}
+
+	@Override
+	public String getClusterId() {
+		return this.materialized ? super.getClusterId() : this.source.getClusterId();
+	}
+
+	@Override
+	public void setType(String type) {
+		materialize();
+		super.setType(type);
+	}
+
+	@Override
+	public String getType() {
+		return this.materialized ? super.getType() : this.source.getType();
+	}
+
+	@Override
+	public void setCorrelationId(byte[] correlationId) {
+		this.correlationIdMaterialized = true;
+		super.setCorrelationId(correlationId);
+	}
+
+	@Override
+	public byte[] getCorrelationId() {
+		materializeCorrelationId();
+		return super.getCorrelationId();
+	}
+
+	@Override
+	public void setReplyTo(String replyTo) {
+		materialize();
+		super.setReplyTo(replyTo);
+	}
+
+	@Override
+	public String getReplyTo() {
+		return this.materialized ? super.getReplyTo() : this.source.getReplyTo();
+	}
+
+	@Override
+	public void setReplyToAddress(Address replyTo) {
+		materialize();
+		super.setReplyToAddress(replyTo);
+	}
+
+	@Override
+	public Address getReplyToAddress() {
+		String replyTo = getReplyTo();
+		return (replyTo != null) ? new Address(replyTo) : null;
+	}
+
+	@Override
+	public void setContentType(String contentType) {
+		materialize();
+		super.setContentType(contentType);
+	}
+
+	@Override
+	public String getContentType() {
+		return this.materialized ? super.getContentType() : this.source.getContentType();
+	}
+
+	@Override
+	public void setContentEncoding(String contentEncoding) {
+		materialize();
+		super.setContentEncoding(contentEncoding);
+	}
+
+	@Override
+	public String getContentEncoding() {
+		return this.materialized ? super.getContentEncoding() : this.source.getContentEncoding();
+	}
+
+	@Override
+	public void setDeliveryMode(MessageDeliveryMode deliveryMode) {
+		materialize();
+		super.setDeliveryMode(deliveryMode);
+	}
+
+	@Override
+	public MessageDeliveryMode getDeliveryMode() {
+		if (this.materialized) {
+			return super.getDeliveryMode();
+		}
+		Integer deliveryMode = this.source.getDeliveryMode();
+		return deliveryMode != null ? MessageDeliveryMode.fromInt(deliveryMode)
+				: MessageDeliveryMode.PERSISTENT; // the MessageProperties default
+	}
+
+	@Override
+	public void setExpiration(String expiration) {
+		materialize();
+		super.setExpiration(expiration);
+	}
+
+	@Override
+	public String getExpiration() {
+		return this.materialized ? super.getExpiration() : this.source.getExpiration();
+	}
+
+	@Override
+	public void setPriority(Integer priority) {
+		materialize();
+		super.setPriority(priority);
+	}
+
+	@Override
+	public Integer getPriority() {
+		return this.materialized ? super.getPriority() : this.source.getPriority();
+	}
+
+	@Override
+	public void setReceivedExchange(String receivedExchange) {
+		materialize();
+		super.setReceivedExchange(receivedExchange);
+	}
+
+	@Override
+	public String getReceivedExchange() {
+		if (this.materialized) {
+			return super.getReceivedExchange();
+		}
+		return this.envelope != null ? this.envelope.getExchange() : null;
+	}
+
+	@Override
+	public void setReceivedRoutingKey(String receivedRoutingKey) {
+		materialize();
+		super.setReceivedRoutingKey(receivedRoutingKey);
+	}
+
+	@Override
+	public String getReceivedRoutingKey() {
+		if (this.materialized) {
+			return super.getReceivedRoutingKey();
+		}
+		return this.envelope != null ? this.envelope.getRoutingKey() : null;
+	}
+
+	@Override
+	public void setRedelivered(Boolean redelivered) {
+		materialize();
+		super.setRedelivered(redelivered);
+	}
+
+	@Override
+	public Boolean isRedelivered() {
+		if (this.materialized) {
+			return super.isRedelivered();
+		}
+		return this.envelope != null ? this.envelope.isRedeliver() : null;
+	}
+
+	@Override
+	public Boolean getRedelivered() {
+		return isRedelivered();
+	}
+
+	/**
+	 * @return true if the properties have been copied from the source (because one
+	 * of them was modified).
+	 */
+	public boolean isMaterialized() {
+		return this.materialized;
+	}
+
+	/**
+	 * @return true if the headers have been converted from the source.
+	 */
+	public boolean isHeadersMaterialized() {
+		return this.headersMaterialized;
+	}
+
+	private void materializeHeaders() {
+		if (!this.headersMaterialized) {
+			synchronized (this) {
+				if (!this.headersMaterialized) {
+					Map<String, Object> headers = this.source.getHeaders();
+					if (!CollectionUtils.isEmpty(headers)) {
+						Map<String, Object> target = super.getHeaders();
+						for (Map.Entry<String, Object> entry : headers.entrySet()) {
+							Object value = entry.getValue();
+							if (value instanceof LongString) {
+								value = this.converter.convertLongString((LongString) value, this.charset);
+							}
+							target.put(entry.getKey(), value);
+						}
+					}
+					this.headersMaterialized = true;
+				}
+			}
+		}
+	}
+
+	private void materializeCorrelationId() {
+		if (!this.correlationIdMaterialized) {
+			synchronized (this) {
+				if (!this.correlationIdMaterialized) {
+					String correlationId = this.source.getCorrelationId();
+					if (correlationId != null) {
+						try {
+							super.setCorrelationId(correlationId.getBytes(this.charset));
+						}
+						catch (UnsupportedEncodingException ex) {
+							throw new AmqpUnsupportedEncodingException(ex);
+						}
+					}
+					this.correlationIdMaterialized = true;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Copy all the source-backed properties, as the default converter would.
+	 */
+	private void materialize() {
+		if (!this.materialized) {
+			synchronized (this) {
+				if (!this.materialized) {
+					materializeHeaders();
+					materializeCorrelationId();
+					super.setTimestamp(this.source.getTimestamp());
+					super.setMessageId(this.source.getMessageId());
+					super.setUserId(this.source.getUserId());
+					super.setAppId(this.source.getAppId());
+					super.setClusterId(this.source.getClusterId());
+					super.setType(this.source.getType());
+					Integer deliveryMode = this.source.getDeliveryMode();
+					if (deliveryMode != null) {
+						super.setDeliveryMode(MessageDeliveryMode.fromInt(deliveryMode));
+					}
+					super.setExpiration(this.source.getExpiration());
+					super.setPriority(this.source.getPriority());
+					super.setContentType(this.source.getContentType());
+					super.setContentEncoding(this.source.getContentEncoding());
+					String replyTo = this.source.getReplyTo();
+					if (replyTo != null) {
+						super.setReplyTo(replyTo);
+					}
+					if (this.envelope != null) {
+						super.setReceivedExchange(this.envelope.getExchange());
+						super.setReceivedRoutingKey(this.envelope.getRoutingKey());
+						super.setRedelivered(this.envelope.isRedeliver());
+					}
+					this.materialized = true;
+				}
+			}
+		}
+	}
+
+	@Override
+	public int hashCode() {
+		materialize();
+		return super.hashCode();
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		materialize();
+		return super.equals(obj);
+	}
+
+	@Override
+	public String toString() {
+		materialize();
+		return "Lazy" + super.toString();
+	}
+
+	/**
+	 * Serialize a regular {@link MessageProperties} copy of these properties.
+	 * @return the copy.
+	 */
+	protected Object writeReplace() {
+		MessageProperties copy = new MessageProperties();
+		copy.getHeaders().putAll(getHeaders());
+		copy.setTimestamp(getTimestamp());
+		copy.setMessageId(getMessageId());
+		copy.setUserId(getUserId());
+		copy.setAppId(getAppId());
+		copy.setClusterId(getClusterId());
+		copy.setType(getType());
+		copy.setCorrelationId(getCorrelationId());
+		copy.setReplyTo(getReplyTo());
+		copy.setContentType(getContentType());
+		copy.setContentEncoding(getContentEncoding());
+		if (isContentLengthSet()) {
+			copy.setContentLength(getContentLength());
+		}
+		copy.setDeliveryMode(getDeliveryMode());
+		copy.setExpiration(getExpiration());
+		copy.setPriority(getPriority());
+		copy.setRedelivered(isRedelivered());
+		copy.setReceivedExchange(getReceivedExchange());
+		copy.setReceivedRoutingKey(getReceivedRoutingKey());
+		if (isDeliveryTagSet()) {
+			copy.setDeliveryTag(getDeliveryTag());
+		}
+		copy.setMessageCount(getMessageCount());
+		return copy;
+	}
+
+}
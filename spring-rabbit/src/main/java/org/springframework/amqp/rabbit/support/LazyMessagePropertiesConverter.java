@@ -0,0 +1,41 @@
+/*
+ * Copyright 2014 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+
+package org.springframework.amqp.rabbit.support;
+
+import org.springframework.amqp.core.MessageProperties;
+
+import com.rabbitmq.client.AMQP.BasicProperties;
+import com.rabbitmq.client.Envelope;
+
+/**
+ * A {@link DefaultMessagePropertiesConverter} that defers the conversion of inbound
+ * properties until they are accessed, by returning {@link LazyMessageProperties}.
+ * Useful with listeners that only use some (or none) of the properties - for example,
+ * the headers are not copied (and {@code LongString} values converted) unless the
+ * listener asks for them.
+ * <p>
+ * Outbound conversion is unchanged.
+ *
+ * @author Gary Russell
+ * @since 1.4
+ *
+ */
+public class LazyMessagePropertiesConverter extends DefaultMessagePropertiesConverter {
+
+	@Override
+	public MessageProperties toMessageProperties(BasicProperties source, Envelope envelope, String charset) {
+		return new LazyMessageProperties(source, envelope, charset, this);
+	}
+
+}
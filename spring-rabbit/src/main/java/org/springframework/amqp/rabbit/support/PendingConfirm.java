@@ -30,6 +30,8 @@ public class PendingConfirm {
 
 	private final long timestamp;
 
+	private final ConfirmFuture future;
+
 	private String cause;
 
 	/**
@@ -37,8 +39,19 @@ public class PendingConfirm {
 	 * @param timestamp The timestamp.
 	 */
 	public PendingConfirm(CorrelationData correlationData, long timestamp) {
+		this(correlationData, timestamp, null);
+	}
+
+	/**
+	 * @param correlationData The correlation data.
+	 * @param timestamp The timestamp.
+	 * @param future A future to complete when the confirmation is received.
+	 * @since 1.4
+	 */
+	public PendingConfirm(CorrelationData correlationData, long timestamp, ConfirmFuture future) {
 		this.correlationData = correlationData;
 		this.timestamp = timestamp;
+		this.future = future;
 	}
 
 	/**
@@ -57,6 +70,14 @@ public class PendingConfirm {
 		return timestamp;
 	}
 
+	/**
+	 * @return the future to complete when the confirmation is received, or null.
+	 * @since 1.4
+	 */
+	public ConfirmFuture getFuture() {
+		return future;
+	}
+
 	/**
 	 * When the confirmation is nacked, set the cause when available.
 	 * @param cause The cause.
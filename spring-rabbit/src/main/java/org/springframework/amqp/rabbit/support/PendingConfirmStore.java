@@ -0,0 +1,289 @@
+/*
+ * Copyright 2014 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+
+package org.springframework.amqp.rabbit.support;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.springframework.amqp.rabbit.support.PublisherCallbackChannel.Listener;
+
+/**
+ * Pending publisher confirms for a channel, indexed by publish sequence number.
+ * <p>
+ * Sequence numbers on a channel are dense and increase monotonically, so the confirms
+ * are held in a ring buffer (grown as needed) with the slot for a sequence number
+ * found by masking; adding or removing a single confirm is O(1) and a multiple ack
+ * completes a contiguous range of slots without any per-entry tree maintenance.
+ * <p>
+ * A slot may hold a listener without a confirm (a confirm that has been
+ * {@link #expire(long, PendingConfirm) expired}); the slot remains occupied until the
+ * broker acks or nacks the sequence number.
+ * <p>
+ * All methods are synchronized; confirms removed from the store are returned to the
+ * caller so that they can be delivered without holding the lock.
+ *
+ * @author Gary Russell
+ * @since 1.4
+ *
+ */
+class PendingConfirmStore {
+
+	private static final int INITIAL_CAPACITY = 64;
+
+	private Listener[] listeners = new Listener[INITIAL_CAPACITY];
+
+	private PendingConfirm[] confirms = new PendingConfirm[INITIAL_CAPACITY];
+
+	private int mask = INITIAL_CAPACITY - 1;
+
+	/**
+	 * The lowest sequence number that may be occupied.
+	 */
+	private long lowest;
+
+	/**
+	 * One more than the highest sequence number that may be occupied.
+	 */
+	private long highest;
+
+	private int size;
+
+	/**
+	 * Add a pending confirm.
+	 * @param seq the publish sequence number.
+	 * @param listener the listener.
+	 * @param pendingConfirm the pending confirm.
+	 */
+	synchronized void add(long seq, Listener listener, PendingConfirm pendingConfirm) {
+		if (this.size == 0) {
+			this.lowest = seq;
+			this.highest = seq;
+		}
+		long newLowest = Math.min(this.lowest, seq);
+		long newHighest = Math.max(this.highest, seq + 1);
+		if (newHighest - newLowest > this.listeners.length) {
+			resize(newLowest, newHighest - newLowest);
+		}
+		int index = (int) seq & this.mask;
+		if (this.listeners[index] == null) {
+			this.size++;
+		}
+		this.listeners[index] = listener;
+		this.confirms[index] = pendingConfirm;
+		this.lowest = newLowest;
+		this.highest = newHighest;
+	}
+
+	/**
+	 * Remove the entry for a single sequence number.
+	 * @param seq the sequence number.
+	 * @return the removed entry, or null if there was no entry for the sequence number.
+	 */
+	synchronized Entry remove(long seq) {
+		if (seq < this.lowest || seq >= this.highest) {
+			return null;
+		}
+		int index = (int) seq & this.mask;
+		Listener listener = this.listeners[index];
+		if (listener == null) {
+			return null;
+		}
+		Entry entry = new Entry(seq, listener, this.confirms[index]);
+		clear(index);
+		if (seq == this.lowest) {
+			advanceLowest();
+		}
+		return entry;
+	}
+
+	/**
+	 * Remove the entries for all sequence numbers up to and including the supplied
+	 * sequence number.
+	 * @param seq the sequence number.
+	 * @return the removed entries, in sequence order.
+	 */
+	synchronized List<Entry> removeUpTo(long seq) {
+		long limit = Math.min(seq + 1, this.highest);
+		List<Entry> removed = new ArrayList<Entry>((int) Math.max(0, Math.min(limit - this.lowest, this.size)));
+		for (long i = this.lowest; i < limit; i++) {
+			int index = (int) i & this.mask;
+			Listener listener = this.listeners[index];
+			if (listener != null) {
+				removed.add(new Entry(i, listener, this.confirms[index]));
+				clear(index);
+			}
+		}
+		if (limit > this.lowest) {
+			this.lowest = limit;
+			advanceLowest();
+		}
+		return removed;
+	}
+
+	/**
+	 * Remove all the entries for a listener.
+	 * @param listener the listener.
+	 * @return the number of sequence numbers removed.
+	 */
+	synchronized int removeAll(Listener listener) {
+		int removed = 0;
+		for (long i = this.lowest; i < this.highest; i++) {
+			int index = (int) i & this.mask;
+			if (this.listeners[index] == listener) {
+				clear(index);
+				removed++;
+			}
+		}
+		advanceLowest();
+		return removed;
+	}
+
+	/**
+	 * Remove all the entries.
+	 * @return the removed entries, in sequence order.
+	 */
+	synchronized List<Entry> removeAll() {
+		return removeUpTo(this.highest - 1);
+	}
+
+	/**
+	 * Expire a pending confirm; the sequence number remains occupied until it is removed,
+	 * but the confirm is no longer returned when it is.
+	 * @param seq the sequence number.
+	 * @param pendingConfirm the pending confirm; ignored if it no longer occupies the slot.
+	 * @return true if the confirm was expired.
+	 */
+	synchronized boolean expire(long seq, PendingConfirm pendingConfirm) {
+		if (seq < this.lowest || seq >= this.highest) {
+			return false;
+		}
+		int index = (int) seq & this.mask;
+		if (this.confirms[index] != pendingConfirm || pendingConfirm == null) {
+			return false;
+		}
+		this.confirms[index] = null;
+		return true;
+	}
+
+	/**
+	 * Get the unexpired pending confirms for a listener.
+	 * @param listener the listener.
+	 * @return the entries, in sequence order.
+	 */
+	synchronized List<Entry> getPendingConfirms(Listener listener) {
+		return getPendingConfirms(listener, Long.MIN_VALUE, Long.MAX_VALUE);
+	}
+
+	/**
+	 * Get the unexpired pending confirms for a listener with sequence numbers in a range.
+	 * @param listener the listener.
+	 * @param from the lowest sequence number (inclusive).
+	 * @param to the highest sequence number (exclusive).
+	 * @return the entries, in sequence order.
+	 */
+	synchronized List<Entry> getPendingConfirms(Listener listener, long from, long to) {
+		List<Entry> entries = new ArrayList<Entry>();
+		long end = Math.min(to, this.highest);
+		for (long i = Math.max(from, this.lowest); i < end; i++) {
+			int index = (int) i & this.mask;
+			if (this.listeners[index] == listener && this.confirms[index] != null) {
+				entries.add(new Entry(i, listener, this.confirms[index]));
+			}
+		}
+		return entries;
+	}
+
+	/**
+	 * @return the number of occupied sequence numbers, including those with expired
+	 * confirms.
+	 */
+	synchronized int size() {
+		return this.size;
+	}
+
+	private void clear(int index) {
+		this.listeners[index] = null;
+		this.confirms[index] = null;
+		this.size--;
+	}
+
+	private void advanceLowest() {
+		if (this.size == 0) {
+			this.lowest = this.highest;
+			return;
+		}
+		while (this.listeners[(int) this.lowest & this.mask] == null) {
+			this.lowest++;
+		}
+	}
+
+	private void resize(long newLowest, long span) {
+		if (span > 1 << 30) {
+			throw new IllegalStateException("Too many outstanding publisher confirms");
+		}
+		int capacity = this.listeners.length;
+		while (capacity < span) {
+			capacity <<= 1;
+		}
+		int newMask = capacity - 1;
+		Listener[] newListeners = new Listener[capacity];
+		PendingConfirm[] newConfirms = new PendingConfirm[capacity];
+		for (long i = this.lowest; i < this.highest; i++) {
+			int index = (int) i & this.mask;
+			if (this.listeners[index] != null) {
+				int newIndex = (int) i & newMask;
+				newListeners[newIndex] = this.listeners[index];
+				newConfirms[newIndex] = this.confirms[index];
+			}
+		}
+		this.listeners = newListeners;
+		this.confirms = newConfirms;
+		this.mask = newMask;
+	}
+
+	/**
+	 * A removed entry.
+	 */
+	static class Entry {
+
+		private final long seq;
+
+		private final Listener listener;
+
+		private final PendingConfirm pendingConfirm;
+
+		Entry(long seq, Listener listener, PendingConfirm pendingConfirm) {
+			this.seq = seq;
+			this.listener = listener;
+			this.pendingConfirm = pendingConfirm;
+		}
+
+		long getSeq() {
+			return this.seq;
+		}
+
+		Listener getListener() {
+			return this.listener;
+		}
+
+		/**
+		 * @return the pending confirm, or null if it was expired.
+		 */
+		PendingConfirm getPendingConfirm() {
+			return this.pendingConfirm;
+		}
+
+	}
+
+}
@@ -33,6 +33,11 @@ public interface PublisherCallbackChannel extends Channel {
 
 	String RETURN_CORRELATION = "spring_return_correlation";
 
+	/**
+	 * Header used to correlate a returned message with the {@link ConfirmFuture} of the send.
+	 */
+	String RETURNED_CONFIRM_CORRELATION = "spring_returned_confirm_correlation";
+
 	/**
 	 * Adds a {@link Listener} and returns a reference to
 	 * the pending confirms map for that listener's pending
@@ -64,6 +69,30 @@ public interface PublisherCallbackChannel extends Channel {
 	 */
 	void addPendingConfirm(Listener listener, long seq, PendingConfirm pendingConfirm);
 
+	/**
+	 * Discard a pending confirmation added for a publish that then failed, so that the
+	 * sequence number can be reused by the next publish. The confirmation is not
+	 * delivered to the listener, and its place in the confirm window is released.
+	 *
+	 * @param listener The listener.
+	 * @param seq The key to the map.
+	 * @since 1.4
+	 */
+	void discardPendingConfirm(Listener listener, long seq);
+
+	/**
+	 * Limit the number of publishes awaiting confirms on this channel; when the limit is
+	 * reached, {@link #addPendingConfirm(Listener, long, PendingConfirm)} blocks until a
+	 * confirm is received, applying back-pressure to the publisher. Should only be changed
+	 * while no confirms are outstanding.
+	 *
+	 * @param maxInFlight the maximum number of outstanding confirms; 0 for no limit.
+	 * @param timeout the maximum time (ms) to wait for a confirm when the limit is reached;
+	 * an {@link org.springframework.amqp.AmqpException} is thrown when it expires.
+	 * @since 1.4
+	 */
+	void setConfirmWindow(int maxInFlight, long timeout);
+
 	/**
 	 * Listeners implementing this interface can participate
 	 * in publisher confirms received from multiple channels,
@@ -16,24 +16,26 @@
 package org.springframework.amqp.rabbit.support;
 
 import java.io.IOException;
-import java.util.ArrayList;
-import java.util.Collections;
-import java.util.HashSet;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Comparator;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.NoSuchElementException;
 import java.util.Set;
 import java.util.SortedMap;
-import java.util.TreeMap;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
 import java.util.concurrent.atomic.AtomicReference;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 
+import org.springframework.amqp.AmqpException;
 import org.springframework.util.Assert;
 import org.springframework.util.ObjectUtils;
 import org.springframework.util.ReflectionUtils;
@@ -89,10 +91,14 @@ public class PublisherCallbackChannelImpl implements PublisherCallbackChannel, C
 
 	private final Map<String, Listener> listeners = new ConcurrentHashMap<String, Listener>();
 
-	private final Map<Listener, SortedMap<Long, PendingConfirm>> pendingConfirms
+	private final Map<Listener, SortedMap<Long, PendingConfirm>> listenerPendingConfirms
 		= new ConcurrentHashMap<PublisherCallbackChannel.Listener, SortedMap<Long,PendingConfirm>>();
 
-	private final SortedMap<Long, Listener> listenerForSeq = new ConcurrentSkipListMap<Long, Listener>();
+	private final PendingConfirmStore pendingConfirms = new PendingConfirmStore();
+
+	private volatile Semaphore confirmWindow;
+
+	private volatile long confirmWindowTimeout;
 
 	private final java.lang.reflect.Method getFlowMethod;
 
@@ -564,23 +570,19 @@ public class PublisherCallbackChannelImpl implements PublisherCallbackChannel, C
 	}
 
 	private void generateNacksForPendingAcks(String cause) {
-		synchronized (this.pendingConfirms) {
-			for (Entry<Listener, SortedMap<Long, PendingConfirm>> entry : this.pendingConfirms.entrySet()) {
-				Listener listener = entry.getKey();
-				for (Entry<Long, PendingConfirm> confirmEntry : entry.getValue().entrySet()) {
-					try {
-						confirmEntry.getValue().setCause(cause);
-						handleNack(confirmEntry.getKey(), false);
-					}
-					catch (IOException e) {
-						logger.error("Error delivering Nack afterShutdown", e);
-					}
-				}
-				listener.removePendingConfirmsReference(this, entry.getValue());
+		List<PendingConfirmStore.Entry> entries = this.pendingConfirms.removeAll();
+		releaseConfirmWindow(entries.size());
+		for (PendingConfirmStore.Entry entry : entries) {
+			PendingConfirm pendingConfirm = entry.getPendingConfirm();
+			if (pendingConfirm != null) {
+				pendingConfirm.setCause(cause);
+				doHandleConfirm(false, entry.getListener(), pendingConfirm);
 			}
-			this.pendingConfirms.clear();
-			this.listenerForSeq.clear();
 		}
+		for (Entry<Listener, SortedMap<Long, PendingConfirm>> entry : this.listenerPendingConfirms.entrySet()) {
+			entry.getKey().removePendingConfirmsReference(this, entry.getValue());
+		}
+		this.listenerPendingConfirms.clear();
 	}
 
 	public synchronized SortedMap<Long, PendingConfirm> addListener(Listener listener) {
@@ -591,12 +593,12 @@ public class PublisherCallbackChannelImpl implements PublisherCallbackChannel, C
 		}
 		if (!this.listeners.values().contains(listener)){
 			this.listeners.put(listener.getUUID(), listener);
-			this.pendingConfirms.put(listener, Collections.synchronizedSortedMap(new TreeMap<Long, PendingConfirm>()));
+			this.listenerPendingConfirms.put(listener, new ListenerPendingConfirms(listener));
 			if (logger.isDebugEnabled()) {
 				logger.debug("Added listener " + listener);
 			}
 		}
-		return this.pendingConfirms.get(listener);
+		return this.listenerPendingConfirms.get(listener);
 	}
 
 	public synchronized boolean removeListener(Listener listener) {
@@ -606,14 +608,8 @@ public class PublisherCallbackChannelImpl implements PublisherCallbackChannel, C
 			this.delegate.removeConfirmListener(this);
 			this.delegate.removeReturnListener(this);
 		}
-		Iterator<Entry<Long, Listener>> iterator = this.listenerForSeq.entrySet().iterator();
-		while (iterator.hasNext()) {
-			Entry<Long, Listener> entry = iterator.next();
-			if (entry.getValue() == listener) {
-				iterator.remove();
-			}
-		}
-		this.pendingConfirms.remove(listener);
+		releaseConfirmWindow(this.pendingConfirms.removeAll(listener));
+		this.listenerPendingConfirms.remove(listener);
 		return result;
 	}
 
@@ -639,39 +635,25 @@ public class PublisherCallbackChannelImpl implements PublisherCallbackChannel, C
 	private void processAck(long seq, boolean ack, boolean multiple) {
 		if (multiple) {
 			/*
-			 * Piggy-backed ack - extract all Listeners for this and earlier
-			 * sequences. Then, for each Listener, handle each of it's acks.
-			 * Finally, remove the sequences from listenerForSeq.
+			 * Piggy-backed ack - remove the range of sequences up to and including
+			 * this one, then deliver the confirms in sequence order.
 			 */
-			synchronized(this.pendingConfirms) {
-				Map<Long, Listener> involvedListeners = this.listenerForSeq.headMap(seq + 1);
-				// eliminate duplicates
-				Set<Listener> listeners = new HashSet<Listener>(involvedListeners.values());
-				for (Listener involvedListener : listeners) {
-					// find all unack'd confirms for this listener and handle them
-					SortedMap<Long, PendingConfirm> confirmsMap = this.pendingConfirms.get(involvedListener);
-					if (confirmsMap != null) {
-						Map<Long, PendingConfirm> confirms = confirmsMap.headMap(seq + 1);
-						Iterator<Entry<Long, PendingConfirm>> iterator = confirms.entrySet().iterator();
-						while (iterator.hasNext()) {
-							Entry<Long, PendingConfirm> entry = iterator.next();
-							iterator.remove();
-							doHandleConfirm(ack, involvedListener, entry.getValue());
-						}
-					}
-				}
-				List<Long> seqs = new ArrayList<Long>(involvedListeners.keySet());
-				for (Long key : seqs) {
-					this.listenerForSeq.remove(key);
+			List<PendingConfirmStore.Entry> entries = this.pendingConfirms.removeUpTo(seq);
+			releaseConfirmWindow(entries.size());
+			for (PendingConfirmStore.Entry entry : entries) {
+				PendingConfirm pendingConfirm = entry.getPendingConfirm();
+				if (pendingConfirm != null) {
+					doHandleConfirm(ack, entry.getListener(), pendingConfirm);
 				}
 			}
 		}
 		else {
-			Listener listener = this.listenerForSeq.remove(seq);
-			if (listener != null) {
-				PendingConfirm pendingConfirm = this.pendingConfirms.get(listener).remove(seq);
+			PendingConfirmStore.Entry entry = this.pendingConfirms.remove(seq);
+			if (entry != null) {
+				releaseConfirmWindow(1);
+				PendingConfirm pendingConfirm = entry.getPendingConfirm();
 				if (pendingConfirm != null) {
-					doHandleConfirm(ack, listener, pendingConfirm);
+					doHandleConfirm(ack, entry.getListener(), pendingConfirm);
 				}
 			}
 			else {
@@ -682,6 +664,10 @@ public class PublisherCallbackChannelImpl implements PublisherCallbackChannel, C
 
 	private void doHandleConfirm(boolean ack, Listener listener, PendingConfirm pendingConfirm) {
 		try {
+			ConfirmFuture future = pendingConfirm.getFuture();
+			if (future != null) {
+				future.complete(ack, pendingConfirm.getCause());
+			}
 			if (listener.isConfirmListener()) {
 				if (logger.isDebugEnabled()) {
 					logger.debug("Sending confirm " + pendingConfirm);
@@ -695,12 +681,45 @@ public class PublisherCallbackChannelImpl implements PublisherCallbackChannel, C
 	}
 
 	public void addPendingConfirm(Listener listener, long seq, PendingConfirm pendingConfirm) {
-		SortedMap<Long, PendingConfirm> pendingConfirmsForListener = this.pendingConfirms.get(listener);
-		Assert.notNull(pendingConfirmsForListener, "Listener not registered");
-		synchronized (this.pendingConfirms) {
-			pendingConfirmsForListener.put(seq, pendingConfirm);
+		Assert.isTrue(this.listenerPendingConfirms.containsKey(listener), "Listener not registered");
+		Semaphore confirmWindow = this.confirmWindow;
+		if (confirmWindow != null) {
+			acquireConfirmWindow(confirmWindow);
+		}
+		this.pendingConfirms.add(seq, listener, pendingConfirm);
+	}
+
+	public void discardPendingConfirm(Listener listener, long seq) {
+		if (this.pendingConfirms.remove(seq) != null) {
+			// the permit was taken when the confirm was added; no ack will release it
+			releaseConfirmWindow(1);
+		}
+	}
+
+	public void setConfirmWindow(int maxInFlight, long timeout) {
+		Assert.isTrue(maxInFlight >= 0, "'maxInFlight' must be >= 0");
+		this.confirmWindowTimeout = timeout;
+		this.confirmWindow = maxInFlight > 0 ? new Semaphore(maxInFlight) : null;
+	}
+
+	private void acquireConfirmWindow(Semaphore confirmWindow) {
+		try {
+			if (!confirmWindow.tryAcquire(this.confirmWindowTimeout, TimeUnit.MILLISECONDS)) {
+				throw new AmqpException("Timed out after " + this.confirmWindowTimeout
+						+ "ms waiting for outstanding publisher confirms on " + this);
+			}
+		}
+		catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new AmqpException("Interrupted while waiting for outstanding publisher confirms", e);
+		}
+	}
+
+	private void releaseConfirmWindow(int confirms) {
+		Semaphore confirmWindow = this.confirmWindow;
+		if (confirmWindow != null && confirms > 0) {
+			confirmWindow.release(confirms);
 		}
-		this.listenerForSeq.put(seq, listener);
 	}
 
 //  ReturnListener
@@ -752,4 +771,127 @@ public class PublisherCallbackChannelImpl implements PublisherCallbackChannel, C
 		return "PublisherCallbackChannelImpl: " + this.delegate.toString();
 	}
 
+	/**
+	 * A view of the unexpired pending confirms for a listener, in sequence order;
+	 * removing an entry expires the confirm so it is not delivered to the listener.
+	 * Iterators operate on a snapshot. Range views are backed by the same store,
+	 * restricted to their sequence numbers.
+	 */
+	private class ListenerPendingConfirms extends AbstractMap<Long, PendingConfirm>
+			implements SortedMap<Long, PendingConfirm> {
+
+		private final Listener listener;
+
+		private final long fromKey; // inclusive
+
+		private final long toKey; // exclusive
+
+		private ListenerPendingConfirms(Listener listener) {
+			this(listener, Long.MIN_VALUE, Long.MAX_VALUE);
+		}
+
+		private ListenerPendingConfirms(Listener listener, long fromKey, long toKey) {
+			this.listener = listener;
+			this.fromKey = fromKey;
+			this.toKey = toKey;
+		}
+
+		private List<PendingConfirmStore.Entry> entries() {
+			return PublisherCallbackChannelImpl.this.pendingConfirms.getPendingConfirms(this.listener,
+					this.fromKey, this.toKey);
+		}
+
+		@Override
+		public Set<Entry<Long, PendingConfirm>> entrySet() {
+			return new AbstractSet<Entry<Long, PendingConfirm>>() {
+
+				@Override
+				public Iterator<Entry<Long, PendingConfirm>> iterator() {
+					final Iterator<PendingConfirmStore.Entry> iterator = entries().iterator();
+					return new Iterator<Entry<Long, PendingConfirm>>() {
+
+						private PendingConfirmStore.Entry current;
+
+						@Override
+						public boolean hasNext() {
+							return iterator.hasNext();
+						}
+
+						@Override
+						public Entry<Long, PendingConfirm> next() {
+							this.current = iterator.next();
+							return new SimpleImmutableEntry<Long, PendingConfirm>(this.current.getSeq(),
+									this.current.getPendingConfirm());
+						}
+
+						@Override
+						public void remove() {
+							if (this.current == null) {
+								throw new IllegalStateException();
+							}
+							PublisherCallbackChannelImpl.this.pendingConfirms.expire(this.current.getSeq(),
+									this.current.getPendingConfirm());
+							this.current = null;
+						}
+
+					};
+				}
+
+				@Override
+				public int size() {
+					return entries().size();
+				}
+
+			};
+		}
+
+		@Override
+		public Comparator<? super Long> comparator() {
+			return null;
+		}
+
+		@Override
+		public Long firstKey() {
+			List<PendingConfirmStore.Entry> entries = entries();
+			if (entries.isEmpty()) {
+				throw new NoSuchElementException();
+			}
+			return entries.get(0).getSeq();
+		}
+
+		@Override
+		public Long lastKey() {
+			List<PendingConfirmStore.Entry> entries = entries();
+			if (entries.isEmpty()) {
+				throw new NoSuchElementException();
+			}
+			return entries.get(entries.size() - 1).getSeq();
+		}
+
+		@Override
+		public SortedMap<Long, PendingConfirm> subMap(Long fromKey, Long toKey) {
+			Assert.isTrue(fromKey <= toKey, "'fromKey' cannot be greater than 'toKey'");
+			checkRange(fromKey);
+			checkRange(toKey);
+			return new ListenerPendingConfirms(this.listener, fromKey, toKey);
+		}
+
+		@Override
+		public SortedMap<Long, PendingConfirm> headMap(Long toKey) {
+			checkRange(toKey);
+			return new ListenerPendingConfirms(this.listener, this.fromKey, toKey);
+		}
+
+		@Override
+		public SortedMap<Long, PendingConfirm> tailMap(Long fromKey) {
+			checkRange(fromKey);
+			return new ListenerPendingConfirms(this.listener, fromKey, this.toKey);
+		}
+
+		private void checkRange(long key) {
+			Assert.isTrue(key >= this.fromKey && key <= this.toKey, "key out of range");
+		}
+
+	}
+
 }
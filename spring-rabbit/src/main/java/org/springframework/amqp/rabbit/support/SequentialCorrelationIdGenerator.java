@@ -0,0 +1,49 @@
+/*
+ * Copyright 2014 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+
+package org.springframework.amqp.rabbit.support;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.springframework.util.Assert;
+
+/**
+ * A {@link CorrelationIdGenerator} that appends an incrementing counter to a fixed
+ * prefix; ids are unique as long as the prefix is unique (for example a random UUID
+ * per generator). Lock-free, and avoids the contended {@code SecureRandom} used by
+ * {@link java.util.UUID#randomUUID()}.
+ *
+ * @author Gary Russell
+ * @since 1.4
+ *
+ */
+public class SequentialCorrelationIdGenerator implements CorrelationIdGenerator {
+
+	private final String prefix;
+
+	private final AtomicLong counter = new AtomicLong();
+
+	/**
+	 * @param prefix the prefix; a '.' and the counter value are appended.
+	 */
+	public SequentialCorrelationIdGenerator(String prefix) {
+		Assert.notNull(prefix, "'prefix' cannot be null");
+		this.prefix = prefix + ".";
+	}
+
+	@Override
+	public String generateCorrelationId() {
+		return this.prefix.concat(Long.toString(this.counter.incrementAndGet()));
+	}
+
+}
@@ -62,6 +62,8 @@ public final class ConnectionFactoryParserTests {
 				((com.rabbitmq.client.ConnectionFactory) dfa.getPropertyValue("rabbitConnectionFactory"))
 						.getRequestedHeartbeat());
 		assertEquals(CachingConnectionFactory.CacheMode.CHANNEL, connectionFactory.getCacheMode());
+		assertEquals(5000L, dfa.getPropertyValue("channelCheckoutTimeout"));
+		assertEquals(3, connectionFactory.getSharedConnectionCount());
 	}
 
 	@Test
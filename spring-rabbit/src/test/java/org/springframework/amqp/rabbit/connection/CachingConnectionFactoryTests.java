@@ -13,10 +13,13 @@
 package org.springframework.amqp.rabbit.connection;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNotSame;
 import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 import static org.mockito.Matchers.anyInt;
 import static org.mockito.Mockito.atLeastOnce;
 import static org.mockito.Mockito.doAnswer;
@@ -29,13 +32,19 @@ import static org.mockito.Mockito.when;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicReference;
 
@@ -43,7 +52,9 @@ import org.junit.Test;
 import org.mockito.invocation.InvocationOnMock;
 import org.mockito.stubbing.Answer;
 
+import org.springframework.amqp.AmqpTimeoutException;
 import org.springframework.amqp.rabbit.connection.CachingConnectionFactory.CacheMode;
+import org.springframework.amqp.rabbit.support.PublisherCallbackChannel;
 import org.springframework.amqp.utils.test.TestUtils;
 import org.springframework.test.util.ReflectionTestUtils;
 
@@ -148,6 +159,68 @@ public class CachingConnectionFactoryTests extends AbstractConnectionFactoryTest
 
 	}
 
+	@Test
+	public void testCheckoutLimit() throws Exception {
+		com.rabbitmq.client.ConnectionFactory mockConnectionFactory = mock(com.rabbitmq.client.ConnectionFactory.class);
+		com.rabbitmq.client.Connection mockConnection = mock(com.rabbitmq.client.Connection.class);
+		Channel mockChannel1 = mock(Channel.class);
+		Channel mockChannel2 = mock(Channel.class);
+
+		when(mockConnectionFactory.newConnection((ExecutorService) null)).thenReturn(mockConnection);
+		when(mockConnection.isOpen()).thenReturn(true);
+		when(mockConnection.createChannel()).thenReturn(mockChannel1).thenReturn(mockChannel2);
+		when(mockChannel1.isOpen()).thenReturn(true);
+		when(mockChannel2.isOpen()).thenReturn(true);
+
+		CachingConnectionFactory ccf = new CachingConnectionFactory(mockConnectionFactory);
+		ccf.setChannelCacheSize(2);
+		ccf.setChannelCheckoutTimeout(100);
+
+		final Connection con = ccf.createConnection();
+
+		Channel channel1 = con.createChannel(false);
+		Channel channel2 = con.createChannel(false);
+		try {
+			con.createChannel(false);
+			fail("Expected AmqpTimeoutException");
+		}
+		catch (AmqpTimeoutException e) {
+			assertEquals("No available channels", e.getMessage());
+		}
+
+		// a closed channel is handed to a waiting caller
+		ccf.setChannelCheckoutTimeout(10000);
+		ExecutorService exec = Executors.newSingleThreadExecutor();
+		Future<Channel> future = exec.submit(new Callable<Channel>() {
+
+			@Override
+			public Channel call() throws Exception {
+				return con.createChannel(false);
+			}
+
+		});
+		Thread.sleep(100);
+		assertFalse(future.isDone());
+		channel1.close();
+		assertSame(channel1, future.get(10, TimeUnit.SECONDS));
+
+		// multiple close calls release one permit
+		channel2.close();
+		channel2.close();
+		assertSame(channel2, con.createChannel(false));
+		ccf.setChannelCheckoutTimeout(100);
+		try {
+			con.createChannel(false);
+			fail("Expected AmqpTimeoutException");
+		}
+		catch (AmqpTimeoutException e) {
+			// expected
+		}
+
+		verify(mockConnection, times(2)).createChannel();
+		exec.shutdownNow();
+	}
+
 	@Test
 	public void testCacheSizeExceeded() throws IOException {
 		com.rabbitmq.client.ConnectionFactory mockConnectionFactory = mock(com.rabbitmq.client.ConnectionFactory.class);
@@ -299,11 +372,9 @@ public class CachingConnectionFactoryTests extends AbstractConnectionFactoryTest
 		verify(mockChannel1, never()).close();
 		verify(mockChannel2, never()).close();
 
-		@SuppressWarnings("unchecked")
-		List<Channel> notxlist = (List<Channel>) ReflectionTestUtils.getField(ccf, "cachedChannelsNonTransactional");
+		Collection<?> notxlist = (Collection<?>) ReflectionTestUtils.getField(ccf, "cachedChannelsNonTransactional");
 		assertEquals(1, notxlist.size());
-		@SuppressWarnings("unchecked")
-		List<Channel> txlist = (List<Channel>) ReflectionTestUtils.getField(ccf, "cachedChannelsTransactional");
+		Collection<?> txlist = (Collection<?>) ReflectionTestUtils.getField(ccf, "cachedChannelsTransactional");
 		assertEquals(1, txlist.size());
 
 	}
@@ -955,6 +1026,148 @@ public class CachingConnectionFactoryTests extends AbstractConnectionFactoryTest
 		assertEquals(0, idleConnections.size());
 	}
 
+	@SuppressWarnings("deprecation")
+	@Test
+	public void testCachedChannelDelegates() throws Exception {
+		com.rabbitmq.client.ConnectionFactory mockConnectionFactory = mock(com.rabbitmq.client.ConnectionFactory.class);
+		com.rabbitmq.client.Connection mockConnection = mock(com.rabbitmq.client.Connection.class);
+		Channel mockChannel1 = mock(Channel.class);
+		Channel mockChannel2 = mock(Channel.class);
+
+		when(mockConnectionFactory.newConnection((ExecutorService) null)).thenReturn(mockConnection);
+		when(mockConnection.isOpen()).thenReturn(true);
+		when(mockConnection.createChannel()).thenReturn(mockChannel1).thenReturn(mockChannel2);
+		when(mockChannel1.isOpen()).thenReturn(true);
+		when(mockChannel2.isOpen()).thenReturn(true);
+
+		CachingConnectionFactory ccf = new CachingConnectionFactory(mockConnectionFactory);
+		Connection con = ccf.createConnection();
+
+		Channel channel = con.createChannel(false);
+		assertFalse(channel instanceof PublisherCallbackChannel);
+		channel.basicPublish("ex", "rk", null, new byte[0]);
+		verify(mockChannel1).basicPublish("ex", "rk", null, new byte[0]);
+		channel.basicPublish("ex", "rk", true, true, null, new byte[0]);
+		verify(mockChannel1).basicPublish("ex", "rk", true, true, null, new byte[0]);
+		channel.basicRecoverAsync(true);
+		verify(mockChannel1).basicRecoverAsync(true);
+		verify(mockChannel1, never()).basicRecover(true);
+		try {
+			channel.txSelect();
+			fail("Expected UnsupportedOperationException");
+		}
+		catch (UnsupportedOperationException e) {
+			assertEquals("Cannot start transaction on non-transactional channel", e.getMessage());
+		}
+		channel.close(200, "OK"); // logical close
+		verify(mockChannel1, never()).close(200, "OK");
+		assertSame(channel, con.createChannel(false));
+		channel.close();
+		ccf.destroy();
+
+		ccf = new CachingConnectionFactory(mockConnectionFactory);
+		ccf.setPublisherReturns(true);
+		con = ccf.createConnection();
+		channel = con.createChannel(false);
+		assertTrue(channel instanceof PublisherCallbackChannel);
+		assertTrue(((ChannelProxy) channel).getTargetChannel() instanceof PublisherCallbackChannel);
+		channel.basicAck(1, false);
+		verify(mockChannel2).basicAck(1, false);
+		channel.close();
+		ccf.destroy();
+	}
+
+	@Test
+	public void testLongRunningCallDoesNotBlockChannel() throws Exception {
+		com.rabbitmq.client.ConnectionFactory mockConnectionFactory = mock(com.rabbitmq.client.ConnectionFactory.class);
+		com.rabbitmq.client.Connection mockConnection = mock(com.rabbitmq.client.Connection.class);
+		Channel mockChannel = mock(Channel.class);
+
+		when(mockConnectionFactory.newConnection((ExecutorService) null)).thenReturn(mockConnection);
+		when(mockConnection.isOpen()).thenReturn(true);
+		when(mockConnection.createChannel()).thenReturn(mockChannel);
+		when(mockChannel.isOpen()).thenReturn(true);
+		when(mockChannel.getChannelNumber()).thenReturn(42);
+		final CountDownLatch waiting = new CountDownLatch(1);
+		final CountDownLatch release = new CountDownLatch(1);
+		doAnswer(new Answer<Boolean>() {
+
+			@Override
+			public Boolean answer(InvocationOnMock invocation) throws Throwable {
+				waiting.countDown();
+				return release.await(10, TimeUnit.SECONDS);
+			}
+		}).when(mockChannel).waitForConfirms();
+
+		CachingConnectionFactory ccf = new CachingConnectionFactory(mockConnectionFactory);
+		final Channel channel = ccf.createConnection().createChannel(false);
+		ExecutorService exec = Executors.newSingleThreadExecutor();
+		Future<Boolean> confirmed = exec.submit(new Callable<Boolean>() {
+
+			@Override
+			public Boolean call() throws Exception {
+				return channel.waitForConfirms();
+			}
+		});
+		assertTrue(waiting.await(10, TimeUnit.SECONDS));
+		assertTrue(channel.isOpen());
+		// would block until waitForConfirms() returns if calls were serialized
+		assertEquals(42, channel.getChannelNumber());
+		channel.basicAck(1, false);
+		verify(mockChannel).basicAck(1, false);
+		release.countDown();
+		assertTrue(confirmed.get(10, TimeUnit.SECONDS));
+		exec.shutdownNow();
+		channel.close();
+		ccf.destroy();
+	}
+
+	@Test
+	public void testSharedConnectionCount() throws Exception {
+		com.rabbitmq.client.ConnectionFactory mockConnectionFactory = mock(com.rabbitmq.client.ConnectionFactory.class);
+		com.rabbitmq.client.Connection mockConnection1 = mock(com.rabbitmq.client.Connection.class);
+		com.rabbitmq.client.Connection mockConnection2 = mock(com.rabbitmq.client.Connection.class);
+		com.rabbitmq.client.Connection mockConnection3 = mock(com.rabbitmq.client.Connection.class);
+		Channel mockChannel = mock(Channel.class);
+
+		when(mockConnectionFactory.newConnection((ExecutorService) null)).thenReturn(mockConnection1)
+				.thenReturn(mockConnection2).thenReturn(mockConnection3);
+		when(mockConnection1.isOpen()).thenReturn(true);
+		when(mockConnection2.isOpen()).thenReturn(true);
+		when(mockConnection3.isOpen()).thenReturn(true);
+		when(mockConnection1.createChannel()).thenReturn(mockChannel);
+		when(mockConnection2.createChannel()).thenReturn(mockChannel);
+		when(mockConnection3.createChannel()).thenReturn(mockChannel);
+		when(mockChannel.isOpen()).thenReturn(true);
+
+		CachingConnectionFactory ccf = new CachingConnectionFactory(mockConnectionFactory);
+		ccf.setChannelCacheSize(4);
+		ccf.setSharedConnectionCount(2);
+		ccf.afterPropertiesSet();
+		Connection con = ccf.createConnection();
+		verify(mockConnectionFactory).newConnection((ExecutorService) null);
+
+		for (int i = 0; i < 4; i++) {
+			con.createChannel(false);
+		}
+		verify(mockConnection1, times(2)).createChannel();
+		verify(mockConnection2, times(2)).createChannel();
+		verify(mockConnectionFactory, times(2)).newConnection((ExecutorService) null);
+		assertSame(con, ccf.createConnection());
+
+		// a closed additional connection is replaced
+		when(mockConnection2.isOpen()).thenReturn(false);
+		con.createChannel(false);
+		con.createChannel(false);
+		verify(mockConnection1, times(3)).createChannel();
+		verify(mockConnection2, times(2)).createChannel();
+		verify(mockConnection3).createChannel();
+
+		ccf.destroy();
+		verify(mockConnection1).close(anyInt());
+		verify(mockConnection3).close(anyInt());
+	}
+
 	private void verifyConnectionIs(com.rabbitmq.client.Connection mockConnection, Object con) {
 		assertSame(mockConnection, targetDelegate(con));
 	}
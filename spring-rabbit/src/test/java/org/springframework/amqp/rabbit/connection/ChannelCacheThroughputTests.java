@@ -0,0 +1,152 @@
+/*
+ * Copyright 2014 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+
+package org.springframework.amqp.rabbit.connection;
+
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.junit.Rule;
+import org.junit.Test;
+
+import org.springframework.amqp.rabbit.test.LongRunningIntegrationTest;
+import org.springframework.amqp.utils.test.TestUtils;
+
+import com.rabbitmq.client.Channel;
+import com.rabbitmq.client.ConnectionFactory;
+
+/**
+ * Measures the throughput of checking channels out of, and returning them to, the
+ * {@link CachingConnectionFactory} channel cache with 1, 8 and 64 threads. The broker
+ * connection and channels are stubs, so only the cache itself is measured.
+ *
+ * @author Gary Russell
+ * @since 1.4
+ *
+ */
+public class ChannelCacheThroughputTests {
+
+	private static final Log logger = LogFactory.getLog(ChannelCacheThroughputTests.class);
+
+	private static final int COUNT = 2000000;
+
+	private static final int ITERATIONS = 5;
+
+	@Rule
+	public LongRunningIntegrationTest longTest = new LongRunningIntegrationTest();
+
+	@Test
+	public void checkoutCheckin() throws Exception {
+		for (int i = 0; i < ITERATIONS; i++) {
+			// the first iterations warm up the JIT
+			run(1);
+			run(8);
+			run(64);
+		}
+	}
+
+	private void run(int threads) throws Exception {
+		final AtomicInteger channelsCreated = new AtomicInteger();
+		ConnectionFactory mockConnectionFactory = mock(ConnectionFactory.class);
+		com.rabbitmq.client.Connection connection = stub(com.rabbitmq.client.Connection.class, channelsCreated);
+		when(mockConnectionFactory.newConnection((ExecutorService) null)).thenReturn(connection);
+		CachingConnectionFactory ccf = new CachingConnectionFactory(mockConnectionFactory);
+		ccf.setChannelCacheSize(threads);
+		final Connection con = ccf.createConnection();
+		final int perThread = COUNT / threads;
+		final CountDownLatch latch = new CountDownLatch(threads);
+		ExecutorService exec = Executors.newFixedThreadPool(threads);
+		long start = System.nanoTime();
+		for (int i = 0; i < threads; i++) {
+			exec.execute(new Runnable() {
+
+				@Override
+				public void run() {
+					try {
+						for (int j = 0; j < perThread; j++) {
+							con.createChannel(false).close();
+						}
+					}
+					catch (Exception e) {
+						logger.error("Checkout failed", e);
+					}
+					finally {
+						latch.countDown();
+					}
+				}
+
+			});
+		}
+		assertTrue(latch.await(60, TimeUnit.SECONDS));
+		long elapsed = System.nanoTime() - start;
+		exec.shutdownNow();
+		assertTrue(TestUtils.getPropertyValue(ccf, "cachedChannelsNonTransactional", ChannelCache.class).size()
+				<= threads);
+		logger.info(threads + " thread(s): " + ((long) perThread * threads * 1000000000L / elapsed)
+				+ " checkouts/second, " + channelsCreated.get() + " channels created");
+		ccf.destroy();
+	}
+
+	/**
+	 * A lightweight stub (cheaper than a mock) for the connection and channels; channels
+	 * are always open.
+	 */
+	@SuppressWarnings("unchecked")
+	private static <T> T stub(Class<T> type, final AtomicInteger channelsCreated) {
+		return (T) Proxy.newProxyInstance(ChannelCacheThroughputTests.class.getClassLoader(), new Class<?>[] { type },
+				new InvocationHandler() {
+
+					@Override
+					public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+						String name = method.getName();
+						if (name.equals("isOpen")) {
+							return true;
+						}
+						else if (name.equals("createChannel")) {
+							channelsCreated.incrementAndGet();
+							return stub(Channel.class, channelsCreated);
+						}
+						else if (name.equals("hashCode")) {
+							return System.identityHashCode(proxy);
+						}
+						else if (name.equals("equals")) {
+							return proxy == args[0];
+						}
+						else if (name.equals("toString")) {
+							return "stub " + method.getDeclaringClass().getSimpleName();
+						}
+						else if (method.getReturnType().equals(int.class)) {
+							return 0;
+						}
+						else if (method.getReturnType().equals(boolean.class)) {
+							return false;
+						}
+						return null;
+					}
+
+				});
+	}
+
+}
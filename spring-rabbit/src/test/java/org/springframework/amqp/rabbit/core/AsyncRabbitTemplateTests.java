@@ -0,0 +1,163 @@
+/*
+ * Copyright 2014 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package org.springframework.amqp.rabbit.core;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+
+import org.springframework.amqp.AmqpReplyTimeoutException;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.core.MessageProperties;
+import org.springframework.amqp.rabbit.connection.CachingConnectionFactory;
+import org.springframework.amqp.rabbit.core.AsyncRabbitTemplate.RabbitConverterFuture;
+import org.springframework.amqp.rabbit.core.AsyncRabbitTemplate.RabbitMessageFuture;
+import org.springframework.amqp.rabbit.listener.SimpleMessageListenerContainer;
+import org.springframework.amqp.rabbit.listener.adapter.MessageListenerAdapter;
+import org.springframework.amqp.rabbit.test.BrokerRunning;
+import org.springframework.amqp.rabbit.test.BrokerTestUtils;
+import org.springframework.util.concurrent.ListenableFutureCallback;
+
+/**
+ * @author Gary Russell
+ * @since 1.4
+ *
+ */
+public class AsyncRabbitTemplateTests {
+
+	private static final String REQUESTS = "test.async.requests";
+
+	private static final String REPLIES = "test.async.replies";
+
+	@Rule
+	public BrokerRunning brokerIsRunning = BrokerRunning.isRunningWithEmptyQueues(REQUESTS, REPLIES);
+
+	private CachingConnectionFactory connectionFactory;
+
+	private SimpleMessageListenerContainer responder;
+
+	private AsyncRabbitTemplate template;
+
+	@Before
+	public void setup() {
+		this.connectionFactory = new CachingConnectionFactory();
+		this.connectionFactory.setHost("localhost");
+		this.connectionFactory.setPort(BrokerTestUtils.getPort());
+		this.responder = new SimpleMessageListenerContainer(this.connectionFactory);
+		this.responder.setQueueNames(REQUESTS);
+		this.responder.setMessageListener(new MessageListenerAdapter(new Object() {
+
+			@SuppressWarnings("unused")
+			public String handleMessage(String in) {
+				if ("sleep".equals(in)) {
+					try {
+						Thread.sleep(1000);
+					}
+					catch (InterruptedException e) {
+						Thread.currentThread().interrupt();
+					}
+				}
+				return in.toUpperCase();
+			}
+
+		}));
+		this.responder.afterPropertiesSet();
+		this.responder.start();
+		this.template = new AsyncRabbitTemplate(this.connectionFactory, "", REQUESTS, REPLIES);
+		this.template.start();
+	}
+
+	@After
+	public void tearDown() {
+		this.template.stop();
+		this.responder.stop();
+		this.connectionFactory.destroy();
+	}
+
+	@Test
+	public void testConvert() throws Exception {
+		List<RabbitConverterFuture<String>> futures = new ArrayList<RabbitConverterFuture<String>>();
+		for (int i = 0; i < 100; i++) {
+			RabbitConverterFuture<String> future = this.template.convertSendAndReceive("foo" + i);
+			futures.add(future);
+		}
+		for (int i = 0; i < 100; i++) {
+			assertEquals("FOO" + i, futures.get(i).get(10, TimeUnit.SECONDS));
+		}
+	}
+
+	@Test
+	public void testMessageWithCallback() throws Exception {
+		RabbitMessageFuture future = this.template.sendAndReceive(new Message("foo".getBytes(),
+				new MessageProperties()));
+		final CountDownLatch latch = new CountDownLatch(1);
+		final AtomicReference<Message> reply = new AtomicReference<Message>();
+		future.addCallback(new ListenableFutureCallback<Message>() {
+
+			@Override
+			public void onSuccess(Message result) {
+				reply.set(result);
+				latch.countDown();
+			}
+
+			@Override
+			public void onFailure(Throwable t) {
+				latch.countDown();
+			}
+
+		});
+		assertTrue(latch.await(10, TimeUnit.SECONDS));
+		assertEquals("FOO", new String(reply.get().getBody()));
+	}
+
+	@Test
+	public void testTimeout() throws Exception {
+		this.template.setReceiveTimeout(100);
+		RabbitConverterFuture<String> future = this.template.convertSendAndReceive("sleep");
+		try {
+			future.get(10, TimeUnit.SECONDS);
+			fail("Expected ExecutionException");
+		}
+		catch (ExecutionException e) {
+			assertTrue(e.getCause() instanceof AmqpReplyTimeoutException);
+			assertSame(future.getRequestMessage(),
+					((AmqpReplyTimeoutException) e.getCause()).getRequestMessage());
+		}
+		// the late reply is discarded
+		Thread.sleep(1500);
+		assertNull(this.template.getRabbitTemplate().receive(REPLIES));
+	}
+
+	@Test
+	public void testCancel() throws Exception {
+		RabbitConverterFuture<String> future = this.template.convertSendAndReceive("sleep");
+		assertTrue(future.cancel(false));
+		assertTrue(future.isCancelled());
+		assertEquals("FOO", this.template.<String>convertSendAndReceive("foo").get(10, TimeUnit.SECONDS));
+	}
+
+}
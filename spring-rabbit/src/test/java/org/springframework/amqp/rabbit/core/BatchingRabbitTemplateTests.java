@@ -0,0 +1,143 @@
+/*
+ * Copyright 2014 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package org.springframework.amqp.rabbit.core;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.core.MessageListener;
+import org.springframework.amqp.core.MessageProperties;
+import org.springframework.amqp.rabbit.connection.CachingConnectionFactory;
+import org.springframework.amqp.rabbit.core.support.BatchingStrategy;
+import org.springframework.amqp.rabbit.core.support.SimpleBatchingStrategy;
+import org.springframework.amqp.rabbit.listener.SimpleMessageListenerContainer;
+import org.springframework.amqp.rabbit.test.BrokerRunning;
+import org.springframework.amqp.rabbit.test.BrokerTestUtils;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
+
+/**
+ * @author Gary Russell
+ * @since 1.4
+ *
+ */
+public class BatchingRabbitTemplateTests {
+
+	private static final String ROUTE = "test.queue";
+
+	@Rule
+	public BrokerRunning brokerIsRunning = BrokerRunning.isRunningWithEmptyQueues(ROUTE);
+
+	private CachingConnectionFactory connectionFactory;
+
+	private ThreadPoolTaskScheduler scheduler;
+
+	@Before
+	public void setup() {
+		this.connectionFactory = new CachingConnectionFactory();
+		this.connectionFactory.setHost("localhost");
+		this.connectionFactory.setPort(BrokerTestUtils.getPort());
+		this.scheduler = new ThreadPoolTaskScheduler();
+		this.scheduler.setPoolSize(1);
+		this.scheduler.afterPropertiesSet();
+	}
+
+	@After
+	public void tearDown() {
+		this.scheduler.destroy();
+		this.connectionFactory.destroy();
+	}
+
+	@Test
+	public void testSimpleBatch() throws Exception {
+		BatchingStrategy batchingStrategy = new SimpleBatchingStrategy(2, Integer.MAX_VALUE, 30000);
+		BatchingRabbitTemplate template = new BatchingRabbitTemplate(this.connectionFactory, batchingStrategy,
+				this.scheduler);
+		template.convertAndSend("", ROUTE, "foo");
+		template.convertAndSend("", ROUTE, "bar");
+		Message message = receive(template);
+		assertEquals("\u0000\u0000\u0000\u0003foo\u0000\u0000\u0000\u0003bar", new String(message.getBody()));
+		assertEquals(MessageProperties.BATCH_FORMAT_LENGTH_HEADER4,
+				message.getMessageProperties().getHeaders().get(MessageProperties.SPRING_BATCH_FORMAT));
+	}
+
+	@Test
+	public void testBatchTimeout() throws Exception {
+		BatchingStrategy batchingStrategy = new SimpleBatchingStrategy(10, Integer.MAX_VALUE, 50);
+		BatchingRabbitTemplate template = new BatchingRabbitTemplate(this.connectionFactory, batchingStrategy,
+				this.scheduler);
+		template.convertAndSend("", ROUTE, "foo");
+		template.convertAndSend("", ROUTE, "bar");
+		Message message = receive(template);
+		assertEquals("\u0000\u0000\u0000\u0003foo\u0000\u0000\u0000\u0003bar", new String(message.getBody()));
+	}
+
+	@Test
+	public void testDebatchByContainer() throws Exception {
+		BatchingStrategy batchingStrategy = new SimpleBatchingStrategy(2, Integer.MAX_VALUE, 30000);
+		BatchingRabbitTemplate template = new BatchingRabbitTemplate(this.connectionFactory, batchingStrategy,
+				this.scheduler);
+		SimpleMessageListenerContainer container = new SimpleMessageListenerContainer(this.connectionFactory);
+		container.setQueueNames(ROUTE);
+		final List<Message> received = Collections.synchronizedList(new ArrayList<Message>());
+		final CountDownLatch latch = new CountDownLatch(3);
+		container.setMessageListener(new MessageListener() {
+
+			@Override
+			public void onMessage(Message message) {
+				received.add(message);
+				latch.countDown();
+			}
+
+		});
+		container.afterPropertiesSet();
+		container.start();
+		try {
+			template.convertAndSend("", ROUTE, "foo");
+			template.convertAndSend("", ROUTE, "bar");
+			template.convertAndSend("", ROUTE, "baz");
+			template.flush();
+			assertTrue(latch.await(10, TimeUnit.SECONDS));
+			assertEquals("foo", new String(received.get(0).getBody()));
+			assertEquals("bar", new String(received.get(1).getBody()));
+			assertEquals("baz", new String(received.get(2).getBody()));
+		}
+		finally {
+			container.stop();
+		}
+	}
+
+	private Message receive(RabbitTemplate template) throws InterruptedException {
+		int n = 0;
+		Message message = template.receive(ROUTE);
+		while (message == null && n++ < 200) {
+			Thread.sleep(50);
+			message = template.receive(ROUTE);
+		}
+		assertNotNull(message);
+		return message;
+	}
+
+}
@@ -38,7 +38,9 @@ import org.springframework.amqp.core.Message;
 import org.springframework.amqp.core.MessageProperties;
 import org.springframework.amqp.core.Queue;
 import org.springframework.amqp.rabbit.connection.SingleConnectionFactory;
+import org.springframework.amqp.rabbit.support.CorrelationIdGenerator;
 import org.springframework.amqp.rabbit.support.DefaultMessagePropertiesConverter;
+import org.springframework.amqp.rabbit.support.SequentialCorrelationIdGenerator;
 
 import com.rabbitmq.client.AMQP.BasicProperties;
 import com.rabbitmq.client.Channel;
@@ -318,4 +320,54 @@ public class RabbitTemplateHeaderTests {
 
 	}
 
+	@Test
+	public void testCorrelationIdGenerator() throws Exception {
+		ConnectionFactory mockConnectionFactory = mock(ConnectionFactory.class);
+		Connection mockConnection = mock(Connection.class);
+		Channel mockChannel = mock(Channel.class);
+
+		when(mockConnectionFactory.newConnection((ExecutorService) null)).thenReturn(mockConnection);
+		when(mockConnection.isOpen()).thenReturn(true);
+		when(mockConnection.createChannel()).thenReturn(mockChannel);
+
+		final RabbitTemplate template = new RabbitTemplate(new SingleConnectionFactory(mockConnectionFactory));
+		template.setReplyQueue(new Queue("new.replyTo"));
+		final AtomicInteger count = new AtomicInteger();
+		template.setCorrelationIdGenerator(new CorrelationIdGenerator() {
+
+			@Override
+			public String generateCorrelationId() {
+				return "corr" + count.incrementAndGet();
+			}
+
+		});
+
+		final List<String> correlationIds = new ArrayList<String>();
+		doAnswer(new Answer<Object>() {
+			public Object answer(InvocationOnMock invocation) throws Throwable {
+				BasicProperties basicProps = (BasicProperties) invocation.getArguments()[3];
+				correlationIds.add(basicProps.getCorrelationId());
+				MessageProperties springProps = new DefaultMessagePropertiesConverter()
+						.toMessageProperties(basicProps, null, "UTF-8");
+				Message replyMessage = new Message("!dlrow olleH".getBytes(), springProps);
+				template.onMessage(replyMessage);
+				return null;
+			}}
+		).when(mockChannel).basicPublish(Mockito.any(String.class), Mockito.any(String.class), Mockito.anyBoolean(),
+				Mockito.any(BasicProperties.class), Mockito.any(byte[].class));
+		assertNotNull(template.sendAndReceive(new Message("Hello, world!".getBytes(), new MessageProperties())));
+		assertNotNull(template.sendAndReceive(new Message("Hello, world!".getBytes(), new MessageProperties())));
+		assertEquals("corr1", correlationIds.get(0));
+		assertEquals("corr2", correlationIds.get(1));
+	}
+
+	@Test
+	public void testDefaultCorrelationIdsAreUnique() {
+		SequentialCorrelationIdGenerator generator = new SequentialCorrelationIdGenerator("foo");
+		assertEquals("foo.1", generator.generateCorrelationId());
+		assertEquals("foo.2", generator.generateCorrelationId());
+		assertFalse(new SequentialCorrelationIdGenerator("bar").generateCorrelationId()
+				.equals(new SequentialCorrelationIdGenerator("baz").generateCorrelationId()));
+	}
+
 }
@@ -24,8 +24,12 @@ import static org.mockito.Mockito.when;
 
 import java.io.UnsupportedEncodingException;
 import java.lang.reflect.Field;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.UUID;
 import java.util.concurrent.Callable;
 import java.util.concurrent.ExecutorService;
@@ -63,6 +67,7 @@ import org.springframework.amqp.rabbit.test.BrokerRunning;
 import org.springframework.amqp.rabbit.test.BrokerTestUtils;
 import org.springframework.amqp.support.converter.SimpleMessageConverter;
 import org.springframework.amqp.utils.SerializationUtils;
+import org.springframework.amqp.utils.test.TestUtils;
 import org.springframework.beans.factory.DisposableBean;
 import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
 import org.springframework.transaction.TransactionDefinition;
@@ -106,6 +111,7 @@ public class RabbitTemplateIntegrationTests {
 
 	@After
 	public void cleanup() throws Exception {
+		template.destroy();
 		((DisposableBean) template.getConnectionFactory()).destroy();
 	}
 
@@ -308,6 +314,197 @@ public class RabbitTemplateIntegrationTests {
 		assertEquals(null, result);
 	}
 
+	@Test
+	public void testReceiveWithPrefetch() throws Exception {
+		template.setReceivePrefetch(10);
+		for (int i = 0; i < 25; i++) {
+			template.convertAndSend(ROUTE, "message" + i);
+		}
+		Set<Object> received = receiveAll(25);
+		for (int i = 0; i < 25; i++) {
+			assertTrue(received.contains("message" + i));
+		}
+		assertNull(template.receiveAndConvert(ROUTE));
+		template.destroy();
+		assertNull(template.receiveAndConvert(ROUTE));
+	}
+
+	@Test
+	public void testReceiveWithPrefetchTransacted() throws Exception {
+		template.setChannelTransacted(true);
+		template.setReceivePrefetch(10);
+		for (int i = 0; i < 25; i++) {
+			template.convertAndSend(ROUTE, "message" + i);
+		}
+		Set<Object> received = receiveAll(25);
+		for (int i = 0; i < 25; i++) {
+			assertTrue(received.contains("message" + i));
+		}
+		template.destroy();
+		assertNull(template.receiveAndConvert(ROUTE));
+	}
+
+	@Test
+	public void testReceiveWithPrefetchUnreceivedRequeuedOnDestroy() throws Exception {
+		template.setReceivePrefetch(10);
+		template.convertAndSend(ROUTE, "message1");
+		template.convertAndSend(ROUTE, "message2");
+		Object first = template.receiveAndConvert(ROUTE);
+		assertNotNull(first);
+		template.destroy();
+		template.setReceivePrefetch(0);
+		assertEquals("message1".equals(first) ? "message2" : "message1", template.receiveAndConvert(ROUTE));
+		assertNull(template.receiveAndConvert(ROUTE));
+	}
+
+	@Test
+	public void testReceiveWithPrefetchInExternalTransactionWithRollback() throws Exception {
+		template.setChannelTransacted(true);
+		template.setReceivePrefetch(10);
+		template.convertAndSend(ROUTE, "message");
+		try {
+			new TransactionTemplate(new TestTransactionManager()).execute(new TransactionCallback<String>() {
+				@Override
+				public String doInTransaction(TransactionStatus status) {
+					assertEquals("message", template.receiveAndConvert(ROUTE));
+					throw new PlannedException();
+				}
+			});
+			fail("Expected PlannedException");
+		} catch (PlannedException e) {
+			// Expected
+		}
+		String result = null;
+		int n = 0;
+		while (result == null && n++ < 100) {
+			result = (String) template.receiveAndConvert(ROUTE);
+			if (result == null) {
+				Thread.sleep(50);
+			}
+		}
+		assertEquals("message", result);
+		assertNull(template.receiveAndConvert(ROUTE));
+	}
+
+	@Test
+	public void testReceiveWithTimeout() throws Exception {
+		long t1 = System.currentTimeMillis();
+		assertNull(template.receive(ROUTE, 200));
+		assertTrue(System.currentTimeMillis() - t1 >= 200);
+		ExecutorService executor = Executors.newSingleThreadExecutor();
+		executor.execute(new Runnable() {
+
+			@Override
+			public void run() {
+				try {
+					Thread.sleep(200);
+				}
+				catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+				template.convertAndSend(ROUTE, "message");
+			}
+
+		});
+		Message message = template.receive(ROUTE, 10000);
+		assertNotNull(message);
+		assertEquals("message", new String(message.getBody()));
+		assertNull(template.receive(ROUTE));
+		executor.shutdown();
+	}
+
+	@Test
+	public void testReceiveBatch() throws Exception {
+		for (int i = 0; i < 8; i++) {
+			template.convertAndSend(ROUTE, "message" + i);
+		}
+		int received = 0;
+		int batches = 0;
+		while (received < 8 && batches++ < 8) {
+			List<Message> messages = template.receiveBatch(ROUTE, 5, 10000);
+			assertTrue(messages.size() > 0 && messages.size() <= 5);
+			for (Message message : messages) {
+				assertEquals("message" + received++, new String(message.getBody()));
+			}
+		}
+		assertEquals(8, received);
+		assertEquals(0, template.receiveBatch(ROUTE, 5, 100).size());
+	}
+
+	@Test
+	public void testReceiveBatchTransacted() throws Exception {
+		template.setChannelTransacted(true);
+		for (int i = 0; i < 3; i++) {
+			template.convertAndSend(ROUTE, "message" + i);
+		}
+		int received = 0;
+		int n = 0;
+		while (received < 3 && n++ < 3) {
+			received += template.receiveBatch(ROUTE, 5, 10000).size();
+		}
+		assertEquals(3, received);
+		assertNull(template.receive(ROUTE));
+	}
+
+	@Test
+	public void testReceiveBatchInExternalTransactionWithRollback() throws Exception {
+		template.setChannelTransacted(true);
+		for (int i = 0; i < 3; i++) {
+			template.convertAndSend(ROUTE, "message" + i);
+		}
+		try {
+			new TransactionTemplate(new TestTransactionManager()).execute(new TransactionCallback<String>() {
+				@Override
+				public String doInTransaction(TransactionStatus status) {
+					assertTrue(template.receiveBatch(ROUTE, 5, 10000).size() > 0);
+					throw new PlannedException();
+				}
+			});
+			fail("Expected PlannedException");
+		} catch (PlannedException e) {
+			// Expected
+		}
+		int received = 0;
+		int n = 0;
+		while (received < 3 && n++ < 3) {
+			received += template.receiveBatch(ROUTE, 5, 10000).size();
+		}
+		assertEquals(3, received);
+	}
+
+	@Test
+	public void testReceiveBatchWithPrefetch() throws Exception {
+		template.setReceivePrefetch(10);
+		for (int i = 0; i < 8; i++) {
+			template.convertAndSend(ROUTE, "message" + i);
+		}
+		int received = 0;
+		int n = 0;
+		while (received < 8 && n++ < 100) {
+			List<Message> messages = template.receiveBatch(ROUTE, 5, 1000);
+			assertTrue(messages.size() <= 5);
+			received += messages.size();
+		}
+		assertEquals(8, received);
+		assertNull(template.receive(ROUTE, 100));
+	}
+
+	private Set<Object> receiveAll(int count) throws InterruptedException {
+		Set<Object> received = new HashSet<Object>();
+		int n = 0;
+		while (received.size() < count && n++ < 1000) {
+			// deliveries in flight to the consumer are neither buffered nor available to basicGet
+			Object message = template.receiveAndConvert(ROUTE);
+			if (message != null) {
+				received.add(message);
+			}
+			else {
+				Thread.sleep(10);
+			}
+		}
+		return received;
+	}
+
 	@Test
 	public void testSendInExternalTransaction() throws Exception {
 		template.setChannelTransacted(true);
@@ -457,6 +654,117 @@ public class RabbitTemplateIntegrationTests {
 		connectionFactory.destroy();
 	}
 
+	@Test
+	public void testSendAndReceiveDirectReplyTo() throws Exception {
+		final RabbitTemplate template = new RabbitTemplate(this.template.getConnectionFactory());
+		template.setRoutingKey(ROUTE);
+		template.setQueue(ROUTE);
+		ExecutorService executor = Executors.newFixedThreadPool(1);
+		// Set up a consumer to respond to our producer
+		Future<String> received = executor.submit(new Callable<String>() {
+
+			@Override
+			public String call() throws Exception {
+				String replyTo = null;
+				for (int i = 0; i < 2; i++) {
+					Message message = null;
+					for (int j = 0; j < 20 && message == null; j++) {
+						message = template.receive();
+						if (message == null) {
+							Thread.sleep(100L);
+						}
+					}
+					assertNotNull("No message received", message);
+					replyTo = message.getMessageProperties().getReplyTo();
+					template.send(replyTo, message);
+				}
+				return replyTo;
+			}
+
+		});
+		Message message = new Message("test-message".getBytes(), new MessageProperties());
+		Message reply = template.sendAndReceive(message);
+		assertNotNull("Reply is expected", reply);
+		assertEquals(new String(message.getBody()), new String(reply.getBody()));
+		reply = template.sendAndReceive(new Message("test-message".getBytes(), new MessageProperties()));
+		assertNotNull("Reply is expected", reply);
+		String replyTo = received.get(1000, TimeUnit.MILLISECONDS);
+		if (TestUtils.getPropertyValue(template, "usingDirectReplyTo", Boolean.class)) {
+			assertTrue(replyTo.startsWith(Address.AMQ_RABBITMQ_REPLY_TO));
+		}
+		template.setUseTemporaryReplyQueues(true);
+		executor.submit(new Callable<Void>() {
+
+			@Override
+			public Void call() throws Exception {
+				Message message = null;
+				for (int i = 0; i < 20 && message == null; i++) {
+					message = template.receive();
+					if (message == null) {
+						Thread.sleep(100L);
+					}
+				}
+				assertNotNull("No message received", message);
+				assertFalse(message.getMessageProperties().getReplyTo().startsWith(Address.AMQ_RABBITMQ_REPLY_TO));
+				template.send(message.getMessageProperties().getReplyTo(), message);
+				return null;
+			}
+
+		});
+		reply = template.sendAndReceive(new Message("test-message".getBytes(), new MessageProperties()));
+		assertNotNull("Reply is expected", reply);
+		template.destroy();
+		executor.shutdown();
+	}
+
+	@Test
+	public void testSendAndReceiveDirectReplyToTwoTemplatesSharingChannel() throws Exception {
+		// the templates share the connection factory's channel cache
+		final RabbitTemplate template1 = new RabbitTemplate(this.template.getConnectionFactory());
+		template1.setRoutingKey(ROUTE);
+		template1.setQueue(ROUTE);
+		RabbitTemplate template2 = new RabbitTemplate(this.template.getConnectionFactory());
+		template2.setRoutingKey(ROUTE);
+		ExecutorService executor = Executors.newFixedThreadPool(1);
+		// Set up a consumer to respond to our producers
+		Future<List<String>> received = executor.submit(new Callable<List<String>>() {
+
+			@Override
+			public List<String> call() throws Exception {
+				List<String> replyTos = new ArrayList<String>();
+				for (int i = 0; i < 4; i++) {
+					Message message = null;
+					for (int j = 0; j < 20 && message == null; j++) {
+						message = template1.receive();
+						if (message == null) {
+							Thread.sleep(100L);
+						}
+					}
+					assertNotNull("No message received", message);
+					replyTos.add(message.getMessageProperties().getReplyTo());
+					template1.send(message.getMessageProperties().getReplyTo(), message);
+				}
+				return replyTos;
+			}
+
+		});
+		for (RabbitTemplate requester : new RabbitTemplate[] { template1, template2, template1, template2 }) {
+			String body = "test-message-" + requester.hashCode();
+			Message reply = requester.sendAndReceive(new Message(body.getBytes(), new MessageProperties()));
+			assertNotNull("Reply is expected", reply);
+			assertEquals(body, new String(reply.getBody()));
+		}
+		List<String> replyTos = received.get(1000, TimeUnit.MILLISECONDS);
+		if (TestUtils.getPropertyValue(template1, "usingDirectReplyTo", Boolean.class)) {
+			for (String replyTo : replyTos) {
+				assertTrue(replyTo.startsWith(Address.AMQ_RABBITMQ_REPLY_TO));
+			}
+		}
+		template1.destroy();
+		template2.destroy();
+		executor.shutdown();
+	}
+
 	@Test
 	public void testAtomicSendAndReceiveWithRoutingKey() throws Exception {
 		final CachingConnectionFactory cachingConnectionFactory = new CachingConnectionFactory();
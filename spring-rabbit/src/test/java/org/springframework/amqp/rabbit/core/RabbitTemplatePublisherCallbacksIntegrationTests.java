@@ -16,19 +16,24 @@ package org.springframework.amqp.rabbit.core;
 import static org.hamcrest.Matchers.containsString;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertThat;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyBoolean;
+import static org.mockito.Matchers.anyString;
 import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.doThrow;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.spy;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.ConcurrentModificationException;
@@ -54,6 +59,7 @@ import org.junit.Test;
 import org.mockito.invocation.InvocationOnMock;
 import org.mockito.stubbing.Answer;
 
+import org.springframework.amqp.AmqpException;
 import org.springframework.amqp.core.Message;
 import org.springframework.amqp.core.MessageProperties;
 import org.springframework.amqp.rabbit.connection.CachingConnectionFactory;
@@ -61,14 +67,18 @@ import org.springframework.amqp.rabbit.connection.ChannelProxy;
 import org.springframework.amqp.rabbit.connection.SingleConnectionFactory;
 import org.springframework.amqp.rabbit.core.RabbitTemplate.ConfirmCallback;
 import org.springframework.amqp.rabbit.core.RabbitTemplate.ReturnCallback;
+import org.springframework.amqp.rabbit.support.Confirm;
 import org.springframework.amqp.rabbit.support.CorrelationData;
+import org.springframework.amqp.rabbit.support.PublisherCallbackChannel;
 import org.springframework.amqp.rabbit.support.PublisherCallbackChannelImpl;
 import org.springframework.amqp.rabbit.test.BrokerRunning;
 import org.springframework.amqp.rabbit.test.BrokerTestUtils;
 import org.springframework.amqp.support.converter.SimpleMessageConverter;
 import org.springframework.amqp.utils.test.TestUtils;
 import org.springframework.beans.DirectFieldAccessor;
+import org.springframework.util.concurrent.ListenableFuture;
 
+import com.rabbitmq.client.AMQP.BasicProperties;
 import com.rabbitmq.client.Channel;
 import com.rabbitmq.client.Connection;
 import com.rabbitmq.client.ConnectionFactory;
@@ -153,13 +163,13 @@ public class RabbitTemplatePublisherCallbacksIntegrationTests {
 
 			@Override
 			public Void doInRabbit(Channel channel) throws Exception {
-				Map<?,?> listenerMap = TestUtils.getPropertyValue(((ChannelProxy) channel).getTargetChannel(), "listenerForSeq",
-																Map.class);
+				Object pendingConfirms = TestUtils.getPropertyValue(((ChannelProxy) channel).getTargetChannel(),
+						"pendingConfirms");
 				int n = 0;
-				while (n++ < 100 && listenerMap.size() > 0) {
+				while (n++ < 100 && TestUtils.getPropertyValue(pendingConfirms, "size", Integer.class) > 0) {
 					Thread.sleep(100);
 				}
-				assertEquals(0, listenerMap.size());
+				assertEquals(Integer.valueOf(0), TestUtils.getPropertyValue(pendingConfirms, "size", Integer.class));
 				return null;
 			}
 		});
@@ -239,6 +249,226 @@ public class RabbitTemplatePublisherCallbacksIntegrationTests {
 		assertNull(secondTemplate.getUnconfirmed(0));
 	}
 
+	@Test
+	public void testPublisherConfirmFuture() throws Exception {
+		ListenableFuture<Confirm> future = templateWithConfirmsEnabled.convertAndSendWithConfirm(ROUTE, "message");
+		Confirm confirm = future.get(10, TimeUnit.SECONDS);
+		assertTrue(confirm.isAck());
+		assertNull(confirm.getCorrelationData());
+		assertNull(confirm.getReturnedMessage());
+		assertNull(templateWithConfirmsEnabled.getUnconfirmed(0));
+	}
+
+	@Test
+	public void testPublisherConfirmFutureWithReturn() throws Exception {
+		CachingConnectionFactory connectionFactory = new CachingConnectionFactory();
+		connectionFactory.setHost("localhost");
+		connectionFactory.setPort(BrokerTestUtils.getPort());
+		connectionFactory.setPublisherConfirms(true);
+		connectionFactory.setPublisherReturns(true);
+		RabbitTemplate template = new RabbitTemplate(connectionFactory);
+		template.setMandatory(true);
+		try {
+			ListenableFuture<Confirm> future = template.convertAndSendWithConfirm("", ROUTE + "junk", "message",
+					new CorrelationData("abc"));
+			Confirm confirm = future.get(10, TimeUnit.SECONDS);
+			assertTrue(confirm.isAck());
+			assertEquals("abc", confirm.getCorrelationData().getId());
+			assertNotNull(confirm.getReturnedMessage());
+			assertEquals("message", new String(confirm.getReturnedMessage().getBody(), "utf-8"));
+			assertNull(confirm.getReturnedMessage().getMessageProperties().getHeaders()
+					.get(PublisherCallbackChannel.RETURNED_CONFIRM_CORRELATION));
+		}
+		finally {
+			connectionFactory.destroy();
+		}
+	}
+
+	@Test
+	public void testPublisherConfirmFutureMultiple() throws Exception {
+		ConnectionFactory mockConnectionFactory = mock(ConnectionFactory.class);
+		Connection mockConnection = mock(Connection.class);
+		Channel mockChannel = mock(Channel.class);
+
+		when(mockConnectionFactory.newConnection((ExecutorService) null)).thenReturn(mockConnection);
+		when(mockConnection.isOpen()).thenReturn(true);
+		PublisherCallbackChannelImpl callbackChannel = new PublisherCallbackChannelImpl(mockChannel);
+		when(mockConnection.createChannel()).thenReturn(callbackChannel);
+
+		final AtomicInteger count = new AtomicInteger();
+		doAnswer(new Answer<Object>(){
+			@Override
+			public Object answer(InvocationOnMock invocation) throws Throwable {
+				return count.incrementAndGet();
+			}}).when(mockChannel).getNextPublishSeqNo();
+
+		final RabbitTemplate template = new RabbitTemplate(new SingleConnectionFactory(mockConnectionFactory));
+
+		ListenableFuture<Confirm> future1 = template.convertAndSendWithConfirm("", ROUTE, "message",
+				new CorrelationData("abc"));
+		ListenableFuture<Confirm> future2 = template.convertAndSendWithConfirm("", ROUTE, "message",
+				new CorrelationData("def"));
+		ListenableFuture<Confirm> future3 = template.convertAndSendWithConfirm("", ROUTE, "message",
+				new CorrelationData("ghi"));
+		assertFalse(future1.isDone());
+		callbackChannel.handleAck(2, true);
+		assertTrue(future1.get(0, TimeUnit.SECONDS).isAck());
+		assertEquals("def", future2.get(0, TimeUnit.SECONDS).getCorrelationData().getId());
+		assertFalse(future3.isDone());
+		callbackChannel.close();
+		Confirm confirm = future3.get(0, TimeUnit.SECONDS);
+		assertFalse(confirm.isAck());
+		assertEquals("Channel closed by application", confirm.getCause());
+		assertNull(template.getUnconfirmed(0));
+	}
+
+	@Test
+	public void testPublisherConfirmFutureExpired() throws Exception {
+		ConnectionFactory mockConnectionFactory = mock(ConnectionFactory.class);
+		Connection mockConnection = mock(Connection.class);
+		Channel mockChannel = mock(Channel.class);
+
+		when(mockConnectionFactory.newConnection((ExecutorService) null)).thenReturn(mockConnection);
+		when(mockConnection.isOpen()).thenReturn(true);
+		when(mockChannel.getNextPublishSeqNo()).thenReturn(1L);
+		when(mockConnection.createChannel()).thenReturn(new PublisherCallbackChannelImpl(mockChannel));
+
+		final RabbitTemplate template = new RabbitTemplate(new SingleConnectionFactory(mockConnectionFactory));
+
+		ListenableFuture<Confirm> future = template.convertAndSendWithConfirm("", ROUTE, "message",
+				new CorrelationData("abc"));
+		Thread.sleep(10);
+		Collection<CorrelationData> unconfirmed = template.getUnconfirmed(0);
+		assertEquals(1, unconfirmed.size());
+		assertEquals("abc", unconfirmed.iterator().next().getId());
+		Confirm confirm = future.get(0, TimeUnit.SECONDS);
+		assertFalse(confirm.isAck());
+		assertEquals("abc", confirm.getCorrelationData().getId());
+		assertEquals("Publisher confirm expired", confirm.getCause());
+	}
+
+	@Test
+	public void testPublishFailureDiscardsPendingConfirm() throws Exception {
+		ConnectionFactory mockConnectionFactory = mock(ConnectionFactory.class);
+		Connection mockConnection = mock(Connection.class);
+		Channel mockChannel = mock(Channel.class);
+
+		when(mockConnectionFactory.newConnection((ExecutorService) null)).thenReturn(mockConnection);
+		when(mockConnection.isOpen()).thenReturn(true);
+		when(mockChannel.isOpen()).thenReturn(true);
+		// the sequence number is not consumed by the failed publish
+		when(mockChannel.getNextPublishSeqNo()).thenReturn(1L);
+		PublisherCallbackChannelImpl callbackChannel = new PublisherCallbackChannelImpl(mockChannel);
+		when(mockConnection.createChannel()).thenReturn(callbackChannel);
+		doThrow(new IOException("publish failed")).doNothing().when(mockChannel).basicPublish(anyString(),
+				anyString(), anyBoolean(), any(BasicProperties.class), any(byte[].class));
+
+		final RabbitTemplate template = new RabbitTemplate(new SingleConnectionFactory(mockConnectionFactory));
+		template.setMandatory(true);
+
+		try {
+			template.convertAndSendWithConfirm("", ROUTE, "message", new CorrelationData("abc"));
+			fail("Expected exception");
+		}
+		catch (AmqpException e) {
+			assertThat(e.getMessage(), containsString("publish failed"));
+		}
+		assertEquals(0, TestUtils.getPropertyValue(callbackChannel, "pendingConfirms.size"));
+		assertEquals(0, TestUtils.getPropertyValue(template, "returnableConfirms", Map.class).size());
+
+		ListenableFuture<Confirm> future = template.convertAndSendWithConfirm("", ROUTE, "message",
+				new CorrelationData("def"));
+		callbackChannel.handleAck(1, false);
+		Confirm confirm = future.get(0, TimeUnit.SECONDS);
+		assertTrue(confirm.isAck());
+		assertEquals("def", confirm.getCorrelationData().getId());
+		assertNull(template.getUnconfirmed(0));
+		assertEquals(0, TestUtils.getPropertyValue(template, "returnableConfirms", Map.class).size());
+	}
+
+	@Test
+	public void testPinnedChannelConfirmWindowPublishFailure() throws Exception {
+		ConnectionFactory mockConnectionFactory = mock(ConnectionFactory.class);
+		Connection mockConnection = mock(Connection.class);
+		Channel mockChannel = mock(Channel.class);
+
+		when(mockConnectionFactory.newConnection((ExecutorService) null)).thenReturn(mockConnection);
+		when(mockConnection.isOpen()).thenReturn(true);
+		when(mockChannel.isOpen()).thenReturn(true);
+		when(mockChannel.getNextPublishSeqNo()).thenReturn(1L, 1L, 1L, 2L);
+		PublisherCallbackChannelImpl callbackChannel = new PublisherCallbackChannelImpl(mockChannel);
+		when(mockConnection.createChannel()).thenReturn(callbackChannel);
+		doThrow(new IOException("publish failed")).doThrow(new IOException("publish failed")).doNothing()
+				.when(mockChannel).basicPublish(anyString(), anyString(), anyBoolean(), any(BasicProperties.class),
+						any(byte[].class));
+
+		final RabbitTemplate template = new RabbitTemplate(new SingleConnectionFactory(mockConnectionFactory));
+		template.setChannelPinning(true);
+		template.setMaxInFlightConfirms(1);
+		template.setConfirmWindowTimeout(10);
+
+		for (int i = 0; i < 2; i++) {
+			try {
+				template.convertAndSendWithConfirm(ROUTE, "message");
+				fail("Expected exception");
+			}
+			catch (AmqpException e) {
+				assertThat(e.getMessage(), containsString("publish failed"));
+			}
+		}
+		// the failed publishes must not hold the only permit
+		ListenableFuture<Confirm> future = template.convertAndSendWithConfirm(ROUTE, "message");
+		callbackChannel.handleAck(1, false);
+		assertTrue(future.get(0, TimeUnit.SECONDS).isAck());
+		template.convertAndSendWithConfirm(ROUTE, "message");
+		callbackChannel.handleAck(2, false);
+		assertNull(template.getUnconfirmed(0));
+		template.releasePinnedChannel();
+	}
+
+	@Test
+	public void testPinnedChannelConfirmWindow() throws Exception {
+		ConnectionFactory mockConnectionFactory = mock(ConnectionFactory.class);
+		Connection mockConnection = mock(Connection.class);
+		Channel mockChannel = mock(Channel.class);
+
+		when(mockConnectionFactory.newConnection((ExecutorService) null)).thenReturn(mockConnection);
+		when(mockConnection.isOpen()).thenReturn(true);
+		when(mockChannel.isOpen()).thenReturn(true);
+		PublisherCallbackChannelImpl callbackChannel = new PublisherCallbackChannelImpl(mockChannel);
+		when(mockConnection.createChannel()).thenReturn(callbackChannel);
+
+		final AtomicInteger count = new AtomicInteger();
+		doAnswer(new Answer<Object>(){
+			@Override
+			public Object answer(InvocationOnMock invocation) throws Throwable {
+				return count.incrementAndGet();
+			}}).when(mockChannel).getNextPublishSeqNo();
+
+		final RabbitTemplate template = new RabbitTemplate(new SingleConnectionFactory(mockConnectionFactory));
+		template.setChannelPinning(true);
+		template.setMaxInFlightConfirms(2);
+		template.setConfirmWindowTimeout(10);
+
+		ListenableFuture<Confirm> future1 = template.convertAndSendWithConfirm(ROUTE, "message");
+		template.convertAndSendWithConfirm(ROUTE, "message");
+		try {
+			template.convertAndSendWithConfirm(ROUTE, "message");
+			fail("Expected exception");
+		}
+		catch (AmqpException e) {
+			assertThat(e.getMessage(), containsString("waiting for outstanding publisher confirms"));
+		}
+		callbackChannel.handleAck(1, false);
+		assertTrue(future1.get(0, TimeUnit.SECONDS).isAck());
+		template.convertAndSendWithConfirm(ROUTE, "message");
+		verify(mockConnection).createChannel();
+
+		callbackChannel.handleAck(4, true);
+		assertNull(template.getUnconfirmed(0));
+		template.releasePinnedChannel();
+	}
+
 	@Test
 	public void testPublisherReturns() throws Exception {
 		final CountDownLatch latch = new CountDownLatch(1);
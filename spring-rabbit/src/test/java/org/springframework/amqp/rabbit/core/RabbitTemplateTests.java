@@ -19,11 +19,14 @@ import static org.hamcrest.Matchers.containsString;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
 import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
+import java.util.Arrays;
+import java.util.List;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicReference;
@@ -34,6 +37,7 @@ import org.mockito.invocation.InvocationOnMock;
 import org.mockito.stubbing.Answer;
 
 import org.springframework.amqp.AmqpAuthenticationException;
+import org.springframework.amqp.core.Address;
 import org.springframework.amqp.core.Message;
 import org.springframework.amqp.core.MessageProperties;
 import org.springframework.amqp.rabbit.connection.CachingConnectionFactory;
@@ -56,6 +60,7 @@ import com.rabbitmq.client.Connection;
 import com.rabbitmq.client.ConnectionFactory;
 import com.rabbitmq.client.Consumer;
 import com.rabbitmq.client.Envelope;
+import com.rabbitmq.client.GetResponse;
 import com.rabbitmq.client.impl.AMQImpl;
 
 /**
@@ -206,4 +211,212 @@ public class RabbitTemplateTests {
 		assertEquals(3, count.get());
 	}
 
+	@Test
+	public void testReceiveBatchSingleMultipleAck() throws Exception {
+		ConnectionFactory mockConnectionFactory = mock(ConnectionFactory.class);
+		Connection mockConnection = mock(Connection.class);
+		Channel mockChannel = mock(Channel.class);
+
+		when(mockConnectionFactory.newConnection((ExecutorService) null)).thenReturn(mockConnection);
+		when(mockConnection.isOpen()).thenReturn(true);
+		when(mockConnection.createChannel()).thenReturn(mockChannel);
+		when(mockChannel.isOpen()).thenReturn(true);
+		final AtomicReference<Consumer> consumer = new AtomicReference<Consumer>();
+		doAnswer(new Answer<String>() {
+
+			@Override
+			public String answer(InvocationOnMock invocation) throws Throwable {
+				consumer.set((Consumer) invocation.getArguments()[2]);
+				for (long tag = 1; tag <= 3; tag++) {
+					consumer.get().handleDelivery("ctag", new Envelope(tag, false, "", "foo"),
+							new AMQP.BasicProperties(), ("bar" + tag).getBytes());
+				}
+				return "ctag";
+			}
+
+		}).when(mockChannel).basicConsume(Mockito.eq("foo"), Mockito.eq(false), Mockito.any(Consumer.class));
+		doAnswer(new Answer<Void>() {
+
+			@Override
+			public Void answer(InvocationOnMock invocation) throws Throwable {
+				consumer.get().handleCancelOk("ctag");
+				return null;
+			}
+
+		}).when(mockChannel).basicCancel("ctag");
+
+		RabbitTemplate template = new RabbitTemplate(new CachingConnectionFactory(mockConnectionFactory));
+		List<Message> messages = template.receiveBatch("foo", 5, 1000);
+		assertEquals(3, messages.size());
+		assertEquals("bar1", new String(messages.get(0).getBody()));
+		assertEquals("bar3", new String(messages.get(2).getBody()));
+		// the queue was empty when polled, so a consumer was used; its prefetch is removed afterwards
+		verify(mockChannel).basicGet("foo", false);
+		verify(mockChannel).basicQos(5);
+		verify(mockChannel).basicQos(0);
+		verify(mockChannel).basicAck(3, true);
+		verify(mockChannel, Mockito.never()).basicAck(Mockito.anyLong(), Mockito.eq(false));
+	}
+
+	@Test
+	public void testReceiveBatchWaitingMessagesProbedWithBasicGet() throws Exception {
+		ConnectionFactory mockConnectionFactory = mock(ConnectionFactory.class);
+		Connection mockConnection = mock(Connection.class);
+		Channel mockChannel = mock(Channel.class);
+
+		when(mockConnectionFactory.newConnection((ExecutorService) null)).thenReturn(mockConnection);
+		when(mockConnection.isOpen()).thenReturn(true);
+		when(mockConnection.createChannel()).thenReturn(mockChannel);
+		when(mockChannel.isOpen()).thenReturn(true);
+		// two more messages waiting behind the first
+		when(mockChannel.basicGet("foo", false)).thenReturn(
+				new GetResponse(new Envelope(1, false, "", "foo"), new AMQP.BasicProperties(), "bar1".getBytes(), 2));
+		final AtomicReference<Consumer> consumer = new AtomicReference<Consumer>();
+		doAnswer(new Answer<String>() {
+
+			@Override
+			public String answer(InvocationOnMock invocation) throws Throwable {
+				consumer.set((Consumer) invocation.getArguments()[2]);
+				for (long tag = 2; tag <= 3; tag++) {
+					consumer.get().handleDelivery("ctag", new Envelope(tag, false, "", "foo"),
+							new AMQP.BasicProperties(), ("bar" + tag).getBytes());
+				}
+				return "ctag";
+			}
+
+		}).when(mockChannel).basicConsume(Mockito.eq("foo"), Mockito.eq(false), Mockito.any(Consumer.class));
+		doAnswer(new Answer<Void>() {
+
+			@Override
+			public Void answer(InvocationOnMock invocation) throws Throwable {
+				consumer.get().handleCancelOk("ctag");
+				return null;
+			}
+
+		}).when(mockChannel).basicCancel("ctag");
+
+		RabbitTemplate template = new RabbitTemplate(new CachingConnectionFactory(mockConnectionFactory));
+		List<Message> messages = template.receiveBatch("foo", 5, 1000);
+		assertEquals(3, messages.size());
+		assertEquals("bar1", new String(messages.get(0).getBody()));
+		assertEquals("bar3", new String(messages.get(2).getBody()));
+		verify(mockChannel).basicGet("foo", false);
+		verify(mockChannel).basicQos(2);
+		verify(mockChannel).basicQos(0);
+		verify(mockChannel).basicAck(3, true);
+		verify(mockChannel, Mockito.never()).basicAck(Mockito.anyLong(), Mockito.eq(false));
+	}
+
+	@Test
+	public void testReceiveSingleWaitingMessageOneBasicGet() throws Exception {
+		ConnectionFactory mockConnectionFactory = mock(ConnectionFactory.class);
+		Connection mockConnection = mock(Connection.class);
+		Channel mockChannel = mock(Channel.class);
+
+		when(mockConnectionFactory.newConnection((ExecutorService) null)).thenReturn(mockConnection);
+		when(mockConnection.isOpen()).thenReturn(true);
+		when(mockConnection.createChannel()).thenReturn(mockChannel);
+		when(mockChannel.isOpen()).thenReturn(true);
+		when(mockChannel.basicGet("foo", false)).thenReturn(
+				new GetResponse(new Envelope(1, false, "", "foo"), new AMQP.BasicProperties(), "bar1".getBytes(), 5));
+
+		RabbitTemplate template = new RabbitTemplate(new CachingConnectionFactory(mockConnectionFactory));
+		Message message = template.receive("foo", 1000);
+		assertEquals("bar1", new String(message.getBody()));
+		verify(mockChannel).basicGet("foo", false);
+		verify(mockChannel).basicAck(1, true);
+		verify(mockChannel, Mockito.never()).basicQos(Mockito.anyInt());
+		verify(mockChannel, Mockito.never()).basicConsume(Mockito.anyString(), Mockito.anyBoolean(),
+				Mockito.any(Consumer.class));
+	}
+
+	@Test
+	public void testDirectReplyToConsumerStartedOnce() throws Exception {
+		ConnectionFactory mockConnectionFactory = mock(ConnectionFactory.class);
+		Connection mockConnection = mock(Connection.class);
+		Channel mockChannel = mock(Channel.class);
+
+		when(mockConnectionFactory.newConnection((ExecutorService) null)).thenReturn(mockConnection);
+		when(mockConnection.isOpen()).thenReturn(true);
+		when(mockConnection.createChannel()).thenReturn(mockChannel);
+		when(mockChannel.isOpen()).thenReturn(true);
+		final AtomicReference<Consumer> consumer = new AtomicReference<Consumer>();
+		doAnswer(new Answer<String>() {
+
+			@Override
+			public String answer(InvocationOnMock invocation) throws Throwable {
+				consumer.set((Consumer) invocation.getArguments()[2]);
+				return "ctag";
+			}
+
+		}).when(mockChannel).basicConsume(Mockito.eq(Address.AMQ_RABBITMQ_REPLY_TO), Mockito.eq(true),
+				Mockito.any(Consumer.class));
+		// reply to each request with its own body
+		doAnswer(new Answer<Void>() {
+
+			@Override
+			public Void answer(InvocationOnMock invocation) throws Throwable {
+				AMQP.BasicProperties props = (AMQP.BasicProperties) invocation.getArguments()[3];
+				consumer.get().handleDelivery("ctag", new Envelope(1, false, "", props.getReplyTo()),
+						new AMQP.BasicProperties.Builder().correlationId(props.getCorrelationId()).build(),
+						(byte[]) invocation.getArguments()[4]);
+				return null;
+			}
+
+		}).when(mockChannel).basicPublish(Mockito.anyString(), Mockito.anyString(), Mockito.anyBoolean(),
+				Mockito.any(AMQP.BasicProperties.class), Mockito.any(byte[].class));
+
+		RabbitTemplate template = new RabbitTemplate(new CachingConnectionFactory(mockConnectionFactory));
+		for (int i = 0; i < 3; i++) {
+			Message reply = template.sendAndReceive("ex", "rk",
+					new Message(("foo" + i).getBytes(), new MessageProperties()));
+			assertEquals("foo" + i, new String(reply.getBody()));
+		}
+		verify(mockChannel).basicConsume(Mockito.eq(Address.AMQ_RABBITMQ_REPLY_TO), Mockito.eq(true),
+				Mockito.any(Consumer.class));
+		verify(mockChannel, Mockito.never()).basicCancel(Mockito.anyString());
+		template.destroy();
+		verify(mockChannel).close();
+	}
+
+	@Test
+	public void testSendCollectionOneChannelOneCommit() throws Exception {
+		ConnectionFactory mockConnectionFactory = mock(ConnectionFactory.class);
+		Connection mockConnection = mock(Connection.class);
+		Channel mockChannel = mock(Channel.class);
+
+		when(mockConnectionFactory.newConnection((ExecutorService) null)).thenReturn(mockConnection);
+		when(mockConnection.isOpen()).thenReturn(true);
+		when(mockConnection.createChannel()).thenReturn(mockChannel);
+		when(mockChannel.isOpen()).thenReturn(true);
+
+		RabbitTemplate template = new RabbitTemplate(new CachingConnectionFactory(mockConnectionFactory));
+		template.setChannelTransacted(true);
+		template.convertAndSendAll("foo", "bar", Arrays.asList("baz", "qux", "fiz"));
+		verify(mockConnection, Mockito.times(1)).createChannel();
+		verify(mockChannel, Mockito.times(3)).basicPublish(Mockito.eq("foo"), Mockito.eq("bar"),
+				Mockito.anyBoolean(), Mockito.any(AMQP.BasicProperties.class), Mockito.any(byte[].class));
+		verify(mockChannel, Mockito.times(1)).txCommit();
+	}
+
+	@Test
+	public void testSendCollectionWaitForConfirms() throws Exception {
+		ConnectionFactory mockConnectionFactory = mock(ConnectionFactory.class);
+		Connection mockConnection = mock(Connection.class);
+		Channel mockChannel = mock(Channel.class);
+
+		when(mockConnectionFactory.newConnection((ExecutorService) null)).thenReturn(mockConnection);
+		when(mockConnection.isOpen()).thenReturn(true);
+		when(mockConnection.createChannel()).thenReturn(mockChannel);
+		when(mockChannel.isOpen()).thenReturn(true);
+		when(mockChannel.waitForConfirms(1000L)).thenReturn(true);
+
+		RabbitTemplate template = new RabbitTemplate(new CachingConnectionFactory(mockConnectionFactory));
+		Message message = new Message("foo".getBytes(), new MessageProperties());
+		assertTrue(template.sendAndWaitForConfirms("foo", "bar", Arrays.asList(message, message), 1000));
+		verify(mockChannel, Mockito.times(2)).basicPublish(Mockito.eq("foo"), Mockito.eq("bar"),
+				Mockito.anyBoolean(), Mockito.any(AMQP.BasicProperties.class), Mockito.any(byte[].class));
+		verify(mockChannel, Mockito.times(1)).waitForConfirms(1000L);
+	}
+
 }
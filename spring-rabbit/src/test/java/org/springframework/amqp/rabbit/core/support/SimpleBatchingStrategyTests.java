@@ -0,0 +1,102 @@
+/*
+ * Copyright 2014 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package org.springframework.amqp.rabbit.core.support;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Collection;
+import java.util.List;
+
+import org.junit.Test;
+
+import org.springframework.amqp.AmqpRejectAndDontRequeueException;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.core.MessageProperties;
+
+/**
+ * @author Gary Russell
+ * @since 1.4
+ *
+ */
+public class SimpleBatchingStrategyTests {
+
+	@Test
+	public void testBatchSize() {
+		SimpleBatchingStrategy strategy = new SimpleBatchingStrategy(3, 10000, 10000);
+		assertNull(strategy.addToBatch("ex", "rk", message("foo")));
+		assertNull(strategy.addToBatch("ex", "other", message("baz")));
+		assertNull(strategy.addToBatch("ex", "rk", message("bar")));
+		assertNotNull(strategy.nextRelease());
+		MessageBatch batch = strategy.addToBatch("ex", "rk", message("qux"));
+		assertNotNull(batch);
+		assertEquals("ex", batch.getExchange());
+		assertEquals("rk", batch.getRoutingKey());
+		assertEquals(3 * 7, batch.getMessage().getBody().length);
+		assertTrue(strategy.canDebatch(batch.getMessage().getMessageProperties()));
+		List<Message> fragments = strategy.deBatch(batch.getMessage());
+		assertEquals(3, fragments.size());
+		assertEquals("foo", new String(fragments.get(0).getBody()));
+		assertEquals("bar", new String(fragments.get(1).getBody()));
+		assertEquals("qux", new String(fragments.get(2).getBody()));
+		assertFalse(strategy.canDebatch(fragments.get(0).getMessageProperties()));
+
+		Collection<MessageBatch> remaining = strategy.releaseBatches();
+		assertEquals(1, remaining.size());
+		MessageBatch single = remaining.iterator().next();
+		assertEquals("other", single.getRoutingKey());
+		assertEquals("baz", new String(single.getMessage().getBody()));
+		assertFalse(strategy.canDebatch(single.getMessage().getMessageProperties()));
+		assertNull(strategy.nextRelease());
+	}
+
+	@Test
+	public void testBufferLimit() {
+		SimpleBatchingStrategy strategy = new SimpleBatchingStrategy(100, 15, 10000);
+		assertNull(strategy.addToBatch("ex", "rk", message("foo")));
+		assertNull(strategy.addToBatch("ex", "rk", message("bar")));
+		MessageBatch batch = strategy.addToBatch("ex", "rk", message("baz"));
+		assertNotNull(batch);
+		assertEquals(2, strategy.deBatch(batch.getMessage()).size());
+		batch = strategy.releaseBatches().iterator().next();
+		assertEquals("baz", new String(batch.getMessage().getBody()));
+	}
+
+	@Test
+	public void testTimeout() throws Exception {
+		SimpleBatchingStrategy strategy = new SimpleBatchingStrategy(100, 10000, 50);
+		assertNull(strategy.addToBatch("ex", "rk", message("foo")));
+		assertTrue(strategy.releaseExpiredBatches().isEmpty());
+		Thread.sleep(100);
+		assertEquals(1, strategy.releaseExpiredBatches().size());
+		assertNull(strategy.nextRelease());
+	}
+
+	@Test(expected = AmqpRejectAndDontRequeueException.class)
+	public void testBadBatch() {
+		SimpleBatchingStrategy strategy = new SimpleBatchingStrategy(2, 10000, 10000);
+		strategy.addToBatch("ex", "rk", message("foo"));
+		Message batch = strategy.addToBatch("ex", "rk", message("bar")).getMessage();
+		byte[] truncated = new byte[batch.getBody().length - 1];
+		System.arraycopy(batch.getBody(), 0, truncated, 0, truncated.length);
+		strategy.deBatch(new Message(truncated, batch.getMessageProperties()));
+	}
+
+	private Message message(String payload) {
+		return new Message(payload.getBytes(), new MessageProperties());
+	}
+
+}
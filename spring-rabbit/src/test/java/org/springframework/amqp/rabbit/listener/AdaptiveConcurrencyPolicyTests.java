@@ -0,0 +1,180 @@
+/*
+ * Copyright 2014 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package org.springframework.amqp.rabbit.listener;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import org.springframework.amqp.rabbit.listener.ConcurrencyPolicy.ConsumerStatistics;
+
+/**
+ * @author Gary Russell
+ * @since 1.4
+ *
+ */
+public class AdaptiveConcurrencyPolicyTests {
+
+	private AdaptiveConcurrencyPolicy policy;
+
+	private StubStatistics statistics;
+
+	@Before
+	public void setUp() {
+		this.policy = new AdaptiveConcurrencyPolicy();
+		this.policy.setScaleUpInterval(0);
+		this.policy.setScaleDownInterval(0);
+		this.policy.setBrokerSampleInterval(0);
+		this.statistics = new StubStatistics();
+		this.statistics.consumers = 2;
+		this.statistics.min = 1;
+		this.statistics.max = 10;
+		this.statistics.prefetch = 10;
+	}
+
+	@Test
+	public void testScaleUpInProportionToBacklog() {
+		// 10ms per message, 10 messages queued per consumer (20 total) = 200ms of work
+		this.statistics.messages = 1;
+		this.statistics.listenerTime = TimeUnit.MILLISECONDS.toNanos(10);
+		this.statistics.queued = 10;
+		assertEquals(0, this.policy.evaluate(this.statistics));
+		assertEquals(TimeUnit.MILLISECONDS.toNanos(10), this.policy.getAverageNanosPerMessage());
+
+		// drain within 50ms needs 4 consumers
+		this.policy.setTargetDrainTime(50);
+		assertEquals(2, this.policy.evaluate(this.statistics));
+	}
+
+	@Test
+	public void testReceiveWaitNotCountedAsProcessing() {
+		// a slow trickle: the cycle mostly waited for the message, which took 1ms to process
+		this.statistics.messages = 1;
+		this.statistics.cycleTime = TimeUnit.MILLISECONDS.toNanos(900);
+		this.statistics.listenerTime = TimeUnit.MILLISECONDS.toNanos(1);
+		this.statistics.queued = 10;
+		assertEquals(0, this.policy.evaluate(this.statistics));
+		assertEquals(TimeUnit.MILLISECONDS.toNanos(1), this.policy.getAverageNanosPerMessage());
+	}
+
+	@Test
+	public void testBrokerBacklogCappedAtMax() {
+		this.policy.setBrokerSampleInterval(1);
+		this.statistics.messages = 10;
+		this.statistics.listenerTime = TimeUnit.MILLISECONDS.toNanos(100);
+		this.statistics.brokerCount = 1000;
+		// 10s of work; start all the remaining consumers at once
+		assertEquals(8, this.policy.evaluate(this.statistics));
+		this.statistics.consumers = 10;
+		assertEquals(0, this.policy.evaluate(this.statistics));
+	}
+
+	@Test
+	public void testBrokerCountUnavailable() {
+		this.policy.setBrokerSampleInterval(1);
+		this.statistics.messages = 10;
+		this.statistics.listenerTime = TimeUnit.MILLISECONDS.toNanos(100);
+		this.statistics.brokerCount = -1;
+		assertEquals(0, this.policy.evaluate(this.statistics));
+	}
+
+	@Test
+	public void testScaleDownWhenIdle() {
+		this.statistics.messages = 0;
+		this.statistics.cycleTime = TimeUnit.SECONDS.toNanos(1);
+		assertEquals(-1, this.policy.evaluate(this.statistics));
+		this.statistics.consumers = 1;
+		assertEquals(0, this.policy.evaluate(this.statistics));
+	}
+
+	@Test
+	public void testScaleUpRateLimited() {
+		this.policy.setScaleUpInterval(60000);
+		this.statistics.messages = 10;
+		this.statistics.listenerTime = TimeUnit.MILLISECONDS.toNanos(1000);
+		this.statistics.queued = 50;
+		assertEquals(8, this.policy.evaluate(this.statistics));
+		assertEquals(0, this.policy.evaluate(this.statistics));
+	}
+
+	private static class StubStatistics implements ConsumerStatistics {
+
+		private int messages;
+
+		private long cycleTime;
+
+		private long listenerTime;
+
+		private int queued;
+
+		private int prefetch;
+
+		private int consumers;
+
+		private int min;
+
+		private int max;
+
+		private int brokerCount;
+
+		@Override
+		public int getMessageCount() {
+			return this.messages;
+		}
+
+		@Override
+		public long getCycleTimeNanos() {
+			return this.cycleTime;
+		}
+
+		@Override
+		public long getListenerTimeNanos() {
+			return this.listenerTime;
+		}
+
+		@Override
+		public int getHandoffQueueSize() {
+			return this.queued;
+		}
+
+		@Override
+		public int getPrefetchCount() {
+			return this.prefetch;
+		}
+
+		@Override
+		public int getConsumerCount() {
+			return this.consumers;
+		}
+
+		@Override
+		public int getMinConsumers() {
+			return this.min;
+		}
+
+		@Override
+		public int getMaxConsumers() {
+			return this.max;
+		}
+
+		@Override
+		public int getBrokerMessageCount() {
+			return this.brokerCount;
+		}
+
+	}
+
+}
@@ -16,11 +16,14 @@
 
 package org.springframework.amqp.rabbit.listener;
 
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
 import static org.mockito.Mockito.*;
 
 import java.io.IOException;
-import java.util.HashSet;
-import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import com.rabbitmq.client.AMQP;
 import com.rabbitmq.client.Channel;
@@ -31,6 +34,8 @@ import org.mockito.stubbing.Answer;
 
 import org.springframework.amqp.AmqpRejectAndDontRequeueException;
 import org.springframework.amqp.core.AcknowledgeMode;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.core.MessageProperties;
 import org.springframework.amqp.rabbit.connection.Connection;
 import org.springframework.amqp.rabbit.connection.ConnectionFactory;
 import org.springframework.amqp.rabbit.support.DefaultMessagePropertiesConverter;
@@ -128,6 +133,110 @@ public class BlockingQueueConsumerTests {
 		verify(channel).basicQos(20);
 	}
 
+	@Test
+	public void testNackMultiple() throws Exception {
+		Channel channel = mock(Channel.class);
+		BlockingQueueConsumer blockingQueueConsumer = createBatchConsumer(channel);
+		blockingQueueConsumer.setNackMultiple(true);
+		blockingQueueConsumer.rollbackOnExceptionIfNecessary(new RuntimeException());
+		verify(channel).basicNack(5L, true, true);
+		verify(channel, never()).basicReject(anyLong(), anyBoolean());
+	}
+
+	@Test
+	public void testNackMultipleFailedMessageNotRequeued() throws Exception {
+		Channel channel = mock(Channel.class);
+		BlockingQueueConsumer blockingQueueConsumer = createBatchConsumer(channel);
+		blockingQueueConsumer.setNackMultiple(true);
+		blockingQueueConsumer.rollbackOnExceptionIfNecessary(new AmqpRejectAndDontRequeueException("fail"));
+		verify(channel).basicReject(5L, false);
+		verify(channel).basicNack(4L, true, true);
+	}
+
+	@Test
+	public void testBatchNotRequeuedFailedMessageInBatch() throws Exception {
+		Channel channel = mock(Channel.class);
+		BlockingQueueConsumer blockingQueueConsumer = createBatchConsumer(channel);
+		blockingQueueConsumer.setBatchRequeueRejected(false);
+		MessageProperties messageProperties = new MessageProperties();
+		messageProperties.setDeliveryTag(3L);
+		blockingQueueConsumer.rollbackOnExceptionIfNecessary(new ListenerExecutionFailedException("fail",
+				new RuntimeException(), new Message(new byte[0], messageProperties)));
+		verify(channel).basicReject(3L, true);
+		verify(channel).basicReject(1L, false);
+		verify(channel).basicReject(2L, false);
+		verify(channel).basicReject(4L, false);
+		verify(channel).basicReject(5L, false);
+		verify(channel, never()).basicNack(anyLong(), anyBoolean(), anyBoolean());
+	}
+
+	@Test
+	public void testPrefetchAutoTune() throws Exception {
+		ConnectionFactory connectionFactory = mock(ConnectionFactory.class);
+		Channel channel = mock(Channel.class);
+		BlockingQueueConsumer blockingQueueConsumer = new BlockingQueueConsumer(connectionFactory,
+				new DefaultMessagePropertiesConverter(), new ActiveObjectCounter<BlockingQueueConsumer>(),
+				AcknowledgeMode.AUTO, false, 1, "testQ");
+		blockingQueueConsumer.setPrefetchAutoTune(100, 1, 1);
+		DirectFieldAccessor dfa = new DirectFieldAccessor(blockingQueueConsumer);
+		assertEquals(100, ((BlockingQueue<?>) dfa.getPropertyValue("queue")).remainingCapacity());
+		dfa.setPropertyValue("channel", channel);
+		PrefetchTuner tuner = (PrefetchTuner) dfa.getPropertyValue("prefetchTuner");
+		// 1ms round trip, 100us per message
+		tuner.roundTrip(1000000L);
+		for (long i = 0; i < 10; i++) {
+			tuner.received(i * 100000L + 1);
+			tuner.receiving((i + 1) * 100000L + 1);
+		}
+		Thread.sleep(10);
+		DeliveryTagTracker deliveryTags = (DeliveryTagTracker) dfa.getPropertyValue("deliveryTags");
+		deliveryTags.add(1L);
+		blockingQueueConsumer.commitIfNecessary(false);
+		verify(channel).basicAck(1L, true);
+		// txSize + 2 * round trip / service time
+		verify(channel).basicQos(21, true);
+		assertEquals(21, blockingQueueConsumer.getPrefetchCount());
+	}
+
+	@Test
+	public void testSuspendIfIdle() throws Exception {
+		ConnectionFactory connectionFactory = mock(ConnectionFactory.class);
+		BlockingQueueConsumer blockingQueueConsumer = new BlockingQueueConsumer(connectionFactory,
+				new DefaultMessagePropertiesConverter(), new ActiveObjectCounter<BlockingQueueConsumer>(),
+				AcknowledgeMode.AUTO, false, 1, "testQ");
+		final AtomicInteger resumed = new AtomicInteger();
+		Runnable resumeTask = new Runnable() {
+
+			@Override
+			public void run() {
+				resumed.incrementAndGet();
+			}
+
+		};
+		assertTrue(blockingQueueConsumer.suspendIfIdle(resumeTask));
+		assertEquals(0, resumed.get());
+		blockingQueueConsumer.setQuiesce(0);
+		assertEquals(1, resumed.get());
+		// cancelled, so there is work to do
+		assertFalse(blockingQueueConsumer.suspendIfIdle(resumeTask));
+		blockingQueueConsumer.setQuiesce(0);
+		assertEquals(1, resumed.get());
+	}
+
+	private BlockingQueueConsumer createBatchConsumer(Channel channel) {
+		ConnectionFactory connectionFactory = mock(ConnectionFactory.class);
+		BlockingQueueConsumer blockingQueueConsumer = new BlockingQueueConsumer(connectionFactory,
+				new DefaultMessagePropertiesConverter(), new ActiveObjectCounter<BlockingQueueConsumer>(),
+				AcknowledgeMode.AUTO, false, 5, "testQ");
+		DirectFieldAccessor dfa = new DirectFieldAccessor(blockingQueueConsumer);
+		dfa.setPropertyValue("channel", channel);
+		DeliveryTagTracker deliveryTags = (DeliveryTagTracker) dfa.getPropertyValue("deliveryTags");
+		for (long i = 1; i <= 5; i++) {
+			deliveryTags.add(i);
+		}
+		return blockingQueueConsumer;
+	}
+
 	private void testRequeueOrNotDefaultYes(Exception ex, boolean expectedRequeue) throws Exception {
 		ConnectionFactory connectionFactory = mock(ConnectionFactory.class);
 		Channel channel = mock(Channel.class);
@@ -150,9 +259,8 @@ public class BlockingQueueConsumerTests {
 			Channel channel, BlockingQueueConsumer blockingQueueConsumer) throws Exception {
 		DirectFieldAccessor dfa = new DirectFieldAccessor(blockingQueueConsumer);
 		dfa.setPropertyValue("channel", channel);
-		Set<Long> deliveryTags = new HashSet<Long>();
+		DeliveryTagTracker deliveryTags = (DeliveryTagTracker) dfa.getPropertyValue("deliveryTags");
 		deliveryTags.add(1L);
-		dfa.setPropertyValue("deliveryTags", deliveryTags);
 		blockingQueueConsumer.rollbackOnExceptionIfNecessary(ex);
 		Mockito.verify(channel).basicReject(1L, expectedRequeue);
 	}
@@ -0,0 +1,113 @@
+/*
+ * Copyright 2014 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package org.springframework.amqp.rabbit.listener;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+/**
+ * @author Gary Russell
+ * @since 1.4
+ *
+ */
+public class DeliveryTagTrackerTests {
+
+	@Test
+	public void testAddAndClear() {
+		DeliveryTagTracker tracker = new DeliveryTagTracker(10);
+		assertTrue(tracker.isEmpty());
+		assertEquals(-1, tracker.next(0));
+		for (long i = 1; i <= 10; i++) {
+			tracker.add(i);
+		}
+		assertEquals(10, tracker.size());
+		assertEquals(1, tracker.getLowest());
+		assertEquals(10, tracker.getHighest());
+		assertTrue(tracker.isContiguous());
+		tracker.clear();
+		assertTrue(tracker.isEmpty());
+		assertFalse(tracker.contains(5));
+		tracker.add(11);
+		assertEquals(1, tracker.size());
+		assertEquals(11, tracker.getLowest());
+		assertEquals(11, tracker.getHighest());
+	}
+
+	@Test
+	public void testOutOfOrderRemoval() {
+		DeliveryTagTracker tracker = new DeliveryTagTracker(10);
+		for (long i = 1; i <= 5; i++) {
+			tracker.add(i);
+		}
+		assertTrue(tracker.remove(3));
+		assertFalse(tracker.remove(3));
+		assertFalse(tracker.isContiguous());
+		assertEquals("[1, 2, 4, 5]", tracker.toString());
+		assertTrue(tracker.remove(1));
+		assertEquals(2, tracker.getLowest());
+		assertTrue(tracker.remove(5));
+		assertEquals(4, tracker.getHighest());
+		assertEquals(2, tracker.next(0));
+		assertEquals(4, tracker.next(2));
+		assertEquals(-1, tracker.next(4));
+	}
+
+	@Test
+	public void testRemoveUpTo() {
+		DeliveryTagTracker tracker = new DeliveryTagTracker(10);
+		for (long i = 1; i <= 6; i++) {
+			tracker.add(i);
+		}
+		tracker.remove(2);
+		assertEquals(2, tracker.removeUpTo(3));
+		assertEquals(4, tracker.getLowest());
+		assertEquals(0, tracker.removeUpTo(3));
+		assertEquals(3, tracker.removeUpTo(100));
+		assertTrue(tracker.isEmpty());
+	}
+
+	@Test
+	public void testGrowAndWrap() {
+		DeliveryTagTracker tracker = new DeliveryTagTracker(1);
+		// wrap around the bitmap several times while keeping a small window
+		for (long i = 1; i <= 1000; i++) {
+			tracker.add(i);
+			if (i > 10) {
+				tracker.remove(i - 10);
+			}
+		}
+		assertEquals(10, tracker.size());
+		assertEquals(991, tracker.getLowest());
+		// now force growth with an outstanding gap
+		tracker.remove(995);
+		for (long i = 1001; i <= 1200; i++) {
+			tracker.add(i);
+		}
+		assertEquals(209, tracker.size());
+		assertFalse(tracker.contains(995));
+		assertTrue(tracker.contains(996));
+		assertEquals(996, tracker.next(994));
+		assertEquals(209, tracker.removeUpTo(1200));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testTagsMustIncrease() {
+		DeliveryTagTracker tracker = new DeliveryTagTracker();
+		tracker.add(2);
+		tracker.add(1);
+	}
+
+}
@@ -0,0 +1,203 @@
+/*
+ * Copyright 2014 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package org.springframework.amqp.rabbit.listener;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyBoolean;
+import static org.mockito.Matchers.anyLong;
+import static org.mockito.Matchers.anyMap;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.core.MessageListener;
+import org.springframework.amqp.rabbit.connection.Connection;
+import org.springframework.amqp.rabbit.connection.ConnectionFactory;
+
+import com.rabbitmq.client.AMQP.BasicProperties;
+import com.rabbitmq.client.Channel;
+import com.rabbitmq.client.Consumer;
+import com.rabbitmq.client.Envelope;
+
+/**
+ * @author Gary Russell
+ * @since 1.4
+ *
+ */
+public class DirectMessageListenerContainerTests {
+
+	private final Map<String, Consumer> consumers = new ConcurrentHashMap<String, Consumer>();
+
+	private ConnectionFactory connectionFactory;
+
+	private Channel channel;
+
+	@SuppressWarnings("unchecked")
+	@Before
+	public void setUp() throws Exception {
+		this.connectionFactory = mock(ConnectionFactory.class);
+		Connection connection = mock(Connection.class);
+		this.channel = mock(Channel.class);
+		when(this.connectionFactory.createConnection()).thenReturn(connection);
+		when(connection.createChannel(false)).thenReturn(this.channel);
+		when(this.channel.isOpen()).thenReturn(true);
+		doAnswer(new Answer<Object>() {
+
+			@Override
+			public Object answer(InvocationOnMock invocation) throws Throwable {
+				String queue = (String) invocation.getArguments()[0];
+				Consumer consumer = (Consumer) invocation.getArguments()[6];
+				consumers.put(queue, consumer);
+				consumer.handleConsumeOk(queue + "Tag");
+				return queue + "Tag";
+			}
+		}).when(this.channel).basicConsume(anyString(), anyBoolean(), anyString(), anyBoolean(), anyBoolean(),
+				anyMap(), any(Consumer.class));
+		doAnswer(new Answer<Object>() {
+
+			@Override
+			public Object answer(InvocationOnMock invocation) throws Throwable {
+				String tag = (String) invocation.getArguments()[0];
+				Consumer consumer = consumers.remove(tag.substring(0, tag.length() - 3));
+				if (consumer != null) {
+					consumer.handleCancelOk(tag);
+				}
+				return null;
+			}
+		}).when(this.channel).basicCancel(anyString());
+	}
+
+	/*
+	 * txSize = 2; 4 messages; should get 2 acks (#2 and #4)
+	 */
+	@Test
+	public void testTxSizeAcks() throws Exception {
+		final List<Message> messages = new ArrayList<Message>();
+		DirectMessageListenerContainer container = new DirectMessageListenerContainer(this.connectionFactory);
+		container.setQueueNames("foo");
+		container.setTxSize(2);
+		container.setMessageListener(new MessageListener() {
+
+			@Override
+			public void onMessage(Message message) {
+				messages.add(message);
+			}
+		});
+		container.start();
+		verify(this.channel).basicQos(2);
+		Consumer consumer = this.consumers.get("foo");
+		assertNotNull(consumer);
+		for (long i = 1; i <= 4; i++) {
+			consumer.handleDelivery("fooTag", new Envelope(i, false, "foo", "bar"), new BasicProperties(),
+					"baz".getBytes());
+		}
+		assertEquals(4, messages.size());
+		verify(this.channel).basicAck(2L, true);
+		verify(this.channel).basicAck(4L, true);
+		container.stop();
+	}
+
+	@Test
+	public void testPartialBatchAckedWhenIdle() throws Exception {
+		DirectMessageListenerContainer container = new DirectMessageListenerContainer(this.connectionFactory);
+		container.setQueueNames("foo");
+		container.setTxSize(10);
+		container.setAckTimeout(100);
+		container.setMonitorInterval(50);
+		container.setMessageListener(new MessageListener() {
+
+			@Override
+			public void onMessage(Message message) {
+			}
+		});
+		container.start();
+		this.consumers.get("foo").handleDelivery("fooTag", new Envelope(1L, false, "foo", "bar"),
+				new BasicProperties(), "baz".getBytes());
+		verify(this.channel, timeout(5000)).basicAck(1L, true);
+		container.stop();
+	}
+
+	@Test
+	public void testRejectBatchOnListenerException() throws Exception {
+		DirectMessageListenerContainer container = new DirectMessageListenerContainer(this.connectionFactory);
+		container.setQueueNames("foo");
+		container.setTxSize(5);
+		container.setMessageListener(new MessageListener() {
+
+			@Override
+			public void onMessage(Message message) {
+				if (message.getMessageProperties().getDeliveryTag() == 2L) {
+					throw new RuntimeException("fail");
+				}
+			}
+		});
+		container.start();
+		Consumer consumer = this.consumers.get("foo");
+		consumer.handleDelivery("fooTag", new Envelope(1L, false, "foo", "bar"), new BasicProperties(),
+				"baz".getBytes());
+		consumer.handleDelivery("fooTag", new Envelope(2L, false, "foo", "bar"), new BasicProperties(),
+				"baz".getBytes());
+		verify(this.channel).basicNack(2L, true, true);
+		verify(this.channel, never()).basicAck(anyLong(), anyBoolean());
+		container.stop();
+	}
+
+	@SuppressWarnings("unchecked")
+	@Test
+	public void testAddRemoveQueues() throws Exception {
+		DirectMessageListenerContainer container = new DirectMessageListenerContainer(this.connectionFactory);
+		container.setQueueNames("foo");
+		container.setMessageListener(new MessageListener() {
+
+			@Override
+			public void onMessage(Message message) {
+			}
+		});
+		container.start();
+		assertEquals(1, this.consumers.size());
+		container.addQueueNames("bar");
+		assertEquals(2, this.consumers.size());
+		assertNotNull(this.consumers.get("bar"));
+		container.removeQueueNames("foo");
+		verify(this.channel).basicCancel("fooTag");
+		verify(this.channel, never()).basicCancel("barTag");
+		assertEquals(1, this.consumers.size());
+		assertEquals(1, container.getActiveConsumerCount());
+		container.setConsumersPerQueue(2);
+		verify(this.channel, timeout(5000).times(3)).basicConsume(anyString(), anyBoolean(), anyString(),
+				anyBoolean(), anyBoolean(), anyMap(), any(Consumer.class));
+		verify(this.channel, times(2)).basicConsume(eq("bar"), anyBoolean(), anyString(), anyBoolean(), anyBoolean(),
+				anyMap(), any(Consumer.class));
+		container.stop();
+	}
+
+}
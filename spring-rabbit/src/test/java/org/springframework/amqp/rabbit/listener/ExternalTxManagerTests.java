@@ -27,7 +27,7 @@ import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
-import java.util.List;
+import java.util.Collection;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.TimeUnit;
@@ -157,7 +157,7 @@ public class ExternalTxManagerTests {
 
 		// verify close() was never called on the channel
 		DirectFieldAccessor dfa = new DirectFieldAccessor(cachingConnectionFactory);
-		List<?> channels = (List<?>) dfa.getPropertyValue("cachedChannelsTransactional");
+		Collection<?> channels = (Collection<?>) dfa.getPropertyValue("cachedChannelsTransactional");
 		assertEquals(0, channels.size());
 
 		container.stop();
@@ -274,7 +274,7 @@ public class ExternalTxManagerTests {
 
 		// verify close() was never called on the channel
 		DirectFieldAccessor dfa = new DirectFieldAccessor(cachingConnectionFactory);
-		List<?> channels = (List<?>) dfa.getPropertyValue("cachedChannelsTransactional");
+		Collection<?> channels = (Collection<?>) dfa.getPropertyValue("cachedChannelsTransactional");
 		assertEquals(0, channels.size());
 
 		container.stop();
@@ -578,7 +578,7 @@ public class ExternalTxManagerTests {
 
 		// verify close() was never called on the channel
 		DirectFieldAccessor dfa = new DirectFieldAccessor(cachingConnectionFactory);
-		List<?> channels = (List<?>) dfa.getPropertyValue("cachedChannelsTransactional");
+		Collection<?> channels = (Collection<?>) dfa.getPropertyValue("cachedChannelsTransactional");
 		assertEquals(0, channels.size());
 
 		container.stop();
@@ -0,0 +1,94 @@
+/*
+ * Copyright 2014 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package org.springframework.amqp.rabbit.listener;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.junit.Rule;
+import org.junit.Test;
+
+import org.springframework.amqp.rabbit.listener.SpscArrayBlockingQueue.WaitStrategy;
+import org.springframework.amqp.rabbit.test.LongRunningIntegrationTest;
+
+/**
+ * Compares the throughput of the handoff queue implementations used by the
+ * {@link BlockingQueueConsumer}, with one producer and one consumer thread.
+ *
+ * @author Gary Russell
+ * @since 1.4
+ *
+ */
+public class HandoffQueueComparisonTests {
+
+	private static final Log logger = LogFactory.getLog(HandoffQueueComparisonTests.class);
+
+	private static final int PREFETCH = 250;
+
+	private static final int COUNT = 10000000;
+
+	private static final int ITERATIONS = 5;
+
+	@Rule
+	public LongRunningIntegrationTest longTest = new LongRunningIntegrationTest();
+
+	@Test
+	public void compare() throws Exception {
+		ExecutorService exec = Executors.newSingleThreadExecutor();
+		for (int i = 0; i < ITERATIONS; i++) {
+			// the first iterations warm up the JIT
+			run(exec, "LinkedBlockingQueue", new LinkedBlockingQueue<Object>(PREFETCH));
+			for (WaitStrategy waitStrategy : WaitStrategy.values()) {
+				run(exec, "SpscArrayBlockingQueue(" + waitStrategy + ")",
+						new SpscArrayBlockingQueue<Object>(PREFETCH, waitStrategy));
+			}
+		}
+		exec.shutdownNow();
+	}
+
+	private void run(ExecutorService exec, String name, final BlockingQueue<Object> queue) throws Exception {
+		final Object delivery = new Object();
+		long start = System.nanoTime();
+		Future<?> future = exec.submit(new Runnable() {
+
+			@Override
+			public void run() {
+				try {
+					for (int i = 0; i < COUNT; i++) {
+						queue.put(delivery);
+					}
+				}
+				catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+			}
+		});
+		int received = 0;
+		while (received < COUNT && queue.poll(1, TimeUnit.SECONDS) != null) {
+			received++;
+		}
+		future.get(10, TimeUnit.SECONDS);
+		long elapsed = System.nanoTime() - start;
+		assertEquals(COUNT, received);
+		logger.info(name + ": " + (COUNT * 1000000000L / elapsed) + " handoffs/second");
+	}
+
+}
@@ -16,6 +16,8 @@ import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 
+import java.util.Collections;
+import java.util.HashSet;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.CountDownLatch;
@@ -30,6 +32,8 @@ import org.junit.Rule;
 import org.junit.Test;
 
 import org.springframework.amqp.core.AnonymousQueue;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.core.MessageListener;
 import org.springframework.amqp.core.Queue;
 import org.springframework.amqp.rabbit.connection.CachingConnectionFactory;
 import org.springframework.amqp.rabbit.core.RabbitAdmin;
@@ -42,6 +46,7 @@ import org.springframework.amqp.utils.test.TestUtils;
 import org.springframework.beans.DirectFieldAccessor;
 import org.springframework.beans.factory.DisposableBean;
 import org.springframework.context.support.GenericApplicationContext;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
 
 /**
  * @author Dave Syer
@@ -237,6 +242,45 @@ public class SimpleMessageListenerContainerIntegration2Tests {
 		container2.stop();
 	}
 
+	@Test
+	public void testSharedPool() throws Exception {
+		ThreadPoolTaskExecutor pool = new ThreadPoolTaskExecutor();
+		pool.setCorePoolSize(2);
+		pool.setMaxPoolSize(2);
+		pool.setThreadNamePrefix("sharedPool-");
+		pool.afterPropertiesSet();
+		final Set<String> threads = Collections.synchronizedSet(new HashSet<String>());
+		final CountDownLatch latch = new CountDownLatch(100);
+		container = new SimpleMessageListenerContainer(template.getConnectionFactory());
+		container.setMessageListener(new MessageListener() {
+
+			@Override
+			public void onMessage(Message message) {
+				threads.add(Thread.currentThread().getName());
+				latch.countDown();
+			}
+
+		});
+		container.setQueueNames(queue.getName(), queue1.getName());
+		// more consumers than pool threads
+		container.setConcurrentConsumers(10);
+		container.setConsumerExecutionStrategy(new SharedPoolExecutionStrategy(pool));
+		container.afterPropertiesSet();
+		container.start();
+		for (int i = 0; i < 50; i++) {
+			template.convertAndSend(queue.getName(), i + "foo");
+			template.convertAndSend(queue1.getName(), i + "foo");
+		}
+		assertTrue(latch.await(10, TimeUnit.SECONDS));
+		for (String thread : threads) {
+			assertTrue(thread.startsWith("sharedPool-"));
+		}
+		container.stop();
+		assertEquals(0, container.getActiveConsumerCount());
+		container = null;
+		pool.destroy();
+	}
+
 	private SimpleMessageListenerContainer createContainer(Object listener, String... queueNames) {
 		SimpleMessageListenerContainer container = new SimpleMessageListenerContainer(template.getConnectionFactory());
 		container.setMessageListener(listener);
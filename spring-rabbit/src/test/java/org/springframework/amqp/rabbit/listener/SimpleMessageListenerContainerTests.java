@@ -37,6 +37,7 @@ import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.Executor;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicReference;
@@ -50,6 +51,7 @@ import org.mockito.stubbing.Answer;
 
 import org.springframework.amqp.core.AcknowledgeMode;
 import org.springframework.amqp.core.AnonymousQueue;
+import org.springframework.amqp.core.BatchMessageListener;
 import org.springframework.amqp.core.Message;
 import org.springframework.amqp.core.MessageListener;
 import org.springframework.amqp.core.Queue;
@@ -60,6 +62,7 @@ import org.springframework.amqp.rabbit.connection.Connection;
 import org.springframework.amqp.rabbit.connection.ConnectionFactory;
 import org.springframework.amqp.rabbit.connection.SingleConnectionFactory;
 import org.springframework.amqp.rabbit.listener.adapter.MessageListenerAdapter;
+import org.springframework.amqp.rabbit.listener.metrics.ListenerMetricsRecorder;
 import org.springframework.amqp.utils.test.TestUtils;
 import org.springframework.beans.DirectFieldAccessor;
 import org.springframework.test.util.ReflectionTestUtils;
@@ -208,6 +211,148 @@ public class SimpleMessageListenerContainerTests {
 		container.stop();
 	}
 
+	@Test
+	public void testSharedPoolRejectsResume() throws Exception {
+		ConnectionFactory connectionFactory = mock(ConnectionFactory.class);
+		Connection connection = mock(Connection.class);
+		Channel channel = mock(Channel.class);
+		when(connectionFactory.createConnection()).thenReturn(connection);
+		when(connection.createChannel(false)).thenReturn(channel);
+		final AtomicReference<Consumer> consumer = new AtomicReference<Consumer>();
+		doAnswer(new Answer<Object>() {
+
+			@Override
+			public Object answer(InvocationOnMock invocation) throws Throwable {
+				consumer.set((Consumer) invocation.getArguments()[6]);
+				consumer.get().handleConsumeOk("1");
+				return null;
+			}
+		}).when(channel).basicConsume(anyString(), anyBoolean(), anyString(), anyBoolean(), anyBoolean(), anyMap(), any(Consumer.class));
+
+		// runs the first task (the consumer startup), then rejects everything
+		final CountDownLatch released = new CountDownLatch(1);
+		final AtomicInteger rejected = new AtomicInteger();
+		Executor rejectingExecutor = new Executor() {
+
+			private final AtomicInteger count = new AtomicInteger();
+
+			@Override
+			public void execute(final Runnable command) {
+				if (this.count.getAndIncrement() > 0) {
+					rejected.incrementAndGet();
+					throw new RejectedExecutionException("pool full");
+				}
+				new Thread(new Runnable() {
+
+					@Override
+					public void run() {
+						command.run();
+						released.countDown();
+					}
+
+				}).start();
+			}
+
+		};
+
+		final CountDownLatch latch = new CountDownLatch(2);
+		final SimpleMessageListenerContainer container = new SimpleMessageListenerContainer(connectionFactory);
+		container.setQueueNames("foo");
+		container.setConsumerExecutionStrategy(new SharedPoolExecutionStrategy(rejectingExecutor));
+		container.setMessageListener(new MessageListener() {
+
+			@Override
+			public void onMessage(Message message) {
+				latch.countDown();
+			}
+		});
+		container.start();
+		// the idle consumer has given its thread back
+		assertTrue(released.await(10, TimeUnit.SECONDS));
+		BasicProperties props = new BasicProperties();
+		byte[] payload = "baz".getBytes();
+		consumer.get().handleDelivery("1", new Envelope(1L, false, "foo", "bar"), props, payload);
+		consumer.get().handleDelivery("1", new Envelope(2L, false, "foo", "bar"), props, payload);
+		assertTrue(latch.await(10, TimeUnit.SECONDS));
+		assertTrue(rejected.get() > 0);
+		Executors.newSingleThreadExecutor().execute(new Runnable() {
+
+			@Override
+			public void run() {
+				container.stop();
+			}
+		});
+		consumer.get().handleCancelOk("1");
+		container.stop();
+	}
+
+	/*
+	 * txSize = 2; 4 messages; should get 2 batches of 2 and 2 acks (#2 and #4)
+	 */
+	@SuppressWarnings("unchecked")
+	@Test
+	public void testBatchListener() throws Exception {
+		ConnectionFactory connectionFactory = mock(ConnectionFactory.class);
+		Connection connection = mock(Connection.class);
+		Channel channel = mock(Channel.class);
+		when(connectionFactory.createConnection()).thenReturn(connection);
+		when(connection.createChannel(false)).thenReturn(channel);
+		final AtomicReference<Consumer> consumer = new AtomicReference<Consumer>();
+		doAnswer(new Answer<Object>() {
+
+			@Override
+			public Object answer(InvocationOnMock invocation) throws Throwable {
+				consumer.set((Consumer) invocation.getArguments()[6]);
+				consumer.get().handleConsumeOk("1");
+				return null;
+			}
+		}).when(channel).basicConsume(anyString(), anyBoolean(), anyString(), anyBoolean(), anyBoolean(), anyMap(), any(Consumer.class));
+		final CountDownLatch latch = new CountDownLatch(2);
+		doAnswer(new Answer<Object>() {
+
+			@Override
+			public Object answer(InvocationOnMock invocation) throws Throwable {
+				latch.countDown();
+				return null;
+			}
+		}).when(channel).basicAck(anyLong(), anyBoolean());
+
+		final List<List<Message>> batches = new ArrayList<List<Message>>();
+		final SimpleMessageListenerContainer container = new SimpleMessageListenerContainer(connectionFactory);
+		container.setQueueNames("foo");
+		container.setTxSize(2);
+		container.setMessageListener(new BatchMessageListener() {
+
+			@Override
+			public void onMessageBatch(List<Message> messages) {
+				batches.add(messages);
+			}
+		});
+		container.start();
+		BasicProperties props = new BasicProperties();
+		byte[] payload = "baz".getBytes();
+		for (long i = 1; i <= 4; i++) {
+			consumer.get().handleDelivery("1", new Envelope(i, false, "foo", "bar"), props, payload);
+		}
+		assertTrue(latch.await(5, TimeUnit.SECONDS));
+		assertEquals(2, batches.size());
+		assertEquals(2, batches.get(0).size());
+		assertEquals(2, batches.get(1).size());
+		assertEquals(4L, batches.get(1).get(1).getMessageProperties().getDeliveryTag());
+		Executors.newSingleThreadExecutor().execute(new Runnable() {
+
+			@Override
+			public void run() {
+				container.stop();
+			}
+		});
+		consumer.get().handleCancelOk("1");
+		verify(channel, times(2)).basicAck(anyLong(), anyBoolean());
+		verify(channel).basicAck(2, true);
+		verify(channel).basicAck(4, true);
+		container.stop();
+	}
+
 	/*
 	 * txSize = 2; 3 messages; should get 2 acks (#2 and #3)
 	 * after timeout.
@@ -525,6 +670,75 @@ public class SimpleMessageListenerContainerTests {
 		container.stop();
 	}
 
+	@SuppressWarnings("unchecked")
+	@Test
+	public void testMetricsRecorder() throws Exception {
+		ConnectionFactory connectionFactory = mock(ConnectionFactory.class);
+		Connection connection = mock(Connection.class);
+		Channel channel = mock(Channel.class);
+		when(connectionFactory.createConnection()).thenReturn(connection);
+		when(connection.createChannel(false)).thenReturn(channel);
+		final AtomicReference<Consumer> consumer = new AtomicReference<Consumer>();
+		doAnswer(new Answer<Object>() {
+
+			@Override
+			public Object answer(InvocationOnMock invocation) throws Throwable {
+				consumer.set((Consumer) invocation.getArguments()[6]);
+				consumer.get().handleConsumeOk("1");
+				return null;
+			}
+		}).when(channel).basicConsume(anyString(), anyBoolean(), anyString(), anyBoolean(), anyBoolean(), anyMap(), any(Consumer.class));
+
+		StubMetricsRecorder recorder = new StubMetricsRecorder();
+		final SimpleMessageListenerContainer container = new SimpleMessageListenerContainer(connectionFactory);
+		container.setQueueNames("foo");
+		container.setTxSize(2);
+		container.setMetricsRecorder(recorder);
+		container.setMessageListener(new MessageListener() {
+
+			@Override
+			public void onMessage(Message message) {
+				if ("fail".equals(new String(message.getBody()))) {
+					throw new RuntimeException("planned");
+				}
+			}
+		});
+		container.start();
+		BasicProperties props = new BasicProperties();
+		// one cycle of two messages, the first redelivered
+		consumer.get().handleDelivery("1", new Envelope(1L, true, "foo", "bar"), props, "baz".getBytes());
+		consumer.get().handleDelivery("1", new Envelope(2L, false, "foo", "bar"), props, "baz".getBytes());
+		assertTrue(recorder.ackLatch.await(10, TimeUnit.SECONDS));
+		// a failed cycle
+		consumer.get().handleDelivery("1", new Envelope(3L, false, "foo", "bar"), props, "fail".getBytes());
+		assertTrue(recorder.rejectLatch.await(10, TimeUnit.SECONDS));
+		// cancelled by the broker; the consumer is restarted
+		consumer.get().handleCancel("1");
+		assertTrue(recorder.restartLatch.await(10, TimeUnit.SECONDS));
+
+		assertEquals(3, recorder.handoffWaits.get());
+		assertEquals(1, recorder.redeliveries.get());
+		assertEquals(3, recorder.executedMessages.get());
+		assertEquals(1, recorder.batches.get());
+		assertEquals(2, recorder.batchedMessages.get());
+		assertEquals(2, recorder.ackedMessages.get());
+		assertEquals(1, recorder.rejectedMessages.get());
+		assertEquals(1, recorder.restarts.get());
+		assertEquals(0, recorder.negativeTimes.get());
+		verify(channel).basicAck(2L, true);
+		verify(channel).basicReject(3L, true);
+
+		Executors.newSingleThreadExecutor().execute(new Runnable() {
+
+			@Override
+			public void run() {
+				container.stop();
+			}
+		});
+		consumer.get().handleCancelOk("1");
+		container.stop();
+	}
+
 	private Answer<Object> messageToConsumer(final Channel mockChannel, final SimpleMessageListenerContainer container,
 			final boolean cancel, final CountDownLatch latch) {
 		return new Answer<Object>() {
@@ -564,6 +778,82 @@ public class SimpleMessageListenerContainerTests {
 		assertFalse(stillUp);
 	}
 
+	private static class StubMetricsRecorder implements ListenerMetricsRecorder {
+
+		private final AtomicInteger handoffWaits = new AtomicInteger();
+
+		private final AtomicInteger executedMessages = new AtomicInteger();
+
+		private final AtomicInteger ackedMessages = new AtomicInteger();
+
+		private final AtomicInteger batches = new AtomicInteger();
+
+		private final AtomicInteger batchedMessages = new AtomicInteger();
+
+		private final AtomicInteger redeliveries = new AtomicInteger();
+
+		private final AtomicInteger rejectedMessages = new AtomicInteger();
+
+		private final AtomicInteger restarts = new AtomicInteger();
+
+		private final AtomicInteger negativeTimes = new AtomicInteger();
+
+		private final CountDownLatch ackLatch = new CountDownLatch(1);
+
+		private final CountDownLatch rejectLatch = new CountDownLatch(1);
+
+		private final CountDownLatch restartLatch = new CountDownLatch(1);
+
+		@Override
+		public void recordHandoffWait(long nanos) {
+			checkTime(nanos);
+			this.handoffWaits.incrementAndGet();
+		}
+
+		@Override
+		public void recordListenerExecution(long nanos, int messageCount) {
+			checkTime(nanos);
+			this.executedMessages.addAndGet(messageCount);
+		}
+
+		@Override
+		public void recordAck(long nanos, int messageCount) {
+			checkTime(nanos);
+			this.ackedMessages.addAndGet(messageCount);
+			this.ackLatch.countDown();
+		}
+
+		@Override
+		public void recordBatchSize(int batchSize) {
+			this.batches.incrementAndGet();
+			this.batchedMessages.addAndGet(batchSize);
+		}
+
+		@Override
+		public void recordRedelivery() {
+			this.redeliveries.incrementAndGet();
+		}
+
+		@Override
+		public void recordRejected(int messageCount) {
+			this.rejectedMessages.addAndGet(messageCount);
+			this.rejectLatch.countDown();
+		}
+
+		@Override
+		public void consumerRestarted() {
+			this.restarts.incrementAndGet();
+			this.restartLatch.countDown();
+		}
+
+		private void checkTime(long nanos) {
+			if (nanos < 0) {
+				this.negativeTimes.incrementAndGet();
+			}
+		}
+
+	}
+
 	@SuppressWarnings("serial")
 	private class TestTransactionManager extends AbstractPlatformTransactionManager {
 
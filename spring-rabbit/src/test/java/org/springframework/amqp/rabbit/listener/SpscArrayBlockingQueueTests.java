@@ -0,0 +1,108 @@
+/*
+ * Copyright 2014 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package org.springframework.amqp.rabbit.listener;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+import org.springframework.amqp.rabbit.listener.SpscArrayBlockingQueue.WaitStrategy;
+
+/**
+ * @author Gary Russell
+ * @since 1.4
+ *
+ */
+public class SpscArrayBlockingQueueTests {
+
+	@Test
+	public void testBounded() throws Exception {
+		SpscArrayBlockingQueue<Integer> queue = new SpscArrayBlockingQueue<Integer>(3);
+		assertTrue(queue.offer(1));
+		assertTrue(queue.offer(2));
+		assertTrue(queue.offer(3));
+		assertFalse(queue.offer(4));
+		assertFalse(queue.offer(4, 10, TimeUnit.MILLISECONDS));
+		assertEquals(3, queue.size());
+		assertEquals(0, queue.remainingCapacity());
+		assertEquals(Integer.valueOf(1), queue.peek());
+		assertEquals(Integer.valueOf(1), queue.poll());
+		assertTrue(queue.offer(4));
+		List<Integer> drained = new ArrayList<Integer>();
+		assertEquals(3, queue.drainTo(drained));
+		assertEquals(3, drained.size());
+		assertEquals(Integer.valueOf(4), drained.get(2));
+		assertTrue(queue.isEmpty());
+		assertNull(queue.poll(10, TimeUnit.MILLISECONDS));
+	}
+
+	@Test
+	public void testHandoffSpin() throws Exception {
+		testHandoff(WaitStrategy.SPIN);
+	}
+
+	@Test
+	public void testHandoffYield() throws Exception {
+		testHandoff(WaitStrategy.YIELD);
+	}
+
+	@Test
+	public void testHandoffPark() throws Exception {
+		testHandoff(WaitStrategy.PARK);
+	}
+
+	private void testHandoff(WaitStrategy waitStrategy) throws Exception {
+		final SpscArrayBlockingQueue<Integer> queue = new SpscArrayBlockingQueue<Integer>(10, waitStrategy);
+		final int count = 1000;
+		ExecutorService exec = Executors.newSingleThreadExecutor();
+		Future<?> future = exec.submit(new Runnable() {
+
+			@Override
+			public void run() {
+				try {
+					for (int i = 0; i < count; i++) {
+						queue.put(i);
+					}
+				}
+				catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+			}
+		});
+		for (int i = 0; i < count; i++) {
+			Integer value = i % 2 == 0 ? queue.take() : queue.poll(10, TimeUnit.SECONDS);
+			assertEquals(Integer.valueOf(i), value);
+		}
+		future.get(10, TimeUnit.SECONDS);
+		assertTrue(queue.isEmpty());
+		exec.shutdownNow();
+	}
+
+	@Test(expected = InterruptedException.class)
+	public void testInterrupt() throws Exception {
+		SpscArrayBlockingQueue<Integer> queue = new SpscArrayBlockingQueue<Integer>(1);
+		Thread.currentThread().interrupt();
+		queue.take();
+	}
+
+}
@@ -0,0 +1,50 @@
+/*
+ * Copyright 2014 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package org.springframework.amqp.rabbit.listener;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.Test;
+
+/**
+ * @author Gary Russell
+ * @since 1.4
+ *
+ */
+public class VirtualThreadTaskExecutorTests {
+
+	@Test
+	public void testExecute() throws Exception {
+		VirtualThreadTaskExecutor executor = new VirtualThreadTaskExecutor("vtTest-");
+		assertEquals(VirtualThreadTaskExecutor.isVirtualThreadSupported(), executor.isVirtual());
+		final AtomicReference<String> threadName = new AtomicReference<String>();
+		final CountDownLatch latch = new CountDownLatch(1);
+		executor.execute(new Runnable() {
+
+			@Override
+			public void run() {
+				threadName.set(Thread.currentThread().getName());
+				latch.countDown();
+			}
+
+		});
+		assertTrue(latch.await(10, TimeUnit.SECONDS));
+		assertTrue(threadName.get().startsWith("vtTest-"));
+	}
+
+}
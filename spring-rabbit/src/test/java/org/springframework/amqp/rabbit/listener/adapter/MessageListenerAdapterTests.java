@@ -1,5 +1,5 @@
 /*
- * Copyright 2002-2013 the original author or authors.
+ * Copyright 2002-2014 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
  * the License. You may obtain a copy of the License at
@@ -12,8 +12,12 @@
  */
 package org.springframework.amqp.rabbit.listener.adapter;
 
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 import java.util.concurrent.atomic.AtomicBoolean;
 
 import org.junit.Before;
@@ -27,6 +31,7 @@ import org.springframework.aop.framework.ProxyFactory;
 /**
  * @author Dave Syer
  * @author Greg Turnquist
+ * @author Gary Russell
  *
  */
 public class MessageListenerAdapterTests {
@@ -109,6 +114,21 @@ public class MessageListenerAdapterTests {
 		assertTrue(SimpleService.called);
 	}
 
+	@Test
+	public void testBatchListenerMethod() throws Exception {
+		final List<String> received = new ArrayList<String>();
+		class Delegate {
+			@SuppressWarnings("unused")
+			public void handleMessage(List<String> input) {
+				received.addAll(input);
+			}
+		}
+		BatchMessageListenerAdapter batchAdapter = new BatchMessageListenerAdapter(new Delegate());
+		batchAdapter.onMessageBatch(Arrays.asList(new Message("foo".getBytes(), messageProperties),
+				new Message("bar".getBytes(), messageProperties)));
+		assertEquals(Arrays.asList("foo", "bar"), received);
+	}
+
 	public static interface Service {
 		String handle(String input);
 	}
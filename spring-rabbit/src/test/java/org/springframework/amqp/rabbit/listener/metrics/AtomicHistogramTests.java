@@ -0,0 +1,119 @@
+/*
+ * Copyright 2014 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package org.springframework.amqp.rabbit.listener.metrics;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+/**
+ * @author Gary Russell
+ * @since 1.4
+ *
+ */
+public class AtomicHistogramTests {
+
+	@Test
+	public void testBuckets() {
+		for (long value = 0; value < 100000; value++) {
+			int index = AtomicHistogram.indexOf(value);
+			assertTrue(value >= AtomicHistogram.lowestEquivalentValue(index));
+			assertTrue(value <= AtomicHistogram.highestEquivalentValue(index));
+		}
+		assertEquals(31, AtomicHistogram.indexOf(31));
+		assertEquals(32, AtomicHistogram.indexOf(32));
+		assertEquals(64, AtomicHistogram.indexOf(64));
+		assertEquals(64, AtomicHistogram.indexOf(65));
+		long max = Long.MAX_VALUE;
+		assertTrue(max <= AtomicHistogram.highestEquivalentValue(AtomicHistogram.indexOf(max)));
+	}
+
+	@Test
+	public void testPercentiles() {
+		AtomicHistogram histogram = new AtomicHistogram();
+		for (int i = 1; i <= 10000; i++) {
+			histogram.record(i * 1000L);
+		}
+		assertEquals(10000, histogram.getCount());
+		assertEquals(5000500.0, histogram.getMean(), 0.1);
+		assertEquals(10000000, histogram.getMax());
+		assertWithin(5000000, histogram.getValueAtPercentile(50));
+		assertWithin(9900000, histogram.getValueAtPercentile(99));
+		assertEquals(10000000, histogram.getValueAtPercentile(100));
+		histogram.reset();
+		assertEquals(0, histogram.getCount());
+		assertEquals(0, histogram.getValueAtPercentile(99));
+	}
+
+	@Test
+	public void testConcurrentRecording() throws Exception {
+		final AtomicHistogram histogram = new AtomicHistogram();
+		int threads = 4;
+		final CountDownLatch latch = new CountDownLatch(threads);
+		ExecutorService exec = Executors.newFixedThreadPool(threads);
+		for (int i = 0; i < threads; i++) {
+			final int n = i;
+			exec.execute(new Runnable() {
+
+				@Override
+				public void run() {
+					for (int j = 0; j < 10000; j++) {
+						histogram.record(n * 10000 + j);
+					}
+					latch.countDown();
+				}
+
+			});
+		}
+		assertTrue(latch.await(10, TimeUnit.SECONDS));
+		exec.shutdown();
+		assertEquals(40000, histogram.getCount());
+		assertEquals(39999, histogram.getMax());
+	}
+
+	@Test
+	public void testRecorder() {
+		HistogramMetricsRecorder recorder = new HistogramMetricsRecorder();
+		recorder.recordListenerExecution(2000000, 10);
+		recorder.recordHandoffWait(3000);
+		recorder.recordAck(500000, 10);
+		recorder.recordBatchSize(10);
+		recorder.recordRedelivery();
+		recorder.recordRejected(2);
+		recorder.consumerRestarted();
+		assertEquals(10, recorder.getMessageCount());
+		assertEquals(2000.0, recorder.getListenerExecutionMean(), 0.1);
+		assertEquals(2000, recorder.getListenerExecutionMax());
+		assertEquals(3, recorder.getHandoffWaitMax());
+		assertEquals(500, recorder.getAckMax());
+		assertEquals(10, recorder.getBatchSizeMax());
+		assertEquals(1, recorder.getRedeliveryCount());
+		assertEquals(2, recorder.getRejectedCount());
+		assertEquals(1, recorder.getConsumerRestartCount());
+		recorder.reset();
+		assertEquals(0, recorder.getMessageCount());
+		assertEquals(0, recorder.getListenerExecutionHistogram().getCount());
+	}
+
+	private void assertWithin(long expected, long actual) {
+		assertTrue("Expected " + expected + " but was " + actual,
+				Math.abs(expected - actual) <= expected / 32);
+	}
+
+}
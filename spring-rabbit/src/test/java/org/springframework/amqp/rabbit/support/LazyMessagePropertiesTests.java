@@ -0,0 +1,120 @@
+/*
+ * Copyright 2014 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package org.springframework.amqp.rabbit.support;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import org.springframework.amqp.core.MessageDeliveryMode;
+import org.springframework.amqp.core.MessageProperties;
+
+import com.rabbitmq.client.AMQP.BasicProperties;
+import com.rabbitmq.client.Envelope;
+import com.rabbitmq.client.impl.LongStringHelper;
+
+/**
+ * @author Gary Russell
+ * @since 1.4
+ *
+ */
+public class LazyMessagePropertiesTests {
+
+	private BasicProperties source;
+
+	private Envelope envelope;
+
+	@Before
+	public void setUp() {
+		Map<String, Object> headers = new HashMap<String, Object>();
+		headers.put("foo", LongStringHelper.asLongString("bar"));
+		headers.put("baz", 42);
+		this.source = new BasicProperties.Builder()
+				.headers(headers)
+				.contentType("text/plain")
+				.correlationId("corr")
+				.replyTo("replyQueue")
+				.messageId("id")
+				.deliveryMode(1)
+				.build();
+		this.envelope = new Envelope(123L, true, "ex", "rk");
+	}
+
+	@Test
+	public void testReadThrough() {
+		LazyMessageProperties properties = (LazyMessageProperties) new LazyMessagePropertiesConverter()
+				.toMessageProperties(this.source, this.envelope, "UTF-8");
+		assertEquals("text/plain", properties.getContentType());
+		assertEquals("id", properties.getMessageId());
+		assertEquals("replyQueue", properties.getReplyTo());
+		assertEquals("replyQueue", properties.getReplyToAddress().getRoutingKey());
+		assertEquals(MessageDeliveryMode.NON_PERSISTENT, properties.getDeliveryMode());
+		assertEquals("ex", properties.getReceivedExchange());
+		assertEquals("rk", properties.getReceivedRoutingKey());
+		assertTrue(properties.isRedelivered());
+		assertEquals(123L, properties.getDeliveryTag());
+		assertNull(properties.getPriority());
+		assertFalse(properties.isHeadersMaterialized());
+		assertFalse(properties.isMaterialized());
+
+		assertEquals("bar", properties.getHeaders().get("foo"));
+		assertEquals(42, properties.getHeaders().get("baz"));
+		assertArrayEquals("corr".getBytes(), properties.getCorrelationId());
+		assertTrue(properties.isHeadersMaterialized());
+		assertFalse(properties.isMaterialized());
+	}
+
+	@Test
+	public void testModify() {
+		LazyMessageProperties properties = (LazyMessageProperties) new LazyMessagePropertiesConverter()
+				.toMessageProperties(this.source, this.envelope, "UTF-8");
+		properties.setContentType("application/json");
+		assertTrue(properties.isMaterialized());
+		assertEquals("application/json", properties.getContentType());
+		assertEquals("id", properties.getMessageId());
+		assertEquals("ex", properties.getReceivedExchange());
+		assertEquals("bar", properties.getHeaders().get("foo"));
+		properties.setMessageCount(0);
+		assertEquals(Integer.valueOf(0), properties.getMessageCount());
+	}
+
+	@Test
+	public void testSerialize() throws Exception {
+		MessageProperties eager = new DefaultMessagePropertiesConverter()
+				.toMessageProperties(this.source, this.envelope, "UTF-8");
+		MessageProperties properties = new LazyMessagePropertiesConverter()
+				.toMessageProperties(this.source, this.envelope, "UTF-8");
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		ObjectOutputStream out = new ObjectOutputStream(bytes);
+		out.writeObject(properties);
+		out.close();
+		Object read = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray())).readObject();
+		assertEquals(MessageProperties.class, read.getClass());
+		assertEquals(eager, read);
+		assertEquals("bar", ((MessageProperties) read).getHeaders().get("foo"));
+		assertEquals(123L, ((MessageProperties) read).getDeliveryTag());
+	}
+
+}
@@ -0,0 +1,119 @@
+/*
+ * Copyright 2014 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package org.springframework.amqp.rabbit.support;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+
+import java.util.List;
+
+import org.junit.Test;
+
+import org.springframework.amqp.rabbit.support.PublisherCallbackChannel.Listener;
+
+/**
+ * @author Gary Russell
+ * @since 1.4
+ *
+ */
+public class PendingConfirmStoreTests {
+
+	private final Listener listener1 = mock(Listener.class);
+
+	private final Listener listener2 = mock(Listener.class);
+
+	@Test
+	public void testSingle() {
+		PendingConfirmStore store = new PendingConfirmStore();
+		PendingConfirm confirm1 = pendingConfirm();
+		PendingConfirm confirm2 = pendingConfirm();
+		store.add(1, this.listener1, confirm1);
+		store.add(2, this.listener2, confirm2);
+		assertEquals(2, store.size());
+		PendingConfirmStore.Entry entry = store.remove(2);
+		assertSame(this.listener2, entry.getListener());
+		assertSame(confirm2, entry.getPendingConfirm());
+		assertNull(store.remove(2));
+		entry = store.remove(1);
+		assertSame(confirm1, entry.getPendingConfirm());
+		assertEquals(0, store.size());
+		assertNull(store.remove(3));
+	}
+
+	@Test
+	public void testMultipleWithGrowth() {
+		PendingConfirmStore store = new PendingConfirmStore();
+		for (int i = 1; i <= 10000; i++) {
+			store.add(i, i % 2 == 0 ? this.listener1 : this.listener2, pendingConfirm());
+		}
+		assertEquals(10000, store.size());
+		assertEquals(5000, store.getPendingConfirms(this.listener1).size());
+		store.remove(3);
+		List<PendingConfirmStore.Entry> removed = store.removeUpTo(6000);
+		assertEquals(5999, removed.size());
+		long last = 0;
+		for (PendingConfirmStore.Entry entry : removed) {
+			assertTrue(entry.getSeq() > last);
+			last = entry.getSeq();
+		}
+		assertEquals(6000, last);
+		assertEquals(4000, store.size());
+		assertEquals(0, store.removeUpTo(6000).size());
+		assertEquals(2000, store.removeAll(this.listener1));
+		removed = store.removeAll();
+		assertEquals(2000, removed.size());
+		assertEquals(6001, removed.get(0).getSeq());
+		assertEquals(0, store.size());
+	}
+
+	@Test
+	public void testWrap() {
+		PendingConfirmStore store = new PendingConfirmStore();
+		long seq = 1;
+		for (int i = 0; i < 1000; i++) {
+			store.add(seq++, this.listener1, pendingConfirm());
+			store.add(seq++, this.listener1, pendingConfirm());
+			store.add(seq++, this.listener1, pendingConfirm());
+			store.removeUpTo(seq - 2);
+			assertEquals(1, store.size());
+		}
+		assertEquals(1, store.removeAll().size());
+	}
+
+	@Test
+	public void testExpire() {
+		PendingConfirmStore store = new PendingConfirmStore();
+		PendingConfirm confirm1 = pendingConfirm();
+		PendingConfirm confirm2 = pendingConfirm();
+		store.add(1, this.listener1, confirm1);
+		store.add(2, this.listener1, confirm2);
+		assertTrue(store.expire(1, confirm1));
+		assertFalse(store.expire(1, confirm1));
+		assertFalse(store.expire(2, confirm1));
+		assertEquals(1, store.getPendingConfirms(this.listener1).size());
+		assertEquals(2, store.size());
+		PendingConfirmStore.Entry entry = store.remove(1);
+		assertSame(this.listener1, entry.getListener());
+		assertNull(entry.getPendingConfirm());
+		assertSame(confirm2, store.remove(2).getPendingConfirm());
+	}
+
+	private PendingConfirm pendingConfirm() {
+		return new PendingConfirm(null, System.currentTimeMillis());
+	}
+
+}
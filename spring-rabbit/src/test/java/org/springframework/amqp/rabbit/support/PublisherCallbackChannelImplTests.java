@@ -0,0 +1,76 @@
+/*
+ * Copyright 2014 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package org.springframework.amqp.rabbit.support;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.SortedMap;
+
+import org.junit.Test;
+
+import org.springframework.amqp.rabbit.support.PublisherCallbackChannel.Listener;
+
+import com.rabbitmq.client.Channel;
+
+/**
+ * @author Gary Russell
+ * @since 1.4
+ *
+ */
+public class PublisherCallbackChannelImplTests {
+
+	@Test
+	public void testPendingConfirmRangeViews() throws Exception {
+		PublisherCallbackChannelImpl channel = new PublisherCallbackChannelImpl(mock(Channel.class));
+		Listener listener = mock(Listener.class);
+		when(listener.getUUID()).thenReturn("listener");
+		when(listener.isConfirmListener()).thenReturn(true);
+		SortedMap<Long, PendingConfirm> pendingConfirms = channel.addListener(listener);
+		for (long seq = 1; seq <= 5; seq++) {
+			channel.addPendingConfirm(listener, seq, new PendingConfirm(null, System.currentTimeMillis()));
+		}
+		assertEquals(Arrays.asList(1L, 2L), new ArrayList<Long>(pendingConfirms.headMap(3L).keySet()));
+		assertEquals(Arrays.asList(3L, 4L, 5L), new ArrayList<Long>(pendingConfirms.tailMap(3L).keySet()));
+		SortedMap<Long, PendingConfirm> subMap = pendingConfirms.subMap(2L, 4L);
+		assertEquals(Arrays.asList(2L, 3L), new ArrayList<Long>(subMap.keySet()));
+		assertEquals(Long.valueOf(2), subMap.firstKey());
+		assertEquals(Long.valueOf(3), subMap.lastKey());
+		assertEquals(1, subMap.headMap(3L).size());
+		try {
+			subMap.tailMap(5L);
+			fail("Expected IllegalArgumentException");
+		}
+		catch (IllegalArgumentException e) {
+			// expected
+		}
+
+		// removing through a view expires the confirm in the backing store
+		Iterator<Long> iterator = subMap.keySet().iterator();
+		iterator.next();
+		iterator.remove();
+		assertEquals(Arrays.asList(1L, 3L, 4L, 5L), new ArrayList<Long>(pendingConfirms.keySet()));
+
+		// views are live
+		channel.handleAck(3, true);
+		assertTrue(subMap.isEmpty());
+		assertEquals(Arrays.asList(4L, 5L), new ArrayList<Long>(pendingConfirms.tailMap(3L).keySet()));
+	}
+
+}